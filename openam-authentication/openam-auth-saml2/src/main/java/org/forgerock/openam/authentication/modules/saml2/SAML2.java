@@ -247,9 +247,7 @@ public class SAML2 extends AMLoginModule {
         final AuthnRequestInfo reqInfo = new AuthnRequestInfo(request, response, realm, spEntityID, null,
                 authnRequest, null, params);
 
-        synchronized (SPCache.requestHash) {
-            SPCache.requestHash.put(authnRequest.getID(), reqInfo);
-        }
+        SPCache.requestHash.put(authnRequest.getID(), reqInfo);
 
         saveAuthnRequest(authnRequest, reqInfo);
 
@@ -525,9 +523,7 @@ public class SAML2 extends AMLoginModule {
      * response data - can be used to call into SAML2ServiceProviderAdapter methods.
      */
     private void setSessionAttributes(Assertion assertion, String userName) throws AuthLoginException, SAML2Exception {
-        synchronized (SPCache.authnRequestHash) {
-            SPCache.authnRequestHash.put(storageKey, authnRequest);
-        }
+        SPCache.authnRequestHash.put(storageKey, authnRequest);
 
         linkAttributeValues(assertion, userName);
     }
@@ -413,6 +413,44 @@ public abstract class CacheBlockBase {
         }
     }
 
+    /**
+     * Estimates the memory used by this block's attribute names and values, so that it can be weighed within a
+     * cache bounded by size rather than entry count.
+     *
+     * @return the approximate size of the cached attributes in bytes.
+     */
+    public int getEstimatedSize() {
+        readLock.lock();
+        try {
+            long size = 2L * entryDN.length();
+            if (isValidEntry) {
+                size += estimateSize(stringAttributes) + estimateSize(byteAttributes);
+            }
+            return (int) Math.min(Integer.MAX_VALUE, size);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    private static long estimateSize(Map attributes) {
+        long size = 0;
+        for (Object o : attributes.entrySet()) {
+            Map.Entry entry = (Map.Entry) o;
+            size += 2L * entry.getKey().toString().length();
+            Object value = entry.getValue();
+            if (value instanceof byte[][]) {
+                for (byte[] bytes : (byte[][]) value) {
+                    size += (bytes == null) ? 0 : bytes.length;
+                }
+            } else if (value instanceof Set) {
+                for (Object item : (Set) value) {
+                    size += (item == null) ? 0 : 2L * item.toString().length();
+                }
+            }
+        }
+        return size;
+    }
+
     /**
      * Should be cleared, only if the entry is still valid only the data has
      * changed. If entry has been deleted then should be removed.
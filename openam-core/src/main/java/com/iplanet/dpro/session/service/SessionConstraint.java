@@ -38,6 +38,7 @@ import java.util.Set;
 import org.forgerock.guice.core.InjectorHolder;
 import org.forgerock.openam.session.service.DestroyOldestAction;
 import org.forgerock.openam.session.service.access.SessionQueryManager;
+import org.forgerock.openam.utils.Time;
 
 import com.iplanet.sso.SSOToken;
 import com.sun.identity.authentication.util.ISAuthConstants;
@@ -126,12 +127,23 @@ public class SessionConstraint {
         // Step 1: get constraints for the given user via IDRepo
         int quota = getSessionQuota(internalSession);
 
-        // Step 2: get the information (session id and expiration
+        // Step 2: consult the local session count index, only searching
+        // the session repository if the count is unknown or the quota
+        // would be exhausted
+        String uuid = internalSession.getUUID();
+        SessionCountIndex sessionCountIndex = InjectorHolder.getInstance(SessionCountIndex.class);
+        int indexedCount = sessionCountIndex.getSessionCount(uuid);
+        if (indexedCount >= 0 && indexedCount < quota) {
+            return false;
+        }
+
+        // Step 3: get the information (session id and expiration
         // time) of all sessions for the given user from all
         // AM servers and/or session repository
         Map sessions = null;
+        long searchTime = Time.currentTimeMillis();
         try {
-            sessions = InjectorHolder.getInstance(SessionQueryManager.class).getAllSessionsByUUID(internalSession.getUUID());
+            sessions = InjectorHolder.getInstance(SessionQueryManager.class).getAllSessionsByUUID(uuid);
         } catch (Exception e) {
             if (InjectorHolder.getInstance(SessionServiceConfig.class).isDenyLoginIfDBIsDown()) {
                 if (debug.messageEnabled()) {
@@ -156,9 +168,10 @@ public class SessionConstraint {
 
         if (sessions != null) {
             sessionCount = sessions.size();
+            sessionCountIndex.seed(uuid, sessionCount, searchTime);
         }
 
-        // Step 3: checking the constraints
+        // Step 4: checking the constraints
         if (sessionCount >= quota) {
             // If the session quota internalSession exhausted, invoke the
             // pluggin to determine the desired behavior.
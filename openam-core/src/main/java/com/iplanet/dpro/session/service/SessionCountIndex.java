@@ -0,0 +1,246 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.iplanet.dpro.session.service;
+
+import static org.forgerock.json.JsonValue.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.forgerock.guava.common.cache.Cache;
+import org.forgerock.guava.common.cache.CacheBuilder;
+import org.forgerock.json.JsonValue;
+import org.forgerock.openam.notifications.Consumer;
+import org.forgerock.openam.notifications.NotificationBroker;
+import org.forgerock.openam.notifications.Topic;
+import org.forgerock.util.annotations.VisibleForTesting;
+import org.forgerock.util.time.TimeService;
+
+import com.iplanet.am.util.SystemProperties;
+import com.sun.identity.shared.debug.Debug;
+
+/**
+ * Keeps a count of the active sessions of each user, so that {@link SessionConstraint} does not have to search the
+ * session repository on every login to enforce the session quota.
+ * <p/>
+ * The count for a user is seeded from the result of a full search and is then kept up to date from session creation
+ * and removal events. Events raised on this server are applied straight away and published to the topic
+ * '/internal/session/count', from which the other servers in the cluster apply them. A count is only trusted for a
+ * limited time after it was seeded, after which the next quota check searches again; any notification that was lost
+ * or arrived out of order is corrected then.
+ * <p/>
+ * Events raised before a count was seeded are ignored, as the search will already have seen their effect.
+ *
+ * @since 14.0.0
+ */
+@Singleton
+public class SessionCountIndex implements InternalSessionListener {
+
+    /** Topic used to share session count changes across the cluster. */
+    public static final Topic TOPIC_SESSION_COUNT = Topic.of("/internal/session/count");
+
+    /** Property to enable the session count index. Enabled by default. */
+    public static final String ENABLED_PROPERTY = "org.forgerock.openam.session.quota.index.enabled";
+    /** Property for the number of seconds a seeded session count is trusted for. */
+    public static final String MAX_AGE_PROPERTY = "org.forgerock.openam.session.quota.index.maxAge";
+    /** Property for the maximum number of users whose session counts are kept. */
+    public static final String MAX_SIZE_PROPERTY = "org.forgerock.openam.session.quota.index.maxSize";
+
+    static final String MESSAGE_ATTR_UUID = "uuid";
+    static final String MESSAGE_ATTR_DELTA = "delta";
+    static final String MESSAGE_ATTR_EVENT_TIME = "eventTime";
+    static final String MESSAGE_ATTR_SOURCE = "source";
+
+    private static final long DEFAULT_MAX_AGE = 300L;
+    private static final int DEFAULT_MAX_SIZE = 100000;
+
+    private final Debug debug;
+    private final NotificationBroker broker;
+    private final TimeService clock;
+    private final boolean enabled;
+    private final long maxAgeMs;
+    private final String source = UUID.randomUUID().toString();
+    private final Cache<String, SessionCount> counts;
+
+    /**
+     * Creates the index and subscribes to session count changes from the rest of the cluster.
+     *
+     * @param debug The session debug instance.
+     * @param broker The broker used to share session count changes.
+     */
+    @Inject
+    public SessionCountIndex(@Named(SessionConstants.SESSION_DEBUG) Debug debug, NotificationBroker broker) {
+        this(debug, broker, TimeService.SYSTEM, SystemProperties.getAsBoolean(ENABLED_PROPERTY, true),
+                TimeUnit.SECONDS.toMillis(SystemProperties.getAsLong(MAX_AGE_PROPERTY, DEFAULT_MAX_AGE)),
+                SystemProperties.getAsInt(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE));
+    }
+
+    @VisibleForTesting
+    SessionCountIndex(Debug debug, NotificationBroker broker, TimeService clock, boolean enabled, long maxAgeMs,
+            int maxSize) {
+        this.debug = debug;
+        this.broker = broker;
+        this.clock = clock;
+        this.enabled = enabled;
+        this.maxAgeMs = maxAgeMs;
+        this.counts = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+        if (enabled) {
+            broker.subscribe(new SessionCountConsumer()).bindTo(TOPIC_SESSION_COUNT);
+        }
+    }
+
+    /**
+     * Returns the number of active sessions of the given user, if known.
+     *
+     * @param uuid The universal id of the user.
+     * @return The number of sessions, or {@code -1} if the count is not known or is too old to be trusted, in which
+     * case the caller should search the session repository and {@link #seed seed} the count with the result.
+     */
+    public int getSessionCount(String uuid) {
+        if (!enabled || uuid == null) {
+            return -1;
+        }
+        SessionCount count = counts.getIfPresent(uuid);
+        if (count == null) {
+            return -1;
+        }
+        if (clock.now() - count.seedTime > maxAgeMs) {
+            counts.asMap().remove(uuid, count);
+            return -1;
+        }
+        return count.get();
+    }
+
+    /**
+     * Seeds the count for the given user with the result of a search of the session repository.
+     *
+     * @param uuid The universal id of the user.
+     * @param sessionCount The number of sessions found.
+     * @param searchTime The time the search was started, in milliseconds since the UTC epoch.
+     */
+    public void seed(String uuid, int sessionCount, long searchTime) {
+        if (enabled && uuid != null) {
+            counts.put(uuid, new SessionCount(sessionCount, searchTime));
+        }
+    }
+
+    /**
+     * Forgets the count for the given user, so that the next quota check searches the session repository.
+     *
+     * @param uuid The universal id of the user.
+     */
+    public void invalidate(String uuid) {
+        if (uuid != null) {
+            counts.invalidate(uuid);
+        }
+    }
+
+    @Override
+    public void onEvent(InternalSessionEvent event) {
+        if (!enabled) {
+            return;
+        }
+        switch (event.getType()) {
+            case SESSION_CREATION:
+                update(event, 1);
+                break;
+            // a timed out session is also destroyed, so only the destroy event is counted
+            case LOGOUT:
+            case DESTROY:
+                update(event, -1);
+                break;
+            default:
+                // ignore all other types of event
+        }
+    }
+
+    private void update(InternalSessionEvent event, int delta) {
+        InternalSession session = event.getInternalSession();
+        if (session.isAppSession()) {
+            return;
+        }
+        String uuid = session.getUUID();
+        if (uuid == null) {
+            return;
+        }
+        apply(uuid, delta, event.getTime());
+        JsonValue notification = json(object(
+                field(MESSAGE_ATTR_UUID, uuid),
+                field(MESSAGE_ATTR_DELTA, delta),
+                field(MESSAGE_ATTR_EVENT_TIME, event.getTime()),
+                field(MESSAGE_ATTR_SOURCE, source)));
+        if (!broker.publish(TOPIC_SESSION_COUNT, notification)) {
+            // The rest of the cluster will not see this change, so don't rely on their counts either
+            debug.message("SessionCountIndex: Unable to publish session count change for {}", uuid);
+            invalidate(uuid);
+        }
+    }
+
+    private void apply(String uuid, int delta, long eventTime) {
+        SessionCount count = counts.getIfPresent(uuid);
+        if (count != null) {
+            count.apply(delta, eventTime);
+        }
+    }
+
+    /**
+     * Applies session count changes published by the other servers in the cluster.
+     */
+    private final class SessionCountConsumer implements Consumer {
+        @Override
+        public void accept(JsonValue notification) {
+            if (source.equals(notification.get(MESSAGE_ATTR_SOURCE).asString())) {
+                return;
+            }
+            JsonValue uuid = notification.get(MESSAGE_ATTR_UUID);
+            JsonValue delta = notification.get(MESSAGE_ATTR_DELTA);
+            JsonValue eventTime = notification.get(MESSAGE_ATTR_EVENT_TIME);
+            if (uuid.isNull() || delta.isNull() || eventTime.isNull()) {
+                debug.error("SessionCountIndex: Discarding incomplete session count notification {}", notification);
+                return;
+            }
+            apply(uuid.asString(), delta.asInteger(), eventTime.asLong());
+        }
+    }
+
+    /**
+     * The session count of one user.
+     */
+    private static final class SessionCount {
+        private final long seedTime;
+        private int count;
+
+        private SessionCount(int count, long seedTime) {
+            this.count = count;
+            this.seedTime = seedTime;
+        }
+
+        private synchronized int get() {
+            return count;
+        }
+
+        private synchronized void apply(int delta, long eventTime) {
+            if (eventTime >= seedTime) {
+                count = Math.max(0, count + delta);
+            }
+        }
+    }
+}
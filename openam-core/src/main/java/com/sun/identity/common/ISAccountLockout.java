@@ -80,6 +80,7 @@ public class ISAccountLockout {
     private boolean failureLockoutMode = false;
     private boolean memoryLocking = false;
     private boolean storeInvalidAttemptsInDS = true;
+    private boolean writeBehind = WriteBehindLockoutStore.isEnabled();
     private long failureLockoutTime = 300;
     private int failureLockoutCount = 5;
     private String lockoutNotification = null;
@@ -180,6 +181,17 @@ public class ISAccountLockout {
     public void setStoreInvalidAttemptsInDS(boolean aStoreInvalidAttemptsInDS) {
         storeInvalidAttemptsInDS = aStoreInvalidAttemptsInDS;
     }
+
+    /**
+     * Returns <code>true</code> if the invalid attempts stored in the data
+     * store are counted in memory and written behind, see
+     * <code>WriteBehindLockoutStore</code>.
+     *
+     * @return <code>true</code> if the invalid attempts are written behind.
+     */
+    private boolean isWriteBehind() {
+        return writeBehind && storeInvalidAttemptsInDS;
+    }
     
     /**
      * Returns <code>true</code> if memory locking mode is enabled.
@@ -207,7 +219,11 @@ public class ISAccountLockout {
         if (acInfo == null) {
             acInfo = new AccountLockoutInfo();
             acInfo.setActualLockoutDuration(failureLockoutDuration);
-            loginFailHash.put(userDN,acInfo);
+            if (isWriteBehind()) {
+                acInfo = WriteBehindLockoutStore.getInstance().putIfAbsent(userDN, acInfo);
+            } else {
+                loginFailHash.put(userDN,acInfo);
+            }
         }
         
         if (debug.messageEnabled()) {
@@ -217,6 +233,53 @@ public class ISAccountLockout {
         }
 
         long now = currentTimeMillis();
+        int fail_count;
+        // the lockout information is shared by the concurrent logins of the user when written behind
+        synchronized (acInfo) {
+            fail_count = recordInvalidPasswd(userDN, userName, amIdentity, acInfo, now);
+        }
+        if (fail_count < 0) {
+            return -1;
+        }
+        
+        if (fail_count == failureLockoutCount) {
+            if (!memoryLocking) {
+                inactivateUserAccount(amIdentity);
+            }
+            try {
+                sendLockOutNotice(userName);
+                /*
+                 * The callback implementation instance is retrieved for
+                 * the user's organization. This will be used to notify the
+                 * custom plug-ins that a certain event occured on an account.
+                 */
+                callbackImpl = AMAuthCallBackImpl.getInstance(
+                    amIdentity.getRealm());
+                // Requesting callback to plugin for account lockout event.
+                callbackImpl.processedAccounttLockout(new Long(now), userName);
+            } catch (AMAuthCallBackException e) {
+                if (debug.getState() >= IDebug.ERROR) {
+                    debug.error("ISAccountLockout invalidPasswd : " +
+                        "error getting callback implementation " +
+                        "instance or error from callback module", e);
+                }
+            } catch(Exception ex) {
+                debug.message("Error activating account/sending"
+                    + "notification ", ex);
+            }
+        }
+        
+        setWarningCount(fail_count,failureLockoutCount);
+        return userWarningCount;
+    }
+    
+    /**
+     * Counts an invalid login attempt of the user in the lockout information, and stores it.
+     *
+     * @return the updated number of invalid login attempts, or -1 if it could not be stored.
+     */
+    private int recordInvalidPasswd(String userDN, String userName,
+        AMIdentity amIdentity, AccountLockoutInfo acInfo, long now) {
         int fail_count = acInfo.getFailCount();
         long lastFailTime = acInfo.getLastFailTime();
         long lockedAt = acInfo.getLockoutAt();
@@ -232,12 +295,31 @@ public class ISAccountLockout {
         ) {
             lockedAt = now;
         }
+        // when written behind, the count includes the attempts of the other
+        // servers, which may take it past the lockout count in one step
+        if (isWriteBehind() && !acInfo.isLockout() &&
+            ((lastFailTime + failureLockoutTime) > now) &&
+            (fail_count > failureLockoutCount)
+        ) {
+            fail_count = failureLockoutCount;
+            lockedAt = now;
+        }
         if (debug.messageEnabled()) {
             debug.message("ISAccountLockout.invalidPasswd:fail_count:"
                  +fail_count);
         }
        
-        if (storeInvalidAttemptsInDS) {
+        if (isWriteBehind()) {
+            // only the lockout is written to the data store, the attempts
+            // before it are only replicated to the other servers
+            if (lockedAt != acInfo.getLockoutAt()) {
+                String invalidXML = createInvalidAttemptsXML(
+                    fail_count, now, lockedAt,
+                    acInfo.getActualLockoutDuration());
+                WriteBehindLockoutStore.getInstance().writeBehind(userDN,
+                    new InvalidAttemptsWrite(amIdentity, invalidXML));
+            }
+        } else if (storeInvalidAttemptsInDS) {
             Map attrMap = new HashMap();
             Set invalidAttempts = new HashSet();
             String invalidXML = createInvalidAttemptsXML(
@@ -270,40 +352,24 @@ public class ISAccountLockout {
             acInfo.setLockout(true);
         }
         acInfo.setUserToken(userName);
-        
-        if (fail_count == failureLockoutCount) {
-            if (!memoryLocking) {
-                inactivateUserAccount(amIdentity);
-            }
-            try {
-                sendLockOutNotice(userName);
-                /*
-                 * The callback implementation instance is retrieved for
-                 * the user's organization. This will be used to notify the
-                 * custom plug-ins that a certain event occured on an account.
-                 */
-                callbackImpl = AMAuthCallBackImpl.getInstance(
-                    amIdentity.getRealm());
-                // Requesting callback to plugin for account lockout event.
-                callbackImpl.processedAccounttLockout(new Long(now), userName);
-            } catch (AMAuthCallBackException e) {
-                if (debug.getState() >= IDebug.ERROR) {
-                    debug.error("ISAccountLockout invalidPasswd : " +
-                        "error getting callback implementation " +
-                        "instance or error from callback module", e);
-                }
-            } catch(Exception ex) {
-                debug.message("Error activating account/sending"
-                    + "notification ", ex);
-            }
+        if (isWriteBehind()) {
+            WriteBehindLockoutStore.getInstance().invalidPasswd(userDN, acInfo,
+                failureLockoutTime,
+                Math.max(failureLockoutTime, acInfo.getActualLockoutDuration()));
         }
-        
-        setWarningCount(fail_count,failureLockoutCount);
-        return userWarningCount;
+        return fail_count;
     }
-    
+
     public AccountLockoutInfo getAcInfo(String userDN, AMIdentity amIdentity) {
         AccountLockoutInfo acInfo = null;
+        if (isWriteBehind()) {
+            acInfo = WriteBehindLockoutStore.getInstance().get(userDN);
+            if (acInfo != null) {
+                setWarningCount(acInfo.getFailCount(), failureLockoutCount);
+                acInfo.setWarningCount(userWarningCount);
+                return acInfo;
+            }
+        }
         if (storeInvalidAttemptsInDS) {
             acInfo =  new AccountLockoutInfo();
             Set attrValueSet = Collections.EMPTY_SET;
@@ -358,6 +424,9 @@ public class ISAccountLockout {
             
             setWarningCount(invalid_attempts,failureLockoutCount);
             acInfo.setWarningCount(userWarningCount);
+            if (isWriteBehind()) {
+                acInfo = WriteBehindLockoutStore.getInstance().putIfAbsent(userDN, acInfo);
+            }
         } else {
             acInfo = (AccountLockoutInfo) loginFailHash.get(userDN);
         }
@@ -704,7 +773,24 @@ public class ISAccountLockout {
             }
         }
 
-        if (storeInvalidAttemptsInDS) {
+        if (isWriteBehind()) {
+            if ((fail_count !=0)||(lastFailTime !=0)||(locked_out_at !=0)||
+                (actualLockoutDuration != currentLockoutDuration)) {
+                WriteBehindLockoutStore store =
+                    WriteBehindLockoutStore.getInstance();
+                store.reset(userDN, actualLockoutDuration,
+                    Math.max(failureLockoutTime, actualLockoutDuration));
+                // the data store only holds the lockout, not the attempts
+                // before it
+                if ((locked_out_at !=0)||
+                    (actualLockoutDuration != currentLockoutDuration)) {
+                    String invalidXML = createInvalidAttemptsXML(0,0,0,
+                        actualLockoutDuration);
+                    store.writeBehind(userDN,
+                        new InvalidAttemptsWrite(amIdentity, invalidXML));
+                }
+            }
+        } else if (storeInvalidAttemptsInDS) {
             try {
                 if ((fail_count !=0)||(lastFailTime !=0)||(locked_out_at !=0)||
                     (actualLockoutDuration != currentLockoutDuration)) {
@@ -733,6 +819,40 @@ public class ISAccountLockout {
         
     }
     
+    /**
+     * Writes the invalid attempts data of a user to the data store, behind
+     * the login that changed it.
+     */
+    private final class InvalidAttemptsWrite implements Runnable {
+        private final AMIdentity amIdentity;
+        private final String invalidXML;
+
+        InvalidAttemptsWrite(AMIdentity amIdentity, String invalidXML) {
+            this.amIdentity = amIdentity;
+            this.invalidXML = invalidXML;
+        }
+
+        @Override
+        public void run() {
+            Map attrMap = new HashMap();
+            Set invalidAttempts = new HashSet();
+            invalidAttempts.add(invalidXML);
+            attrMap.put(invalidAttemptsDataAttrName, invalidAttempts);
+
+            try {
+                setLockoutObjectClass(amIdentity);
+                amIdentity.setAttributes(attrMap);
+                amIdentity.store();
+                if (debug.messageEnabled()) {
+                    debug.message("ISAccountLockout.InvalidAttemptsWrite: "
+                        + "Stored Invalid Attempt XML= " + invalidXML);
+                }
+            } catch (Exception e) {
+                debug.error("ISAccountLockout.InvalidAttemptsWrite", e);
+            }
+        }
+    }
+
     /**
      * Returns XML to be stored in data store the format is like this
      * &lt;InvalidPassword>
@@ -0,0 +1,398 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.sun.identity.common;
+
+import static org.forgerock.openam.utils.Time.currentTimeMillis;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.guice.core.InjectorHolder;
+import org.forgerock.openam.audit.context.AMExecutorServiceFactory;
+import org.forgerock.openam.cts.CTSPersistentStore;
+import org.forgerock.openam.cts.api.filter.TokenFilter;
+import org.forgerock.openam.cts.api.filter.TokenFilterBuilder;
+import org.forgerock.openam.cts.api.tokens.Token;
+import org.forgerock.openam.cts.exceptions.CoreTokenException;
+import org.forgerock.openam.tokens.CoreTokenField;
+import org.forgerock.openam.tokens.TokenType;
+import org.forgerock.openam.utils.TimeUtils;
+import org.forgerock.openam.utils.collections.ConcurrentCache;
+
+import com.iplanet.am.util.SystemProperties;
+import com.sun.identity.shared.debug.Debug;
+
+/**
+ * Keeps the invalid login attempts of the users in memory when they are stored in the data store, so that counting a
+ * failed login never waits for the Core Token Service or the data store.
+ * <p>
+ * Each server counts the invalid login attempts it sees in memory, and replicates its own counters to CTS in the
+ * background, one token per server and user. A server reading the lockout information of a user adds up the counters
+ * of all the servers, so the lockout follows the attempts of the whole cluster. A reset is recorded with its time, and
+ * the attempts counted by the other servers before the latest reset are ignored. The lockout information is read
+ * again from CTS after the refresh interval. Only the lockout and its reset are written to the data store, after a
+ * delay, the latest state of a user being written when it changed several times in the meantime.
+ */
+final class WriteBehindLockoutStore {
+
+    /** The property that enables the write-behind of the invalid login attempts stored in the data store. */
+    static final String WRITE_BEHIND_PROPERTY = "org.forgerock.openam.accountlockout.writebehind.enabled";
+    private static final String CACHE_SIZE_PROPERTY = "org.forgerock.openam.accountlockout.writebehind.cachesize";
+    private static final String REFRESH_INTERVAL_PROPERTY = "org.forgerock.openam.accountlockout.writebehind.refresh";
+    private static final String WRITE_DELAY_PROPERTY = "org.forgerock.openam.accountlockout.writebehind.delay";
+    private static final int DEFAULT_CACHE_SIZE = 100000;
+    private static final long DEFAULT_REFRESH_INTERVAL = 10000;
+    private static final long DEFAULT_WRITE_DELAY = 1000;
+    private static final String TOKEN_ID_PREFIX = "accountlockout:";
+    private static final String TOKEN_KIND = "accountlockout";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final Debug DEBUG = Debug.getInstance("amAccountLockout");
+    private static volatile WriteBehindLockoutStore instance;
+
+    private final String serverId = UUID.randomUUID().toString();
+    private final Map<String, AccountLockoutInfo> lockoutInfos;
+    private final Map<String, Counter> counters;
+    private final ConcurrentMap<String, Runnable> pendingWrites = new ConcurrentHashMap<String, Runnable>();
+    private final ConcurrentMap<String, Counter> pendingReplications = new ConcurrentHashMap<String, Counter>();
+    private final CTSPersistentStore ctsStore;
+    private final ScheduledExecutorService scheduler;
+    private final long writeDelay;
+
+    /**
+     * Creates a new write-behind lockout store.
+     *
+     * @param ctsStore The store the lockout information is replicated to.
+     * @param scheduler The executor running the replication and the data store writes.
+     * @param maxSize The maximum number of users whose lockout information is held in memory.
+     * @param refreshInterval The time in milliseconds after which the lockout information is read again from CTS.
+     * @param writeDelay The time in milliseconds a change waits for before being replicated or written.
+     */
+    WriteBehindLockoutStore(CTSPersistentStore ctsStore, ScheduledExecutorService scheduler, int maxSize,
+            long refreshInterval, long writeDelay) {
+        this.lockoutInfos = new ConcurrentCache<String, AccountLockoutInfo>(maxSize, refreshInterval);
+        this.counters = new ConcurrentCache<String, Counter>(maxSize);
+        this.ctsStore = ctsStore;
+        this.scheduler = scheduler;
+        this.writeDelay = writeDelay;
+    }
+
+    /**
+     * Tells whether the invalid login attempts stored in the data store should go through this store.
+     *
+     * @return {@code true} if the write-behind is enabled.
+     */
+    static boolean isEnabled() {
+        return SystemProperties.getAsBoolean(WRITE_BEHIND_PROPERTY, false);
+    }
+
+    /**
+     * Returns the write-behind lockout store of this server.
+     *
+     * @return The write-behind lockout store.
+     */
+    static WriteBehindLockoutStore getInstance() {
+        if (instance == null) {
+            synchronized (WriteBehindLockoutStore.class) {
+                if (instance == null) {
+                    instance = new WriteBehindLockoutStore(InjectorHolder.getInstance(CTSPersistentStore.class),
+                            InjectorHolder.getInstance(AMExecutorServiceFactory.class)
+                                    .createScheduledService(1, "AccountLockoutWriteBehind"),
+                            SystemProperties.getAsInt(CACHE_SIZE_PROPERTY, DEFAULT_CACHE_SIZE),
+                            SystemProperties.getAsLong(REFRESH_INTERVAL_PROPERTY, DEFAULT_REFRESH_INTERVAL),
+                            SystemProperties.getAsLong(WRITE_DELAY_PROPERTY, DEFAULT_WRITE_DELAY));
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the lockout information of a user, from memory or else from the counters of all the servers in CTS.
+     * Must not be called while holding the lock of the lockout information, as it may query CTS.
+     *
+     * @param userDN The normalized DN of the user.
+     * @return The lockout information, shared by the concurrent logins of the user, or {@code null} if neither the
+     * memory nor CTS hold it.
+     */
+    AccountLockoutInfo get(String userDN) {
+        AccountLockoutInfo acInfo = lockoutInfos.get(userDN);
+        if (acInfo != null) {
+            return acInfo;
+        }
+        Collection<Token> tokens;
+        try {
+            TokenFilter filter = new TokenFilterBuilder()
+                    .and()
+                    .withAttribute(CoreTokenField.USER_ID, userDN)
+                    .withAttribute(CoreTokenField.STRING_SIX, TOKEN_KIND)
+                    .build();
+            tokens = ctsStore.query(filter);
+        } catch (CoreTokenException e) {
+            DEBUG.warning("WriteBehindLockoutStore.get: unable to read lockout tokens of " + userDN, e);
+            return null;
+        }
+        // the counter of this server held in memory may be more recent than its token
+        Counter own = counters.get(userDN);
+        String ownTokenId = getTokenId(userDN);
+        List<Counter> all = new ArrayList<Counter>(tokens.size() + 1);
+        for (Token token : tokens) {
+            if (own == null || !ownTokenId.equals(token.getTokenId())) {
+                all.add(Counter.fromToken(token));
+            }
+        }
+        if (own != null) {
+            synchronized (own) {
+                all.add(own.copy());
+            }
+        }
+        if (all.isEmpty()) {
+            return null;
+        }
+        return putIfAbsent(userDN, merge(all, currentTimeMillis()));
+    }
+
+    /**
+     * Holds the lockout information of a user read from the data store, unless another login of the user did it
+     * first.
+     *
+     * @param userDN The normalized DN of the user.
+     * @param acInfo The lockout information.
+     * @return The lockout information held for the user.
+     */
+    AccountLockoutInfo putIfAbsent(String userDN, AccountLockoutInfo acInfo) {
+        synchronized (lockoutInfos) {
+            AccountLockoutInfo existing = lockoutInfos.get(userDN);
+            if (existing != null) {
+                return existing;
+            }
+            lockoutInfos.put(userDN, acInfo);
+            return acInfo;
+        }
+    }
+
+    /**
+     * Counts an invalid login attempt of a user on this server, and replicates the counter of this server to CTS in
+     * the background. The attempt must already be counted in the lockout information held for the user.
+     *
+     * @param userDN The normalized DN of the user.
+     * @param acInfo The lockout information held for the user, including the attempt.
+     * @param failureLockoutTime The time in milliseconds within which consecutive invalid attempts are counted.
+     * @param lifetime How long in milliseconds the counter is relevant for.
+     */
+    void invalidPasswd(String userDN, AccountLockoutInfo acInfo, long failureLockoutTime, long lifetime) {
+        Counter counter = getCounter(userDN);
+        synchronized (counter) {
+            long now = acInfo.getLastFailTime();
+            counter.failCount = (counter.lastFailTime + failureLockoutTime) > now ? counter.failCount + 1 : 1;
+            counter.lastFailTime = now;
+            counter.failureLockoutTime = failureLockoutTime;
+            counter.lockoutAt = acInfo.getLockoutAt();
+            counter.actualLockoutDuration = acInfo.getActualLockoutDuration();
+            counter.expiryTime = now + lifetime;
+        }
+        replicate(userDN, counter);
+    }
+
+    /**
+     * Resets the invalid login attempts of a user on all the servers, and replicates the reset to CTS in the
+     * background.
+     *
+     * @param userDN The normalized DN of the user.
+     * @param actualLockoutDuration The lockout duration of the user after the reset.
+     * @param lifetime How long in milliseconds the reset is relevant for.
+     */
+    void reset(String userDN, long actualLockoutDuration, long lifetime) {
+        Counter counter = getCounter(userDN);
+        synchronized (counter) {
+            long now = currentTimeMillis();
+            counter.failCount = 0;
+            counter.lastFailTime = 0;
+            counter.lockoutAt = 0;
+            counter.actualLockoutDuration = actualLockoutDuration;
+            counter.resetTime = now;
+            counter.expiryTime = now + lifetime;
+        }
+        replicate(userDN, counter);
+    }
+
+    /**
+     * Writes the lockout information of a user to the data store after the write delay, unless it is changed again
+     * in the meantime, in which case only the latest write is run.
+     *
+     * @param userDN The normalized DN of the user.
+     * @param dataStoreWrite Writes the changed lockout information to the data store.
+     */
+    void writeBehind(final String userDN, Runnable dataStoreWrite) {
+        if (pendingWrites.put(userDN, dataStoreWrite) == null) {
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    Runnable write = pendingWrites.remove(userDN);
+                    if (write != null) {
+                        write.run();
+                    }
+                }
+            }, writeDelay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Adds up the counters of the servers into the lockout information of the cluster.
+     *
+     * @param counters The counters of all the servers.
+     * @param now The current time in milliseconds.
+     * @return The lockout information.
+     */
+    static AccountLockoutInfo merge(Collection<Counter> counters, long now) {
+        long resetTime = 0;
+        for (Counter counter : counters) {
+            resetTime = Math.max(resetTime, counter.resetTime);
+        }
+        AccountLockoutInfo acInfo = new AccountLockoutInfo();
+        long latestChange = -1;
+        for (Counter counter : counters) {
+            if (counter.lastFailTime > resetTime) {
+                if (counter.lastFailTime + counter.failureLockoutTime > now) {
+                    acInfo.setFailCount(acInfo.getFailCount() + counter.failCount);
+                }
+                acInfo.setLastFailTime(Math.max(acInfo.getLastFailTime(), counter.lastFailTime));
+            }
+            if (counter.lockoutAt > resetTime) {
+                acInfo.setLockoutAt(Math.max(acInfo.getLockoutAt(), counter.lockoutAt));
+            }
+            long lastChange = Math.max(counter.lastFailTime, counter.resetTime);
+            if (lastChange > latestChange) {
+                latestChange = lastChange;
+                acInfo.setActualLockoutDuration(counter.actualLockoutDuration);
+            }
+        }
+        acInfo.setLockout(acInfo.getLockoutAt() > 0);
+        return acInfo;
+    }
+
+    private Counter getCounter(String userDN) {
+        synchronized (counters) {
+            Counter counter = counters.get(userDN);
+            if (counter == null) {
+                counter = new Counter();
+                counters.put(userDN, counter);
+            }
+            return counter;
+        }
+    }
+
+    /**
+     * Sends the counter of this server to CTS after the write delay, only once when it changes several times in the
+     * meantime. CTS is written asynchronously, so the login never waits for it.
+     */
+    private void replicate(final String userDN, Counter counter) {
+        if (pendingReplications.put(userDN, counter) == null) {
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    Counter pending = pendingReplications.remove(userDN);
+                    if (pending == null) {
+                        return;
+                    }
+                    Token token;
+                    synchronized (pending) {
+                        token = pending.toToken(getTokenId(userDN), userDN);
+                    }
+                    try {
+                        ctsStore.updateAsync(token);
+                    } catch (CoreTokenException e) {
+                        DEBUG.warning("WriteBehindLockoutStore.replicate: unable to replicate lockout token of "
+                                + userDN, e);
+                    }
+                }
+            }, writeDelay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private String getTokenId(String userDN) {
+        return UUID.nameUUIDFromBytes((TOKEN_ID_PREFIX + serverId + ":" + userDN).getBytes(UTF_8)).toString();
+    }
+
+    /**
+     * The invalid login attempts of a user counted by one server. Guarded by its own lock.
+     */
+    static final class Counter {
+        int failCount;
+        long lastFailTime;
+        long failureLockoutTime;
+        long lockoutAt;
+        long actualLockoutDuration;
+        long resetTime;
+        long expiryTime;
+
+        private Counter copy() {
+            Counter copy = new Counter();
+            copy.failCount = failCount;
+            copy.lastFailTime = lastFailTime;
+            copy.failureLockoutTime = failureLockoutTime;
+            copy.lockoutAt = lockoutAt;
+            copy.actualLockoutDuration = actualLockoutDuration;
+            copy.resetTime = resetTime;
+            copy.expiryTime = expiryTime;
+            return copy;
+        }
+
+        private Token toToken(String tokenId, String userDN) {
+            Token token = new Token(tokenId, TokenType.GENERIC);
+            token.setUserId(userDN);
+            token.setAttribute(CoreTokenField.INTEGER_ONE, failCount);
+            token.setAttribute(CoreTokenField.STRING_ONE, Long.toString(lastFailTime));
+            token.setAttribute(CoreTokenField.STRING_TWO, Long.toString(lockoutAt));
+            token.setAttribute(CoreTokenField.STRING_THREE, Long.toString(actualLockoutDuration));
+            token.setAttribute(CoreTokenField.STRING_FOUR, Long.toString(resetTime));
+            token.setAttribute(CoreTokenField.STRING_FIVE, Long.toString(failureLockoutTime));
+            token.setAttribute(CoreTokenField.STRING_SIX, TOKEN_KIND);
+            token.setExpiryTimestamp(TimeUtils.fromUnixTime(expiryTime, TimeUnit.MILLISECONDS));
+            return token;
+        }
+
+        private static Counter fromToken(Token token) {
+            Counter counter = new Counter();
+            Integer failCount = token.getAttribute(CoreTokenField.INTEGER_ONE);
+            counter.failCount = failCount == null ? 0 : failCount;
+            counter.lastFailTime = getLong(token, CoreTokenField.STRING_ONE);
+            counter.lockoutAt = getLong(token, CoreTokenField.STRING_TWO);
+            counter.actualLockoutDuration = getLong(token, CoreTokenField.STRING_THREE);
+            counter.resetTime = getLong(token, CoreTokenField.STRING_FOUR);
+            counter.failureLockoutTime = getLong(token, CoreTokenField.STRING_FIVE);
+            return counter;
+        }
+
+        private static long getLong(Token token, CoreTokenField field) {
+            String value = token.getAttribute(field);
+            try {
+                return value == null ? 0 : Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.sun.identity.entitlement;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Evaluates privileges in batches on a fork join pool.
+ * <p>
+ * The first batch is evaluated by the calling thread while the others are evaluated by the pool. The calling thread
+ * then joins the batches in order and adds their results to the entitlement combiner, so the results are combined in
+ * the order of the privileges whichever worker evaluated them. Once the combiner is done, or a batch fails, the
+ * outstanding batches are abandoned. An {@link EntitlementException} is thrown to the caller once the failed batch
+ * is reached, and any other exception or error thrown by an evaluation is rethrown by the join.
+ */
+class ForkJoinPrivilegeEvaluator {
+
+    /**
+     * The evaluation of a single privilege.
+     */
+    interface Evaluation {
+
+        /**
+         * Evaluates a privilege.
+         *
+         * @param privilege The privilege to evaluate.
+         * @return The entitlements of the privilege, or <code>null</code> if none.
+         * @throws EntitlementException If the evaluation failed.
+         */
+        List<Entitlement> evaluate(IPrivilege privilege) throws EntitlementException;
+    }
+
+    // Batches are sized so that each worker thread has several batches to steal, within these bounds
+    private static final int BATCHES_PER_THREAD = 4;
+    private static final int MIN_TASKS_PER_BATCH = 5;
+    private static final int MAX_TASKS_PER_BATCH = 64;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates an evaluator submitting its batches to the given pool.
+     *
+     * @param pool The pool evaluating the batches.
+     */
+    ForkJoinPrivilegeEvaluator(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Evaluates the privileges and combines their entitlements.
+     *
+     * @param privileges The privileges to evaluate.
+     * @param evaluation The evaluation of each privilege.
+     * @param combiner The combiner to add the entitlements to.
+     * @return The combined entitlements.
+     * @throws EntitlementException If the evaluation of a privilege failed.
+     */
+    List<Entitlement> evaluate(List<IPrivilege> privileges, Evaluation evaluation, EntitlementCombiner combiner)
+            throws EntitlementException {
+        final int batchSize = getBatchSize(privileges.size(), pool.getParallelism());
+        final AtomicBoolean stopped = new AtomicBoolean();
+        final List<Batch> batches = new ArrayList<Batch>();
+        for (int from = 0; from < privileges.size(); from += batchSize) {
+            int to = Math.min(from + batchSize, privileges.size());
+            batches.add(new Batch(privileges.subList(from, to), evaluation, stopped));
+        }
+
+        for (int i = 1; i < batches.size(); i++) {
+            pool.execute(batches.get(i));
+        }
+
+        try {
+            for (int i = 0; i < batches.size() && !combiner.isDone(); i++) {
+                Batch batch = batches.get(i);
+                List<List<Entitlement>> results = (i == 0) ? batch.invoke() : batch.join();
+                if (batch.failure != null) {
+                    throw batch.failure;
+                }
+                for (List<Entitlement> entitlements : results) {
+                    combiner.add(entitlements);
+                    if (combiner.isDone()) {
+                        break;
+                    }
+                }
+            }
+        } finally {
+            stopped.set(true);
+            for (Batch batch : batches) {
+                batch.cancel(false);
+            }
+        }
+
+        return combiner.getResults();
+    }
+
+    /**
+     * Sizes batches so that each worker thread has a few batches to process, allowing idle workers to steal work,
+     * without the overhead of a task per policy.
+     *
+     * @param privilegeCount the number of policies to be evaluated
+     * @param parallelism the number of worker threads
+     * @return the number of policies to evaluate in each batch
+     */
+    static int getBatchSize(int privilegeCount, int parallelism) {
+        int batchSize = privilegeCount / (parallelism * BATCHES_PER_THREAD);
+        return Math.max(MIN_TASKS_PER_BATCH, Math.min(MAX_TASKS_PER_BATCH, batchSize));
+    }
+
+    /**
+     * Evaluates a batch of privileges, returning their entitlements in order.
+     */
+    private static final class Batch extends RecursiveTask<List<List<Entitlement>>> {
+        private final List<IPrivilege> privileges;
+        private final Evaluation evaluation;
+        private final AtomicBoolean stopped;
+        // Published to the joining thread by the completion of the task
+        private EntitlementException failure;
+
+        Batch(List<IPrivilege> privileges, Evaluation evaluation, AtomicBoolean stopped) {
+            this.privileges = privileges;
+            this.evaluation = evaluation;
+            this.stopped = stopped;
+        }
+
+        @Override
+        protected List<List<Entitlement>> compute() {
+            List<List<Entitlement>> results = new ArrayList<List<Entitlement>>(privileges.size());
+            try {
+                for (IPrivilege privilege : privileges) {
+                    if (stopped.get()) {
+                        break;
+                    }
+                    List<Entitlement> entitlements = evaluation.evaluate(privilege);
+                    if (entitlements != null) {
+                        results.add(entitlements);
+                    }
+                }
+            } catch (EntitlementException ex) {
+                failure = ex;
+                stopped.set(true);
+            }
+            return results;
+        }
+    }
+}
@@ -33,12 +33,14 @@ import static org.forgerock.openam.entitlement.utils.EntitlementUtils.getApplica
 import static org.forgerock.openam.entitlement.utils.EntitlementUtils.getEntitlementConfiguration;
 
 import java.security.Principal;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -49,8 +51,10 @@ import org.forgerock.openam.entitlement.PolicyConstants;
 import org.forgerock.openam.entitlement.PrivilegeEvaluatorContext;
 import org.forgerock.openam.session.util.AppTokenHandler;
 import org.forgerock.openam.utils.CollectionUtils;
+import org.forgerock.util.thread.listener.ShutdownListener;
 
 import com.sun.identity.entitlement.interfaces.IThreadPool;
+import com.sun.identity.shared.configuration.SystemPropertiesManager;
 import com.sun.identity.shared.debug.Debug;
 
 /**
@@ -76,12 +80,21 @@ class PrivilegeEvaluator {
     private final Lock lock = new ReentrantLock();
     private final Condition hasResults = lock.newCondition();
 
+    /**
+     * System property selecting the policy evaluation engine, either {@value #ENGINE_THREAD_POOL} (the default)
+     * or {@value #ENGINE_FORK_JOIN}.
+     */
+    static final String EVALUATION_ENGINE_PROPERTY = "org.forgerock.openam.entitlement.evaluation.engine";
+    static final String ENGINE_THREAD_POOL = "threadpool";
+    static final String ENGINE_FORK_JOIN = "forkjoin";
+
     // Static variables
     // TODO determine number of tasks per thread
     private static int evalThreadSize = Evaluator.DEFAULT_POLICY_EVAL_THREAD;
     private static final int TASKS_PER_THREAD = 5;
 
     private static final IThreadPool threadPool;
+    private static final ForkJoinPrivilegeEvaluator forkJoinEvaluator;
     private static final boolean isMultiThreaded;
 
     static {
@@ -100,7 +113,23 @@ class PrivilegeEvaluator {
             }
         }
         isMultiThreaded = evalThreadSize > 1;
-        threadPool = isMultiThreaded ? new EntitlementThreadPool(evalThreadSize) : new SequentialThreadPool();
+        boolean isForkJoin = isMultiThreaded
+                && ENGINE_FORK_JOIN.equalsIgnoreCase(SystemPropertiesManager.get(EVALUATION_ENGINE_PROPERTY));
+
+        if (isForkJoin) {
+            final ForkJoinPool forkJoinPool = new ForkJoinPool(evalThreadSize);
+            forkJoinEvaluator = new ForkJoinPrivilegeEvaluator(forkJoinPool);
+            threadPool = null;
+            com.sun.identity.common.ShutdownManager.getInstance().addShutdownListener(new ShutdownListener() {
+                @Override
+                public void shutdown() {
+                    forkJoinPool.shutdownNow();
+                }
+            });
+        } else {
+            forkJoinEvaluator = null;
+            threadPool = isMultiThreaded ? new EntitlementThreadPool(evalThreadSize) : new SequentialThreadPool();
+        }
     }
 
     /**
@@ -272,6 +301,10 @@ class PrivilegeEvaluator {
         final PrivilegeIndexStore indexStore = PrivilegeIndexStore.getInstance(adminSubject, realm);
         final Iterator<IPrivilege> policyIterator = indexStore.search(realm, indexes, subjectIndexes, recursive);
 
+        if (forkJoinEvaluator != null) {
+            return evaluateWithForkJoin(policyIterator);
+        }
+
         int totalCount = 0;
         IPrivilege policy;
 
@@ -386,6 +419,47 @@ class PrivilegeEvaluator {
         }
     }
     
+    /**
+     * Evaluates all of the given policies on the fork join pool, see {@link ForkJoinPrivilegeEvaluator}.
+     *
+     * @param policyIterator the policies to evaluate
+     * @return a list of applicable entitlements
+     * @throws EntitlementException if the evaluation of any policy fails
+     */
+    private List<Entitlement> evaluateWithForkJoin(Iterator<IPrivilege> policyIterator) throws EntitlementException {
+        final Debug debug = PolicyConstants.DEBUG;
+        final List<IPrivilege> privileges = new ArrayList<IPrivilege>();
+
+        while (policyIterator.hasNext()) {
+            IPrivilege policy = policyIterator.next();
+
+            if (policy instanceof ReferralPrivilege) {
+                // We want to ignore referrals - deprecated.
+                continue;
+            }
+
+            if (debug.messageEnabled()) {
+                debug.message("[PolicyEval] PolicyEvaluator.evaluate");
+                debug.message("[PolicyEval] search result: privilege=" + policy.getName());
+            }
+
+            privileges.add(policy);
+        }
+
+        final PrivilegeEvaluatorContext ctx =
+                new PrivilegeEvaluatorContext(realm, normalisedResourceName, applicationName);
+        final Object appToken = AppTokenHandler.getAndClear();
+
+        return forkJoinEvaluator.evaluate(privileges, new ForkJoinPrivilegeEvaluator.Evaluation() {
+            @Override
+            public List<Entitlement> evaluate(IPrivilege privilege) throws EntitlementException {
+                PrivilegeEvaluatorContext.setCurrent(ctx);
+                return privilege.evaluate(adminSubject, realm, subject, applicationName, normalisedResourceName,
+                        requestedResourceName, actionNames, envParameters, recursive, appToken);
+            }
+        }, entitlementCombiner);
+    }
+
     private Application getApplication()
         throws EntitlementException {
         if (application == null) {
@@ -24,6 +24,7 @@
  *
  * $Id: IdCacheStats.java,v 1.2 2008/08/07 17:22:06 arviranga Exp $
  *
+ * Portions Copyrighted 2016 ForgeRock AS.
  */
 
 package com.sun.identity.idm.common;
@@ -54,6 +55,12 @@ public class IdCacheStats implements StatsListener {
 
     long totalSearchHits = 0;   // Overall search cache hits
 
+    int negativeCacheSize = 0; // number of identities cached as not found
+
+    long totalNegativeHits = 0; // Overall negative cache hits
+
+    long totalNegativeEntries = 0; // Overall identities cached as not found
+
     private Stats stats = null;
 
 
@@ -99,6 +106,20 @@ public class IdCacheStats implements StatsListener {
         }
     }
 
+    public void updateNegativeHitCount(int sizeOfNegativeCache) {
+        if (stats.isEnabled()) {
+            totalNegativeHits++;
+            totalIntervalHits++;
+            negativeCacheSize = sizeOfNegativeCache;
+        }
+    }
+
+    public void incrementNegativeEntryCount(int sizeOfNegativeCache) {
+        if (stats.isEnabled()) {
+            totalNegativeEntries++;
+            negativeCacheSize = sizeOfNegativeCache;
+        }
+    }
 
     /**
      * Prints the session statistics for the given session table.
@@ -122,7 +143,12 @@ public class IdCacheStats implements StatsListener {
                 + "\nTotal number of FQDN Search hits since server start: "
                 + totalSearchHits + "\nOverall Hit ratio: "
                 + (double) totalSearchHits / (double) totalSearchRequests
-                + "\nTotal Cache Size: " + cacheSize + "\n");
+                + "\nTotal number of Negative cache hits since server start: "
+                + totalNegativeHits
+                + "\nTotal number of identities cached as not found since server start: "
+                + totalNegativeEntries
+                + "\nTotal Cache Size: " + cacheSize
+                + "\nNegative Cache Size: " + negativeCacheSize + "\n");
 
         // Reset interval hits to 0
         intervalCount = 0;
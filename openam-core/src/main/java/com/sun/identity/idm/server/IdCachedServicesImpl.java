@@ -57,9 +57,11 @@ import java.util.Enumeration;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 import org.forgerock.guava.common.cache.Cache;
 import org.forgerock.guava.common.cache.CacheBuilder;
+import org.forgerock.guava.common.cache.Weigher;
 import org.forgerock.openam.utils.CrestQuery;
 import org.forgerock.util.thread.listener.ShutdownListener;
 import org.forgerock.util.thread.listener.ShutdownManager;
@@ -75,13 +77,54 @@ public class IdCachedServicesImpl extends IdServicesImpl implements IdCachedServ
 
     static final int CACHE_MAX_SIZE_INT = 10000;
 
+    /**
+     * Approximate number of bytes of attribute data to hold in the cache. When set, the cache is bounded by the
+     * estimated size of the cached attributes rather than by the number of entries.
+     */
+    static final String CACHE_MAX_WEIGHT_KEY = "com.iplanet.am.sdk.cache.maxWeight";
+
+    /**
+     * Number of seconds after which a cached identity is discarded regardless of notifications.
+     */
+    static final String CACHE_EXPIRE_TIME_KEY = "com.iplanet.am.sdk.cache.expireTime";
+
+    /**
+     * Maximum number of identities remembered as not existing.
+     */
+    static final String NEGATIVE_CACHE_MAX_SIZE_KEY = "com.iplanet.am.sdk.cache.negative.maxSize";
+
+    /**
+     * Number of seconds for which an identity is remembered as not existing, negative caching is disabled if zero.
+     */
+    static final String NEGATIVE_CACHE_EXPIRE_TIME_KEY = "com.iplanet.am.sdk.cache.negative.expireTime";
+
+    static final int NEGATIVE_CACHE_MAX_SIZE_INT = 10000;
+
+    private static final Weigher<String, IdCacheBlock> CACHE_BLOCK_WEIGHER = new Weigher<String, IdCacheBlock>() {
+        @Override
+        public int weigh(String key, IdCacheBlock value) {
+            return 2 * key.length() + value.getEstimatedSize();
+        }
+    };
+
     private static int maxSize;
 
+    private static long maxWeight;
+
+    private static long expireTime;
+
+    private static int negativeMaxSize;
+
+    private static long negativeExpireTime;
+
     private static IdCachedServicesImpl instance;
 
     // Class Private
     private Cache<String, IdCacheBlock> idRepoCache;
 
+    // Identities known not to exist, null if negative caching is disabled
+    private IdNotFoundCache notFoundCache;
+
     private IdCacheStats cacheStats;
 
     private static Stats stats;
@@ -91,6 +134,10 @@ public class IdCachedServicesImpl extends IdServicesImpl implements IdCachedServ
     static {
         int cacheSize = SystemProperties.getAsInt(CACHE_MAX_SIZE_KEY, CACHE_MAX_SIZE_INT);
         setMaxSize(cacheSize);
+        maxWeight = SystemProperties.getAsLong(CACHE_MAX_WEIGHT_KEY, 0L);
+        expireTime = SystemProperties.getAsLong(CACHE_EXPIRE_TIME_KEY, 0L);
+        negativeMaxSize = SystemProperties.getAsInt(NEGATIVE_CACHE_MAX_SIZE_KEY, NEGATIVE_CACHE_MAX_SIZE_INT);
+        negativeExpireTime = SystemProperties.getAsLong(NEGATIVE_CACHE_EXPIRE_TIME_KEY, 0L);
     }
 
     private static void setMaxSize(int newValue) {
@@ -118,7 +165,27 @@ public class IdCachedServicesImpl extends IdServicesImpl implements IdCachedServ
     }
 
     private void initializeCache() {
-        idRepoCache = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
+        if (expireTime > 0) {
+            builder.expireAfterWrite(expireTime, TimeUnit.SECONDS);
+        }
+        if (maxWeight > 0) {
+            idRepoCache = builder.maximumWeight(maxWeight).weigher(CACHE_BLOCK_WEIGHER).build();
+        } else {
+            idRepoCache = builder.maximumSize(maxSize).build();
+        }
+
+        if (negativeExpireTime > 0 && negativeMaxSize > 0) {
+            notFoundCache = new IdNotFoundCache(negativeMaxSize, negativeExpireTime);
+        } else {
+            notFoundCache = null;
+        }
+
+        if (DEBUG.messageEnabled()) {
+            DEBUG.message("IdCachedServicesImpl.initializeCache() maxSize: " + maxSize + ", maxWeight: " + maxWeight
+                    + ", expireTime: " + expireTime + ", negative maxSize: " + negativeMaxSize
+                    + ", negative expireTime: " + negativeExpireTime);
+        }
     }
 
     private void resetCache(int maxCacheSize) {
@@ -222,6 +289,9 @@ public class IdCachedServicesImpl extends IdServicesImpl implements IdCachedServ
      */
     public synchronized void clearCache() {
         idRepoCache.invalidateAll();
+        if (notFoundCache != null) {
+            notFoundCache.clear();
+        }
         initializeCache();
     }
 
@@ -253,6 +323,8 @@ public class IdCachedServicesImpl extends IdServicesImpl implements IdCachedServ
         String originalDN = dn;
         dn = DNUtils.normalizeDN(dn);
         String cachedID = getCacheId(dn);
+        // Any change to an entry may mean it now exists
+        removeNotFound(cachedID);
         switch (eventType) {
         case AMEvent.OBJECT_ADDED:
             cb = getFromCache(dn);
@@ -318,6 +390,7 @@ public class IdCachedServicesImpl extends IdServicesImpl implements IdCachedServ
             AMIdentity tokenId = IdUtils.getIdentity(token);
             String pDN = tokenId.getUniversalId();
             cb.replaceAttributes(pDN, stringAttributes, byteAttributes);
+            reweigh(dn, cb);
         }
     }
 
@@ -371,6 +444,7 @@ public class IdCachedServicesImpl extends IdServicesImpl implements IdCachedServ
         // Check in the cache
         IdCacheBlock cb = idRepoCache.getIfPresent(dn);
         if (cb == null) { // Entry not present in cache
+            checkNotFound(dn, principalDN);
             if (DEBUG.messageEnabled()) {
                 DEBUG.message("IdCachedServicesImpl.getAttributes(): "
                         + "NO entry found in Cachefor key = " + dn
@@ -381,8 +455,13 @@ public class IdCachedServicesImpl extends IdServicesImpl implements IdCachedServ
             // If the attributes returned here have an empty set as value, then
             // such attributes do not have a value or invalid attributes.
             // Internally keep track of these attributes.
-            attributes = (AMHashMap) super.getAttributes(token, type, name,
-                    attrNames, amOrgName, amsdkDN, isStringValues);
+            try {
+                attributes = (AMHashMap) super.getAttributes(token, type, name,
+                        attrNames, amOrgName, amsdkDN, isStringValues);
+            } catch (IdRepoException ide) {
+                putNotFound(dn, principalDN, ide);
+                throw ide;
+            }
 
             // Find the missing attributes and add to cache
             Set missAttrNames = attributes.getMissingAndEmptyKeys(attrNames);
@@ -416,6 +495,7 @@ public class IdCachedServicesImpl extends IdServicesImpl implements IdCachedServ
                         .getMissingAndEmptyKeys(missAttrNames);
                 cb.putAttributes(principalDN, dsAttributes, newMissAttrNames,
                         false, !isStringValues);
+                reweigh(dn, cb);
             } else { // All attributes found in cache
                 cacheStats.updateGetHitCount(getSize());
                 if (MonitoringUtil.isRunning() &&
@@ -475,13 +555,22 @@ public class IdCachedServicesImpl extends IdServicesImpl implements IdCachedServ
                     + " complete attribute"
                     + " set NOT found in cache. Getting from DS.");
             }
-            attributes = (AMHashMap) super.getAttributes(token, type, name,
-                amOrgName, amsdkDN);
             if (cb == null) {
+                checkNotFound(dn, principalDN);
+                try {
+                    attributes = (AMHashMap) super.getAttributes(token, type, name, amOrgName, amsdkDN);
+                } catch (IdRepoException ide) {
+                    putNotFound(dn, principalDN, ide);
+                    throw ide;
+                }
                 cb = new IdCacheBlock(dn, true);
+                cb.putAttributes(principalDN, attributes, null, true, false);
                 idRepoCache.put(dn, cb);
+            } else {
+                attributes = (AMHashMap) super.getAttributes(token, type, name, amOrgName, amsdkDN);
+                cb.putAttributes(principalDN, attributes, null, true, false);
+                reweigh(dn, cb);
             }
-            cb.putAttributes(principalDN, attributes, null, true, false);
             if (DEBUG.messageEnabled()) {
                 DEBUG.message("IdCachedServicesImpl.getAttributes(): "
                         + "attributes NOT found in cache. Fetched from DS.");
@@ -536,6 +625,14 @@ public class IdCachedServicesImpl extends IdServicesImpl implements IdCachedServ
         idRepoCache.invalidate(dn);
     }
 
+    @Override
+    public AMIdentity create(SSOToken token, IdType type, String name, Map attrMap, String amOrgName)
+            throws IdRepoException, SSOException {
+        AMIdentity identity = super.create(token, type, name, attrMap, amOrgName);
+        removeNotFound(identity.getUniversalId().toLowerCase());
+        return identity;
+    }
+
     public void removeAttributes(SSOToken token, IdType type, String name,
         Set attrNames, String orgName, String amsdkDN)
         throws IdRepoException, SSOException {
@@ -549,6 +646,7 @@ public class IdCachedServicesImpl extends IdServicesImpl implements IdCachedServ
         if ((cb != null) && !cb.hasExpiredAndUpdated() && cb.isExists()) {
             // Remove the attributes
             cb.removeAttributes(attrNames);
+            reweigh(dn, cb);
         }
     }
 
@@ -585,6 +683,22 @@ public class IdCachedServicesImpl extends IdServicesImpl implements IdCachedServ
                 AMIdentity uvid = new AMIdentity(token, pattern, type, orgName, null);
                 String universalID = uvid.getUniversalId().toLowerCase();
                 IdCacheBlock cb = idRepoCache.getIfPresent(universalID);
+                IdNotFoundCache negativeCache = notFoundCache;
+                if (cb == null && negativeCache != null && ctrl.getSearchModifierMap() == null) {
+                    // An empty result only says that this exact search matches nothing, so it is remembered for
+                    // the same search and never for lookups of the identity itself.
+                    String principalDN = IdUtils.getUniversalId(IdUtils.getIdentity(token));
+                    if (negativeCache.isSearchNotFound(universalID, principalDN, ctrl.isRecursive())) {
+                        cacheStats.updateNegativeHitCount((int) negativeCache.size());
+                        return answer;
+                    }
+                    IdSearchResults results = super.search(token, type, ctrl, orgName, crestQuery);
+                    if (results.getSearchResults().isEmpty()) {
+                        negativeCache.putSearch(universalID, principalDN, ctrl.isRecursive());
+                        cacheStats.incrementNegativeEntryCount((int) negativeCache.size());
+                    }
+                    return results;
+                }
                 if ((cb != null) && !cb.hasExpiredAndUpdated() && cb.isExists() &&
                                                                             (ctrl.getSearchModifierMap() == null)) {
                     // Check if search is for a specific identity
@@ -650,6 +764,48 @@ public class IdCachedServicesImpl extends IdServicesImpl implements IdCachedServ
         return (answer);
     }
 
+    /**
+     * Re-inserts a modified cache block so that its weight is recalculated, unless it has been removed in the
+     * meantime.
+     */
+    private void reweigh(String dn, IdCacheBlock cb) {
+        if (maxWeight > 0) {
+            idRepoCache.asMap().replace(dn, cb, cb);
+        }
+    }
+
+    // Throws a new not found exception if the identity is known not to exist for this principal
+    private void checkNotFound(String dn, String principalDN) throws IdRepoException {
+        IdNotFoundCache cache = notFoundCache;
+        if (cache == null) {
+            return;
+        }
+        try {
+            cache.checkLookup(dn, principalDN);
+        } catch (IdRepoException ide) {
+            cacheStats.updateNegativeHitCount((int) cache.size());
+            if (DEBUG.messageEnabled()) {
+                DEBUG.message("IdCachedServicesImpl.checkNotFound(): " + dn + " found in negative cache.");
+            }
+            throw ide;
+        }
+    }
+
+    // Remembers that the identity does not exist, if that is what the exception means
+    private void putNotFound(String dn, String principalDN, IdRepoException ide) {
+        IdNotFoundCache cache = notFoundCache;
+        if (cache != null && cache.putLookup(dn, principalDN, ide)) {
+            cacheStats.incrementNegativeEntryCount((int) cache.size());
+        }
+    }
+
+    private void removeNotFound(String dn) {
+        IdNotFoundCache cache = notFoundCache;
+        if (cache != null) {
+            cache.remove(dn);
+        }
+    }
+
     // Return cache block for the universal identifier
     private IdCacheBlock getFromCache(String dn) {
         IdCacheBlock cb = idRepoCache.getIfPresent(dn);
@@ -679,8 +835,17 @@ public class IdCachedServicesImpl extends IdServicesImpl implements IdCachedServ
     @Override
     public synchronized void notifyChanges() {
         final int value = SystemProperties.getAsInt(CACHE_MAX_SIZE_KEY, CACHE_MAX_SIZE_INT);
-
-        if (value != maxSize) {
+        final long weight = SystemProperties.getAsLong(CACHE_MAX_WEIGHT_KEY, 0L);
+        final long expire = SystemProperties.getAsLong(CACHE_EXPIRE_TIME_KEY, 0L);
+        final int negativeSize = SystemProperties.getAsInt(NEGATIVE_CACHE_MAX_SIZE_KEY, NEGATIVE_CACHE_MAX_SIZE_INT);
+        final long negativeExpire = SystemProperties.getAsLong(NEGATIVE_CACHE_EXPIRE_TIME_KEY, 0L);
+
+        if (value != maxSize || weight != maxWeight || expire != expireTime || negativeSize != negativeMaxSize
+                || negativeExpire != negativeExpireTime) {
+            maxWeight = weight;
+            expireTime = expire;
+            negativeMaxSize = negativeSize;
+            negativeExpireTime = negativeExpire;
             resetCache(value);
         }
 
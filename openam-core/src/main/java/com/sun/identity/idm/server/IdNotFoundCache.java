@@ -0,0 +1,193 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package com.sun.identity.idm.server;
+
+import com.sun.identity.idm.IdRepoErrorCode;
+import com.sun.identity.idm.IdRepoException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.guava.common.cache.Cache;
+import org.forgerock.guava.common.cache.CacheBuilder;
+
+/**
+ * Remembers identities which were not found, per requesting principal.
+ * <p>
+ * Two kinds of miss are kept apart. A lookup miss is recorded when reading an identity by its universal ID reports
+ * that the entry does not exist, and it is only answered to later lookups of that universal ID. A search miss is
+ * recorded when an exact, non wildcard search for a single name returns nothing, and it is only answered to the same
+ * search, since the search attribute of a data store need not be its naming attribute. Neither kind says anything
+ * about the other.
+ */
+class IdNotFoundCache {
+
+    private static final String SEARCH_PREFIX = "search:";
+
+    private static final String RECURSIVE_SEARCH_PREFIX = "search-recursive:";
+
+    // Universal IDs known not to exist, mapped by the principal, and the kind of lookup, which failed to find them
+    private final Cache<String, Map<String, NotFound>> cache;
+
+    /**
+     * Creates a cache holding at most {@code maxSize} universal IDs, each for {@code expireTime} seconds.
+     *
+     * @param maxSize The maximum number of universal IDs held.
+     * @param expireTime The number of seconds for which an identity is remembered as not existing.
+     */
+    IdNotFoundCache(int maxSize, long expireTime) {
+        cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireTime, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * Throws a new exception equivalent to the one originally reported if the identity is known not to exist for
+     * the principal.
+     *
+     * @param dn The universal ID of the identity.
+     * @param principalDN The universal ID of the requesting principal.
+     * @return {@code false} if the identity is not known to be missing.
+     * @throws IdRepoException If the identity is known not to exist.
+     */
+    boolean checkLookup(String dn, String principalDN) throws IdRepoException {
+        NotFound notFound = get(dn, principalDN);
+        if (notFound != null) {
+            throw notFound.newException();
+        }
+        return false;
+    }
+
+    /**
+     * Remembers that a lookup of the identity failed, if the exception says that the identity does not exist.
+     *
+     * @param dn The universal ID of the identity.
+     * @param principalDN The universal ID of the requesting principal.
+     * @param ide The exception reported by the data store.
+     * @return {@code true} if the miss was remembered.
+     */
+    boolean putLookup(String dn, String principalDN, IdRepoException ide) {
+        if (!IdRepoErrorCode.UNABLE_FIND_ENTRY.equals(ide.getErrorCode())
+                && !IdRepoErrorCode.TYPE_NOT_FOUND.equals(ide.getErrorCode())) {
+            return false;
+        }
+        put(dn, principalDN, new NotFound(ide));
+        return true;
+    }
+
+    /**
+     * Returns whether an exact search for the identity is known to return nothing for the principal.
+     *
+     * @param dn The universal ID of the identity searched for.
+     * @param principalDN The universal ID of the requesting principal.
+     * @param recursive Whether the search is recursive.
+     * @return {@code true} if the same search has returned nothing before.
+     */
+    boolean isSearchNotFound(String dn, String principalDN, boolean recursive) {
+        return get(dn, searchKey(principalDN, recursive)) != null;
+    }
+
+    /**
+     * Remembers that an exact search for the identity returned nothing.
+     *
+     * @param dn The universal ID of the identity searched for.
+     * @param principalDN The universal ID of the requesting principal.
+     * @param recursive Whether the search is recursive.
+     */
+    void putSearch(String dn, String principalDN, boolean recursive) {
+        put(dn, searchKey(principalDN, recursive), NotFound.SEARCH);
+    }
+
+    /**
+     * Forgets every miss recorded for the identity.
+     *
+     * @param dn The universal ID of the identity.
+     */
+    void remove(String dn) {
+        cache.invalidate(dn);
+    }
+
+    /**
+     * Forgets every miss.
+     */
+    void clear() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Returns the number of universal IDs with a recorded miss.
+     *
+     * @return The number of universal IDs held.
+     */
+    long size() {
+        return cache.size();
+    }
+
+    private NotFound get(String dn, String key) {
+        Map<String, NotFound> principals = cache.getIfPresent(dn);
+        return (principals == null) ? null : principals.get(key);
+    }
+
+    private void put(String dn, String key, NotFound notFound) {
+        Map<String, NotFound> principals = cache.asMap().get(dn);
+        if (principals == null) {
+            Map<String, NotFound> created = new ConcurrentHashMap<String, NotFound>();
+            principals = cache.asMap().putIfAbsent(dn, created);
+            if (principals == null) {
+                principals = created;
+            }
+        }
+        principals.put(key, notFound);
+    }
+
+    private static String searchKey(String principalDN, boolean recursive) {
+        return (recursive ? RECURSIVE_SEARCH_PREFIX : SEARCH_PREFIX) + principalDN;
+    }
+
+    /**
+     * The details of a miss, from which an exception is rebuilt on each hit so that no instance is shared between
+     * threads.
+     */
+    private static final class NotFound {
+
+        static final NotFound SEARCH = new NotFound(null, IdRepoErrorCode.TYPE_NOT_FOUND, null, null);
+
+        private final String bundleName;
+        private final String errorCode;
+        private final String ldapErrorCode;
+        private final Object[] args;
+
+        NotFound(IdRepoException ide) {
+            this(ide.getResourceBundleName(), ide.getErrorCode(), ide.getLDAPErrorCode(),
+                    ide.getMessageArgs() == null ? null : ide.getMessageArgs().clone());
+        }
+
+        private NotFound(String bundleName, String errorCode, String ldapErrorCode, Object[] args) {
+            this.bundleName = bundleName;
+            this.errorCode = errorCode;
+            this.ldapErrorCode = ldapErrorCode;
+            this.args = args;
+        }
+
+        IdRepoException newException() {
+            IdRepoException ide = new IdRepoException(bundleName, errorCode,
+                    args == null ? null : args.clone());
+            ide.setLDAPErrorCode(ldapErrorCode);
+            return ide;
+        }
+    }
+}
@@ -41,14 +41,22 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.text.SimpleDateFormat;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Date;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Formatter;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
 
+import org.forgerock.util.annotations.VisibleForTesting;
+
 import com.iplanet.am.util.ThreadPoolException;
 import com.iplanet.log.NullLocationException;
 import com.sun.identity.common.GeneralTaskRunnable;
@@ -76,6 +84,12 @@ import java.util.Calendar;
  * etc., * to the base filename. The Locking mechanism is much more relaxed 
  * (in JDK's  FileHandler an exclusive lock is created on the file till the
  * handler is closed which makes reading impossible)
+ * <p>
+ * Records are committed to the file in groups: publishing threads add their
+ * formatted record to a lock-free queue, and once the buffer size is reached
+ * (or the buffer time elapses) a single commit on the logging thread drains
+ * every queued record and writes them with one gathering write to the file
+ * channel.
  */
 public class FileHandler extends java.util.logging.Handler {
 
@@ -91,7 +105,10 @@ public class FileHandler extends java.util.logging.Handler {
     private Formatter formatter;
     private String fileName;
     private int recCountLimit;
-    private LinkedList recordBuffer;
+    private final ConcurrentLinkedQueue<String> recordBuffer = new ConcurrentLinkedQueue<String>();
+    private final AtomicInteger recordCount = new AtomicInteger();
+    private final AtomicBoolean commitPending = new AtomicBoolean();
+    private Charset charset = Charset.defaultCharset();
     private TimeBufferingTask bufferTask;
     private boolean timeBufferingEnabled = false;
     private boolean rotateEnabled = true;
@@ -111,12 +128,16 @@ public class FileHandler extends java.util.logging.Handler {
     private class MeteredStream extends OutputStream {
 
         OutputStream out;
+        FileChannel channel;
         String filename = null;
+        long written;
 
         MeteredStream(File fileName, boolean append) throws IOException {
             this.filename = fileName.toString();
             FileOutputStream fout = new FileOutputStream(filename, append);
             this.out = new BufferedOutputStream(fout);
+            this.channel = fout.getChannel();
+            this.written = append ? fileName.length() : 0L;
         }
 
         /**
@@ -127,6 +148,7 @@ public class FileHandler extends java.util.logging.Handler {
          */
         public void write(int b) throws IOException {
             out.write(b);
+            written++;
         }
 
         /**
@@ -137,6 +159,7 @@ public class FileHandler extends java.util.logging.Handler {
          */
         public void write(byte[] b) throws IOException {
             out.write(b);
+            written += b.length;
         }
 
         /**
@@ -150,6 +173,25 @@ public class FileHandler extends java.util.logging.Handler {
         public void write(byte[] b, int offset, int length)
                 throws IOException {
             out.write(b, offset, length);
+            written += length;
+        }
+
+        /**
+         * Writes all the buffers to the file with gathering writes on the
+         * file channel, after any bytes already buffered by the stream, and
+         * increments the number of bytes written accordingly.
+         * @param buffers the buffers to be written.
+         * @throws IOException if it fails to write out.
+         */
+        public void write(ByteBuffer[] buffers) throws IOException {
+            out.flush();
+            int offset = 0;
+            while (offset < buffers.length) {
+                written += channel.write(buffers, offset, buffers.length - offset);
+                while (offset < buffers.length && !buffers[offset].hasRemaining()) {
+                    offset++;
+                }
+            }
         }
 
         /**
@@ -185,9 +227,11 @@ public class FileHandler extends java.util.logging.Handler {
         String encoding = getEncoding();
         if (encoding == null) {
             writer = new OutputStreamWriter(output);
+            charset = Charset.defaultCharset();
         } else {
             try {
                 writer = new OutputStreamWriter(output, encoding);
+                charset = Charset.forName(encoding);
             } catch (UnsupportedEncodingException e) {
                 Debug.error(fileName + ":FileHandler: Unsupported Encoding", e);
                 throw new UnsupportedEncodingException(e.getMessage());
@@ -218,8 +262,10 @@ public class FileHandler extends java.util.logging.Handler {
         cleanup();
         if (encoding == null) {
             writer = new OutputStreamWriter(output);
+            charset = Charset.defaultCharset();
         } else {
             writer = new OutputStreamWriter(output, encoding);
+            charset = Charset.forName(encoding);
         }
     }
 
@@ -382,8 +428,6 @@ public class FileHandler extends java.util.logging.Handler {
         }
         logger.setCurrentFile(this.fileName);
 
-        recordBuffer = new LinkedList();
-
         if (timeBufferingEnabled) {
             startTimeBufferingThread();
         }
@@ -397,6 +441,28 @@ public class FileHandler extends java.util.logging.Handler {
         }
     }
 
+    /**
+     * Creates a FileHandler writing to the given file and rotating it by size,
+     * without reading the logging configuration.
+     * @param file The file to write to.
+     * @param formatter The formatter of the records.
+     * @param maxFileSize The size at which the file is rotated.
+     * @param count The number of history files.
+     * @param recCountLimit The number of records buffered before they are written.
+     * @throws IOException If the file could not be opened.
+     */
+    @VisibleForTesting
+    FileHandler(File file, Formatter formatter, long maxFileSize, int count, int recCountLimit) throws IOException {
+        this.fileName = file.getName();
+        this.location = file.getParent() + File.separator;
+        this.formatter = formatter;
+        this.maxFileSize = maxFileSize;
+        this.count = count;
+        this.recCountLimit = recCountLimit;
+        setFormatter(formatter);
+        openFiles(file.getPath());
+    }
+
     private String wrapFilename(String fileName) {
         String prefix = lmanager.getProperty(LogConstants.LOGFILE_PREFIX);
         String suffixFormat = lmanager.getProperty(LogConstants.LOGFILE_SUFFIX);
@@ -477,15 +543,14 @@ public class FileHandler extends java.util.logging.Handler {
         }
         Formatter formatter = getFormatter();
         String message = formatter.format(lrecord);
-        synchronized (this) {        
-            recordBuffer.add(message);
-            if (recordBuffer.size() >= recCountLimit) {
-                if (Debug.messageEnabled()) {
-                    Debug.message(fileName + ":FileHandler.publish(): got " +
-                        recordBuffer.size() + " records, writing all");
-                }
-                nonBlockingFlush();
+        recordBuffer.add(message);
+        int buffered = recordCount.incrementAndGet();
+        if (buffered >= recCountLimit) {
+            if (Debug.messageEnabled()) {
+                Debug.message(fileName + ":FileHandler.publish(): got " +
+                    buffered + " records, writing all");
             }
+            nonBlockingFlush();
         }
     }
 
@@ -497,76 +562,109 @@ public class FileHandler extends java.util.logging.Handler {
     }
 
     /**
-     * Flush any buffered messages.
+     * Flush any buffered messages on the logging thread. Only one commit is
+     * queued at a time; records published while it is waiting are written
+     * by the same commit.
      */
     protected void nonBlockingFlush() {
-        LinkedList writeBuffer = null;
-        synchronized (this) {
-            if (recordBuffer.size() <= 0) {
-                if (Debug.messageEnabled()) {
-                    Debug.message(fileName +
-                        ":FileHandler.flush: no records in buffer to write");
-                }
-                return;
+        if (recordCount.get() <= 0) {
+            if (Debug.messageEnabled()) {
+                Debug.message(fileName +
+                    ":FileHandler.flush: no records in buffer to write");
             }
-            writeBuffer = recordBuffer;
-            recordBuffer = new LinkedList();
+            return;
+        }
+        if (!commitPending.compareAndSet(false, true)) {
+            return;
         }
-        LogTask task = new LogTask(writeBuffer);
+        LogTask task = new LogTask();
         try {
             // Get an instance as required otherwise it can cause issues on container restart.
             LoggingThread.getInstance().run(task);
         } catch (ThreadPoolException ex) {
             // use current thread to flush the data if ThreadPool is shutdown
-            synchronized (this) {
-                task.run();
-            }
+            task.run();
         }
     }
 
     public void flush() {
-        synchronized (this) {
-            if (recordBuffer.size() <= 0) {
-                return;
-            }
-            if (writer == null) {
-                int recordsToBeDropped = recordBuffer.size();
-                if (MonitoringUtil.isRunning() && fileLogHandlerForMonitoring !=
-                    null) {
-                    fileLogHandlerForMonitoring.incHandlerDroppedCount(
-                        recordsToBeDropped);
-                }
-                recordBuffer.clear();
-                return;
+        commit();
+    }
+
+    /**
+     * Writes every buffered record to the file, rotating it as needed. The
+     * records between rotations are written with a single gathering write.
+     */
+    private synchronized void commit() {
+        if (recordCount.get() <= 0) {
+            return;
+        }
+        if (writer == null) {
+            int recordsToBeDropped = 0;
+            while (recordBuffer.poll() != null) {
+                recordCount.decrementAndGet();
+                recordsToBeDropped++;
             }
-            for (Iterator iter = recordBuffer.iterator(); iter.hasNext();) {
-                String message = (String) iter.next();
-                if (needsRotation(message)) {
-                    rotate();
-                }
-                try {
-                    if (!headerWritten) {
-                        writer.write(getHeaderString());
-                        headerWritten = true;
-                    }
-                    writer.write(message);
-                    if (MonitoringUtil.isRunning() &&
-                        fileLogHandlerForMonitoring != null) {
-                        fileLogHandlerForMonitoring.incHandlerSuccessCount(1);
-                    }
-                } catch (IOException ex) {
-                }
-                cleanup();
+            Debug.error(fileName + ":FileHandler: Writer is null");
+            if (MonitoringUtil.isRunning() && fileLogHandlerForMonitoring !=
+                null) {
+                fileLogHandlerForMonitoring.incHandlerDroppedCount(
+                    recordsToBeDropped);
             }
-            recordBuffer.clear();
-        }        
+            return;
+        }
+        List<ByteBuffer> group = new ArrayList<ByteBuffer>();
+        long groupSize = 0;
+        int groupRecords = 0;
+        String message;
+        while ((message = recordBuffer.poll()) != null) {
+            recordCount.decrementAndGet();
+            if (needsRotation(message, groupSize)) {
+                write(group, groupRecords);
+                group.clear();
+                groupSize = 0;
+                groupRecords = 0;
+                rotate();
+            }
+            if (!headerWritten) {
+                ByteBuffer header = charset.encode(getHeaderString());
+                groupSize += header.remaining();
+                group.add(header);
+                headerWritten = true;
+            }
+            ByteBuffer record = charset.encode(message);
+            groupSize += record.remaining();
+            group.add(record);
+            groupRecords++;
+        }
+        if (Debug.messageEnabled()) {
+            Debug.message(fileName + ":FileHandler.flush: wrote " +
+                "buffered records");
+        }
+        write(group, groupRecords);
     }
 
-    private boolean needsRotation(String message) {
+    private void write(List<ByteBuffer> group, int records) {
+        if (group.isEmpty()) {
+            return;
+        }
+        try {
+            meteredStream.write(group.toArray(new ByteBuffer[group.size()]));
+            if (MonitoringUtil.isRunning() &&
+                fileLogHandlerForMonitoring != null) {
+                fileLogHandlerForMonitoring.incHandlerSuccessCount(records);
+            }
+        } catch (IOException ex) {
+            Debug.error(fileName +
+                ":FileHandler: could not write to file: ", ex);
+        }
+    }
+
+    private boolean needsRotation(String message, long pendingBytes) {
         if (rotateEnabled) {
             if (rotatingBySize) {
                 if (!message.isEmpty()
-                        && new File(meteredStream.filename).length() >= maxFileSize
+                        && meteredStream.written + pendingBytes >= maxFileSize
                                 - message.length()) {
                     return true;
                 }
@@ -733,50 +831,10 @@ public class FileHandler extends java.util.logging.Handler {
 
     private class LogTask implements Runnable {
 
-        private LinkedList buffer;
-
-        public LogTask(LinkedList buffer) {
-            this.buffer = buffer;
-        }
-
         public void run() {
-            if (writer == null) {
-                Debug.error(fileName + ":FileHandler: Writer is null");
-                int recordsToBeDropped = buffer.size();
-                if (MonitoringUtil.isRunning() && fileLogHandlerForMonitoring !=
-                    null) {
-                    fileLogHandlerForMonitoring.incHandlerDroppedCount(
-                        recordsToBeDropped);
-                }
-                buffer.clear();
-                return;
-            }
-            if (Debug.messageEnabled()) {
-                Debug.message(fileName + ":FileHandler.flush: writing " +
-                    "buffered records (" +
-                    buffer.size() + " records)");
-            }
-            for (Iterator iter = buffer.iterator(); iter.hasNext();) {
-                String message = (String) iter.next();
-                if (needsRotation(message)) {
-                    rotate();
-                }
-                try {
-                    if (!headerWritten) {
-                        writer.write(getHeaderString());
-                        headerWritten = true;
-                    }
-                    writer.write(message);
-                    if (MonitoringUtil.isRunning() &&
-                        fileLogHandlerForMonitoring != null) {
-                        fileLogHandlerForMonitoring.incHandlerSuccessCount(1);
-                    }
-                } catch (IOException ex) {
-                    Debug.error(fileName +
-                        ":FileHandler: could not write to file: ", ex);
-                }
-                cleanup();
-            }
+            // records published from now on need another commit
+            commitPending.set(false);
+            commit();
         }
 
     }
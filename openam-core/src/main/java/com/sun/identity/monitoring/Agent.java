@@ -35,6 +35,7 @@ import com.iplanet.am.util.SystemProperties;
 import com.iplanet.services.ldap.DSConfigMgr;
 import com.iplanet.services.ldap.Server;
 import com.iplanet.services.ldap.ServerGroup;
+import com.sun.identity.common.ConcurrentExpiringMap;
 import com.sun.identity.shared.Constants;
 import com.sun.identity.shared.debug.Debug;
 import com.sun.identity.sm.DNMapper;
@@ -2250,6 +2251,49 @@ public class Agent {
         return 0;
     }
 
+    /**
+     *  process the SAML2 expiring caches (global)
+     *  @param caches the caches, by name
+     */
+    public static int saml2CacheConfig (Map<String, ConcurrentExpiringMap> caches) {
+        String classMethod = "Agent.saml2CacheConfig:";
+
+        SsoServerSAML2SvcImpl ss2s = getSaml2SvcMBean();
+        TableSsoServerSAML2CacheTable ctab = null;
+        if (ss2s != null) {
+            try {
+                ctab = ss2s.accessSsoServerSAML2CacheTable();
+            } catch (SnmpStatusException ex) {
+                debug.error(classMethod + "getting SAML2 Cache table: ", ex);
+            }
+        }
+        if (ctab == null) {
+            return -1;
+        }
+
+        int i = 1;
+        for (Map.Entry<String, ConcurrentExpiringMap> cache : caches.entrySet()) {
+            SsoServerSAML2CacheEntryImpl sce = new SsoServerSAML2CacheEntryImpl(sunMib, cache.getValue());
+            sce.SAML2CacheIndex = Integer.valueOf(i++);
+            sce.SAML2CacheName = getEscapedString(cache.getKey());
+
+            ObjectName oname = sce.createSsoServerSAML2CacheEntryObjectName(server);
+            if (oname == null) {
+                debug.error(classMethod + "Error creating object for SAML2 Cache " + cache.getKey());
+                continue;
+            }
+            try {
+                ctab.addEntry(sce, oname);
+                server.registerMBean(sce, oname);
+            } catch (JMException ex) {
+                debug.error(classMethod + "SAML2 Cache table: " + ex.getMessage());
+            } catch (SnmpStatusException ex) {
+                debug.error(classMethod + "SAML2 Cache table: " + ex.getMessage());
+            }
+        }
+        return 0;
+    }
+
     public static int federationConfig (SSOServerRealmFedInfo srfi)
     {
         String classMethod = "Agent.federationConfig:";
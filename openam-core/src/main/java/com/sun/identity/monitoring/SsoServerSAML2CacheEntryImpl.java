@@ -0,0 +1,111 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.sun.identity.monitoring;
+
+import com.sun.identity.common.ConcurrentExpiringMap;
+import com.sun.identity.shared.debug.Debug;
+import com.sun.management.snmp.SnmpStatusException;
+import com.sun.management.snmp.agent.SnmpMib;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * This class extends the "SsoServerSAML2CacheEntry" class, reading the statistics of an expiring SAML2 cache.
+ */
+public class SsoServerSAML2CacheEntryImpl extends SsoServerSAML2CacheEntry {
+    private static Debug debug = null;
+    private static String myMibName;
+
+    private final ConcurrentExpiringMap cache;
+
+    /**
+     * Constructor
+     *
+     * @param myMib The MIB of the entry.
+     * @param cache The cache whose statistics are read.
+     */
+    public SsoServerSAML2CacheEntryImpl(SnmpMib myMib, ConcurrentExpiringMap cache) {
+        super(myMib);
+        myMibName = myMib.getMibName();
+        this.cache = cache;
+        init();
+    }
+
+    private void init() {
+        if (debug == null) {
+            debug = Debug.getInstance("amMonitoring");
+        }
+    }
+
+    public ObjectName createSsoServerSAML2CacheEntryObjectName(MBeanServer server) {
+        String classModule = "SsoServerSAML2CacheEntryImpl.createSsoServerSAML2CacheEntryObjectName: ";
+        String prfx = "ssoServerSAML2CacheEntry.";
+
+        if (debug.messageEnabled()) {
+            debug.message(classModule +
+                "\n    SAML2CacheIndex = " + SAML2CacheIndex +
+                "\n    SAML2CacheName = " + SAML2CacheName);
+        }
+
+        String objname = myMibName +
+            "/ssoServerSAML2CacheTable:" +
+            prfx + "sAML2CacheName=" + SAML2CacheName;
+
+        try {
+            if (server == null) {
+                return null;
+            } else {
+                return new ObjectName(objname);
+            }
+        } catch (Exception ex) {
+            debug.error(classModule + objname, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Getter for the "SAML2CacheSize" variable.
+     */
+    @Override
+    public Long getSAML2CacheSize() throws SnmpStatusException {
+        return (long) cache.size();
+    }
+
+    /**
+     * Getter for the "SAML2CacheMaxSize" variable.
+     */
+    @Override
+    public Long getSAML2CacheMaxSize() throws SnmpStatusException {
+        return (long) cache.getMaxSize();
+    }
+
+    /**
+     * Getter for the "SAML2CacheExpirations" variable.
+     */
+    @Override
+    public Long getSAML2CacheExpirations() throws SnmpStatusException {
+        return cache.getExpirationCount();
+    }
+
+    /**
+     * Getter for the "SAML2CacheEvictions" variable.
+     */
+    @Override
+    public Long getSAML2CacheEvictions() throws SnmpStatusException {
+        return cache.getEvictionCount();
+    }
+}
@@ -0,0 +1,570 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.sun.identity.policy.client;
+
+import static org.forgerock.openam.utils.Time.*;
+
+import com.iplanet.sso.SSOException;
+import com.sun.identity.policy.PolicyException;
+import com.sun.identity.policy.ResourceResult;
+import com.sun.identity.shared.debug.Debug;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Concurrent cache of the policy decisions fetched from the policy service by <code>ResourceResultCache</code>.
+ * <p>
+ * Decisions are cached per service, resource, session and scope, each with its own expiry time. The cache is bounded
+ * both by the number of decisions and by their weight, the number of resource results they hold, and evicts with a
+ * second chance policy: decisions read since they were last considered for eviction are kept for another round.
+ * <p>
+ * Concurrent misses for the same request are coalesced: only one of the callers asks the server for a decision and
+ * the others wait for its result. Removing decisions also invalidates the matching loads in flight, so a decision
+ * fetched before a policy or session change is neither cached nor handed to requests made after the change.
+ */
+class PolicyDecisionCache implements PolicyDecisionCacheMXBean {
+
+    static final String OBJECT_NAME = "OpenAM:type=PolicyDecisionCache";
+
+    private static Debug debug = PolicyEvaluator.debug;
+
+    private final ConcurrentMap<Key, Entry> entries = new ConcurrentHashMap<Key, Entry>();
+    private final ConcurrentMap<String, Set<Key>> keysByTokenID = new ConcurrentHashMap<String, Set<Key>>();
+    private final ConcurrentMap<Object, Load> loads = new ConcurrentHashMap<Object, Load>();
+    private final ConcurrentLinkedQueue<Entry> evictionQueue = new ConcurrentLinkedQueue<Entry>();
+    private final AtomicInteger evictionQueueLength = new AtomicInteger();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private final AtomicLong weight = new AtomicLong();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong loadCount = new AtomicLong();
+    private final AtomicLong loadFailureCount = new AtomicLong();
+    private final AtomicLong coalescedLoadCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong expirationCount = new AtomicLong();
+
+    private volatile int maxSize;
+    private volatile long maxWeight;
+
+    /**
+     * Loads a policy decision from the server.
+     */
+    interface Loader {
+
+        /**
+         * Returns the resource results of the policy decision.
+         * @return a set of <code>ResourceResult</code> objects
+         * @throws PolicyException if can not get the resource results
+         * @throws SSOException if session token is not valid
+         */
+        Set load() throws PolicyException, SSOException;
+    }
+
+    /**
+     * Constructs a policy decision cache.
+     * @param maxSize maximum number of decisions cached
+     * @param maxWeight maximum number of resource results held by the
+     * cached decisions
+     */
+    PolicyDecisionCache(int maxSize, long maxWeight) {
+        setBounds(maxSize, maxWeight);
+    }
+
+    /**
+     * Changes the bounds of the cache, the decisions over the new bounds
+     * being evicted when the next decision is cached.
+     * @param maxSize maximum number of decisions cached
+     * @param maxWeight maximum number of resource results held by the
+     * cached decisions
+     */
+    void setBounds(int maxSize, long maxWeight) {
+        this.maxSize = Math.max(1, maxSize);
+        this.maxWeight = Math.max(1, maxWeight);
+    }
+
+    /**
+     * Registers the cache statistics with the platform MBean server,
+     * replacing any cache registered before.
+     */
+    void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            debug.warning("PolicyDecisionCache.registerMBean():"
+                    + "could not register MBean " + OBJECT_NAME, e);
+        } catch (SecurityException e) {
+            debug.warning("PolicyDecisionCache.registerMBean():"
+                    + "could not register MBean " + OBJECT_NAME, e);
+        }
+    }
+
+    /**
+     * Returns the cached decision for a key, unless it has expired.
+     * @param key the key of the decision
+     * @return the cached decision or <code>null</code>
+     */
+    Entry get(Key key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiryTime < currentTimeMillis()) {
+            if (remove(entry)) {
+                expirationCount.incrementAndGet();
+            }
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Records that a request was answered with a cached decision.
+     * @param entry the cached decision
+     */
+    void recordHit(Entry entry) {
+        entry.referenced = true;
+        hitCount.incrementAndGet();
+    }
+
+    /**
+     * Loads a decision from the server and caches it. If the same decision
+     * is already being loaded by another thread, waits for it instead.
+     * @param key the key of the decision
+     * @param env environment map used to get the decision, cached with it
+     * @param actionNames action names used to get the decision, cached
+     * with it
+     * @param ttl time in milliseconds during which the decision is cached
+     * @param loader loads the decision from the server
+     * @return a set of <code>ResourceResult</code> objects
+     * @throws PolicyException if can not get the decision
+     * @throws SSOException if session token is not valid
+     */
+    Set load(final Key key, final Map env, final Set actionNames, final long ttl, final Loader loader)
+            throws PolicyException, SSOException {
+        missCount.incrementAndGet();
+        Object request = Arrays.asList(key, env, actionNames);
+        final AtomicBoolean invalidated = new AtomicBoolean();
+        Load task = new Load(request, key, invalidated, new Callable<Set>() {
+            @Override
+            public Set call() throws Exception {
+                loadCount.incrementAndGet();
+                Set resourceResults = loader.load();
+                Entry entry = new Entry(key, resourceResults, env, actionNames, currentTimeMillis() + ttl);
+                if (!invalidated.get()) {
+                    put(entry);
+                    // Checked again after the put, as invalidation marks the loads before removing the cached entries
+                    if (invalidated.get()) {
+                        remove(entry);
+                    }
+                }
+                return resourceResults;
+            }
+        });
+        Load pending = loads.putIfAbsent(request, task);
+        if (pending == null) {
+            try {
+                task.run();
+            } finally {
+                loads.remove(request, task);
+            }
+        } else {
+            coalescedLoadCount.incrementAndGet();
+            task = pending;
+        }
+
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PolicyException(e);
+        } catch (ExecutionException e) {
+            if (pending == null) {
+                loadFailureCount.incrementAndGet();
+            }
+            Throwable cause = e.getCause();
+            if (cause instanceof PolicyException) {
+                throw (PolicyException) cause;
+            } else if (cause instanceof SSOException) {
+                throw (SSOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new PolicyException(cause);
+        }
+    }
+
+    private void put(Entry entry) {
+        if (entry.weight > maxWeight) {
+            if (debug.messageEnabled()) {
+                debug.message("PolicyDecisionCache.put():"
+                        + "not caching decision of weight " + entry.weight);
+            }
+            return;
+        }
+        weight.addAndGet(entry.weight);
+        Entry previous = entries.put(entry.key, entry);
+        if (previous != null) {
+            weight.addAndGet(-previous.weight);
+        } else {
+            // the keys of a session are only changed within compute, so that a set emptied and dropped by a removal
+            // is never added to afterwards
+            keysByTokenID.compute(entry.key.tokenID, (tokenID, keys) -> {
+                if (keys == null) {
+                    keys = Collections.newSetFromMap(new ConcurrentHashMap<Key, Boolean>());
+                }
+                keys.add(entry.key);
+                return keys;
+            });
+        }
+        evictionQueue.add(entry);
+        evictionQueueLength.incrementAndGet();
+        evict();
+    }
+
+    /**
+     * Evicts decisions until the cache is within its bounds. Also drops the
+     * queued decisions that have since been replaced or removed, once they
+     * outnumber the bound of the cache. Only one thread evicts at a time.
+     */
+    private void evict() {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long now = currentTimeMillis();
+            while (true) {
+                boolean overBounds = entries.size() > maxSize || weight.get() > maxWeight;
+                if (!overBounds && evictionQueueLength.get() <= 2 * maxSize) {
+                    return;
+                }
+                Entry entry = evictionQueue.poll();
+                if (entry == null) {
+                    return;
+                }
+                evictionQueueLength.decrementAndGet();
+                if (entries.get(entry.key) != entry) {
+                    continue;
+                }
+                if (entry.expiryTime < now) {
+                    if (remove(entry)) {
+                        expirationCount.incrementAndGet();
+                    }
+                } else if (overBounds && !entry.referenced) {
+                    if (remove(entry)) {
+                        evictionCount.incrementAndGet();
+                    }
+                } else {
+                    entry.referenced = false;
+                    evictionQueue.add(entry);
+                    evictionQueueLength.incrementAndGet();
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private boolean remove(Entry entry) {
+        if (!entries.remove(entry.key, entry)) {
+            return false;
+        }
+        weight.addAndGet(-entry.weight);
+        keysByTokenID.computeIfPresent(entry.key.tokenID, (tokenID, keys) -> {
+            keys.remove(entry.key);
+            return keys.isEmpty() ? null : keys;
+        });
+        return true;
+    }
+
+    private void remove(Key key) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            remove(entry);
+        }
+    }
+
+    /**
+     * Marks the loads in flight for the matching decisions as invalidated,
+     * so that their decisions are not cached, and stops coalescing later
+     * requests with them.
+     * @param serviceName service name
+     * @param resourceNames names of the resources, or <code>null</code>
+     * for all the resources of the service
+     * @param tokenID session token id, or <code>null</code> for all sessions
+     */
+    private void invalidateLoads(String serviceName, Set<String> resourceNames, String tokenID) {
+        for (Load load : loads.values()) {
+            Key key = load.key;
+            if ((serviceName == null || serviceName.equals(key.serviceName))
+                    && (resourceNames == null || resourceNames.contains(key.resourceName))
+                    && (tokenID == null || tokenID.equals(key.tokenID))) {
+                load.invalidated.set(true);
+                loads.remove(load.request, load);
+            }
+        }
+    }
+
+    /**
+     * Removes the cached decisions of a session.
+     * @param tokenID the session token id
+     * @return <code>true</code> if decisions were cached for the session
+     */
+    boolean removeToken(String tokenID) {
+        invalidateLoads(null, null, tokenID);
+        Set<Key> keys = keysByTokenID.remove(tokenID);
+        if (keys == null) {
+            return false;
+        }
+        for (Key key : keys) {
+            remove(key);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the names of the resources for which decisions are cached or
+     * being loaded.
+     * @param serviceName service name
+     * @return the resource names
+     */
+    Set<String> getResourceNames(String serviceName) {
+        Set<String> resourceNames = new HashSet<String>();
+        // Loads are read first, as a completed load caches its decision before it is no longer in flight
+        for (Load load : loads.values()) {
+            if (load.key.serviceName.equals(serviceName)) {
+                resourceNames.add(load.key.resourceName);
+            }
+        }
+        for (Key key : entries.keySet()) {
+            if (key.serviceName.equals(serviceName)) {
+                resourceNames.add(key.resourceName);
+            }
+        }
+        return resourceNames;
+    }
+
+    /**
+     * Removes the cached decisions for resources of a service.
+     * @param serviceName service name
+     * @param resourceNames names of the resources
+     */
+    void removeResources(String serviceName, Set<String> resourceNames) {
+        if (resourceNames.isEmpty()) {
+            return;
+        }
+        invalidateLoads(serviceName, resourceNames, null);
+        for (Key key : entries.keySet()) {
+            if (key.serviceName.equals(serviceName) && resourceNames.contains(key.resourceName)) {
+                remove(key);
+            }
+        }
+    }
+
+    /**
+     * Removes the cached decisions for a service.
+     * @param serviceName service name
+     */
+    void removeService(String serviceName) {
+        invalidateLoads(serviceName, null, null);
+        for (Key key : entries.keySet()) {
+            if (key.serviceName.equals(serviceName)) {
+                remove(key);
+            }
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return entries.size();
+    }
+
+    @Override
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public long getWeight() {
+        return weight.get();
+    }
+
+    @Override
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    @Override
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    @Override
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    @Override
+    public long getLoadCount() {
+        return loadCount.get();
+    }
+
+    @Override
+    public long getLoadFailureCount() {
+        return loadFailureCount.get();
+    }
+
+    @Override
+    public long getCoalescedLoadCount() {
+        return coalescedLoadCount.get();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    @Override
+    public long getExpirationCount() {
+        return expirationCount.get();
+    }
+
+    /**
+     * Returns the weight of a set of resource results, counting the
+     * resource results nested in them.
+     */
+    private static int weigh(Set resourceResults) {
+        int weight = 0;
+        if (resourceResults != null) {
+            for (Object resourceResult : resourceResults) {
+                weight++;
+                if (resourceResult instanceof ResourceResult) {
+                    weight += weigh(((ResourceResult) resourceResult).getResourceResults());
+                }
+            }
+        }
+        return weight;
+    }
+
+    /**
+     * Identifies a cached decision.
+     */
+    static final class Key {
+
+        final String serviceName;
+        final String resourceName;
+        final String tokenID;
+        final String scope;
+        private final int hashCode;
+
+        Key(String serviceName, String resourceName, String tokenID, String scope) {
+            this.serviceName = serviceName;
+            this.resourceName = resourceName;
+            this.tokenID = tokenID;
+            this.scope = scope;
+            this.hashCode = Arrays.hashCode(new Object[] {serviceName, resourceName, tokenID, scope});
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hashCode == other.hashCode
+                    && equal(serviceName, other.serviceName)
+                    && equal(resourceName, other.resourceName)
+                    && equal(tokenID, other.tokenID)
+                    && equal(scope, other.scope);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        private static boolean equal(Object a, Object b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+
+    /**
+     * A load of a decision from the server, which may be invalidated while
+     * in flight.
+     */
+    private static final class Load extends FutureTask<Set> {
+
+        final Object request;
+        final Key key;
+        final AtomicBoolean invalidated;
+
+        Load(Object request, Key key, AtomicBoolean invalidated, Callable<Set> callable) {
+            super(callable);
+            this.request = request;
+            this.key = key;
+            this.invalidated = invalidated;
+        }
+    }
+
+    /**
+     * A cached decision, with the environment map and action names used to
+     * get it.
+     */
+    static final class Entry {
+
+        final Key key;
+        final Set resourceResults;
+        final Map env;
+        final Set actionNames;
+        final long expiryTime;
+        final int weight;
+        volatile boolean referenced;
+
+        Entry(Key key, Set resourceResults, Map env, Set actionNames, long expiryTime) {
+            this.key = key;
+            this.resourceResults = resourceResults;
+            this.env = env;
+            this.actionNames = actionNames;
+            this.expiryTime = expiryTime;
+            this.weight = 1 + weigh(resourceResults);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.sun.identity.policy.client;
+
+/**
+ * Exposes the statistics of the client side policy decision cache to a JMX client such as visualVM or JConsole.
+ */
+public interface PolicyDecisionCacheMXBean {
+
+    /**
+     * Returns the number of policy decisions currently cached.
+     *
+     * @return the number of cached decisions.
+     */
+    int getSize();
+
+    /**
+     * Returns the maximum number of policy decisions that can be cached.
+     *
+     * @return the maximum number of cached decisions.
+     */
+    int getMaxSize();
+
+    /**
+     * Returns the weight of the policy decisions currently cached, which is the number of resource results they
+     * hold.
+     *
+     * @return the weight of the cached decisions.
+     */
+    long getWeight();
+
+    /**
+     * Returns the maximum weight of the policy decisions that can be cached.
+     *
+     * @return the maximum weight of the cached decisions.
+     */
+    long getMaxWeight();
+
+    /**
+     * Returns the number of requests answered from the cache.
+     *
+     * @return the number of cache hits.
+     */
+    long getHitCount();
+
+    /**
+     * Returns the number of requests that could not be answered from the cache.
+     *
+     * @return the number of cache misses.
+     */
+    long getMissCount();
+
+    /**
+     * Returns the number of policy evaluations requested from the server.
+     *
+     * @return the number of loads.
+     */
+    long getLoadCount();
+
+    /**
+     * Returns the number of policy evaluations requested from the server that failed.
+     *
+     * @return the number of failed loads.
+     */
+    long getLoadFailureCount();
+
+    /**
+     * Returns the number of misses that waited for an identical evaluation already in progress instead of
+     * requesting their own.
+     *
+     * @return the number of coalesced loads.
+     */
+    long getCoalescedLoadCount();
+
+    /**
+     * Returns the number of policy decisions evicted to keep the cache within its size and weight.
+     *
+     * @return the number of evictions.
+     */
+    long getEvictionCount();
+
+    /**
+     * Returns the number of policy decisions removed from the cache because they had expired.
+     *
+     * @return the number of expired decisions.
+     */
+    long getExpirationCount();
+}
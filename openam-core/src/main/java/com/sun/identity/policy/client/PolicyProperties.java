@@ -118,6 +118,14 @@ class PolicyProperties {
     public static final String RESULTS_CACHE_RESOURCE_CAP 
             = "com.sun.identity.policy.client.resultsCacheResourceCap";
 
+    //number of resource results held by all the cached decisions
+    public static final String RESULTS_CACHE_MAX_WEIGHT
+            = "com.sun.identity.policy.client.resultsCacheMaxWeight";
+
+    public static long DEFAULT_RESULTS_CACHE_MAX_WEIGHT = 1000000;
+
+    public static long resultsCacheMaxWeight = DEFAULT_RESULTS_CACHE_MAX_WEIGHT;
+
     private final static String REST_NOTIFICATION_URL
             = "com.sun.identity.client.rest.notification.url";
 
@@ -506,6 +514,39 @@ class PolicyProperties {
                 resultsCacheResourceCap = DEFAULT_RESULTS_CACHE_RESOURCE_CAP;
             }
         }
+
+        //initialize resultsCacheMaxWeight
+        String resultsCacheMaxWeightString
+                = getSystemProperty(RESULTS_CACHE_MAX_WEIGHT, ignoreCase);
+        if (resultsCacheMaxWeightString == null) {
+            if (debug.messageEnabled()) {
+                debug.message("PolicyProperties.constructor():"
+                        + RESULTS_CACHE_MAX_WEIGHT
+                        + " Property not defined "
+                        + ": defaulting to " + DEFAULT_RESULTS_CACHE_MAX_WEIGHT);
+            }
+            resultsCacheMaxWeight = DEFAULT_RESULTS_CACHE_MAX_WEIGHT;
+        } else {
+            try {
+                resultsCacheMaxWeight
+                        = Long.valueOf(resultsCacheMaxWeightString).longValue();
+                if (debug.messageEnabled()) {
+                    debug.message(
+                            "PolicyProperties.constructor():"
+                            + RESULTS_CACHE_MAX_WEIGHT + " = "
+                            + resultsCacheMaxWeight);
+                }
+            } catch (NumberFormatException nfe) {
+                if (debug.messageEnabled()) {
+                    debug.message(
+                            "PolicyProperties.constructor():"
+                            + RESULTS_CACHE_MAX_WEIGHT + " not a number"
+                            + ": defaulting to "
+                            + DEFAULT_RESULTS_CACHE_MAX_WEIGHT);
+                }
+                resultsCacheMaxWeight = DEFAULT_RESULTS_CACHE_MAX_WEIGHT;
+            }
+        }
         
         //initialize useRESTProtocolFlag property
         String useRESTProtocolString = getSystemProperty(USE_REST_PROTOCOL, ignoreCase);
@@ -924,6 +965,26 @@ class PolicyProperties {
         return resultsCacheResourceCap;
     }
 
+    /**
+     * Returns the maximum number of policy decisions cached, which is the
+     * number of resources cached for as many sessions as allowed.
+     * @return maximum number of policy decisions cached
+     */
+    int getResultsCacheMaxSize() {
+        return (int) Math.min(Integer.MAX_VALUE,
+                (long) resultsCacheResourceCap * resultsCacheSessionCap);
+    }
+
+    /**
+     * Returns the maximum number of resource results held by all the
+     * cached policy decisions.
+     * @return maximum weight of the cached policy decisions
+     * @see #RESULTS_CACHE_MAX_WEIGHT
+     */
+    long getResultsCacheMaxWeight() {
+        return resultsCacheMaxWeight;
+    }
+
     /**
      * Gets system property
      * @param name name of the property
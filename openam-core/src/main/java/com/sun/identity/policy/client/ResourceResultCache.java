@@ -31,7 +31,6 @@ package com.sun.identity.policy.client;
 
 import static org.forgerock.openam.utils.Time.*;
 
-import com.iplanet.am.util.Cache;
 import com.iplanet.am.util.SystemProperties;
 import com.iplanet.dpro.session.Session;
 import com.iplanet.dpro.session.SessionException;
@@ -97,6 +96,7 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Singleton class that implements client side policy decision cache.
@@ -105,19 +105,18 @@ import java.util.Vector;
  */
 class ResourceResultCache implements SSOTokenListener {
 
-    //service>resource>tokenID>scope>result
-    private static ResourceResultCache resourceResultCache;
+    private static volatile ResourceResultCache resourceResultCache;
 
     private PolicyProperties policyProperties;
     private Set remotePolicyListeners 
             = Collections.synchronizedSet(new HashSet(10));
 
-    //serviceName -> resourceName -> sessionId -> scope -> result
-    private Map resultCache = new HashMap(10); 
+    //(serviceName, resourceName, sessionId, scope) -> result
+    private final PolicyDecisionCache decisionCache;
 
     private PolicyNotificationHandler notificationHandler;
-    private Set tokenRegistry = 
-        Collections.synchronizedSet(new HashSet(10000));
+    private Set<String> tokenRegistry =
+        Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
     private int        cacheTtl;
     private Set        advicesHandleableByAM; 
 
@@ -168,6 +167,10 @@ class ResourceResultCache implements SSOTokenListener {
         this.policyProperties = policyProperties;
         notificationHandler = new PolicyNotificationHandler(this);
         cacheTtl = policyProperties.getCacheTtl();
+        decisionCache = new PolicyDecisionCache(
+                policyProperties.getResultsCacheMaxSize(),
+                policyProperties.getResultsCacheMaxWeight());
+        decisionCache.registerMBean();
 
         if (policyProperties.notificationEnabled()){
             //register notification handler with PLLClient
@@ -204,6 +207,9 @@ class ResourceResultCache implements SSOTokenListener {
         }  else {
             resourceResultCache.policyProperties = policyProperties;
             resourceResultCache.cacheTtl = policyProperties.getCacheTtl();
+            resourceResultCache.decisionCache.setBounds(
+                    policyProperties.getResultsCacheMaxSize(),
+                    policyProperties.getResultsCacheMaxWeight());
         }
         return resourceResultCache;
     } 
@@ -215,7 +221,7 @@ class ResourceResultCache implements SSOTokenListener {
      * @return reference to the singleton instance of 
      *         <code>ResourceResultCache</code>
      */
-    private synchronized static ResourceResultCache getInstance() {
+    private static ResourceResultCache getInstance() {
         if ( (resourceResultCache == null) 
                 && debug.warningEnabled()) {
             debug.warning("ResourceResultCache.getInstance():"
@@ -436,171 +442,116 @@ class ResourceResultCache implements SSOTokenListener {
                     + ":entering ");
         }
 
-        Map resourceTokenIDsMap = null;
-        // resultCache -> serviceName -> resourceName -> sessionId -> scope -> result
-        synchronized(resultCache) {
-            // resourceName -> sessionId -> scope -> result
-            resourceTokenIDsMap = (Map)resultCache.get(serviceName);
-            if (resourceTokenIDsMap == null) {
-                // changed to fix 4295 Policy cache causes frequent 
-                // full gc or out of memory issues
-                resourceTokenIDsMap 
-                        = new Cache(policyProperties.getResultsCacheResourceCap());
-                resultCache.put(serviceName, resourceTokenIDsMap);
-            }
-        }
+        final String tokenID = token.getTokenID().toString();
+        registerTokenListener(token, tokenID);
 
-        Map tokenIDScopesMap = null;
-        // resourceTokenIDsMap -> resourceName -> sessionId -> scope -> result
-        synchronized(resourceTokenIDsMap) {
-            // sessionId -> scope -> result
-            tokenIDScopesMap = (Map)resourceTokenIDsMap.get(resourceName);
-            if (tokenIDScopesMap == null) {
-                // changed to fix 4295 Policy cache causes frequent full 
-                // gc or out of memory issues
-                tokenIDScopesMap  
-                        = new Cache(policyProperties.getResultsCacheSessionCap());
-                resourceTokenIDsMap.put(resourceName, tokenIDScopesMap);
+        PolicyDecisionCache.Key key = new PolicyDecisionCache.Key(
+                serviceName, resourceName, tokenID, scope);
+        PolicyDecisionCache.Entry results = null;
+        boolean fetchResultsFromServer = false;
+        if ( !useCache ) {
+            if (debug.messageEnabled()) {
+                debug.message("ResourceResultCache.getResourceResults():"
+                        + "would contact server since useCache is false");
             }
-        }
-
-        Map scopeResultsMap= null;
-        String tokenID =  token.getTokenID().toString();
-        // tokenIDScopesMap -> sessionId -> scope -> result
-        synchronized(tokenIDScopesMap) {
-            scopeResultsMap = (Map)tokenIDScopesMap.get(tokenID);
-            if (scopeResultsMap == null) {
-                scopeResultsMap = new HashMap();
-                tokenIDScopesMap.put(tokenID, scopeResultsMap);
-                if (!tokenRegistry.contains(tokenID)) {
-                    try {
-                        token.addSSOTokenListener(this);
-                        tokenRegistry.add(tokenID);
-                    } catch (SSOTokenListenersUnsupportedException ex) {
-                        // Catching exception to avoid adding tokenID to tokenRegistry
-                        // scopeResultsMap will be populated and returned to the caller but not cached
-                        debug.message("ResourceResultCache.getResourceResults(): could not add sso listener: {}", ex.getMessage());
-                    }
-                }
+            fetchResultsFromServer = true;
+        } else if ((results = decisionCache.get(key)) == null) {
+            if (debug.messageEnabled()) {
+                debug.message("ResourceResultCache.getResourceResults():"
+                        + "would contact server "
+                        + " since results not in cache or ttl has expired");
             }
-        }
-
-        Object[] results = null;
-        boolean fetchResultsFromServer = false;
-        // scopeResultsMap -> scope -> result
-        synchronized(scopeResultsMap) {
-            results = (Object[])scopeResultsMap.get(scope);
-            if ( results == null) {
-
-                //array elements:resourceResults, env, ttl, actionNames
-                results = new Object[4];
-                scopeResultsMap.put(scope, results);
+            fetchResultsFromServer = true;
+        } else if ((env == null) && (results.env != null)) {
+            if (debug.messageEnabled()) {
+                debug.message("ResourceResultCache.getResourceResults():"
+                        + "would contact server since env does not match");
             }
-
-            if ( !useCache ) {
-                if (debug.messageEnabled()) {
-                    debug.message("ResourceResultCache.getResourceResults():"
-                            + "would contact server since useCache is false");
-                }
-                fetchResultsFromServer = true;
-            } else if (results[0] == null) {
-                if (debug.messageEnabled()) {
-                    debug.message("ResourceResultCache.getResourceResults():"
-                            + "would contact server "
-                            + " since results not in cache");
-                }
-                fetchResultsFromServer = true;
-            } else if ((env == null) && (results[1] != null)) {
-                if (debug.messageEnabled()) {
-                    debug.message("ResourceResultCache.getResourceResults():"
-                            + "would contact server since env does not match");
-                }
-                fetchResultsFromServer = true;
-            } else if ((env != null) && !env.equals(results[1])) { 
-                if (debug.messageEnabled()) {
-                    debug.message("ResourceResultCache.getResourceResults():"
-                            + "would contact server since env does not Match");
-                }
-                fetchResultsFromServer = true;
-            } else if (((Long) results[2]).longValue()
-                    < currentTimeMillis()) {
-                if (debug.messageEnabled()) {
-                    debug.message("ResourceResultCache.getResourceResults():"
-                            + "would contact server since results ttl has "
-                            + " expired");
-                }
-                fetchResultsFromServer = true;
-            } else if ((actionNames == null) && (results[3] != null)) {
-                if (debug.messageEnabled()) {
-                    debug.message("ResourceResultCache.getResourceResults():"
-                            + "would contact server since action names do not "
-                            + " match");
-                }
-                fetchResultsFromServer = true;
-            } else if ((actionNames != null) &&  (results[3] == null)) {
-                if (debug.messageEnabled()) {
-                    debug.message("ResourceResultCache.getResourceResults():"
-                            + "would contact server since action names do not "
-                            + " Match");
-                }
-                fetchResultsFromServer = true;
-            } else if ((results[3] !=null) &&!((Set)results[3]).containsAll(
-                    actionNames))  {
-                if (debug.messageEnabled()) {
-                    debug.message("ResourceResultCache.getResourceResults():"
-                            + "would contact server since cached action names "
-                            + " do not cover request action names");
-                }
-                fetchResultsFromServer = true;
-            } else if (resourceResultsHasAdvices((Set)(results[0]))
-                    && PolicyProperties.SELF.equals(cacheMode)) { 
-                //get from server if there were advices in the cached decision
-                //we do this only if cacheMode is self
-                fetchResultsFromServer = true;
-
+            fetchResultsFromServer = true;
+        } else if ((env != null) && !env.equals(results.env)) { 
+            if (debug.messageEnabled()) {
+                debug.message("ResourceResultCache.getResourceResults():"
+                        + "would contact server since env does not Match");
             }
-
+            fetchResultsFromServer = true;
+        } else if ((actionNames == null) && (results.actionNames != null)) {
+            if (debug.messageEnabled()) {
+                debug.message("ResourceResultCache.getResourceResults():"
+                        + "would contact server since action names do not "
+                        + " match");
+            }
+            fetchResultsFromServer = true;
+        } else if ((actionNames != null) &&  (results.actionNames == null)) {
+            if (debug.messageEnabled()) {
+                debug.message("ResourceResultCache.getResourceResults():"
+                        + "would contact server since action names do not "
+                        + " Match");
+            }
+            fetchResultsFromServer = true;
+        } else if ((results.actionNames != null)
+                && !results.actionNames.containsAll(actionNames)) {
+            if (debug.messageEnabled()) {
+                debug.message("ResourceResultCache.getResourceResults():"
+                        + "would contact server since cached action names "
+                        + " do not cover request action names");
+            }
+            fetchResultsFromServer = true;
+        } else if (resourceResultsHasAdvices(results.resourceResults)
+                && PolicyProperties.SELF.equals(cacheMode)) { 
+            //get from server if there were advices in the cached decision
+            //we do this only if cacheMode is self
+            fetchResultsFromServer = true;
         }
 
         // changed to fix 4205 Policy client code has bottleneck when processing notificati 
         // FIXME: remove the check for service name with the some fix on server
         if (fetchResultsFromServer) {
-            if(policyProperties.useRESTProtocol() 
-                    && IPLANET_AM_WEB_AGENT_SERVICE.equalsIgnoreCase(serviceName)) {
-                resourceResults = getRESTResultsFromServer(appToken, 
-                        serviceName, token, resourceName, scope, 
-                        actionNames, env);
-            } else {
-                resourceResults = getResultsFromServer(appToken, 
-                        serviceName, token, resourceName, scope, 
-                        actionNames, env);
-            }
-            results[0] = resourceResults;
-
+            // concurrent requests for the same decision share one evaluation
+            final SSOToken finalAppToken = appToken;
+            final String finalServiceName = serviceName;
+            final SSOToken finalToken = token;
+            final String finalResourceName = resourceName;
+            final String finalScope = scope;
+            final Set finalActionNames = actionNames;
+            final Map finalEnv = env;
+            Map cachedEnv = null;
             if (env != null) {
-                env = PolicyUtils.cloneMap(env);
+                cachedEnv = PolicyUtils.cloneMap(env);
             }
-            results[1] = env;
-
-            results[2] 
-                    = new Long(currentTimeMillis() + cacheTtl);
-
+            Set cachedActionNames = null;
             if (actionNames != null) {
-                Set actionNames1 = actionNames;
-                actionNames = new HashSet();
-                actionNames.addAll(actionNames1);
-            }
-            results[3] = actionNames;
+                cachedActionNames = new HashSet();
+                cachedActionNames.addAll(actionNames);
+            }
+            resourceResults = decisionCache.load(key, cachedEnv,
+                    cachedActionNames, cacheTtl,
+                    new PolicyDecisionCache.Loader() {
+                public Set load() throws PolicyException, SSOException {
+                    if (policyProperties.useRESTProtocol()
+                            && IPLANET_AM_WEB_AGENT_SERVICE
+                                .equalsIgnoreCase(finalServiceName)) {
+                        return getRESTResultsFromServer(finalAppToken,
+                                finalServiceName, finalToken,
+                                finalResourceName, finalScope,
+                                finalActionNames, finalEnv);
+                    } else {
+                        return getResultsFromServer(finalAppToken,
+                                finalServiceName, finalToken,
+                                finalResourceName, finalScope,
+                                finalActionNames, finalEnv);
+                    }
+                }
+            });
         } else {
             if (debug.messageEnabled()) {
                 debug.message("ResourceResultCache.getResourceResults():"
                         + "would not contact server, "
                         + " would use results from  cache ");
             }
+            decisionCache.recordHit(results);
+            resourceResults = results.resourceResults;
         }
 
-
-        resourceResults = (Set)(results[0]);
         if (debug.messageEnabled()) {
             debug.message("ResourceResultCache.getResourceResults("
                     + serviceName + ","
@@ -612,6 +563,26 @@ class ResourceResultCache implements SSOTokenListener {
         return resourceResults;
     }
 
+    /**
+     * Adds this cache as listener of a session token, once per session, so
+     * that the decisions cached for the session are removed when it changes
+     * @param token session token
+     * @param tokenID session token id
+     */
+    private void registerTokenListener(SSOToken token, String tokenID)
+            throws SSOException {
+        if (tokenRegistry.add(tokenID)) {
+            try {
+                token.addSSOTokenListener(this);
+            } catch (SSOTokenListenersUnsupportedException ex) {
+                // Removing tokenID from tokenRegistry, listener will be tried
+                // again with the next decision for this session
+                tokenRegistry.remove(tokenID);
+                debug.message("ResourceResultCache.getResourceResults(): could not add sso listener: {}", ex.getMessage());
+            }
+        }
+    }
+
     private Set getRESTResultsFromServer(SSOToken appToken, String serviceName,
             SSOToken token, String resourceName, String scope, 
             Set actionNames, Map env) 
@@ -1232,42 +1203,20 @@ class ResourceResultCache implements SSOTokenListener {
         }
 
         try {
-            synchronized(resultCache) {
-                Set services = (Set)resultCache.keySet();
-                Iterator serviceIter = services.iterator();
-                while (serviceIter.hasNext()) {
-                    String serviceName = (String)serviceIter.next();
-                    Map resourceTokenIDsMap = (Map)resultCache.get(serviceName);
-                    synchronized(resourceTokenIDsMap) {
-                        Set resources = (Set)resourceTokenIDsMap.keySet();
-                        Iterator resourceIter = resources.iterator();
-                        while (resourceIter.hasNext()) {
-                            String resource = (String)resourceIter.next();
-                            Map tokenIDScopesMap 
-                                    = (Map)resourceTokenIDsMap.get(resource);
-                            if (tokenIDScopesMap != null) {
-                                tokenIDScopesMap.remove(tokenID);
-                            }
-                            
-                            boolean tokenPresent = tokenRegistry.remove(tokenID);
-                            if ( (tokenPresent == false) &&
-                                (debug.messageEnabled()) ) {
-                                debug.message("ResourceResultCache. tokenID= "
-                                    + SECRET_MASK
-                                    + " not found in Token Registry.");
-                            }
+            decisionCache.removeToken(tokenID);
+            boolean tokenPresent = tokenRegistry.remove(tokenID);
+            if ( (tokenPresent == false) &&
+                (debug.messageEnabled()) ) {
+                debug.message("ResourceResultCache. tokenID= "
+                    + SECRET_MASK
+                    + " not found in Token Registry.");
+            }
 
-                            if (debug.messageEnabled()) {
-                                debug.message("ResourceResultCache."
-                                    + "ssoTokenChanged():"
-                                    + "removing cache results for "
-                                    + "tokenID=" + SECRET_MASK //mask tokenID
-                                    + ":serviceName=" + serviceName 
-                                    + ":resource=" + resource);
-                            }
-                        }
-                    }
-                }
+            if (debug.messageEnabled()) {
+                debug.message("ResourceResultCache."
+                    + "ssoTokenChanged():"
+                    + "removing cache results for "
+                    + "tokenID=" + SECRET_MASK); //mask tokenID
             }
         } catch (Throwable t) {
             if (debug.warningEnabled()) {
@@ -1289,12 +1238,12 @@ class ResourceResultCache implements SSOTokenListener {
             return;
         }  
 
-        Map resourceTokenIDsMap 
-                = (Map)(resourceResultCache.resultCache).get(serviceName);
-        if ((resourceTokenIDsMap == null)
-                || resourceTokenIDsMap.isEmpty()) {
+        Set<String> cachedResourceNames = resourceResultCache.decisionCache
+                .getResourceNames(serviceName);
+        if (cachedResourceNames.isEmpty()) {
             return;
         } 
+        Set<String> clearedResourceNames = new HashSet<String>();
 
         ResourceName resourceComparator 
                 = resourceResultCache.policyProperties
@@ -1307,67 +1256,66 @@ class ResourceResultCache implements SSOTokenListener {
                         + "clearCacheForResourceNames():"
                         + "affectedResourceName=" + affectedRN);
             }
-            synchronized (resourceTokenIDsMap) {
-                Set cachedResourceNames = resourceTokenIDsMap.keySet();
-                Iterator crIter = cachedResourceNames.iterator();
-                while (crIter.hasNext()) {
-                    String cachedRN = (String)crIter.next();
+            Iterator crIter = cachedResourceNames.iterator();
+            while (crIter.hasNext()) {
+                String cachedRN = (String)crIter.next();
+                if (debug.messageEnabled()) {
+                    debug.message("ResourceResultCache."
+                            + "clearCacheForResourceNames():"
+                            + "affectedResourceName=" + affectedRN
+                            + ":cachedResourceName=" + cachedRN);
+                }
+                if (affectedRN.equals(cachedRN)) {
+                    clearedResourceNames.add(cachedRN);
                     if (debug.messageEnabled()) {
                         debug.message("ResourceResultCache."
                                 + "clearCacheForResourceNames():"
-                                + "affectedResourceName=" + affectedRN
-                                + ":cachedResourceName=" + cachedRN);
+                                + "cleared cached results for "
+                                + "resourceName=" + cachedRN
+                                + ":affectedResourceName=" + affectedRN
+                                + ":match=SAME RESOURCE NAME");
                     }
-                    if (affectedRN.equals(cachedRN)) {
-                        crIter.remove();
+                } else {
+                    ResourceMatch rm 
+                            = resourceComparator.compare( cachedRN, 
+                            affectedRN, true); //wildcard compare
+                    if (rm.equals(ResourceMatch.EXACT_MATCH)) {
+                        clearedResourceNames.add(cachedRN);
                         if (debug.messageEnabled()) {
                             debug.message("ResourceResultCache."
                                     + "clearCacheForResourceNames():"
                                     + "cleared cached results for "
                                     + "resourceName=" + cachedRN
                                     + ":affectedResourceName=" + affectedRN
-                                    + ":match=SAME RESOURCE NAME");
+                                    + ":match=EXACT_MATCH");
                         }
-                    } else {
-                        ResourceMatch rm 
-                                = resourceComparator.compare( cachedRN, 
-                                affectedRN, true); //wildcard compare
-                        if (rm.equals(ResourceMatch.EXACT_MATCH)) {
-                            crIter.remove();
-                            if (debug.messageEnabled()) {
-                                debug.message("ResourceResultCache."
-                                        + "clearCacheForResourceNames():"
-                                        + "cleared cached results for "
-                                        + "resourceName=" + cachedRN
-                                        + ":affectedResourceName=" + affectedRN
-                                        + ":match=EXACT_MATCH");
-                            }
-                        } else if (rm.equals(ResourceMatch.WILDCARD_MATCH)) {
-                            crIter.remove();
-                            if (debug.messageEnabled()) {
-                                debug.message("ResourceResultCache."
-                                        + "clearCacheForResourceNames():"
-                                        + "cleared cached results for "
-                                        + "resourceName=" + cachedRN
-                                        + ":affectedResourceName=" + affectedRN
-                                        + ":match=WILD_CARD_MATCH");
-                            }
-                        } else if (rm.equals(
-                                ResourceMatch.SUB_RESOURCE_MATCH)) {
-                            crIter.remove();
-                            if (debug.messageEnabled()) {
-                                debug.message("ResourceResultCache."
-                                        + "clearCacheForResourceNames():"
-                                        + "cleared cached results for "
-                                        + "resourceName=" + cachedRN
-                                        + ":affectedResourceName=" + affectedRN
-                                        + ":match=SUB_RESOURCE_MACTH");
-                            }
+                    } else if (rm.equals(ResourceMatch.WILDCARD_MATCH)) {
+                        clearedResourceNames.add(cachedRN);
+                        if (debug.messageEnabled()) {
+                            debug.message("ResourceResultCache."
+                                    + "clearCacheForResourceNames():"
+                                    + "cleared cached results for "
+                                    + "resourceName=" + cachedRN
+                                    + ":affectedResourceName=" + affectedRN
+                                    + ":match=WILD_CARD_MATCH");
+                        }
+                    } else if (rm.equals(
+                            ResourceMatch.SUB_RESOURCE_MATCH)) {
+                        clearedResourceNames.add(cachedRN);
+                        if (debug.messageEnabled()) {
+                            debug.message("ResourceResultCache."
+                                    + "clearCacheForResourceNames():"
+                                    + "cleared cached results for "
+                                    + "resourceName=" + cachedRN
+                                    + ":affectedResourceName=" + affectedRN
+                                    + ":match=SUB_RESOURCE_MACTH");
                         }
                     }
                 }
             }
         }
+        resourceResultCache.decisionCache.removeResources(serviceName,
+                clearedResourceNames);
     }
 
     /**
@@ -1567,9 +1515,7 @@ class ResourceResultCache implements SSOTokenListener {
                     + "clearCachedDecisionsForService():"
                     + "serviceName=" + serviceName);
         } 
-        synchronized(resultCache) {
-            resultCache.remove(serviceName);
-        }
+        decisionCache.removeService(serviceName);
     }
 
     /**
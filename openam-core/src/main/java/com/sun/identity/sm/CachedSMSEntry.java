@@ -33,13 +33,13 @@ import static org.forgerock.openam.utils.Time.currentTimeMillis;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.forgerock.guava.common.collect.Ordering;
 import org.forgerock.opendj.ldap.DN;
@@ -56,9 +56,8 @@ import com.sun.identity.shared.Constants;
  */
 public class CachedSMSEntry implements SMSEventListener {
 
-    // Cache of CachedSMSEntries (static)
-    private static Map smsEntries = Collections.synchronizedMap(
-        new HashMap(1000));
+    // Cache of CachedSMSEntries (static), readers never block
+    private static final ConcurrentMap<String, CachedSMSEntry> smsEntries = new ConcurrentHashMap<>(1000);
 
     // Instance variables
 
@@ -70,8 +69,7 @@ public class CachedSMSEntry implements SMSEventListener {
     private final Set<SMSEntryUpdateListener> serviceObjects = new ConcurrentSkipListSet<>(Ordering.arbitrary());
     private final SMSEventListenerManager.Subscription subscription;
 
-    protected Set principals = Collections.synchronizedSet(
-        new HashSet(10)); // Principals who have read access
+    protected Set<String> principals = ConcurrentHashMap.newKeySet(); // Principals who have read access
 
     protected SSOToken token; // Valid SSOToken used for read
 
@@ -82,12 +80,13 @@ public class CachedSMSEntry implements SMSEventListener {
     protected SMSEntry smsEntry;
 
     // Flag that determines if this object can be used
-    private boolean valid;
+    private volatile boolean valid;
     
     // Flag to determine if the cached entry is dirty and 
-    // must be refreshed along with the last update time & TTL
-    private boolean dirty;
-    private Object dirtyLock = new Object();
+    // must be refreshed along with the last update time & TTL.
+    // Only writers take the lock, readers check the volatile state.
+    private final DirtyState dirty = new DirtyState();
+    private final Object dirtyLock = new Object();
     static boolean ttlEnabled;
     static long lastUpdate;
     static long ttl = 1800000;  // 30 minutes
@@ -125,13 +124,11 @@ public class CachedSMSEntry implements SMSEventListener {
     
     // Used by JAXRPCObjectImpl
     public boolean isDirty() {
-        if (ttlEnabled && !dirty &&
+        if (ttlEnabled && !dirty.isDirty() &&
             ((currentTimeMillis() - lastUpdate) > ttl)) {
-            synchronized (dirtyLock) {
-                dirty = true;
-            }
+            dirty.markDirty();
         }
-        return dirty;
+        return dirty.isDirty();
     }
 
     /**
@@ -144,8 +141,20 @@ public class CachedSMSEntry implements SMSEventListener {
             SMSEntry.debug.message("CachedSMSEntry: update "
                     + "method called: " + dn2Str );
         }
-        synchronized (dirtyLock) {
-            dirty = true;
+        dirty.markDirty();
+    }
+
+    /**
+     * Refreshes the entry if it has been marked dirty. When several threads find the entry dirty at the same
+     * time only the first reads from the datastore, the others wait for it and then use the refreshed values.
+     */
+    private void refreshIfDirty() {
+        if (isDirty()) {
+            synchronized (dirtyLock) {
+                if (dirty.isDirty()) {
+                    refresh();
+                }
+            }
         }
     }
     
@@ -162,7 +171,8 @@ public class CachedSMSEntry implements SMSEventListener {
 
             // Read the LDAP attributes and update listeners
             boolean updated = false;
-            dirty = true;
+            dirty.markDirty();
+            long refreshedVersion = dirty.getVersion();
             try {
                 SSOToken t = getValidSSOToken();
                 if (t != null) {
@@ -191,7 +201,7 @@ public class CachedSMSEntry implements SMSEventListener {
             }
 
             updateServiceListeners();
-            dirty = false;
+            dirty.markClean(refreshedVersion);
         }
     }
     
@@ -203,9 +213,10 @@ public class CachedSMSEntry implements SMSEventListener {
      */
     void refresh(SMSEntry e) throws SMSException {
         synchronized (dirtyLock) {
+            long refreshedVersion = dirty.getVersion();
             smsEntry.refresh(e);
             updateServiceListeners();
-            dirty = false;
+            dirty.markClean(refreshedVersion);
         }
     }
     
@@ -226,12 +237,10 @@ public class CachedSMSEntry implements SMSEventListener {
         // this entry is no long valid, remove from cache
         subscription.cancel();
         valid = false;
-        synchronized(dirtyLock) {
-            dirty = true;
-        }
-        // Remove from cache
+        dirty.markDirty();
+        // Remove from cache, unless it has already been replaced
         if (removeFromCache) {
-            smsEntries.remove(dnRFCStr);
+            smsEntries.remove(dnRFCStr, this);
         }
     }
     
@@ -241,8 +250,8 @@ public class CachedSMSEntry implements SMSEventListener {
         if (!SMSEntry.tm.isValidToken(token)) {
             // Get a valid ssoToken from cached TokenIDs
             synchronized (principals) {
-                for (Iterator items = principals.iterator(); items.hasNext();) {
-                    String tokenID = (String) items.next();
+                for (Iterator<String> items = principals.iterator(); items.hasNext();) {
+                    String tokenID = items.next();
                     try {
                         token = SMSEntry.tm.createSSOToken(tokenID);
                         if (SMSEntry.tm.isValidToken(token)) {
@@ -295,8 +304,7 @@ public class CachedSMSEntry implements SMSEventListener {
         }
     }
 
-    synchronized void addPrincipal(SSOToken t) {
-        // Making a local copy to avoid synchronization problems
+    void addPrincipal(SSOToken t) {
         principals.add(t.getTokenID().toString());
     }
 
@@ -309,9 +317,7 @@ public class CachedSMSEntry implements SMSEventListener {
     }
 
     public SMSEntry getClonedSMSEntry() {
-        if (isDirty()) {
-            refresh();
-        }
+        refreshIfDirty();
         try {
             return ((SMSEntry) smsEntry.clone());
         } catch (CloneNotSupportedException c) {
@@ -321,9 +327,7 @@ public class CachedSMSEntry implements SMSEventListener {
     }
 
     boolean isNewEntry() {
-        if (isDirty()) {
-            refresh();
-        }
+        refreshIfDirty();
         return (smsEntry.isNewEntry());
     }
 
@@ -354,19 +358,16 @@ public class CachedSMSEntry implements SMSEventListener {
             SMSEntry.debug.message("CachedSMSEntry::getInstance: " + dn);
         }
         String cacheEntry = DN.valueOf(dn).toString().toLowerCase();
-        CachedSMSEntry answer = (CachedSMSEntry) smsEntries.get(cacheEntry);
+        CachedSMSEntry answer = smsEntries.get(cacheEntry);
         if ((answer == null) || !answer.isValid()) {
-            // Construct the SMS entry. Should be outside the synchronized
-            // block since SMSEntry call delegation which in turn calls
+            // Construct the SMS entry. Should be outside any lock since
+            // SMSEntry call delegation which in turn calls
             // policy, idrepo, special repo and SMS again
             CachedSMSEntry tmp = new CachedSMSEntry(new SMSEntry(t, dn));
-            synchronized (smsEntries) {
-                if (((answer = (CachedSMSEntry) smsEntries.get(cacheEntry))
-                    == null) || !answer.isValid()) {
-                    // Add it to cache
-                    answer = tmp;
-                    smsEntries.put(cacheEntry, answer);
-                }
+            answer = putIfAbsentOrInvalid(cacheEntry, tmp);
+            if (answer != tmp) {
+                // Another thread cached a valid entry first
+                tmp.clear(false);
             }
         }
         
@@ -387,6 +388,22 @@ public class CachedSMSEntry implements SMSEventListener {
         return (answer);
     }
     
+    /**
+     * Adds the entry to the cache unless a valid entry is already cached for the DN.
+     *
+     * @return the entry that is cached once this method returns.
+     */
+    private static CachedSMSEntry putIfAbsentOrInvalid(String cacheEntry, CachedSMSEntry entry) {
+        CachedSMSEntry current = smsEntries.putIfAbsent(cacheEntry, entry);
+        while (current != null && !current.isValid()) {
+            if (smsEntries.replace(cacheEntry, current, entry)) {
+                return entry;
+            }
+            current = smsEntries.putIfAbsent(cacheEntry, entry);
+        }
+        return (current == null) ? entry : current;
+    }
+
     static void initializeProperties() {
         // Initialize the TTL
         String ttlEnabledString = SystemProperties.get(
@@ -410,15 +427,12 @@ public class CachedSMSEntry implements SMSEventListener {
 
     // Clears the cache
     static void clearCache() {
-        synchronized (smsEntries) {
-            for (Iterator items = smsEntries.values().iterator();
-                items.hasNext();) {
-                CachedSMSEntry cEntry = (CachedSMSEntry) items.next();
-                // this entry is no long valid
-                cEntry.clear(false);
+        for (Map.Entry<String, CachedSMSEntry> entry : smsEntries.entrySet()) {
+            // Remove the entry first so concurrent readers build a new one,
+            // then mark it as no longer valid
+            if (smsEntries.remove(entry.getKey(), entry.getValue())) {
+                entry.getValue().clear(false);
             }
-            // Remove all entries from cache
-            smsEntries.clear();
         }
     }
 
@@ -473,4 +487,49 @@ public class CachedSMSEntry implements SMSEventListener {
          */
         void update();
     }
+
+    /**
+     * Tracks whether the entry must be read again. Every change notification bumps a version, and a refresh only
+     * marks the entry clean up to the version it started from, so that a notification which arrives while the
+     * entry is being read is not lost.
+     */
+    static final class DirtyState {
+        private final AtomicLong version = new AtomicLong();
+        // the version the entry was last refreshed at, written with the dirty lock held
+        private volatile long cleanVersion;
+
+        /**
+         * Marks the entry as dirty.
+         */
+        void markDirty() {
+            version.incrementAndGet();
+        }
+
+        /**
+         * Returns the current version, to be passed to {@link #markClean(long)} once the entry has been read.
+         *
+         * @return the current version.
+         */
+        long getVersion() {
+            return version.get();
+        }
+
+        /**
+         * Marks the entry as clean, unless it was marked dirty again after the given version was read.
+         *
+         * @param refreshedVersion The version returned by {@link #getVersion()} before the entry was read.
+         */
+        void markClean(long refreshedVersion) {
+            cleanVersion = refreshedVersion;
+        }
+
+        /**
+         * Tells whether the entry must be read again.
+         *
+         * @return {@code true} if the entry has been marked dirty since it was last refreshed.
+         */
+        boolean isDirty() {
+            return version.get() != cleanVersion;
+        }
+    }
 }
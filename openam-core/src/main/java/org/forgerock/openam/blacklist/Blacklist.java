@@ -52,6 +52,16 @@ public interface Blacklist<T extends Blacklistable> {
      */
     void subscribe(Listener listener);
 
+    /**
+     * Subscribe for notifications when entries are blacklisted, as {@link #subscribe(Listener)}. Implementations that
+     * replay existing entries to new listeners only replay those blacklisted at or after the given time, by any
+     * server, for listeners that already know about earlier entries.
+     *
+     * @param listener the event listener to call when entries are blacklisted.
+     * @param since the time (in milliseconds from UTC epoch) from which existing entries should be replayed.
+     */
+    void subscribe(Listener listener, long since);
+
     interface Listener {
         /**
          * Indicates that the given entry has been blacklisted.
@@ -0,0 +1,206 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.blacklist;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.forgerock.util.Reject;
+
+import com.iplanet.am.util.SystemProperties;
+import com.sun.identity.shared.debug.Debug;
+
+/**
+ * Persists the entries known to a {@link BloomFilterBlacklist} to a local file, so that the bloom filter can be
+ * populated straight away when the server restarts instead of replaying the whole blacklist from the CTS.
+ * <p/>
+ * The file is written and read through a memory mapped buffer. Each snapshot is written to a temporary file which
+ * then replaces the previous snapshot, so a reader never sees a partially written file. The layout is:
+ * <pre>
+ *     int     magic
+ *     int     version
+ *     long    snapshot time (milliseconds since the UTC epoch)
+ *     int     number of entries
+ *     entries: long expiry time, int id length, UTF-8 encoded id
+ * </pre>
+ *
+ * @since 14.0.0
+ */
+public final class BlacklistSnapshot {
+
+    /**
+     * Directory in which blacklist snapshots are kept. Snapshots are disabled if not set.
+     */
+    public static final String SNAPSHOT_DIRECTORY_PROPERTY = "org.forgerock.openam.blacklist.snapshot.directory";
+
+    /**
+     * Interval in seconds between blacklist snapshots.
+     */
+    public static final String SNAPSHOT_INTERVAL_PROPERTY = "org.forgerock.openam.blacklist.snapshot.interval";
+
+    /**
+     * Default interval in seconds between blacklist snapshots.
+     */
+    public static final long DEFAULT_SNAPSHOT_INTERVAL = 300L;
+
+    private static final Debug DEBUG = Debug.getInstance("blacklist");
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int MAGIC = 0x424C5346;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4;
+    private static final int ENTRY_HEADER_SIZE = 8 + 4;
+
+    private final Path file;
+    private final long replayOverlapMs;
+
+    /**
+     * Creates a snapshot stored in the given file.
+     *
+     * @param file The file holding the snapshot.
+     * @param replayOverlapMs How far before the snapshot time the blacklist should be replayed from, to cover
+     *                        entries blacklisted elsewhere in the cluster but not yet known when the snapshot was taken.
+     */
+    public BlacklistSnapshot(File file, long replayOverlapMs) {
+        Reject.ifNull(file);
+        Reject.ifTrue(replayOverlapMs < 0, "replayOverlapMs must be >= 0");
+        this.file = file.toPath();
+        this.replayOverlapMs = replayOverlapMs;
+    }
+
+    /**
+     * Creates a snapshot for the named blacklist in the directory given by {@link #SNAPSHOT_DIRECTORY_PROPERTY}.
+     *
+     * @param name The name of the blacklist, used as the file name.
+     * @param replayOverlapMs See {@link #BlacklistSnapshot(File, long)}.
+     * @return The snapshot, or {@code null} if snapshots are not configured.
+     */
+    public static BlacklistSnapshot forBlacklist(String name, long replayOverlapMs) {
+        String directory = SystemProperties.get(SNAPSHOT_DIRECTORY_PROPERTY);
+        if (directory == null || directory.trim().isEmpty()) {
+            return null;
+        }
+        return new BlacklistSnapshot(new File(directory.trim(), name + ".blacklist"), replayOverlapMs);
+    }
+
+    /**
+     * Returns the configured interval between snapshots.
+     *
+     * @return The interval in seconds.
+     */
+    public static long getSnapshotInterval() {
+        return SystemProperties.getAsLong(SNAPSHOT_INTERVAL_PROPERTY, DEFAULT_SNAPSHOT_INTERVAL);
+    }
+
+    /**
+     * Reads the snapshot, passing each entry that has not yet expired to the listener.
+     *
+     * @param listener The listener to receive the snapshot entries.
+     * @param now The current time, in milliseconds since the UTC epoch.
+     * @return The time from which the blacklist should be replayed to catch up with changes made since the snapshot
+     * was taken, or {@code -1} if there is no usable snapshot and the whole blacklist must be replayed.
+     */
+    public long load(Blacklist.Listener listener, long now) {
+        if (!Files.isRegularFile(file)) {
+            DEBUG.message("BlacklistSnapshot: No snapshot found at {}", file);
+            return -1;
+        }
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                DEBUG.warning("BlacklistSnapshot: Ignoring unrecognised snapshot {}", file);
+                return -1;
+            }
+            long snapshotTime = buffer.getLong();
+            int count = buffer.getInt();
+            List<String> ids = new ArrayList<>(count);
+            List<Long> expiryTimes = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                long expiryTime = buffer.getLong();
+                byte[] id = new byte[buffer.getInt()];
+                buffer.get(id);
+                if (expiryTime > now) {
+                    ids.add(new String(id, UTF8));
+                    expiryTimes.add(expiryTime);
+                }
+            }
+            // Only notify once the whole snapshot has been read successfully
+            for (int i = 0; i < ids.size(); i++) {
+                listener.onBlacklisted(ids.get(i), expiryTimes.get(i));
+            }
+            DEBUG.message("BlacklistSnapshot: Loaded {} of {} entries from {}", ids.size(), count, file);
+            return Math.max(0, snapshotTime - replayOverlapMs);
+        } catch (IOException | BufferUnderflowException | NegativeArraySizeException e) {
+            DEBUG.warning("BlacklistSnapshot: Unable to read snapshot {}", file, e);
+            return -1;
+        }
+    }
+
+    /**
+     * Writes a new snapshot, replacing any previous one.
+     *
+     * @param entries The blacklisted ids and their expiry times.
+     * @param snapshotTime The time at which the entries were collected, in milliseconds since the UTC epoch.
+     * @throws IOException If the snapshot could not be written.
+     */
+    public void save(Map<String, Long> entries, long snapshotTime) throws IOException {
+        List<byte[]> ids = new ArrayList<>(entries.size());
+        List<Long> expiryTimes = new ArrayList<>(entries.size());
+        long size = HEADER_SIZE;
+        for (Map.Entry<String, Long> entry : entries.entrySet()) {
+            byte[] id = entry.getKey().getBytes(UTF8);
+            ids.add(id);
+            expiryTimes.add(entry.getValue());
+            size += ENTRY_HEADER_SIZE + id.length;
+        }
+
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, READ, WRITE, TRUNCATE_EXISTING)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.putInt(MAGIC);
+                buffer.putInt(VERSION);
+                buffer.putLong(snapshotTime);
+                buffer.putInt(ids.size());
+                for (int i = 0; i < ids.size(); i++) {
+                    buffer.putLong(expiryTimes.get(i));
+                    buffer.putInt(ids.get(i).length);
+                    buffer.put(ids.get(i));
+                }
+                buffer.force();
+            }
+            Files.move(temp, file, REPLACE_EXISTING, ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        DEBUG.message("BlacklistSnapshot: Saved {} entries to {}", ids.size(), file);
+    }
+}
@@ -16,8 +16,15 @@
 
 package org.forgerock.openam.blacklist;
 
+import static org.forgerock.openam.utils.Time.currentTimeMillis;
+
 import javax.annotation.Nonnull;
+import java.io.IOException;
 import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.sun.identity.shared.debug.Debug;
 import org.forgerock.bloomfilter.BloomFilter;
@@ -49,23 +56,40 @@ public final class BloomFilterBlacklist<T extends Blacklistable> implements Blac
     private final Blacklist<T> delegate;
     private final long purgeDelayMs;
     private final BloomFilter<BlacklistEntry> bloomFilter;
+    private final BlacklistSnapshot snapshot;
+    /** The entries added to the bloom filter, only tracked when snapshots are enabled. */
+    private final ConcurrentMap<String, Long> entries;
 
     @VisibleForTesting
-    BloomFilterBlacklist(Blacklist<T> delegate, long purgeDelayMs, final BloomFilter<BlacklistEntry> bloomFilter) {
+    BloomFilterBlacklist(Blacklist<T> delegate, long purgeDelayMs, final BloomFilter<BlacklistEntry> bloomFilter,
+            BlacklistSnapshot snapshot) {
         Reject.ifNull(delegate, bloomFilter);
 
         this.delegate = delegate;
         this.purgeDelayMs = purgeDelayMs;
         this.bloomFilter = bloomFilter;
+        this.snapshot = snapshot;
+        this.entries = snapshot == null ? null : new ConcurrentHashMap<String, Long>();
 
-        delegate.subscribe(new Listener() {
+        Listener listener = new Listener() {
             @Override
             public void onBlacklisted(String id, long expiryTime) {
                 DEBUG.message("BloomFilterBlacklist: Blacklisting entry from event: {}", id);
-                bloomFilter.add(new BlacklistEntry(id, expiryTime));
+                add(id, expiryTime);
             }
-        });
+        };
 
+        long since = snapshot == null ? -1 : snapshot.load(listener, currentTimeMillis());
+        if (since < 0) {
+            delegate.subscribe(listener);
+        } else {
+            delegate.subscribe(listener, since);
+        }
+    }
+
+    @VisibleForTesting
+    BloomFilterBlacklist(Blacklist<T> delegate, long purgeDelayMs, BloomFilter<BlacklistEntry> bloomFilter) {
+        this(delegate, purgeDelayMs, bloomFilter, null);
     }
 
     /**
@@ -81,6 +105,20 @@ public final class BloomFilterBlacklist<T extends Blacklistable> implements Blac
      * @param purgeDelayMs The purge delay in milli seconds.
      */
     public BloomFilterBlacklist(Blacklist<T> delegate, long purgeDelayMs) {
+        this(delegate, purgeDelayMs, (BlacklistSnapshot) null);
+    }
+
+    /**
+     * Creates the bloom filter entry blacklist as {@link #BloomFilterBlacklist(Blacklist, long)}, populating the bloom
+     * filter from the given snapshot on start up and only replaying the blacklist entries added since the snapshot
+     * was taken. The entries in the bloom filter are also tracked in memory so that they can be written to the
+     * snapshot by {@link #snapshot()}.
+     *
+     * @param delegate the definitive blacklist.
+     * @param purgeDelayMs The purge delay in milli seconds.
+     * @param snapshot The snapshot of the bloom filter entries, or {@code null} if snapshots are disabled.
+     */
+    public BloomFilterBlacklist(Blacklist<T> delegate, long purgeDelayMs, BlacklistSnapshot snapshot) {
         this(delegate, purgeDelayMs, BloomFilters.create(EntryFunnel.INSTANCE)
                         .withFalsePositiveProbability(FALSE_POSITIVE_PROBABILITY)
                         .withInitialCapacity(NUM_EXPECTED_BLACKLISTED_ENTRIES)
@@ -88,7 +126,35 @@ public final class BloomFilterBlacklist<T extends Blacklistable> implements Blac
                         .withCapacityGrowthFactor(CAPACITY_GROWTH_FACTOR)
                         .withFalsePositiveProbabilityScaleFactor(FALSE_POSITIVE_PROBABILITY_SCALE_FACTOR)
                         .withConcurrencyStrategy(ConcurrencyStrategy.ATOMIC)
-                        .build());
+                        .build(), snapshot);
+    }
+
+    private void add(String id, long expiryTime) {
+        bloomFilter.add(new BlacklistEntry(id, expiryTime));
+        if (entries != null) {
+            entries.put(id, expiryTime);
+        }
+    }
+
+    /**
+     * Writes the unexpired entries of the bloom filter to the snapshot, if snapshots are enabled.
+     */
+    public void snapshot() {
+        if (snapshot == null) {
+            return;
+        }
+        // Take the time first, entries notified while the snapshot is being written are caught up on reload
+        long now = currentTimeMillis();
+        for (Iterator<Map.Entry<String, Long>> i = entries.entrySet().iterator(); i.hasNext();) {
+            if (i.next().getValue() <= now) {
+                i.remove();
+            }
+        }
+        try {
+            snapshot.save(entries, now);
+        } catch (IOException e) {
+            DEBUG.warning("BloomFilterBlacklist: Unable to write blacklist snapshot", e);
+        }
     }
 
     @Override
@@ -112,6 +178,11 @@ public final class BloomFilterBlacklist<T extends Blacklistable> implements Blac
         delegate.subscribe(listener);
     }
 
+    @Override
+    public void subscribe(Listener listener, long since) {
+        delegate.subscribe(listener, since);
+    }
+
     /**
      * Adapter to allow entries to be stored in Guava bloom filters. Uses the UTF-8 encoded bytes of the
      * stable id of the entry as the key.
@@ -42,6 +42,7 @@ import org.forgerock.openam.tokens.CoreTokenField;
 import org.forgerock.openam.tokens.TokenType;
 import org.forgerock.openam.utils.TimeUtils;
 import org.forgerock.util.Reject;
+import org.forgerock.util.query.QueryFilter;
 
 import com.iplanet.services.naming.ServerEntryNotFoundException;
 import com.iplanet.services.naming.WebtopNamingQuery;
@@ -139,6 +140,17 @@ public final class CTSBlacklist<T extends Blacklistable> implements Blacklist<T>
 
     @Override
     public void subscribe(final Listener listener) {
+        subscribe(listener, 0, false);
+    }
+
+    @Override
+    public void subscribe(Listener listener, long since) {
+        // Entries blacklisted by this server since the given time were notified to a previous listener,
+        // which may have been lost on restart, so they are replayed too
+        subscribe(listener, since, true);
+    }
+
+    private void subscribe(final Listener listener, final long since, final boolean includeLocal) {
         pollTask.start();
         Reject.ifNull(listener);
         listeners.add(listener);
@@ -148,7 +160,7 @@ public final class CTSBlacklist<T extends Blacklistable> implements Blacklist<T>
             @Override
             public void run() {
                 // Replay the existing blacklisted entries for the listener
-                for (PartialToken token : findEntriesBlacklistedSince(0)) {
+                for (PartialToken token : findEntriesBlacklistedSince(since, includeLocal)) {
                     listener.onBlacklisted(token.<String>getValue(CoreTokenField.TOKEN_ID),
                             token.<Calendar>getValue(CoreTokenField.EXPIRY_DATE).getTimeInMillis());
                 }
@@ -177,12 +189,19 @@ public final class CTSBlacklist<T extends Blacklistable> implements Blacklist<T>
     }
 
     private Collection<PartialToken> findEntriesBlacklistedSince(long lastPollTime) {
-        // Search for blacklist tokens that have been added since our last poll time, but not from this server (those
-        // will already have been notified directly from the blacklist() method).
+        return findEntriesBlacklistedSince(lastPollTime, false);
+    }
+
+    private Collection<PartialToken> findEntriesBlacklistedSince(long lastPollTime, boolean includeLocal) {
+        // Search for blacklist tokens that have been added since our last poll time, normally not from this server
+        // (those will already have been notified directly from the blacklist() method).
+        QueryFilter<CoreTokenField> query = and(equalTo(CoreTokenField.TOKEN_TYPE, tokenType),
+                greaterThanOrEqualTo(BLACKLIST_TIME_FIELD, timeOf(lastPollTime)));
+        if (!includeLocal) {
+            query = and(query, not(equalTo(SERVER_ID_FIELD, localServerId)));
+        }
         final TokenFilter filter = new TokenFilterBuilder()
-                .withQuery(and(equalTo(CoreTokenField.TOKEN_TYPE, tokenType),
-                                greaterThanOrEqualTo(BLACKLIST_TIME_FIELD, timeOf(lastPollTime)),
-                                not(equalTo(SERVER_ID_FIELD, localServerId))))
+                .withQuery(query)
                 .returnAttribute(CoreTokenField.TOKEN_ID)
                 .returnAttribute(CoreTokenField.EXPIRY_DATE)
                 .build();
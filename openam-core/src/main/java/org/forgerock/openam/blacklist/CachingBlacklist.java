@@ -91,4 +91,10 @@ public final class CachingBlacklist<T extends Blacklistable> implements Blacklis
         // Pass straight through to delegate
         delegate.subscribe(listener);
     }
+
+    @Override
+    public void subscribe(Listener listener, long since) {
+        // Pass straight through to delegate
+        delegate.subscribe(listener, since);
+    }
 }
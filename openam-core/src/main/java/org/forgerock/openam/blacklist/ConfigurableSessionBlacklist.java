@@ -16,12 +16,16 @@
 
 package org.forgerock.openam.blacklist;
 
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
+import org.forgerock.openam.audit.context.AMExecutorServiceFactory;
 import org.forgerock.openam.utils.ConfigListener;
+import org.forgerock.util.thread.listener.ShutdownListener;
 
 import com.iplanet.dpro.session.Session;
 import com.iplanet.dpro.session.service.SessionServiceConfig;
+import com.sun.identity.common.ShutdownManager;
 
 /**
  * Blacklist which determines the appropriate strategy to use for blacklisting based on current configuration.
@@ -30,18 +34,23 @@ import com.iplanet.dpro.session.service.SessionServiceConfig;
  */
 public class ConfigurableSessionBlacklist implements Blacklist<Session> {
 
+    private static final String SNAPSHOT_NAME = "session";
+
     private CTSBlacklist<Session> ctsBlacklist;
     private final SessionServiceConfig sessionServiceConfig;
     private Blacklist<Session> delegate;
 
     /**
-     * Create a configurable session blacklist based on the session service config.
+     * Create a configurable session blacklist based on the session service config. If blacklist snapshots are
+     * configured, the bloom filter is written to its snapshot periodically and on shutdown.
      * @param ctsBlacklist The underlying CTS blacklist.
      * @param sessionServiceConfig The configuration of the session service.
+     * @param executorServiceFactory Factory for the thread that writes blacklist snapshots.
      * @return The created ConfigurableSessionBlacklist.
+     * @see BlacklistSnapshot
      */
     public static ConfigurableSessionBlacklist createConfigurableSessionBlacklist(CTSBlacklist<Session> ctsBlacklist,
-                                                                                  SessionServiceConfig sessionServiceConfig) {
+            SessionServiceConfig sessionServiceConfig, AMExecutorServiceFactory executorServiceFactory) {
         final ConfigurableSessionBlacklist configurableSessionBlacklist =
                 new ConfigurableSessionBlacklist(ctsBlacklist, sessionServiceConfig);
         sessionServiceConfig.addListener(new ConfigListener() {
@@ -50,6 +59,25 @@ public class ConfigurableSessionBlacklist implements Blacklist<Session> {
                 configurableSessionBlacklist.reloadDelegate();
             }
         });
+
+        if (BlacklistSnapshot.forBlacklist(SNAPSHOT_NAME, 0) != null) {
+            Runnable snapshotTask = new Runnable() {
+                @Override
+                public void run() {
+                    configurableSessionBlacklist.snapshot();
+                }
+            };
+            long interval = BlacklistSnapshot.getSnapshotInterval();
+            ScheduledExecutorService scheduler =
+                    executorServiceFactory.createScheduledService(1, "SessionBlacklistSnapshotThread");
+            scheduler.scheduleWithFixedDelay(snapshotTask, interval, interval, TimeUnit.SECONDS);
+            ShutdownManager.getInstance().addShutdownListener(new ShutdownListener() {
+                @Override
+                public void shutdown() {
+                    configurableSessionBlacklist.snapshot();
+                }
+            });
+        }
         return configurableSessionBlacklist;
     }
 
@@ -74,7 +102,21 @@ public class ConfigurableSessionBlacklist implements Blacklist<Session> {
         delegate.subscribe(listener);
     }
 
+    @Override
+    public void subscribe(Listener listener, long since) {
+        delegate.subscribe(listener, since);
+    }
+
+    private void snapshot() {
+        if (delegate instanceof BloomFilterBlacklist) {
+            ((BloomFilterBlacklist<Session>) delegate).snapshot();
+        }
+    }
+
     private void reloadDelegate() {
+        // Keep the bloom filter contents so that the replacement can be populated from the snapshot
+        snapshot();
+
         if (!sessionServiceConfig.isSessionBlacklistingEnabled()) {
             this.delegate = new NoOpBlacklist<>();
             return;
@@ -90,7 +132,8 @@ public class ConfigurableSessionBlacklist implements Blacklist<Session> {
         }
 
         if (pollIntervalMs > 0) {
-            blacklist = new BloomFilterBlacklist<>(blacklist, purgeDelayMs);
+            BlacklistSnapshot snapshot = BlacklistSnapshot.forBlacklist(SNAPSHOT_NAME, 2 * pollIntervalMs);
+            blacklist = new BloomFilterBlacklist<>(blacklist, purgeDelayMs, snapshot);
         }
 
         this.delegate = blacklist;
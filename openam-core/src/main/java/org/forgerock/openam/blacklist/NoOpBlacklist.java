@@ -43,4 +43,9 @@ public class NoOpBlacklist<T extends Blacklistable> implements Blacklist<T> {
     public void subscribe(Listener listener) {
         DEBUG.message("NoOpBlacklist: Ignoring entry blacklist listener {} - blacklisting disabled", listener);
     }
+
+    @Override
+    public void subscribe(Listener listener, long since) {
+        subscribe(listener);
+    }
 }
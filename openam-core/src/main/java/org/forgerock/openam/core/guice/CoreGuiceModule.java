@@ -333,9 +333,9 @@ public class CoreGuiceModule extends AbstractModule {
 
     @Provides @Singleton @Inject
     public static Blacklist<Session> getSessionBlacklist(final CTSBlacklist<Session> ctsBlacklist,
-            final SessionServiceConfig serviceConfig) {
+            final SessionServiceConfig serviceConfig, AMExecutorServiceFactory esf) {
 
-        return ConfigurableSessionBlacklist.createConfigurableSessionBlacklist(ctsBlacklist, serviceConfig);
+        return ConfigurableSessionBlacklist.createConfigurableSessionBlacklist(ctsBlacklist, serviceConfig, esf);
     }
 
     @Provides @Singleton @Inject
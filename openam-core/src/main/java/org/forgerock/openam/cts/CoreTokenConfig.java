@@ -17,10 +17,17 @@ package org.forgerock.openam.cts;
 
 import static org.forgerock.openam.cts.api.CoreTokenConstants.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.TimeUnit;
 
 import org.forgerock.openam.cts.api.CoreTokenConstants;
+import org.forgerock.openam.tokens.TokenType;
 import org.forgerock.openam.utils.ConfigListener;
 import org.forgerock.util.annotations.VisibleForTesting;
 
@@ -51,6 +58,8 @@ public class CoreTokenConfig {
     private volatile boolean tokensEncrypted;
     private volatile boolean tokensCompressed;
     private volatile boolean attributeNamesCompressed;
+    private volatile Map<TokenType, String> compressionCodecs;
+    private volatile Map<TokenType, Boolean> binarySerialisation;
 
     /**
      * Create a new default instance of the CoreTokenConfig.
@@ -60,7 +69,7 @@ public class CoreTokenConfig {
      */
     static CoreTokenConfig newCoreTokenConfig() {
         final CoreTokenConfig coreTokenConfig = new CoreTokenConfig();
-        String[] observedSystemProperties = new String[]{
+        List<String> observedSystemProperties = new ArrayList<>(Arrays.asList(
                 com.sun.identity.shared.Constants.CASE_SENSITIVE_UUID,
                 CoreTokenConstants.SYS_PROPERTY_EXPIRED_SEARCH_LIMIT,
                 Constants.SESSION_REPOSITORY_ENCRYPTION,
@@ -69,8 +78,12 @@ public class CoreTokenConfig {
                 Constants.SESSION_REPOSITORY_ATTRIBUTE_NAME_COMPRESSION,
                 Constants.CORE_TOKEN_RESOURCE_ENABLED,
                 CLEANUP_PERIOD,
-                HEALTH_CHECK_PERIOD
-        };
+                HEALTH_CHECK_PERIOD,
+                CTS_COMPRESSION_CODEC
+        ));
+        for (TokenType type : TokenType.values()) {
+            observedSystemProperties.add(CTS_COMPRESSION_CODEC + "." + type.name().toLowerCase(Locale.ENGLISH));
+        }
         ConfigurationListener listener = new ConfigurationListener() {
             @Override
             public void notifyChanges() {
@@ -78,7 +91,7 @@ public class CoreTokenConfig {
                 coreTokenConfig.notifyListeners();
             }
         };
-        SystemProperties.observe(listener, observedSystemProperties);
+        SystemProperties.observe(listener, observedSystemProperties.toArray(new String[observedSystemProperties.size()]));
         return coreTokenConfig;
     }
 
@@ -114,6 +127,28 @@ public class CoreTokenConfig {
         // Control Attribute Name Compression.
         attributeNamesCompressed = SystemProperties.getAsBoolean(Constants.SESSION_REPOSITORY_ATTRIBUTE_NAME_COMPRESSION);
 
+        // Control which codec is used to compress each type of Token.
+        String defaultCodec = SystemProperties.get(CTS_COMPRESSION_CODEC);
+        Map<TokenType, String> codecs = new EnumMap<>(TokenType.class);
+        for (TokenType type : TokenType.values()) {
+            String codec = SystemProperties.get(CTS_COMPRESSION_CODEC + "." + type.name().toLowerCase(Locale.ENGLISH),
+                    defaultCodec);
+            if (codec != null) {
+                codecs.put(type, codec.trim().toLowerCase(Locale.ENGLISH));
+            }
+        }
+        compressionCodecs = codecs;
+
+        // Control which Token types have their blobs serialised in binary rather than JSON.
+        String defaultSerialisation = SystemProperties.get(CTS_SERIALISATION, SERIALISATION_JSON);
+        Map<TokenType, Boolean> binary = new EnumMap<>(TokenType.class);
+        for (TokenType type : TokenType.values()) {
+            String serialisation = SystemProperties.get(CTS_SERIALISATION + "." + type.name().toLowerCase(Locale.ENGLISH),
+                    defaultSerialisation);
+            binary.put(type, SERIALISATION_BINARY.equalsIgnoreCase(serialisation.trim()));
+        }
+        binarySerialisation = binary;
+
         // Controls the size of pages requested for CTS Reaper
         cleanupPageSize = 1000;
 
@@ -219,6 +254,29 @@ public class CoreTokenConfig {
         return tokensCompressed;
     }
 
+    /**
+     * The name of the codec used to compress Tokens of the given type, when Token compression is enabled.
+     *
+     * @param type The non null type of Token.
+     * @return The codec name, or null if the default codec should be used.
+     * @see #isTokenCompressed()
+     */
+    public String getCompressionCodec(TokenType type) {
+        return compressionCodecs.get(type);
+    }
+
+    /**
+     * Whether Tokens of the given type should have their blobs serialised in the compact binary form rather
+     * than JSON. Tokens are always readable in either form, regardless of this setting, but only by servers
+     * which support the binary form, see {@link CoreTokenConstants#CTS_SERIALISATION}.
+     *
+     * @param type The non null type of Token.
+     * @return True if binary serialisation should be used. False by default.
+     */
+    public boolean isBinarySerialisation(TokenType type) {
+        return binarySerialisation.get(type);
+    }
+
     /**
      * @return True if The Token Attribute Names should be compressed as well. False by default.
      */
@@ -138,6 +138,7 @@ public class CoreTokenServiceGuiceModule extends PrivateModule {
         expose(CoreTokenConfig.class);
         expose(CTSPersistentStore.class);
         expose(CTSConnectionMonitoringStore.class);
+        expose(CTSOperationsMonitoringStore.class);
         expose(ExecutorService.class).annotatedWith(Names.named(CoreTokenConstants.CTS_WORKER_POOL));
         expose(ObjectMapper.class).annotatedWith(Names.named(CoreTokenConstants.OBJECT_MAPPER));
         expose(ResultHandlerFactory.class);
@@ -19,6 +19,10 @@ import static java.util.concurrent.TimeUnit.*;
 
 import java.lang.reflect.Field;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -29,6 +33,7 @@ import org.forgerock.openam.cts.CoreTokenConfig;
 import org.forgerock.openam.cts.api.fields.SessionTokenField;
 import org.forgerock.openam.cts.api.tokens.Token;
 import org.forgerock.openam.cts.api.tokens.TokenIdFactory;
+import org.forgerock.openam.cts.utils.BinarySerialisation;
 import org.forgerock.openam.cts.utils.JSONSerialisation;
 import org.forgerock.openam.cts.utils.blob.TokenBlobUtils;
 import org.forgerock.openam.cts.utils.blob.strategies.AttributeCompressionStrategy;
@@ -52,6 +57,7 @@ public class SessionAdapter implements TokenAdapter<InternalSession> {
     private final TokenIdFactory tokenIdFactory;
     private final CoreTokenConfig config;
     private final JSONSerialisation serialisation;
+    private final BinarySerialisation binarySerialisation;
     private final TokenBlobUtils blobUtils;
     private final DNWrapper dnWrapper;
 
@@ -60,20 +66,28 @@ public class SessionAdapter implements TokenAdapter<InternalSession> {
      */
     private static final Pattern LATEST_ACCESSED_TIME = getLatestAccessedTimeRegexp();
 
+    /**
+     * The InternalSession fields which are stored in Token attributes rather than the binary blob.
+     */
+    private static final Set<String> BINARY_DETACHED_FIELDS =
+            Collections.singleton(SessionTokenField.LATEST_ACCESS_TIME.getInternalSessionFieldName());
+
     /**
      * Creates a default instance with dependencies defined.
      *
      * @param tokenIdFactory Non null.
      * @param config Non null.
      * @param serialisation Non null.
+     * @param binarySerialisation Non null.
      * @param blobUtils A collection of Binary Object utilities.
      */
     @Inject
     public SessionAdapter(TokenIdFactory tokenIdFactory, CoreTokenConfig config, JSONSerialisation serialisation,
-            TokenBlobUtils blobUtils, DNWrapper dnWrapper) {
+            BinarySerialisation binarySerialisation, TokenBlobUtils blobUtils, DNWrapper dnWrapper) {
         this.tokenIdFactory = tokenIdFactory;
         this.config = config;
         this.serialisation = serialisation;
+        this.binarySerialisation = binarySerialisation;
         this.blobUtils = blobUtils;
         this.dnWrapper = dnWrapper;
     }
@@ -128,10 +142,16 @@ public class SessionAdapter implements TokenAdapter<InternalSession> {
         token.setAttribute(SessionTokenField.SESSION_ID.getField(), session.getID().toString());
 
         // Binary data
-        String jsonBlob = serialisation.serialise(session);
-        blobUtils.setBlobFromString(token, jsonBlob);
-
-        String latestAccessTime = filterLatestAccessTime(token);
+        String latestAccessTime;
+        if (config.isBinarySerialisation(TokenType.SESSION)) {
+            Map<String, String> detached = new HashMap<>();
+            token.setBlob(binarySerialisation.serialise(session, BINARY_DETACHED_FIELDS, detached));
+            latestAccessTime = detached.get(SessionTokenField.LATEST_ACCESS_TIME.getInternalSessionFieldName());
+        } else {
+            String jsonBlob = serialisation.serialise(session);
+            blobUtils.setBlobFromString(token, jsonBlob);
+            latestAccessTime = filterLatestAccessTime(token);
+        }
         if (latestAccessTime != null) {
             token.setAttribute(SessionTokenField.LATEST_ACCESS_TIME.getField(), latestAccessTime);
         }
@@ -161,12 +181,37 @@ public class SessionAdapter implements TokenAdapter<InternalSession> {
     /**
      * Convert from a Token to an Internal Session.
      *
-     * Simply deserialise the InternalSession from the JSON blob.
+     * Simply deserialise the InternalSession from the blob, which may be either JSON or binary
+     * regardless of the current configuration.
      *
      * @param token Token to be converted back to its original format.
      * @return Non null InternalSession.
      */
     public InternalSession fromToken(Token token) {
+        InternalSession session;
+        if (BinarySerialisation.isBinary(token.getBlob())) {
+            session = fromBinaryBlob(token);
+        } else {
+            session = fromJsonBlob(token);
+        }
+        if (session.getSessionHandle() == null) {
+            //Originally the sessionHandle was stored in the serialize token, so if after the deserialization the
+            //sessionHandle field is not set, then we should attempt to retrieve the value directly from the token.
+            session.setSessionHandle(token.<String>getAttribute(SessionTokenField.SESSION_HANDLE.getField()));
+        }
+        return session;
+    }
+
+    private InternalSession fromBinaryBlob(Token token) {
+        Map<String, String> attach = new HashMap<>();
+        String latestAccessTime = token.getAttribute(SessionTokenField.LATEST_ACCESS_TIME.getField());
+        if (latestAccessTime != null) {
+            attach.put(SessionTokenField.LATEST_ACCESS_TIME.getInternalSessionFieldName(), latestAccessTime);
+        }
+        return binarySerialisation.deserialise(token.getBlob(), InternalSession.class, attach);
+    }
+
+    private InternalSession fromJsonBlob(Token token) {
         String jsonBlob = blobUtils.getBlobAsString(token);
         int index = findIndexOfValidField(jsonBlob);
 
@@ -185,13 +230,7 @@ public class SessionAdapter implements TokenAdapter<InternalSession> {
             jsonBlob = jsonBlob.substring(0, index) + addition + jsonBlob.substring(index, jsonBlob.length());
         }
 
-        InternalSession session = serialisation.deserialise(jsonBlob, InternalSession.class);
-        if (session.getSessionHandle() == null) {
-            //Originally the sessionHandle was stored in the serialize token, so if after the deserialization the
-            //sessionHandle field is not set, then we should attempt to retrieve the value directly from the token.
-            session.setSessionHandle(token.<String>getAttribute(SessionTokenField.SESSION_HANDLE.getField()));
-        }
-        return session;
+        return serialisation.deserialise(jsonBlob, InternalSession.class);
     }
 
     /**
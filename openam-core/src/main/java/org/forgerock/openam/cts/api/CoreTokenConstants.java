@@ -126,6 +126,49 @@ public final class CoreTokenConstants {
      */
     public static final String CTS_ASYNC_QUEUE_SIZE = "org.forgerock.services.cts.async.queue.size";
 
+    /**
+     * The strategy used to route asynchronous tasks to work queues, either {@code hash} or {@code leastloaded}.
+     */
+    public static final String CTS_ASYNC_QUEUE_ROUTING = "org.forgerock.services.cts.async.queue.routing";
+
+    /**
+     * The maximum number of tasks each asynchronous queue processor will drain and process as a single batch.
+     */
+    public static final String CTS_ASYNC_BATCH_SIZE = "org.forgerock.services.cts.async.batch.size";
+
+    /**
+     * The maximum duration in milliseconds a queue processor will wait for a batch to fill before processing it.
+     */
+    public static final String CTS_ASYNC_BATCH_WAIT = "org.forgerock.services.cts.async.batch.wait";
+
+    /**
+     * The name of the codec used to compress Token blobs, either {@code gzip} or {@code deflate}. May be
+     * overridden for a particular type of Token by appending the lower case Token type, for example
+     * {@code org.forgerock.services.cts.compression.codec.session}.
+     */
+    public static final String CTS_COMPRESSION_CODEC = "org.forgerock.services.cts.compression.codec";
+
+    /**
+     * The form in which Token blobs are serialised, either {@value #SERIALISATION_JSON} or
+     * {@value #SERIALISATION_BINARY}. May be overridden for a particular type of Token by appending the lower
+     * case Token type, for example {@code org.forgerock.services.cts.serialisation.session}.
+     * <p>
+     * Servers from before the binary form was introduced cannot read binary blobs, so in a mixed version
+     * cluster, for example during a rolling upgrade, binary serialisation must only be enabled once every
+     * server has been upgraded.
+     */
+    public static final String CTS_SERIALISATION = "org.forgerock.services.cts.serialisation";
+
+    /**
+     * Token blobs are serialised as JSON.
+     */
+    public static final String SERIALISATION_JSON = "json";
+
+    /**
+     * Token blobs are serialised in a compact binary form.
+     */
+    public static final String SERIALISATION_BINARY = "binary";
+
     /**
      * Binding constant for the CTS Jackson Object Mapper.
      */
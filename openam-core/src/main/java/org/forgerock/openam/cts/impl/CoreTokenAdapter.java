@@ -297,7 +297,7 @@ public class CoreTokenAdapter {
 
     private void applyBlobStrategy(Token token) throws CoreTokenException {
         try {
-            token.setBlob(strategy.perform(token.getBlob()));
+            token.setBlob(strategy.perform(token.getType(), token.getBlob()));
         } catch (TokenStrategyFailedException e) {
             throw new CoreTokenException("Failed to perform Token Blob strategy.", e);
         }
@@ -22,6 +22,8 @@ import static org.forgerock.openam.tokens.CoreTokenField.*;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.inject.Inject;
 
@@ -63,8 +65,11 @@ import org.forgerock.opendj.ldap.requests.Request;
 import org.forgerock.opendj.ldap.requests.SearchRequest;
 import org.forgerock.opendj.ldap.responses.Result;
 import org.forgerock.opendj.ldap.responses.SearchResultEntry;
+import org.forgerock.util.Function;
 import org.forgerock.util.Option;
 import org.forgerock.util.Options;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.Promises;
 
 import com.forgerock.opendj.ldap.controls.TransactionIdControl;
 
@@ -84,7 +89,7 @@ public class LdapAdapter implements TokenStorageAdapter {
     private final ConnectionFactory<Connection> connectionFactory;
     private final Map<Option<?>, LdapOptionFunction> optionFunctionMap;
 
-    private Connection connection;
+    private volatile SharedConnection connection;
 
     /**
      * Create an instance of this adapter.
@@ -115,15 +120,18 @@ public class LdapAdapter implements TokenStorageAdapter {
      */
     public Token create(Token token, Options options) throws DataLayerException {
         Entry entry = conversion.getEntry(token);
+        SharedConnection shared = null;
         try {
-            getConnection();
+            shared = acquireConnection();
             AddRequest request = LDAPRequests.newAddRequest(entry)
                     .addControl(PostReadRequestControl.newControl(true, ETAG.toString()));
             request = applyOptions(request, options);
-            Result result = connection.add(request);
+            Result result = shared.connection.add(request);
             return tokenWithNewEtag(token, result);
         } catch (LdapException e) {
             throw new LdapOperationFailedException(e.getResult());
+        } finally {
+            release(shared);
         }
     }
 
@@ -138,11 +146,12 @@ public class LdapAdapter implements TokenStorageAdapter {
     public Token read(String tokenId, Options options) throws DataLayerException {
         DN dn = conversion.generateTokenDN(tokenId);
 
+        SharedConnection shared = null;
         try {
-            getConnection();
+            shared = acquireConnection();
             SearchRequest request = LDAPRequests.newSingleEntrySearchRequest(dn, "*", ETAG.toString());
             request = applyOptions(request, options);
-            SearchResultEntry resultEntry = connection.searchSingleEntry(request);
+            SearchResultEntry resultEntry = shared.connection.searchSingleEntry(request);
             return conversion.tokenFromEntry(resultEntry);
         } catch (LdapException e) {
             Result result = e.getResult();
@@ -150,6 +159,8 @@ public class LdapAdapter implements TokenStorageAdapter {
                 return null;
             }
             throw new LdapOperationFailedException(result);
+        } finally {
+            release(shared);
         }
     }
 
@@ -194,15 +205,18 @@ public class LdapAdapter implements TokenStorageAdapter {
 
         request = applyOptions(request, options);
 
+        SharedConnection shared = null;
         try {
-            getConnection();
-            Result result = connection.modify(request);
+            shared = acquireConnection();
+            Result result = shared.connection.modify(request);
             return tokenWithNewEtag(updated, result);
         } catch (AssertionFailureException e) {
             throw new OptimisticConcurrencyCheckFailedException(updated.getTokenId(),
                     options.get(OPTIMISTIC_CONCURRENCY_CHECK_OPTION), e);
         } catch (LdapException e) {
             throw new LdapOperationFailedException(e.getResult());
+        } finally {
+            release(shared);
         }
     }
 
@@ -221,11 +235,12 @@ public class LdapAdapter implements TokenStorageAdapter {
      */
     public PartialToken delete(String tokenId, Options options) throws DataLayerException {
         String dn = String.valueOf(conversion.generateTokenDN(tokenId));
+        SharedConnection shared = null;
         try {
-            getConnection();
+            shared = acquireConnection();
             DeleteRequest request = LDAPRequests.newDeleteRequest(dn);
             request = applyOptions(request, options);
-            Result result = connection.delete(request);
+            Result result = shared.connection.delete(request);
             verifySuccess(result);
             PreReadResponseControl control = result.getControl(PreReadResponseControl.DECODER, new DecodeOptions());
             if (control != null) {
@@ -244,35 +259,225 @@ public class LdapAdapter implements TokenStorageAdapter {
             throw new LdapOperationFailedException(e.getResult());
         } catch (DecodeException e) {
             throw new LdapOperationFailedException(e.getMessage());
+        } finally {
+            release(shared);
         }
     }
 
+    /**
+     * Sends the creation of the Token without waiting for its result.
+     *
+     * @param token Non null Token to create.
+     * @param options Non null Options for the operations.
+     * @return The promise of a copy of the created {@code Token} with the ETag set.
+     */
+    @Override
+    public Promise<Token, DataLayerException> createAsync(final Token token, Options options) {
+        Entry entry = conversion.getEntry(token);
+        AddRequest request = LDAPRequests.newAddRequest(entry)
+                .addControl(PostReadRequestControl.newControl(true, ETAG.toString()));
+        request = applyOptions(request, options);
+        SharedConnection shared;
+        try {
+            shared = acquireConnection();
+        } catch (DataLayerException e) {
+            return Promises.newExceptionPromise(e);
+        }
+        return shared.connection.addAsync(request).thenAlways(shared::requestComplete).then(
+                new Function<Result, Token, DataLayerException>() {
+                    @Override
+                    public Token apply(Result result) throws DataLayerException {
+                        return tokenWithNewEtag(token, result);
+                    }
+                },
+                new Function<LdapException, Token, DataLayerException>() {
+                    @Override
+                    public Token apply(LdapException e) throws DataLayerException {
+                        throw new LdapOperationFailedException(e.getResult());
+                    }
+                });
+    }
+
+    /**
+     * Sends the read of the Token without waiting for its result.
+     *
+     * @param tokenId The id of the Token to read.
+     * @param options Non null Options for the operations.
+     * @return The promise of the Token, or of {@code null} if it was not found.
+     */
+    @Override
+    public Promise<Token, DataLayerException> readAsync(String tokenId, Options options) {
+        DN dn = conversion.generateTokenDN(tokenId);
+        SearchRequest request = LDAPRequests.newSingleEntrySearchRequest(dn, "*", ETAG.toString());
+        request = applyOptions(request, options);
+        SharedConnection shared;
+        try {
+            shared = acquireConnection();
+        } catch (DataLayerException e) {
+            return Promises.newExceptionPromise(e);
+        }
+        return shared.connection.searchSingleEntryAsync(request).thenAlways(shared::requestComplete).then(
+                new Function<SearchResultEntry, Token, DataLayerException>() {
+                    @Override
+                    public Token apply(SearchResultEntry resultEntry) {
+                        return conversion.tokenFromEntry(resultEntry);
+                    }
+                },
+                new Function<LdapException, Token, DataLayerException>() {
+                    @Override
+                    public Token apply(LdapException e) throws DataLayerException {
+                        Result result = e.getResult();
+                        if (result != null && ResultCode.NO_SUCH_OBJECT.equals(result.getResultCode())) {
+                            return null;
+                        }
+                        throw new LdapOperationFailedException(result);
+                    }
+                });
+    }
+
+    /**
+     * Sends the update of the Token without waiting for its result, with the same optimistic concurrency check as
+     * {@link #update(Token, Token, Options)}.
+     *
+     * @param previous The non null previous Token to check against.
+     * @param updated The non null updated Token.
+     * @param options The non null Options for the operation.
+     * @return The promise of a copy of the updated {@code Token} with the new ETag set.
+     */
+    @Override
+    public Promise<Token, DataLayerException> updateAsync(Token previous, final Token updated,
+            final Options options) {
+        Entry currentEntry = conversion.getEntry(updated);
+        LdapTokenAttributeConversion.stripObjectClass(currentEntry);
+
+        Entry previousEntry = conversion.getEntry(previous);
+        LdapTokenAttributeConversion.stripObjectClass(previousEntry);
+
+        previousEntry.removeAttribute(ETAG.toString());
+        currentEntry.removeAttribute(ETAG.toString());
+        ModifyRequest request = Entries.diffEntries(previousEntry, currentEntry,
+            Entries.diffOptions().replaceSingleValuedAttributes());
+
+        if (request.getModifications().isEmpty()) {
+            return Promises.newResultPromise(previous);
+        }
+
+        request.addControl(TransactionIdControl.newControl(AuditRequestContext.createSubTransactionIdValue()))
+                .addControl(PostReadRequestControl.newControl(true, ETAG.toString()));
+
+        request = applyOptions(request, options);
+
+        SharedConnection shared;
+        try {
+            shared = acquireConnection();
+        } catch (DataLayerException e) {
+            return Promises.newExceptionPromise(e);
+        }
+        return shared.connection.modifyAsync(request).thenAlways(shared::requestComplete).then(
+                new Function<Result, Token, DataLayerException>() {
+                    @Override
+                    public Token apply(Result result) throws DataLayerException {
+                        return tokenWithNewEtag(updated, result);
+                    }
+                },
+                new Function<LdapException, Token, DataLayerException>() {
+                    @Override
+                    public Token apply(LdapException e) throws DataLayerException {
+                        if (e instanceof AssertionFailureException) {
+                            throw new OptimisticConcurrencyCheckFailedException(updated.getTokenId(),
+                                    options.get(OPTIMISTIC_CONCURRENCY_CHECK_OPTION), e);
+                        }
+                        throw new LdapOperationFailedException(e.getResult());
+                    }
+                });
+    }
+
+    /**
+     * Sends the delete of the Token without waiting for its result, with the same optimistic concurrency check as
+     * {@link #delete(String, Options)}.
+     *
+     * @param tokenId The non null Token ID to delete.
+     * @param options The non null Options for the operation.
+     * @return The promise of a {@link PartialToken} containing at least the {@link CoreTokenField#TOKEN_ID}.
+     */
+    @Override
+    public Promise<PartialToken, DataLayerException> deleteAsync(final String tokenId, final Options options) {
+        String dn = String.valueOf(conversion.generateTokenDN(tokenId));
+        DeleteRequest request = LDAPRequests.newDeleteRequest(dn);
+        request = applyOptions(request, options);
+        SharedConnection shared;
+        try {
+            shared = acquireConnection();
+        } catch (DataLayerException e) {
+            return Promises.newExceptionPromise(e);
+        }
+        return shared.connection.deleteAsync(request).thenAlways(shared::requestComplete).then(
+                new Function<Result, PartialToken, DataLayerException>() {
+                    @Override
+                    public PartialToken apply(Result result) throws DataLayerException {
+                        verifySuccess(result);
+                        try {
+                            PreReadResponseControl control =
+                                    result.getControl(PreReadResponseControl.DECODER, new DecodeOptions());
+                            if (control != null) {
+                                return conversion.tokenFromEntry(control.getEntry()).toPartialToken();
+                            }
+                        } catch (DecodeException e) {
+                            throw new LdapOperationFailedException(e.getMessage());
+                        }
+                        return new PartialToken(
+                                Collections.<CoreTokenField, Object>singletonMap(CoreTokenField.TOKEN_ID, tokenId));
+                    }
+                },
+                new Function<LdapException, PartialToken, DataLayerException>() {
+                    @Override
+                    public PartialToken apply(LdapException e) throws DataLayerException {
+                        if (e instanceof AssertionFailureException) {
+                            throw new OptimisticConcurrencyCheckFailedException(tokenId,
+                                    options.get(OPTIMISTIC_CONCURRENCY_CHECK_OPTION), e);
+                        }
+                        Result result = e.getResult();
+                        if (result != null && ResultCode.NO_SUCH_OBJECT.equals(result.getResultCode())) {
+                            return new PartialToken(
+                                    Collections.<CoreTokenField, Object>singletonMap(CoreTokenField.TOKEN_ID, tokenId));
+                        }
+                        throw new LdapOperationFailedException(result);
+                    }
+                });
+    }
+
     @Override
     public Collection<Token> query(TokenFilter query) throws DataLayerException {
+        SharedConnection shared = null;
         try {
-            getConnection();
+            shared = acquireConnection();
             return queryFactory.createInstance()
                     .limitResultsTo(query.getSizeLimit())
                     .within(query.getTimeLimit())
                     .withFilter(query.getQuery().accept(queryConverter, null))
-                    .execute(connection).next();
+                    .execute(shared.connection).next();
         } catch (DataLayerRuntimeException e) {
             throw new DataLayerException("Error during partial query", e);
+        } finally {
+            release(shared);
         }
     }
 
     @Override
     public Collection<PartialToken> partialQuery(TokenFilter query) throws DataLayerException {
+        SharedConnection shared = null;
         try {
-            getConnection();
+            shared = acquireConnection();
             return queryFactory.createInstance()
                     .returnTheseAttributes(query.getReturnFields())
                     .limitResultsTo(query.getSizeLimit())
                     .within(query.getTimeLimit())
                     .withFilter(query.getQuery().accept(queryConverter, null))
-                    .executeAttributeQuery(connection).next();
+                    .executeAttributeQuery(shared.connection).next();
         } catch (DataLayerRuntimeException e) {
             throw new DataLayerException("Error during partial query", e);
+        } finally {
+            release(shared);
         }
     }
 
@@ -305,10 +510,29 @@ public class LdapAdapter implements TokenStorageAdapter {
         return newToken;
     }
 
-    private synchronized void getConnection() throws DataLayerException {
-        if (!connectionFactory.isValid(connection)) {
-            IOUtils.closeIfNotNull(connection);
-            connection = connectionFactory.create();
+    /**
+     * Gets the connection to send a request on, replacing the current connection only if it is no longer valid. The
+     * request is counted as in flight on the connection until {@link SharedConnection#requestComplete()} is called.
+     *
+     * @return The non null connection.
+     * @throws DataLayerException If a new connection could not be created.
+     */
+    private synchronized SharedConnection acquireConnection() throws DataLayerException {
+        SharedConnection shared = connection;
+        if (shared == null || !connectionFactory.isValid(shared.connection)) {
+            if (shared != null) {
+                shared.replaced();
+            }
+            shared = new SharedConnection(connectionFactory.create());
+            connection = shared;
+        }
+        shared.requests.incrementAndGet();
+        return shared;
+    }
+
+    private static void release(SharedConnection shared) {
+        if (shared != null) {
+            shared.requestComplete();
         }
     }
 
@@ -330,4 +554,39 @@ public class LdapAdapter implements TokenStorageAdapter {
         }
         return r;
     }
+
+    /**
+     * A connection and the number of requests in flight on it. Pipelined requests are completed on the threads of
+     * the LDAP SDK, so a connection that has been replaced is only closed once its last request is complete.
+     */
+    private static final class SharedConnection {
+
+        private final Connection connection;
+        private final AtomicInteger requests = new AtomicInteger();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile boolean replaced;
+
+        private SharedConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        private void requestComplete() {
+            if (requests.decrementAndGet() == 0 && replaced) {
+                close();
+            }
+        }
+
+        private void replaced() {
+            replaced = true;
+            if (requests.get() == 0) {
+                close();
+            }
+        }
+
+        private void close() {
+            if (closed.compareAndSet(false, true)) {
+                IOUtils.closeIfNotNull(connection);
+            }
+        }
+    }
 }
\ No newline at end of file
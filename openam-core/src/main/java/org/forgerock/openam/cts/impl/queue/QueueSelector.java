@@ -11,10 +11,12 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2014 ForgeRock AS.
+ * Copyright 2014-2016 ForgeRock AS.
  */
 package org.forgerock.openam.cts.impl.queue;
 
+import java.util.Queue;
+
 import org.forgerock.util.Reject;
 
 /**
@@ -28,6 +30,9 @@ import org.forgerock.util.Reject;
  *
  * This algorithm is prone to modulus bias towards zero for numbers that are not a power of
  * two. Therefore this algorithm should only be used if this is the case.
+ *
+ * Alternatively the least loaded queue can be selected. It is the responsibility of the caller
+ * to keep a Token ID assigned to the selected queue whilst it has outstanding tasks.
  */
 public final class QueueSelector {
     /**
@@ -42,4 +47,31 @@ public final class QueueSelector {
         int value = Math.abs(tokenId.hashCode());
         return value % queues;
     }
+
+    /**
+     * Selects the queue with the fewest pending entries.
+     *
+     * The search starts at the given offset so that ties between equally loaded queues do not
+     * always resolve to the first queue.
+     *
+     * @param queues Non null, non empty array of queues to select from.
+     * @param start The index to start the search from.
+     * @return The index of the least loaded queue.
+     */
+    public static int selectLeastLoaded(Queue<?>[] queues, int start) {
+        Reject.ifTrue(queues == null || queues.length == 0, "queues must not be empty");
+
+        int offset = Math.abs(start % queues.length);
+        int selected = offset;
+        int smallest = queues[selected].size();
+        for (int ii = 1; ii < queues.length && smallest > 0; ii++) {
+            int index = (offset + ii) % queues.length;
+            int size = queues[index].size();
+            if (size < smallest) {
+                selected = index;
+                smallest = size;
+            }
+        }
+        return selected;
+    }
 }
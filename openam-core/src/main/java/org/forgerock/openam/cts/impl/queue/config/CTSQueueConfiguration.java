@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2014-2015 ForgeRock AS.
+ * Copyright 2014-2016 ForgeRock AS.
  */
 package org.forgerock.openam.cts.impl.queue.config;
 
@@ -19,6 +19,7 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 import java.text.MessageFormat;
+import java.util.Locale;
 
 import com.iplanet.am.util.SystemProperties;
 import com.sun.identity.shared.debug.Debug;
@@ -41,6 +42,24 @@ import org.forgerock.openam.sm.exceptions.InvalidConfigurationException;
 public class CTSQueueConfiguration implements QueueConfiguration {
     public static final int DEFAULT_TIMEOUT = 120;
     public static final int DEFAULT_QUEUE_SIZE = 5000;
+    public static final int DEFAULT_BATCH_SIZE = 1;
+    public static final int DEFAULT_BATCH_WAIT = 0;
+    public static final QueueRouting DEFAULT_QUEUE_ROUTING = QueueRouting.HASH;
+
+    /**
+     * The strategies available for routing tasks to the asynchronous queues.
+     */
+    public enum QueueRouting {
+        /**
+         * Every task for a Token ID is placed on the queue selected by hashing the Token ID.
+         */
+        HASH,
+        /**
+         * A Token ID with no outstanding tasks is assigned to the least loaded queue. It remains
+         * assigned to that queue until all of its outstanding tasks have been processed.
+         */
+        LEASTLOADED
+    }
 
     private final ConnectionConfigFactory dataLayerConfig;
     private final Debug debug;
@@ -84,6 +103,56 @@ public class CTSQueueConfiguration implements QueueConfiguration {
         return queueSize;
     }
 
+    /**
+     * The maximum number of tasks a queue processor will take from its queue and process as a single batch
+     * on its connection. A value of one disables batching and each task is processed as it is taken.
+     *
+     * @return The maximum batch size, always positive. Default is {@link #DEFAULT_BATCH_SIZE}.
+     */
+    public int getBatchSize() {
+        int batchSize = SystemProperties.getAsInt(CoreTokenConstants.CTS_ASYNC_BATCH_SIZE, DEFAULT_BATCH_SIZE);
+        if (batchSize <= 0) {
+            debug("Batch size {0} was invalid, using default {1}", batchSize, DEFAULT_BATCH_SIZE);
+            return DEFAULT_BATCH_SIZE;
+        }
+        return batchSize;
+    }
+
+    /**
+     * The maximum duration in milliseconds a queue processor will wait for further tasks to arrive once it has
+     * taken the first task of a batch. Only used when batching is enabled.
+     *
+     * @see #getBatchSize()
+     * @return The batch wait in milliseconds, zero or positive. Default is {@link #DEFAULT_BATCH_WAIT}.
+     */
+    public int getBatchWait() {
+        int batchWait = SystemProperties.getAsInt(CoreTokenConstants.CTS_ASYNC_BATCH_WAIT, DEFAULT_BATCH_WAIT);
+        if (batchWait < 0) {
+            debug("Batch wait {0} was invalid, using default {1}", batchWait, DEFAULT_BATCH_WAIT);
+            return DEFAULT_BATCH_WAIT;
+        }
+        return batchWait;
+    }
+
+    /**
+     * The strategy used to select which asynchronous queue a task with a Token ID is placed on.
+     * Both strategies guarantee that tasks for the same Token ID are processed in order.
+     *
+     * @return Non null routing strategy. Default is {@link #DEFAULT_QUEUE_ROUTING}.
+     */
+    public QueueRouting getQueueRouting() {
+        String routing = SystemProperties.get(CoreTokenConstants.CTS_ASYNC_QUEUE_ROUTING);
+        if (routing == null || routing.trim().isEmpty()) {
+            return DEFAULT_QUEUE_ROUTING;
+        }
+        try {
+            return QueueRouting.valueOf(routing.trim().toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            debug("Queue routing {0} was invalid, using default {1}", routing, DEFAULT_QUEUE_ROUTING);
+            return DEFAULT_QUEUE_ROUTING;
+        }
+    }
+
     @Override
     public int getProcessors() throws DataLayerException {
         try {
@@ -141,4 +141,82 @@ public interface CTSOperationsMonitoringStore {
      * @return the maximum observed failure rate of the given operation in the current monitoring period.
      */
     long getMaximumOperationFailuresPerPeriod(CTSOperation operation);
+
+    /**
+     * Records a batch of tasks processed by one of the CTS asynchronous queue processors.
+     *
+     * @param batchSize The number of tasks in the batch.
+     * @param flushTime The time in milliseconds taken to process the batch.
+     */
+    void addTaskBatch(int batchSize, long flushTime);
+
+    /**
+     * Gets the number of task batches processed since server start up.
+     *
+     * @return The total number of batches processed.
+     */
+    long getTaskBatchCumulativeCount();
+
+    /**
+     * Gets the average number of tasks processed in each batch since server start up.
+     *
+     * @return The average batch size.
+     */
+    double getAverageTaskBatchSize();
+
+    /**
+     * Gets the largest number of tasks processed in a single batch since server start up.
+     *
+     * @return The maximum batch size.
+     */
+    long getMaximumTaskBatchSize();
+
+    /**
+     * Gets the average time in milliseconds taken to process a batch of tasks since server start up.
+     *
+     * @return The average batch flush time.
+     */
+    double getAverageTaskBatchFlushTime();
+
+    /**
+     * Records a task being placed on one of the CTS asynchronous queues.
+     *
+     * @param queueDepth The depth of the queue once the task was added.
+     */
+    void addQueuedTask(int queueDepth);
+
+    /**
+     * Records the time a task spent on one of the CTS asynchronous queues before being processed.
+     *
+     * @param waitTime The time in milliseconds the task spent on the queue.
+     */
+    void addQueueWaitTime(long waitTime);
+
+    /**
+     * Gets the average depth of the CTS asynchronous queues observed as tasks were added since server start up.
+     *
+     * @return The average queue depth.
+     */
+    double getAverageQueueDepth();
+
+    /**
+     * Gets the largest depth of the CTS asynchronous queues observed as tasks were added since server start up.
+     *
+     * @return The maximum queue depth.
+     */
+    long getMaximumQueueDepth();
+
+    /**
+     * Gets the average time in milliseconds tasks spent on the CTS asynchronous queues since server start up.
+     *
+     * @return The average queue wait time.
+     */
+    double getAverageQueueWaitTime();
+
+    /**
+     * Gets the longest time in milliseconds a task spent on the CTS asynchronous queues since server start up.
+     *
+     * @return The maximum queue wait time.
+     */
+    long getMaximumQueueWaitTime();
 }
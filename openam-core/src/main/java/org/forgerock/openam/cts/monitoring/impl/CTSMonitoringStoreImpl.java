@@ -26,6 +26,8 @@ import org.forgerock.openam.cts.monitoring.CTSOperationsMonitoringStore;
 import org.forgerock.openam.cts.monitoring.CTSReaperMonitoringStore;
 import org.forgerock.openam.cts.monitoring.impl.connections.ConnectionStore;
 import org.forgerock.openam.cts.monitoring.impl.operations.TokenOperationsStore;
+import org.forgerock.openam.cts.monitoring.impl.queue.TaskBatchStore;
+import org.forgerock.openam.cts.monitoring.impl.queue.TaskQueueStore;
 import org.forgerock.openam.cts.monitoring.impl.reaper.ReaperMonitor;
 
 import javax.inject.Inject;
@@ -56,6 +58,8 @@ public class CTSMonitoringStoreImpl implements CTSOperationsMonitoringStore, CTS
     private final ExecutorService executorService;
     private final ReaperMonitor reaperMonitor;
     private final ConnectionStore connectionStore;
+    private final TaskBatchStore taskBatchStore;
+    private final TaskQueueStore taskQueueStore;
 
     /**
      * Constructs an instance of the CTSMonitoringStoreImpl.
@@ -64,18 +68,25 @@ public class CTSMonitoringStoreImpl implements CTSOperationsMonitoringStore, CTS
      * @param executorService An instance of an ExecutorService.
      * @param tokenOperationsStore An instance of the TokenOperationsStore.
      * @param reaperMonitor An instance of the ReaperMonitor.
+     * @param connectionStore An instance of the ConnectionStore.
+     * @param taskBatchStore An instance of the TaskBatchStore.
+     * @param taskQueueStore An instance of the TaskQueueStore.
      */
     @Inject
     public CTSMonitoringStoreImpl(@Named(EXECUTOR_BINDING_NAME) final ExecutorService executorService,
                                   final TokenOperationsStore tokenOperationsStore,
                                   final ReaperMonitor reaperMonitor,
                                   final ConnectionStore connectionStore,
+                                  final TaskBatchStore taskBatchStore,
+                                  final TaskQueueStore taskQueueStore,
                                   @Named(CoreTokenConstants.CTS_DEBUG) final Debug debug) {
         this.debug = debug;
         this.executorService = executorService;
         this.tokenOperationsStore = tokenOperationsStore;
         this.reaperMonitor = reaperMonitor;
         this.connectionStore = connectionStore;
+        this.taskBatchStore = taskBatchStore;
+        this.taskQueueStore = taskQueueStore;
     }
 
     /**
@@ -230,4 +241,59 @@ public class CTSMonitoringStoreImpl implements CTSOperationsMonitoringStore, CTS
     public double getConnectionsCumulativeCount(boolean success) {
         return connectionStore.getConnectionsCumulativeCount(success);
     }
+
+    @Override
+    public void addTaskBatch(int batchSize, long flushTime) {
+        taskBatchStore.addBatch(batchSize, flushTime);
+    }
+
+    @Override
+    public long getTaskBatchCumulativeCount() {
+        return taskBatchStore.getBatchCumulativeCount();
+    }
+
+    @Override
+    public double getAverageTaskBatchSize() {
+        return taskBatchStore.getAverageBatchSize();
+    }
+
+    @Override
+    public long getMaximumTaskBatchSize() {
+        return taskBatchStore.getMaximumBatchSize();
+    }
+
+    @Override
+    public double getAverageTaskBatchFlushTime() {
+        return taskBatchStore.getAverageBatchFlushTime();
+    }
+
+    @Override
+    public void addQueuedTask(int queueDepth) {
+        taskQueueStore.addQueuedTask(queueDepth);
+    }
+
+    @Override
+    public void addQueueWaitTime(long waitTime) {
+        taskQueueStore.addQueueWaitTime(waitTime);
+    }
+
+    @Override
+    public double getAverageQueueDepth() {
+        return taskQueueStore.getAverageQueueDepth();
+    }
+
+    @Override
+    public long getMaximumQueueDepth() {
+        return taskQueueStore.getMaximumQueueDepth();
+    }
+
+    @Override
+    public double getAverageQueueWaitTime() {
+        return taskQueueStore.getAverageQueueWaitTime();
+    }
+
+    @Override
+    public long getMaximumQueueWaitTime() {
+        return taskQueueStore.getMaximumQueueWaitTime();
+    }
 }
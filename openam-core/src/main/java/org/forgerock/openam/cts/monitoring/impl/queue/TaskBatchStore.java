@@ -0,0 +1,88 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.cts.monitoring.impl.queue;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Singleton;
+
+/**
+ * A data structure that stores cumulative statistics about the batches of tasks processed by the
+ * CTS asynchronous queue processors.
+ *
+ * @see org.forgerock.openam.cts.impl.queue.config.CTSQueueConfiguration#getBatchSize()
+ */
+@Singleton
+public class TaskBatchStore {
+
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong taskCount = new AtomicLong();
+    private final AtomicLong flushTime = new AtomicLong();
+    private final AtomicLong maximumBatchSize = new AtomicLong();
+
+    /**
+     * Records a batch of tasks that has been processed.
+     *
+     * @param batchSize The number of tasks in the batch.
+     * @param batchFlushTime The time in milliseconds taken to process the batch.
+     */
+    public void addBatch(int batchSize, long batchFlushTime) {
+        batchCount.incrementAndGet();
+        taskCount.addAndGet(batchSize);
+        flushTime.addAndGet(batchFlushTime);
+
+        long current = maximumBatchSize.get();
+        while (batchSize > current && !maximumBatchSize.compareAndSet(current, batchSize)) {
+            current = maximumBatchSize.get();
+        }
+    }
+
+    /**
+     * @return The number of batches processed since server start up.
+     */
+    public long getBatchCumulativeCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * @return The average number of tasks in each batch, or zero if no batches have been processed.
+     */
+    public double getAverageBatchSize() {
+        long batches = batchCount.get();
+        if (batches == 0) {
+            return 0D;
+        }
+        return (double) taskCount.get() / batches;
+    }
+
+    /**
+     * @return The largest number of tasks processed in a single batch since server start up.
+     */
+    public long getMaximumBatchSize() {
+        return maximumBatchSize.get();
+    }
+
+    /**
+     * @return The average time in milliseconds taken to process a batch, or zero if no batches have been processed.
+     */
+    public double getAverageBatchFlushTime() {
+        long batches = batchCount.get();
+        if (batches == 0) {
+            return 0D;
+        }
+        return (double) flushTime.get() / batches;
+    }
+}
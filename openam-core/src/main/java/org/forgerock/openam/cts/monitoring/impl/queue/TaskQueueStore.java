@@ -0,0 +1,100 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.cts.monitoring.impl.queue;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Singleton;
+
+/**
+ * A data structure that stores cumulative statistics about the depth of the CTS asynchronous queues
+ * and the time tasks spend waiting on them before being processed.
+ */
+@Singleton
+public class TaskQueueStore {
+
+    private final AtomicLong queuedCount = new AtomicLong();
+    private final AtomicLong depthTotal = new AtomicLong();
+    private final AtomicLong maximumDepth = new AtomicLong();
+    private final AtomicLong processedCount = new AtomicLong();
+    private final AtomicLong waitTimeTotal = new AtomicLong();
+    private final AtomicLong maximumWaitTime = new AtomicLong();
+
+    /**
+     * Records a task being placed on a queue.
+     *
+     * @param queueDepth The depth of the queue once the task was added.
+     */
+    public void addQueuedTask(int queueDepth) {
+        queuedCount.incrementAndGet();
+        depthTotal.addAndGet(queueDepth);
+        updateMaximum(maximumDepth, queueDepth);
+    }
+
+    /**
+     * Records a task being taken from a queue for processing.
+     *
+     * @param waitTime The time in milliseconds the task spent on the queue.
+     */
+    public void addQueueWaitTime(long waitTime) {
+        processedCount.incrementAndGet();
+        waitTimeTotal.addAndGet(waitTime);
+        updateMaximum(maximumWaitTime, waitTime);
+    }
+
+    /**
+     * @return The average depth of a queue observed when a task was added, or zero if no tasks have been queued.
+     */
+    public double getAverageQueueDepth() {
+        return average(depthTotal, queuedCount);
+    }
+
+    /**
+     * @return The largest depth of a queue observed when a task was added.
+     */
+    public long getMaximumQueueDepth() {
+        return maximumDepth.get();
+    }
+
+    /**
+     * @return The average time in milliseconds tasks spent on a queue, or zero if no tasks have been processed.
+     */
+    public double getAverageQueueWaitTime() {
+        return average(waitTimeTotal, processedCount);
+    }
+
+    /**
+     * @return The longest time in milliseconds a task spent on a queue.
+     */
+    public long getMaximumQueueWaitTime() {
+        return maximumWaitTime.get();
+    }
+
+    private static double average(AtomicLong total, AtomicLong count) {
+        long samples = count.get();
+        if (samples == 0) {
+            return 0D;
+        }
+        return (double) total.get() / samples;
+    }
+
+    private static void updateMaximum(AtomicLong maximum, long value) {
+        long current = maximum.get();
+        while (value > current && !maximum.compareAndSet(current, value)) {
+            current = maximum.get();
+        }
+    }
+}
@@ -0,0 +1,824 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.cts.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.forgerock.openam.cts.api.CoreTokenConstants;
+
+import com.fasterxml.jackson.core.Base64Variant;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.Version;
+import com.fasterxml.jackson.core.base.GeneratorBase;
+import com.fasterxml.jackson.core.base.ParserMinimalBase;
+import com.fasterxml.jackson.core.json.JsonWriteContext;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Responsible for serialising and deserialising objects to and from a compact binary form.
+ *
+ * Objects are mapped using the same {@link ObjectMapper} configuration as {@link JSONSerialisation}, so
+ * any object that can be serialised to JSON by the CTS can be serialised by this class. Rather than
+ * rendering JSON text, the mapper writes to a generator, and reads from a parser, which encode the JSON
+ * tokens directly as tagged binary values:
+ * <ul>
+ *     <li>The data starts with the {@link #MAGIC} byte followed by a format version byte.</li>
+ *     <li>Each value is written as a single tag byte followed by its payload.</li>
+ *     <li>Integral numbers are written as zig-zag encoded variable length integers.</li>
+ *     <li>Field names are written in full the first time they occur and afterwards as a reference to
+ *     their first occurrence, so repeated field names in collections of objects cost one or two bytes.</li>
+ * </ul>
+ *
+ * The {@link #MAGIC} byte can never start a UTF-8 encoded JSON document, so {@link #isBinary(byte[])} can be
+ * used to distinguish binary data from JSON written by {@link JSONSerialisation}. Servers which predate this
+ * class cannot read binary data, see {@link CoreTokenConstants#CTS_SERIALISATION}.
+ */
+public class BinarySerialisation {
+
+    /**
+     * The first byte of all binary serialised data.
+     */
+    public static final byte MAGIC = (byte) 0xCB;
+
+    /**
+     * The current version of the binary format.
+     */
+    public static final byte VERSION = 1;
+
+    private static final byte START_OBJECT = 1;
+    private static final byte END_OBJECT = 2;
+    private static final byte START_ARRAY = 3;
+    private static final byte END_ARRAY = 4;
+    private static final byte FIELD_NAME = 5;
+    private static final byte FIELD_REFERENCE = 6;
+    private static final byte STRING = 7;
+    private static final byte INTEGER = 8;
+    private static final byte DOUBLE = 9;
+    private static final byte TRUE = 10;
+    private static final byte FALSE = 11;
+    private static final byte NULL = 12;
+    private static final byte BIG_INTEGER = 13;
+    private static final byte BIG_DECIMAL = 14;
+    private static final byte BINARY = 15;
+
+    private final ObjectMapper mapper;
+
+    /**
+     * New default instance of the BinarySerialisation.
+     *
+     * @param mapper The CTS object mapper, which determines how objects are mapped to values.
+     */
+    @Inject
+    public BinarySerialisation(@Named(CoreTokenConstants.OBJECT_MAPPER) ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    /**
+     * Determines whether the data was serialised by this class.
+     *
+     * @param data Possibly null data.
+     * @return True if the data starts with the binary serialisation {@link #MAGIC} byte.
+     */
+    public static boolean isBinary(byte[] data) {
+        return data != null && data.length > 0 && data[0] == MAGIC;
+    }
+
+    /**
+     * Serialise an object to binary.
+     *
+     * @param <T> The generic type of the passed in object.
+     * @param object Non null object to serialise.
+     * @return Non null binary data.
+     */
+    public <T> byte[] serialise(T object) {
+        return serialise(object, Collections.<String>emptySet(), null);
+    }
+
+    /**
+     * Serialise an object to binary, detaching some of its top level fields.
+     *
+     * Detached fields are omitted from the binary data, and their values are placed in the provided map
+     * so they can be stored separately. They can be restored with {@link #deserialise(byte[], Class, Map)}.
+     * Only scalar valued fields can be detached.
+     *
+     * @param <T> The generic type of the passed in object.
+     * @param object Non null object to serialise.
+     * @param detachFields Non null names of the top level fields to detach.
+     * @param detached The map to place the detached field values in. May be null if no fields are detached.
+     * @return Non null binary data.
+     */
+    public <T> byte[] serialise(T object, Set<String> detachFields, Map<String, String> detached) {
+        try {
+            ByteArrayOutputStream bout = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bout);
+            out.writeByte(MAGIC);
+            out.writeByte(VERSION);
+            mapper.writeValue(new BinaryGenerator(mapper, out, detachFields, detached), object);
+            out.flush();
+            return bout.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(
+                    MessageFormat.format(
+                            "Failed to serialise {0}:{1}",
+                            object.getClass().getSimpleName(),
+                            object),
+                    e);
+        }
+    }
+
+    /**
+     * Deserialise binary data to an object of type T.
+     *
+     * @param data Non null binary data to deserialise.
+     * @param clazz Class which contains the type of the value stored in the data, required for deserialisation.
+     * @param <T> Type to cast the created object to when deserialising.
+     * @return Non null object of type T.
+     */
+    public <T> T deserialise(byte[] data, Class<T> clazz) {
+        return deserialise(data, clazz, Collections.<String, String>emptyMap());
+    }
+
+    /**
+     * Deserialise binary data to an object of type T, restoring top level fields that were detached when the
+     * object was serialised.
+     *
+     * @param data Non null binary data to deserialise.
+     * @param clazz Class which contains the type of the value stored in the data, required for deserialisation.
+     * @param attachFields Non null values of the detached top level fields to restore. Values which are valid
+     *                     integers are restored as numbers, all others as strings.
+     * @param <T> Type to cast the created object to when deserialising.
+     * @return Non null object of type T.
+     */
+    public <T> T deserialise(byte[] data, Class<T> clazz, Map<String, String> attachFields) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+            if (in.readByte() != MAGIC) {
+                throw new IOException("Data was not binary serialised");
+            }
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported binary serialisation version " + version);
+            }
+            return mapper.readValue(new BinaryParser(mapper, in, attachFields), clazz);
+        } catch (IOException | IndexOutOfBoundsException e) {
+            throw new IllegalStateException(
+                    MessageFormat.format(
+                            "Failed to deserialise {0}",
+                            clazz.getSimpleName()),
+                    e);
+        }
+    }
+
+    private static Number toNumber(long value) {
+        if (value == (int) value) {
+            return (int) value;
+        }
+        return value;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[(int) readVarLong(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a zig-zag encoded variable length integer, seven bits per byte.
+     */
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        long encoded = (value << 1) ^ (value >> 63);
+        while ((encoded & ~0x7FL) != 0) {
+            out.writeByte((int) ((encoded & 0x7F) | 0x80));
+            encoded >>>= 7;
+        }
+        out.writeByte((int) encoded);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long encoded = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            encoded |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (encoded >>> 1) ^ -(encoded & 1);
+            }
+        }
+        throw new EOFException("Malformed variable length integer");
+    }
+
+    /**
+     * Writes the values generated by the object mapper straight to the binary output, leaving out the detached
+     * top level fields.
+     */
+    private static final class BinaryGenerator extends GeneratorBase {
+        private final DataOutputStream out;
+        private final Set<String> detachFields;
+        private final Map<String, String> detached;
+        private final Map<String, Integer> fieldNames = new HashMap<>();
+        private int depth;
+        private String detaching;
+
+        BinaryGenerator(ObjectCodec codec, DataOutputStream out, Set<String> detachFields,
+                Map<String, String> detached) {
+            super(0, codec);
+            this.out = out;
+            this.detachFields = detachFields;
+            this.detached = detached;
+        }
+
+        @Override
+        public void writeStartObject() throws IOException {
+            writeStart("start an object");
+            _writeContext = _writeContext.createChildObjectContext();
+            out.writeByte(START_OBJECT);
+        }
+
+        @Override
+        public void writeEndObject() throws IOException {
+            if (!_writeContext.inObject()) {
+                _reportError("Current context not an object");
+            }
+            _writeContext = _writeContext.getParent();
+            depth--;
+            out.writeByte(END_OBJECT);
+        }
+
+        @Override
+        public void writeStartArray() throws IOException {
+            writeStart("start an array");
+            _writeContext = _writeContext.createChildArrayContext();
+            out.writeByte(START_ARRAY);
+        }
+
+        @Override
+        public void writeEndArray() throws IOException {
+            if (!_writeContext.inArray()) {
+                _reportError("Current context not an array");
+            }
+            _writeContext = _writeContext.getParent();
+            depth--;
+            out.writeByte(END_ARRAY);
+        }
+
+        private void writeStart(String typeMsg) throws IOException {
+            _verifyValueWrite(typeMsg);
+            if (detaching != null) {
+                throw new IllegalStateException("Cannot detach non scalar field " + detaching);
+            }
+            depth++;
+        }
+
+        @Override
+        public void writeFieldName(String name) throws IOException {
+            if (_writeContext.writeFieldName(name) == JsonWriteContext.STATUS_EXPECT_VALUE) {
+                _reportError("Can not write a field name, expecting a value");
+            }
+            if (depth == 1 && detachFields.contains(name)) {
+                detaching = name;
+                return;
+            }
+            Integer reference = fieldNames.get(name);
+            if (reference != null) {
+                out.writeByte(FIELD_REFERENCE);
+                writeVarLong(out, reference);
+            } else {
+                fieldNames.put(name, fieldNames.size());
+                out.writeByte(FIELD_NAME);
+                BinarySerialisation.writeString(out, name);
+            }
+        }
+
+        /**
+         * Checks that a scalar value may be written, and places it in the detached fields if it is the value of
+         * one.
+         *
+         * @return True if the value was detached rather than written.
+         */
+        private boolean detachValue(String typeMsg, String value) throws IOException {
+            _verifyValueWrite(typeMsg);
+            return detachValue(value);
+        }
+
+        private boolean detachValue(String value) {
+            if (detaching == null) {
+                return false;
+            }
+            detached.put(detaching, value);
+            detaching = null;
+            return true;
+        }
+
+        @Override
+        public void writeString(String text) throws IOException {
+            if (text == null) {
+                writeNull();
+            } else if (!detachValue("write a string", text)) {
+                out.writeByte(STRING);
+                BinarySerialisation.writeString(out, text);
+            }
+        }
+
+        @Override
+        public void writeString(char[] text, int offset, int len) throws IOException {
+            writeString(new String(text, offset, len));
+        }
+
+        @Override
+        public void writeRawUTF8String(byte[] text, int offset, int length) throws IOException {
+            writeString(new String(text, offset, length, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void writeUTF8String(byte[] text, int offset, int length) throws IOException {
+            writeString(new String(text, offset, length, StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Raw content has no meaning in the binary format, so it is written as a string value. The value write is
+         * verified by {@link #writeRawValue(String)} before it delegates here.
+         */
+        @Override
+        public void writeRaw(String text) throws IOException {
+            if (!detachValue(text)) {
+                out.writeByte(STRING);
+                BinarySerialisation.writeString(out, text);
+            }
+        }
+
+        @Override
+        public void writeRaw(String text, int offset, int len) throws IOException {
+            writeRaw(text.substring(offset, offset + len));
+        }
+
+        @Override
+        public void writeRaw(char[] text, int offset, int len) throws IOException {
+            writeRaw(new String(text, offset, len));
+        }
+
+        @Override
+        public void writeRaw(char c) throws IOException {
+            writeRaw(String.valueOf(c));
+        }
+
+        @Override
+        public void writeBinary(Base64Variant variant, byte[] data, int offset, int len) throws IOException {
+            _verifyValueWrite("write a binary value");
+            if (detaching != null) {
+                throw new IllegalStateException("Cannot detach non scalar field " + detaching);
+            }
+            out.writeByte(BINARY);
+            writeVarLong(out, len);
+            out.write(data, offset, len);
+        }
+
+        @Override
+        public void writeNumber(int value) throws IOException {
+            writeNumber((long) value);
+        }
+
+        @Override
+        public void writeNumber(long value) throws IOException {
+            if (!detachValue("write a number", String.valueOf(value))) {
+                out.writeByte(INTEGER);
+                writeVarLong(out, value);
+            }
+        }
+
+        @Override
+        public void writeNumber(BigInteger value) throws IOException {
+            if (value == null) {
+                writeNull();
+            } else if (!detachValue("write a number", value.toString())) {
+                out.writeByte(BIG_INTEGER);
+                BinarySerialisation.writeString(out, value.toString());
+            }
+        }
+
+        @Override
+        public void writeNumber(double value) throws IOException {
+            if (!detachValue("write a number", String.valueOf(value))) {
+                out.writeByte(DOUBLE);
+                out.writeDouble(value);
+            }
+        }
+
+        @Override
+        public void writeNumber(float value) throws IOException {
+            writeNumber((double) value);
+        }
+
+        @Override
+        public void writeNumber(BigDecimal value) throws IOException {
+            if (value == null) {
+                writeNull();
+            } else {
+                writeNumber(value.toString());
+            }
+        }
+
+        @Override
+        public void writeNumber(String encodedValue) throws IOException {
+            if (!detachValue("write a number", encodedValue)) {
+                out.writeByte(BIG_DECIMAL);
+                BinarySerialisation.writeString(out, encodedValue);
+            }
+        }
+
+        @Override
+        public void writeBoolean(boolean state) throws IOException {
+            if (!detachValue("write a boolean value", String.valueOf(state))) {
+                out.writeByte(state ? TRUE : FALSE);
+            }
+        }
+
+        @Override
+        public void writeNull() throws IOException {
+            if (!detachValue("write a null", null)) {
+                out.writeByte(NULL);
+            }
+        }
+
+        @Override
+        protected void _verifyValueWrite(String typeMsg) throws IOException {
+            if (_writeContext.writeValue() == JsonWriteContext.STATUS_EXPECT_NAME) {
+                _reportError("Can not " + typeMsg + ", expecting field name");
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        protected void _releaseBuffers() {
+            // no buffers
+        }
+    }
+
+    /**
+     * Reads the values for the object mapper straight from the binary input, adding the attached top level
+     * fields to the outermost object.
+     */
+    private static final class BinaryParser extends ParserMinimalBase {
+        private final DataInputStream in;
+        private final Map<String, String> attachFields;
+        private final List<String> fieldNames = new ArrayList<>();
+        private ObjectCodec codec;
+        private Context context = Context.createRootContext();
+        private Iterator<Map.Entry<String, String>> attaching;
+        private String attachedValue;
+        private String text;
+        private Number number;
+        private byte[] binary;
+        private boolean complete;
+        private boolean closed;
+
+        BinaryParser(ObjectCodec codec, DataInputStream in, Map<String, String> attachFields) {
+            this.codec = codec;
+            this.in = in;
+            this.attachFields = attachFields;
+        }
+
+        @Override
+        public JsonToken nextToken() throws IOException {
+            if (closed || complete) {
+                return _currToken = null;
+            }
+            if (attachedValue != null) {
+                return _currToken = attachedValue();
+            }
+            if (attaching != null && attaching.hasNext()) {
+                Map.Entry<String, String> field = attaching.next();
+                context.currentName = field.getKey();
+                attachedValue = field.getValue();
+                return _currToken = JsonToken.FIELD_NAME;
+            }
+            attaching = null;
+
+            _currToken = readToken();
+            // nothing follows the root value
+            complete = context.inRoot();
+            return _currToken;
+        }
+
+        private JsonToken readToken() throws IOException {
+            byte tag = in.readByte();
+            switch (tag) {
+            case START_OBJECT:
+                if (context.inRoot()) {
+                    attaching = attachFields.entrySet().iterator();
+                }
+                context = context.createChildObjectContext();
+                return JsonToken.START_OBJECT;
+            case END_OBJECT:
+                context = context.getParent();
+                return JsonToken.END_OBJECT;
+            case START_ARRAY:
+                context = context.createChildArrayContext();
+                return JsonToken.START_ARRAY;
+            case END_ARRAY:
+                context = context.getParent();
+                return JsonToken.END_ARRAY;
+            case FIELD_NAME:
+                context.currentName = BinarySerialisation.readString(in);
+                fieldNames.add(context.currentName);
+                return JsonToken.FIELD_NAME;
+            case FIELD_REFERENCE:
+                context.currentName = fieldNames.get((int) readVarLong(in));
+                return JsonToken.FIELD_NAME;
+            case STRING:
+                text = BinarySerialisation.readString(in);
+                return JsonToken.VALUE_STRING;
+            case INTEGER:
+                number = toNumber(readVarLong(in));
+                return JsonToken.VALUE_NUMBER_INT;
+            case DOUBLE:
+                number = in.readDouble();
+                return JsonToken.VALUE_NUMBER_FLOAT;
+            case TRUE:
+                return JsonToken.VALUE_TRUE;
+            case FALSE:
+                return JsonToken.VALUE_FALSE;
+            case NULL:
+                return JsonToken.VALUE_NULL;
+            case BIG_INTEGER:
+                number = new BigInteger(BinarySerialisation.readString(in));
+                return JsonToken.VALUE_NUMBER_INT;
+            case BIG_DECIMAL:
+                number = new BigDecimal(BinarySerialisation.readString(in));
+                return JsonToken.VALUE_NUMBER_FLOAT;
+            case BINARY:
+                binary = new byte[(int) readVarLong(in)];
+                in.readFully(binary);
+                return JsonToken.VALUE_EMBEDDED_OBJECT;
+            default:
+                throw new IOException("Unknown tag " + tag);
+            }
+        }
+
+        private JsonToken attachedValue() {
+            String value = attachedValue;
+            attachedValue = null;
+            try {
+                number = toNumber(Long.parseLong(value));
+                return JsonToken.VALUE_NUMBER_INT;
+            } catch (NumberFormatException e) {
+                text = value;
+                return JsonToken.VALUE_STRING;
+            }
+        }
+
+        @Override
+        protected void _handleEOF() {
+            // the end of the input is never reached by a complete value
+        }
+
+        @Override
+        public String getCurrentName() {
+            if (_currToken == JsonToken.START_OBJECT || _currToken == JsonToken.START_ARRAY) {
+                return context.getParent().currentName;
+            }
+            return context.currentName;
+        }
+
+        @Override
+        public void overrideCurrentName(String name) {
+            context.currentName = name;
+        }
+
+        @Override
+        public JsonStreamContext getParsingContext() {
+            return context;
+        }
+
+        @Override
+        public String getText() {
+            if (_currToken == null) {
+                return null;
+            }
+            switch (_currToken) {
+            case FIELD_NAME:
+                return getCurrentName();
+            case VALUE_STRING:
+                return text;
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return number.toString();
+            default:
+                return _currToken.asString();
+            }
+        }
+
+        @Override
+        public char[] getTextCharacters() {
+            String value = getText();
+            return value == null ? null : value.toCharArray();
+        }
+
+        @Override
+        public boolean hasTextCharacters() {
+            return false;
+        }
+
+        @Override
+        public int getTextLength() {
+            String value = getText();
+            return value == null ? 0 : value.length();
+        }
+
+        @Override
+        public int getTextOffset() {
+            return 0;
+        }
+
+        @Override
+        public byte[] getBinaryValue(Base64Variant variant) throws IOException {
+            if (_currToken == JsonToken.VALUE_STRING) {
+                return variant.decode(text);
+            }
+            if (_currToken != JsonToken.VALUE_EMBEDDED_OBJECT) {
+                _reportError("Current token (" + _currToken + ") not a binary value");
+            }
+            return binary;
+        }
+
+        @Override
+        public Object getEmbeddedObject() {
+            return _currToken == JsonToken.VALUE_EMBEDDED_OBJECT ? binary : null;
+        }
+
+        @Override
+        public Number getNumberValue() {
+            return number;
+        }
+
+        @Override
+        public NumberType getNumberType() {
+            if (number instanceof Integer) {
+                return NumberType.INT;
+            } else if (number instanceof Long) {
+                return NumberType.LONG;
+            } else if (number instanceof BigInteger) {
+                return NumberType.BIG_INTEGER;
+            } else if (number instanceof BigDecimal) {
+                return NumberType.BIG_DECIMAL;
+            }
+            return NumberType.DOUBLE;
+        }
+
+        @Override
+        public int getIntValue() {
+            return number.intValue();
+        }
+
+        @Override
+        public long getLongValue() {
+            return number.longValue();
+        }
+
+        @Override
+        public BigInteger getBigIntegerValue() {
+            if (number instanceof BigInteger) {
+                return (BigInteger) number;
+            } else if (number instanceof BigDecimal) {
+                return ((BigDecimal) number).toBigInteger();
+            }
+            return BigInteger.valueOf(number.longValue());
+        }
+
+        @Override
+        public float getFloatValue() {
+            return number.floatValue();
+        }
+
+        @Override
+        public double getDoubleValue() {
+            return number.doubleValue();
+        }
+
+        @Override
+        public BigDecimal getDecimalValue() {
+            if (number instanceof BigDecimal) {
+                return (BigDecimal) number;
+            } else if (number instanceof BigInteger) {
+                return new BigDecimal((BigInteger) number);
+            } else if (number instanceof Double) {
+                return BigDecimal.valueOf(number.doubleValue());
+            }
+            return BigDecimal.valueOf(number.longValue());
+        }
+
+        @Override
+        public ObjectCodec getCodec() {
+            return codec;
+        }
+
+        @Override
+        public void setCodec(ObjectCodec codec) {
+            this.codec = codec;
+        }
+
+        @Override
+        public Version version() {
+            return Version.unknownVersion();
+        }
+
+        @Override
+        public JsonLocation getCurrentLocation() {
+            return JsonLocation.NA;
+        }
+
+        @Override
+        public JsonLocation getTokenLocation() {
+            return JsonLocation.NA;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return closed;
+        }
+    }
+
+    /**
+     * The object or array the parser is in.
+     */
+    private static final class Context extends JsonStreamContext {
+        private final Context parent;
+        private String currentName;
+
+        private Context(Context parent, int type) {
+            this.parent = parent;
+            this._type = type;
+            this._index = -1;
+        }
+
+        static Context createRootContext() {
+            return new Context(null, TYPE_ROOT);
+        }
+
+        Context createChildObjectContext() {
+            return new Context(this, TYPE_OBJECT);
+        }
+
+        Context createChildArrayContext() {
+            return new Context(this, TYPE_ARRAY);
+        }
+
+        @Override
+        public Context getParent() {
+            return parent;
+        }
+
+        @Override
+        public String getCurrentName() {
+            return currentName;
+        }
+    }
+}
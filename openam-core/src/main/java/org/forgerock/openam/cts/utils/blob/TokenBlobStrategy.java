@@ -16,6 +16,8 @@
 package org.forgerock.openam.cts.utils.blob;
 
 import org.forgerock.openam.cts.CoreTokenConfig;
+import org.forgerock.openam.tokens.TokenType;
+import org.forgerock.openam.utils.ConfigListener;
 
 import javax.inject.Inject;
 import java.util.ArrayList;
@@ -23,6 +25,8 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Responsible for selecting the appropriate algorithm for dealing with Token binary objects
@@ -31,13 +35,25 @@ import java.util.List;
 public class TokenBlobStrategy {
     private final Collection<BlobStrategy> strategies;
     private final List<BlobStrategy> reverseStrategies;
+    private final ConcurrentMap<TokenType, Collection<BlobStrategy>> tokenTypeStrategies = new ConcurrentHashMap<>();
+    private final TokenStrategyFactory factory;
+    private final CoreTokenConfig config;
 
     @Inject
     public TokenBlobStrategy(TokenStrategyFactory factory, CoreTokenConfig config) {
+        this.factory = factory;
+        this.config = config;
         strategies = factory.getStrategies(config);
         // Reverse list.
         reverseStrategies = new ArrayList<BlobStrategy>(strategies);
         Collections.reverse(reverseStrategies);
+        // The compression codec of each Token type may be reconfigured at runtime.
+        config.addListener(new ConfigListener() {
+            @Override
+            public void configChanged() {
+                tokenTypeStrategies.clear();
+            }
+        });
     }
 
     /**
@@ -52,6 +68,30 @@ public class TokenBlobStrategy {
         return apply(strategies, true, data);
     }
 
+    /**
+     * Perform the strategies configured for the given type of Token on the byte array.
+     *
+     * Only the forward direction depends on the Token type: the output of each strategy can be
+     * reversed by {@link #reverse(byte[])} regardless of the Token type it was performed for.
+     *
+     * @param type The type of the Token the data belongs to. If null the default strategies are used.
+     * @param data A possibly null byte[] to perform the strategy on.
+     * @return A modified copy of the byte[] or null if data was null.
+     *
+     * @throws TokenStrategyFailedException If an error occurred whilst processing the Token.
+     */
+    public byte[] perform(TokenType type, byte[] data) throws TokenStrategyFailedException {
+        if (type == null) {
+            return perform(data);
+        }
+        Collection<BlobStrategy> typeStrategies = tokenTypeStrategies.get(type);
+        if (typeStrategies == null) {
+            typeStrategies = factory.getStrategies(config, type);
+            tokenTypeStrategies.putIfAbsent(type, typeStrategies);
+        }
+        return apply(typeStrategies, true, data);
+    }
+
     /**
      * Performs the reverse strategy on the byte array.
      *
@@ -16,14 +16,24 @@
 package org.forgerock.openam.cts.utils.blob;
 
 import javax.inject.Inject;
+import javax.inject.Named;
+
 import org.forgerock.openam.cts.CoreTokenConfig;
+import org.forgerock.openam.cts.api.CoreTokenConstants;
 import org.forgerock.openam.cts.utils.blob.strategies.AttributeCompressionStrategy;
 import org.forgerock.openam.cts.utils.blob.strategies.CompressionStrategy;
 import org.forgerock.openam.cts.utils.blob.strategies.EncryptionStrategy;
+import org.forgerock.openam.cts.utils.blob.strategies.compression.CompressionCodec;
+import org.forgerock.openam.tokens.TokenType;
+
+import com.sun.identity.shared.debug.Debug;
 
+import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Responsible for providing BlobStrategy implementations based on the CoreTokenConfig.
@@ -34,13 +44,17 @@ public class TokenStrategyFactory {
     private final CompressionStrategy compression;
     private final EncryptionStrategy encryption;
     private final AttributeCompressionStrategy attributeCompression;
+    private final ConcurrentMap<String, CompressionStrategy> codecCompression = new ConcurrentHashMap<>();
+    private final Debug debug;
 
     @Inject
     public TokenStrategyFactory(CompressionStrategy compression, EncryptionStrategy encryption,
-                                AttributeCompressionStrategy attributeCompression) {
+                                AttributeCompressionStrategy attributeCompression,
+                                @Named(CoreTokenConstants.CTS_DEBUG) Debug debug) {
         this.compression = compression;
         this.encryption = encryption;
         this.attributeCompression = attributeCompression;
+        this.debug = debug;
     }
 
     /**
@@ -51,6 +65,43 @@ public class TokenStrategyFactory {
      * @return A collection of BlobStrategies based on the provided CoreTokenConfig.
      */
     public Collection<BlobStrategy> getStrategies(CoreTokenConfig config) {
+        return buildStrategies(config, compression);
+    }
+
+    /**
+     * Strategy patten decision point which allows us at runtime to determine the
+     * required BlobStrategies for a particular type of Token. The compression codec
+     * may be configured separately for each type of Token. An unknown codec is reported
+     * and the default codec used instead.
+     *
+     * @param config A CoreTokenConfig to determine the appropriate strategies.
+     * @param type The non null type of Token the strategies will be applied to.
+     * @return A collection of BlobStrategies based on the provided CoreTokenConfig.
+     */
+    public Collection<BlobStrategy> getStrategies(CoreTokenConfig config, TokenType type) {
+        return buildStrategies(config, getCompression(config.getCompressionCodec(type), type));
+    }
+
+    private CompressionStrategy getCompression(String codecName, TokenType type) {
+        if (codecName == null || codecName.equals(compression.getCodec().getName())) {
+            return compression;
+        }
+        CompressionStrategy strategy = codecCompression.get(codecName);
+        if (strategy == null) {
+            CompressionCodec codec = CompressionStrategy.getCodec(codecName);
+            if (codec == null) {
+                debug.error(MessageFormat.format(
+                        CoreTokenConstants.DEBUG_HEADER + "Unknown compression codec {0} for {1} Tokens, using {2}",
+                        codecName, type, compression.getCodec().getName()));
+                return compression;
+            }
+            strategy = new CompressionStrategy(codec);
+            codecCompression.putIfAbsent(codecName, strategy);
+        }
+        return strategy;
+    }
+
+    private Collection<BlobStrategy> buildStrategies(CoreTokenConfig config, CompressionStrategy compression) {
         List<BlobStrategy> strategies = new ArrayList<BlobStrategy>();
         if (config.isAttributeNamesCompressed()) {
             strategies.add(attributeCompression);
@@ -21,6 +21,10 @@ package org.forgerock.openam.cts.utils.blob;
  * @author robert.wapshott@forgerock.com
  */
 public class TokenStrategyFailedException extends Exception {
+    public TokenStrategyFailedException(String error) {
+        super(error);
+    }
+
     public TokenStrategyFailedException(Throwable e) {
         super(e);
     }
@@ -11,26 +11,81 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2013-2014 ForgeRock AS.
+ * Copyright 2013-2016 ForgeRock AS.
  */
 package org.forgerock.openam.cts.utils.blob.strategies;
 
-import org.apache.commons.io.IOUtils;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
 import org.forgerock.openam.cts.utils.blob.BlobStrategy;
 import org.forgerock.openam.cts.utils.blob.TokenStrategyFailedException;
+import org.forgerock.openam.cts.utils.blob.strategies.compression.CompressionCodec;
+import org.forgerock.openam.cts.utils.blob.strategies.compression.DeflateCompressionCodec;
+import org.forgerock.openam.cts.utils.blob.strategies.compression.GZipCompressionCodec;
 import org.forgerock.util.Reject;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
-
 /**
- * Responsible for compressing the binary object of Tokens using a GZip compression.
+ * Responsible for compressing the binary object of Tokens using a {@link CompressionCodec}.
+ *
+ * GZip compression is used by default. Compressed data is self-describing, so data compressed by
+ * any of the known codecs can be decompressed regardless of the codec this strategy compresses with.
  */
 public class CompressionStrategy implements BlobStrategy {
 
+    private static final Map<String, CompressionCodec> CODECS_BY_NAME;
+    private static final Map<Byte, CompressionCodec> CODECS_BY_HEADER;
+
+    static {
+        Map<String, CompressionCodec> byName = new HashMap<>();
+        Map<Byte, CompressionCodec> byHeader = new HashMap<>();
+        for (CompressionCodec codec : new CompressionCodec[] {
+                new GZipCompressionCodec(), new DeflateCompressionCodec()}) {
+            byName.put(codec.getName(), codec);
+            byHeader.put(codec.getHeader(), codec);
+        }
+        CODECS_BY_NAME = Collections.unmodifiableMap(byName);
+        CODECS_BY_HEADER = Collections.unmodifiableMap(byHeader);
+    }
+
+    private final CompressionCodec codec;
+
+    /**
+     * Creates a strategy which compresses using GZip.
+     */
+    public CompressionStrategy() {
+        this(CODECS_BY_NAME.get(GZipCompressionCodec.NAME));
+    }
+
+    /**
+     * Creates a strategy which compresses using the given codec.
+     *
+     * @param codec Non null codec to compress with.
+     */
+    public CompressionStrategy(CompressionCodec codec) {
+        Reject.ifNull(codec);
+        this.codec = codec;
+    }
+
+    /**
+     * Looks up one of the known codecs by its configured name.
+     *
+     * @param name The codec name, for example {@code gzip} or {@code deflate}.
+     * @return The codec, or null if no codec is known by that name.
+     */
+    public static CompressionCodec getCodec(String name) {
+        return CODECS_BY_NAME.get(name);
+    }
+
+    /**
+     * @return The non null codec this strategy compresses with.
+     */
+    public CompressionCodec getCodec() {
+        return codec;
+    }
+
     /**
      * Compress the Tokens binary object.
      *
@@ -41,20 +96,15 @@ public class CompressionStrategy implements BlobStrategy {
     @Override
     public byte[] perform(byte[] blob) throws TokenStrategyFailedException {
         Reject.ifNull(blob);
-        final ByteArrayOutputStream bout = new ByteArrayOutputStream(blob.length);
         try {
-            final GZIPOutputStream out = new GZIPOutputStream(bout);
-            out.write(blob);
-            out.flush();
-            out.close();
+            return codec.compress(blob);
         } catch (IOException e) {
             throw new TokenStrategyFailedException(e);
         }
-        return bout.toByteArray();
     }
 
     /**
-     * Decompress the Tokens binary object.
+     * Decompress the Tokens binary object, using the codec identified by its first byte.
      *
      * @param blob Non null Token to modify.
      *
@@ -63,15 +113,14 @@ public class CompressionStrategy implements BlobStrategy {
     @Override
     public byte[] reverse(byte[] blob) throws TokenStrategyFailedException {
         Reject.ifNull(blob);
-        final int lengthGuess = blob.length * 2;
-        final ByteArrayOutputStream bout = new ByteArrayOutputStream(lengthGuess);
+        CompressionCodec decompressor = blob.length == 0 ? null : CODECS_BY_HEADER.get(blob[0]);
+        if (decompressor == null) {
+            throw new TokenStrategyFailedException("Token blob was not compressed by a known codec");
+        }
         try {
-            GZIPInputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(blob));
-            IOUtils.copy(inputStream, bout);
-            inputStream.close();
+            return decompressor.decompress(blob);
         } catch (IOException e) {
             throw new TokenStrategyFailedException(e);
         }
-        return bout.toByteArray();
     }
 }
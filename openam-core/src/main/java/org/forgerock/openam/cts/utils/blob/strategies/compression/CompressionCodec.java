@@ -0,0 +1,56 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.cts.utils.blob.strategies.compression;
+
+import java.io.IOException;
+
+/**
+ * A compression algorithm that can be applied to the binary object of Tokens.
+ *
+ * The output of each codec is self-describing: the first byte of the compressed data
+ * identifies the codec which produced it, so that the data can be decompressed without
+ * knowing which codec was configured at the time it was written.
+ */
+public interface CompressionCodec {
+
+    /**
+     * @return The unique, non null name used to select this codec in configuration.
+     */
+    String getName();
+
+    /**
+     * @return The first byte of all data compressed by this codec.
+     */
+    byte getHeader();
+
+    /**
+     * Compress the data. The result must start with the {@link #getHeader() header byte}.
+     *
+     * @param data Non null data to compress.
+     * @return Non null compressed data.
+     * @throws IOException If the data could not be compressed.
+     */
+    byte[] compress(byte[] data) throws IOException;
+
+    /**
+     * Decompress data previously compressed by this codec, including its header byte.
+     *
+     * @param data Non null compressed data.
+     * @return Non null decompressed data.
+     * @throws IOException If the data could not be decompressed.
+     */
+    byte[] decompress(byte[] data) throws IOException;
+}
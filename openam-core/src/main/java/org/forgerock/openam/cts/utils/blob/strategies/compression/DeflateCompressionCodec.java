@@ -0,0 +1,97 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.cts.utils.blob.strategies.compression;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses data using Deflate, in the zlib format, at the fastest compression level.
+ *
+ * Compared to {@link GZipCompressionCodec} this trades a slightly larger output for
+ * considerably less CPU time, and replaces the GZip CRC-32 with the cheaper Adler-32 checksum.
+ */
+public class DeflateCompressionCodec implements CompressionCodec {
+
+    /**
+     * The name of this codec.
+     */
+    public static final String NAME = "deflate";
+
+    /**
+     * The header byte prefixed to all data compressed by this codec.
+     */
+    public static final byte HEADER = (byte) 0x01;
+
+    private static final int BUFFER_SIZE = 1024;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte getHeader() {
+        return HEADER;
+    }
+
+    @Override
+    public byte[] compress(byte[] data) throws IOException {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream bout = new ByteArrayOutputStream(data.length / 2 + 1);
+            bout.write(HEADER);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                bout.write(buffer, 0, count);
+            }
+            return bout.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Override
+    public byte[] decompress(byte[] data) throws IOException {
+        if (data.length == 0 || data[0] != HEADER) {
+            throw new IOException("Data was not compressed with the " + NAME + " codec");
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, 1, data.length - 1);
+            ByteArrayOutputStream bout = new ByteArrayOutputStream(data.length * 2);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Compressed data was truncated");
+                }
+                bout.write(buffer, 0, count);
+            }
+            return bout.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException("Compressed data was invalid", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
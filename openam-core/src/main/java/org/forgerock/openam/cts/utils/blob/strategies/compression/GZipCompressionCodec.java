@@ -0,0 +1,73 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.cts.utils.blob.strategies.compression;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Compresses data using the GZip format.
+ *
+ * The GZip format already starts with a fixed magic number, so no additional header is added.
+ * This keeps the output identical to Token blobs written before compression codecs were
+ * selectable.
+ */
+public class GZipCompressionCodec implements CompressionCodec {
+
+    /**
+     * The name of this codec.
+     */
+    public static final String NAME = "gzip";
+
+    /**
+     * The first byte of the GZip magic number.
+     */
+    public static final byte HEADER = (byte) 0x1f;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte getHeader() {
+        return HEADER;
+    }
+
+    @Override
+    public byte[] compress(byte[] data) throws IOException {
+        final ByteArrayOutputStream bout = new ByteArrayOutputStream(data.length);
+        final GZIPOutputStream out = new GZIPOutputStream(bout);
+        out.write(data);
+        out.flush();
+        out.close();
+        return bout.toByteArray();
+    }
+
+    @Override
+    public byte[] decompress(byte[] data) throws IOException {
+        final ByteArrayOutputStream bout = new ByteArrayOutputStream(data.length * 2);
+        GZIPInputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(data));
+        IOUtils.copy(inputStream, bout);
+        inputStream.close();
+        return bout.toByteArray();
+    }
+}
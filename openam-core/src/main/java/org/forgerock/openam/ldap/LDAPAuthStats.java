@@ -0,0 +1,166 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.ldap;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.sun.identity.shared.debug.Debug;
+
+/**
+ * Collects the latency of the search and bind phases of the LDAP authentications, and the efficiency of the user DN
+ * cache that lets both phases run concurrently.
+ */
+final class LDAPAuthStats implements LDAPAuthStatsMXBean {
+
+    private static final String OBJECT_NAME = "OpenAM:type=LDAPAuthentication";
+
+    private final Latency search = new Latency();
+    private final Latency bind = new Latency();
+    private final AtomicLong dnCacheHits = new AtomicLong();
+    private final AtomicLong dnCacheMisses = new AtomicLong();
+    private final AtomicLong dnCacheInvalidations = new AtomicLong();
+
+    void recordSearch(long nanos) {
+        search.record(nanos);
+    }
+
+    void recordBind(long nanos) {
+        bind.record(nanos);
+    }
+
+    void recordDNCacheHit() {
+        dnCacheHits.incrementAndGet();
+    }
+
+    void recordDNCacheMiss() {
+        dnCacheMisses.incrementAndGet();
+    }
+
+    void recordDNCacheInvalidation() {
+        dnCacheInvalidations.incrementAndGet();
+    }
+
+    @Override
+    public long getSearchCount() {
+        return search.count.get();
+    }
+
+    @Override
+    public double getAverageSearchTime() {
+        return search.getAverageMillis();
+    }
+
+    @Override
+    public double getMaxSearchTime() {
+        return search.getMaxMillis();
+    }
+
+    @Override
+    public long getBindCount() {
+        return bind.count.get();
+    }
+
+    @Override
+    public double getAverageBindTime() {
+        return bind.getAverageMillis();
+    }
+
+    @Override
+    public double getMaxBindTime() {
+        return bind.getMaxMillis();
+    }
+
+    @Override
+    public long getDNCacheHitCount() {
+        return dnCacheHits.get();
+    }
+
+    @Override
+    public long getDNCacheMissCount() {
+        return dnCacheMisses.get();
+    }
+
+    @Override
+    public long getDNCacheInvalidationCount() {
+        return dnCacheInvalidations.get();
+    }
+
+    @Override
+    public void reset() {
+        search.reset();
+        bind.reset();
+        dnCacheHits.set(0);
+        dnCacheMisses.set(0);
+        dnCacheInvalidations.set(0);
+    }
+
+    /**
+     * Registers these statistics with the platform MBean server.
+     *
+     * @param debug The debug instance to report registration failures to.
+     */
+    void registerMBean(Debug debug) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            debug.warning("LDAPAuthStats.registerMBean(): could not register MBean " + OBJECT_NAME, e);
+        } catch (SecurityException e) {
+            debug.warning("LDAPAuthStats.registerMBean(): could not register MBean " + OBJECT_NAME, e);
+        }
+    }
+
+    private static final class Latency {
+
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+        }
+
+        double getAverageMillis() {
+            long samples = count.get();
+            return samples == 0 ? 0 : (double) totalNanos.get() / samples / TimeUnit.MILLISECONDS.toNanos(1);
+        }
+
+        double getMaxMillis() {
+            return (double) maxNanos.get() / TimeUnit.MILLISECONDS.toNanos(1);
+        }
+
+        void reset() {
+            count.set(0);
+            totalNanos.set(0);
+            maxNanos.set(0);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.ldap;
+
+/**
+ * Exposes the per-phase statistics of the LDAP authentications performed by {@link LDAPAuthUtils} to a JMX client
+ * such as visualVM or JConsole.
+ */
+public interface LDAPAuthStatsMXBean {
+
+    /**
+     * Returns the number of user searches performed.
+     *
+     * @return the number of searches.
+     */
+    long getSearchCount();
+
+    /**
+     * Returns the average time taken by a user search, in milliseconds.
+     *
+     * @return the average search time.
+     */
+    double getAverageSearchTime();
+
+    /**
+     * Returns the longest time taken by a user search, in milliseconds.
+     *
+     * @return the maximum search time.
+     */
+    double getMaxSearchTime();
+
+    /**
+     * Returns the number of user binds performed.
+     *
+     * @return the number of binds.
+     */
+    long getBindCount();
+
+    /**
+     * Returns the average time taken by a user bind, in milliseconds.
+     *
+     * @return the average bind time.
+     */
+    double getAverageBindTime();
+
+    /**
+     * Returns the longest time taken by a user bind, in milliseconds.
+     *
+     * @return the maximum bind time.
+     */
+    double getMaxBindTime();
+
+    /**
+     * Returns the number of authentications whose bind was sent along with the search, the user DN being cached.
+     *
+     * @return the number of user DN cache hits.
+     */
+    long getDNCacheHitCount();
+
+    /**
+     * Returns the number of authentications whose bind had to wait for the search, the user DN not being cached.
+     *
+     * @return the number of user DN cache misses.
+     */
+    long getDNCacheMissCount();
+
+    /**
+     * Returns the number of cached user DNs dropped as the search found another DN or the bind failed.
+     *
+     * @return the number of user DN cache invalidations.
+     */
+    long getDNCacheInvalidationCount();
+
+    /**
+     * Resets all the statistics.
+     */
+    void reset();
+}
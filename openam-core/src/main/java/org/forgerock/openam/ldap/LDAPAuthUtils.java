@@ -35,6 +35,7 @@ import static org.forgerock.openam.ldap.LDAPUtils.newFailoverConnectionPool;
 import static org.forgerock.openam.utils.CollectionUtils.asList;
 import static org.forgerock.opendj.ldap.LDAPConnectionFactory.*;
 
+import com.iplanet.am.util.SystemProperties;
 import com.iplanet.sso.SSOToken;
 import com.sun.identity.authentication.util.ISAuthConstants;
 import com.sun.identity.common.ShutdownManager;
@@ -91,7 +92,10 @@ import org.forgerock.opendj.ldap.responses.BindResult;
 import org.forgerock.opendj.ldap.responses.Result;
 import org.forgerock.opendj.ldap.responses.SearchResultEntry;
 import org.forgerock.opendj.ldif.ConnectionEntryReader;
+import org.forgerock.util.AsyncFunction;
 import org.forgerock.util.Options;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.Promises;
 import org.forgerock.util.thread.listener.ShutdownListener;
 import org.forgerock.util.time.Duration;
 
@@ -143,6 +147,13 @@ public class LDAPAuthUtils {
             "iplanet-am-auth-ldap-connection-pool-size";
     private final static String CONNECTION_POOL_DEFAULT_SIZE_ATTR =
             "iplanet-am-auth-ldap-connection-pool-default-size";
+    // the early bind may count a wrong password against an entry the search no longer returns, see UserDNCache
+    private final static String EARLY_BIND_PROPERTY = "org.forgerock.openam.ldap.auth.earlybind.enabled";
+    private final static String DN_CACHE_SIZE_PROPERTY = "org.forgerock.openam.ldap.auth.dncache.size";
+    private final static String DN_CACHE_TTL_PROPERTY = "org.forgerock.openam.ldap.auth.dncache.ttl";
+    private final static String BIND_POOL_SIZE_PROPERTY = "org.forgerock.openam.ldap.auth.bindpool.size";
+    private final static int DEFAULT_DN_CACHE_SIZE = 10000;
+    private final static long DEFAULT_DN_CACHE_TTL = 300;
     private final static String SPACE = " ";
     private final static String COLON = ":";
 
@@ -150,6 +161,11 @@ public class LDAPAuthUtils {
     private static int maxDefaultPoolSize = MAX_CONNECTION_POOL_SIZE;
     // contains host:port:min:max
     private static Set<String> poolSize = null;
+    // maximum size of the pools used for the user binds, overriding the configured size if positive
+    private static int bindPoolSize = 0;
+    // user DNs found by previous authentications, so that the bind can be sent along with the search
+    private static UserDNCache userDNCache = null;
+    private static final LDAPAuthStats stats = new LDAPAuthStats();
     private Set<String> userAttributes = new HashSet<String>();
     private Map<String, Set<String>> userAttributeValues = new HashMap<String, Set<String>>();
     private boolean isDynamicUserEnabled;
@@ -171,6 +187,15 @@ public class LDAPAuthUtils {
     static {
         Debug staticDebug = Debug.getInstance("amAuthLDAP");
 
+        int dnCacheSize = SystemProperties.getAsInt(DN_CACHE_SIZE_PROPERTY, DEFAULT_DN_CACHE_SIZE);
+        if (SystemProperties.getAsBoolean(EARLY_BIND_PROPERTY, false) && dnCacheSize > 0) {
+            userDNCache = new UserDNCache(dnCacheSize,
+                    TimeUnit.SECONDS.toMillis(SystemProperties.getAsLong(DN_CACHE_TTL_PROPERTY, DEFAULT_DN_CACHE_TTL)),
+                    stats);
+        }
+        bindPoolSize = SystemProperties.getAsInt(BIND_POOL_SIZE_PROPERTY, 0);
+        stats.registerMBean(staticDebug);
+
         SSOToken dUserToken;
 
         try {
@@ -264,7 +289,7 @@ public class LDAPAuthUtils {
     }
 
     private ConnectionFactory createConnectionPool(Map<String, ConnectionFactory> connectionPools,
-            String bindingUser, char[] bindingPwd) throws LdapException, LDAPUtilException {
+            String bindingUser, char[] bindingPwd, int maxPoolSize) throws LdapException, LDAPUtilException {
         ConnectionFactory connPool;
 
         try {
@@ -327,6 +352,10 @@ public class LDAPAuthUtils {
                             }
                         }
 
+                        if (maxPoolSize > 0) {
+                            max = maxPoolSize;
+                        }
+
                         if (debug.messageEnabled()) {
                             debug.message("LDAPAuthUtils.LDAPAuthUtils: min="
                                     + min + ", max=" + max);
@@ -393,15 +422,34 @@ public class LDAPAuthUtils {
 
         userId = user;
         userPassword = password;
+        String dnCacheKey = getDNCacheKey();
         //retry just once if connection was closing
         boolean shouldRetry = false;
         do {
             try {
-                searchForUser();
-                if (screenState == ModuleState.SERVER_DOWN || screenState == ModuleState.USER_NOT_FOUND) {
+                // if the user DN is cached the bind is sent right away, and only runs concurrently with the search:
+                // its outcome is used only if the search still finds the user at that DN
+                Promise<BindResult, LdapException> pendingBind;
+                if (dnCacheKey != null) {
+                    pendingBind = userDNCache.searchAndBind(dnCacheKey, directory);
+                } else {
+                    String dn = directory.searchForUser();
+                    pendingBind = dn == null ? null : bindAsync(dn);
+                }
+                if (pendingBind == null) {
                     return;
                 }
-                authenticate();
+                try {
+                    authenticate(pendingBind);
+                } catch (LDAPUtilException e) {
+                    if (dnCacheKey != null) {
+                        userDNCache.invalidate(dnCacheKey, userDN);
+                    }
+                    throw e;
+                }
+                if (dnCacheKey != null && screenState != ModuleState.SERVER_DOWN) {
+                    userDNCache.put(dnCacheKey, userDN);
+                }
                 shouldRetry = false;
             } catch (LDAPUtilException e) {
                 // cases for err=53
@@ -435,17 +483,92 @@ public class LDAPAuthUtils {
 
     }
 
+    /**
+     * Returns the key of the user DN cache for the user being authenticated, which identifies the servers and the
+     * search configuration as well, or <code>null</code> if the user DN cache is disabled.
+     */
+    private String getDNCacheKey() {
+        if (userDNCache == null || userId == null) {
+            return null;
+        }
+        return servers + ":" + authDN + ":" + baseDN + ":" + searchScope + ":" + searchFilter + ":" + userId;
+    }
+
+    /**
+     * The search and bind of the user, as run by {@link UserDNCache}.
+     */
+    private final UserDNCache.Directory directory = new UserDNCache.Directory() {
+        @Override
+        public String searchForUser() throws LDAPUtilException {
+            long searchStart = System.nanoTime();
+            try {
+                LDAPAuthUtils.this.searchForUser();
+            } finally {
+                stats.recordSearch(System.nanoTime() - searchStart);
+            }
+            if (screenState == ModuleState.SERVER_DOWN || screenState == ModuleState.USER_NOT_FOUND) {
+                return null;
+            }
+            return userDN;
+        }
+
+        @Override
+        public Promise<BindResult, LdapException> bindAsync(String dn) throws LDAPUtilException {
+            return LDAPAuthUtils.this.bindAsync(dn);
+        }
+    };
+
     /**
      * Returns connection from pool.  Re-authenticate if necessary
      *
      * @return connection that is available to use
      */
     private Connection getConnection() throws LdapException, LDAPUtilException {
+        return getConnectionPool().getConnection();
+    }
+
+    private ConnectionFactory getConnectionPool() throws LdapException, LDAPUtilException {
         if (cPool == null) {
-            cPool = createConnectionPool(connectionPools, null, null);
+            cPool = createConnectionPool(connectionPools, null, null, bindPoolSize);
+        }
+
+        return cPool;
+    }
+
+    /**
+     * Sends the bind request of the user on a connection from the bind pool, without waiting for its result. The
+     * connection is given back to the pool once the result is received.
+     *
+     * @param dn The DN of the user.
+     * @return The promise of the bind result.
+     */
+    private Promise<BindResult, LdapException> bindAsync(String dn) throws LDAPUtilException {
+        final BindRequest bindRequest = LDAPRequests.newSimpleBindRequest(dn, userPassword.toCharArray());
+
+        if (beheraEnabled) {
+            bindRequest.addControl(PasswordPolicyRequestControl.newControl(false));
+        }
+
+        final ConnectionFactory pool;
+        try {
+            pool = getConnectionPool();
+        } catch (LdapException ere) {
+            return Promises.newExceptionPromise(ere);
         }
 
-        return cPool.getConnection();
+        final long bindStart = System.nanoTime();
+        return pool.getConnectionAsync().thenAsync(new AsyncFunction<Connection, BindResult, LdapException>() {
+            @Override
+            public Promise<BindResult, LdapException> apply(final Connection conn) {
+                return conn.bindAsync(bindRequest).thenAlways(new Runnable() {
+                    @Override
+                    public void run() {
+                        conn.close();
+                        stats.recordBind(System.nanoTime() - bindStart);
+                    }
+                });
+            }
+        });
     }
 
     /**
@@ -454,7 +577,7 @@ public class LDAPAuthUtils {
      */
     private Connection getAdminConnection() throws LdapException, LDAPUtilException {
         if (acPool == null) {
-            acPool = createConnectionPool(adminConnectionPools, authDN, authPassword);
+            acPool = createConnectionPool(adminConnectionPools, authDN, authPassword, 0);
         }
 
         return acPool.getConnection();
@@ -826,31 +949,23 @@ public class LDAPAuthUtils {
     }
 
     /**
-     * Connect to LDAP server using parameters specified in
-     * constructor and/or by setting properties attempt to authenticate.
+     * Waits for the bind of the user to the LDAP server, sent using parameters specified in
+     * constructor and/or by setting properties, to complete.
      * checks for the password controls and  sets to the appropriate states
+     *
+     * @param pendingBind The bind sent with {@link #bindAsync(String)}.
      */
-    private void authenticate()
+    private void authenticate(Promise<BindResult, LdapException> pendingBind)
             throws LDAPUtilException {
-        Connection conn = null;
         List<Control> controls = null;
 
         try {
             try {
-                BindRequest bindRequest =
-                        LDAPRequests.newSimpleBindRequest(userDN, userPassword.toCharArray());
-
-                if (beheraEnabled) {
-                    bindRequest.addControl(PasswordPolicyRequestControl.newControl(false));
-                }
-
-                conn = getConnection();
-                BindResult bindResult = conn.bind(bindRequest);
+                BindResult bindResult = pendingBind.getOrThrow();
                 controls = processControls(bindResult);
-            } finally {
-                if (conn != null) {
-                    conn.close();
-                }
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new LDAPUtilException(ie);
             }
 
             // Were there any password policy controls returned?
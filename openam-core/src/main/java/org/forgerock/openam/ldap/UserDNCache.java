@@ -0,0 +1,132 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.ldap;
+
+import java.util.Map;
+
+import org.forgerock.openam.utils.collections.ConcurrentCache;
+import org.forgerock.opendj.ldap.LdapException;
+import org.forgerock.opendj.ldap.responses.BindResult;
+import org.forgerock.util.promise.Promise;
+
+/**
+ * Remembers the DNs of the users who authenticated successfully, so that the bind of their next login is sent right
+ * away and runs concurrently with the search for the user.
+ * <p>
+ * The search still decides whether the outcome of this early bind is used, but the bind reaches the directory before
+ * the search has confirmed the DN. When the search then no longer finds the user, or finds the user at another DN, a
+ * wrong password has already been counted as a failed login of the entry at the cached DN, for example in the Active
+ * Directory <code>badPwdCount</code> or the DS <code>pwdFailureTime</code> of an entry that the search filter now
+ * excludes or that now belongs to someone else. This is why the cache must be enabled explicitly.
+ */
+final class UserDNCache {
+
+    /**
+     * The operations of an authentication against the directory.
+     */
+    interface Directory {
+
+        /**
+         * Searches for the user being authenticated.
+         *
+         * @return The DN of the user, or <code>null</code> if the user could not be found.
+         * @throws LDAPUtilException If the search failed.
+         */
+        String searchForUser() throws LDAPUtilException;
+
+        /**
+         * Sends the bind of the user being authenticated, without waiting for its result.
+         *
+         * @param dn The DN to bind as.
+         * @return The promise of the bind result.
+         * @throws LDAPUtilException If the bind could not be sent.
+         */
+        Promise<BindResult, LdapException> bindAsync(String dn) throws LDAPUtilException;
+    }
+
+    private final Map<String, String> dns;
+    private final LDAPAuthStats stats;
+
+    /**
+     * Creates a cache holding at most <code>maxSize</code> user DNs.
+     *
+     * @param maxSize The maximum number of user DNs held.
+     * @param ttl The number of milliseconds during which a user DN is held.
+     * @param stats The statistics recording the cache hits, misses and invalidations.
+     */
+    UserDNCache(int maxSize, long ttl, LDAPAuthStats stats) {
+        this.dns = new ConcurrentCache<String, String>(maxSize, ttl);
+        this.stats = stats;
+    }
+
+    /**
+     * Searches for the user and sends the bind. If the DN of the user is cached, the bind to that DN is sent before
+     * the search and only used if the search finds the user at the same DN, otherwise the user is bound again at the
+     * DN found.
+     *
+     * @param key The key of the user, see {@link #put(String, String)}.
+     * @param directory The directory the user is authenticated against.
+     * @return The promise of the bind result, or <code>null</code> if the user could not be found.
+     * @throws LDAPUtilException If the search failed or the bind could not be sent.
+     */
+    Promise<BindResult, LdapException> searchAndBind(String key, Directory directory) throws LDAPUtilException {
+        String cachedDN = dns.get(key);
+        Promise<BindResult, LdapException> pendingBind = null;
+        if (cachedDN != null) {
+            stats.recordDNCacheHit();
+            pendingBind = directory.bindAsync(cachedDN);
+        } else {
+            stats.recordDNCacheMiss();
+        }
+        String userDN = directory.searchForUser();
+        if (userDN == null) {
+            invalidate(key, cachedDN);
+            return null;
+        }
+        if (cachedDN != null && !cachedDN.equals(userDN)) {
+            // the user has been moved or renamed, the bind sent to the previous DN is ignored
+            invalidate(key, cachedDN);
+            pendingBind = null;
+        }
+        if (pendingBind == null) {
+            pendingBind = directory.bindAsync(userDN);
+        }
+        return pendingBind;
+    }
+
+    /**
+     * Caches the DN of a user who authenticated successfully.
+     *
+     * @param key The key of the user, which identifies the servers and the search configuration as well.
+     * @param dn The DN of the user.
+     */
+    void put(String key, String dn) {
+        dns.put(key, dn);
+    }
+
+    /**
+     * Removes the DN of a user from the cache, if it is cached.
+     *
+     * @param key The key of the user.
+     * @param dn The DN known for the user, or <code>null</code> if none.
+     */
+    void invalidate(String key, String dn) {
+        if (dn != null && dns.remove(key) != null) {
+            stats.recordDNCacheInvalidation();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.monitoring.cts;
+
+import com.sun.management.snmp.SnmpStatusException;
+import com.sun.management.snmp.agent.SnmpMib;
+import org.forgerock.guice.core.InjectorHolder;
+import org.forgerock.openam.cts.monitoring.CTSOperationsMonitoringStore;
+
+/**
+ * Implementation of the endpoint created by the monitoring framework, reading the batches of tasks the CTS
+ * asynchronous queue processors pipeline to the directory.
+ */
+public class CtsTaskBatchStatsImpl extends CtsTaskBatchStats {
+
+    private final CTSOperationsMonitoringStore monitoringStore;
+
+    /**
+     * Constructs an instance of the CtsTaskBatchStatsImpl
+     *
+     * @param myMib The Mib.
+     */
+    public CtsTaskBatchStatsImpl(SnmpMib myMib) {
+        super(myMib);
+        this.monitoringStore = InjectorHolder.getInstance(CTSOperationsMonitoringStore.class);
+    }
+
+    /**
+     * Getter for the "BatchCumulative" variable.
+     */
+    public Long getBatchCumulative() throws SnmpStatusException {
+        return monitoringStore.getTaskBatchCumulativeCount();
+    }
+
+    /**
+     * Getter for the "BatchSizeAverage" variable. The monitored value is multiplied by 100 to allow SNMP clients to
+     * display it as floating point value with 2 decimal places.
+     */
+    public Integer getBatchSizeAverage() throws SnmpStatusException {
+        return (int) (monitoringStore.getAverageTaskBatchSize() * 100);
+    }
+
+    /**
+     * Getter for the "BatchSizeMaximum" variable.
+     */
+    public Long getBatchSizeMaximum() throws SnmpStatusException {
+        return monitoringStore.getMaximumTaskBatchSize();
+    }
+
+    /**
+     * Getter for the "BatchFlushAverage" variable. The monitored value is multiplied by 100 to allow SNMP clients to
+     * display it as floating point value with 2 decimal places.
+     */
+    public Integer getBatchFlushAverage() throws SnmpStatusException {
+        return (int) (monitoringStore.getAverageTaskBatchFlushTime() * 100);
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.monitoring.cts;
+
+import com.sun.management.snmp.SnmpStatusException;
+import com.sun.management.snmp.agent.SnmpMib;
+import org.forgerock.guice.core.InjectorHolder;
+import org.forgerock.openam.cts.monitoring.CTSOperationsMonitoringStore;
+
+/**
+ * Implementation of the endpoint created by the monitoring framework, reading the depth of the CTS asynchronous
+ * task queues and the time tasks wait on them.
+ */
+public class CtsTaskQueueStatsImpl extends CtsTaskQueueStats {
+
+    private final CTSOperationsMonitoringStore monitoringStore;
+
+    /**
+     * Constructs an instance of the CtsTaskQueueStatsImpl
+     *
+     * @param myMib The Mib.
+     */
+    public CtsTaskQueueStatsImpl(SnmpMib myMib) {
+        super(myMib);
+        this.monitoringStore = InjectorHolder.getInstance(CTSOperationsMonitoringStore.class);
+    }
+
+    /**
+     * Getter for the "QueueDepthAverage" variable. The monitored value is multiplied by 100 to allow SNMP clients to
+     * display it as floating point value with 2 decimal places.
+     */
+    public Integer getQueueDepthAverage() throws SnmpStatusException {
+        return (int) (monitoringStore.getAverageQueueDepth() * 100);
+    }
+
+    /**
+     * Getter for the "QueueDepthMaximum" variable.
+     */
+    public Long getQueueDepthMaximum() throws SnmpStatusException {
+        return monitoringStore.getMaximumQueueDepth();
+    }
+
+    /**
+     * Getter for the "QueueWaitAverage" variable. The monitored value is multiplied by 100 to allow SNMP clients to
+     * display it as floating point value with 2 decimal places.
+     */
+    public Integer getQueueWaitAverage() throws SnmpStatusException {
+        return (int) (monitoringStore.getAverageQueueWaitTime() * 100);
+    }
+
+    /**
+     * Getter for the "QueueWaitMaximum" variable.
+     */
+    public Long getQueueWaitMaximum() throws SnmpStatusException {
+        return monitoringStore.getMaximumQueueWaitTime();
+    }
+
+}
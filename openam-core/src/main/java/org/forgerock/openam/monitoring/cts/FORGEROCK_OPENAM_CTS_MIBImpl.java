@@ -34,6 +34,9 @@ public class FORGEROCK_OPENAM_CTS_MIBImpl extends FORGEROCK_OPENAM_CTS_MIB imple
     private CtsConnectionSuccessRate ctsConnectionSuccessRate;
     private CtsConnectionFailureRate ctsConnectionFailureRate;
 
+    private CtsTaskQueueStats ctsTaskQueueStats;
+    private CtsTaskBatchStats ctsTaskBatchStats;
+
     /**
      * Default constructor. Initialize the Mib tree.
      */
@@ -88,6 +91,14 @@ public class FORGEROCK_OPENAM_CTS_MIBImpl extends FORGEROCK_OPENAM_CTS_MIB imple
         return ctsConnectionFailureRate;
     }
 
+    public CtsTaskQueueStats getCtsTaskQueueStats() {
+        return ctsTaskQueueStats;
+    }
+
+    public CtsTaskBatchStats getCtsTaskBatchStats() {
+        return ctsTaskBatchStats;
+    }
+
     /**
      * Factory method for "CtsConnectionSuccessRate" group MBean.
      *
@@ -142,4 +153,58 @@ public class FORGEROCK_OPENAM_CTS_MIBImpl extends FORGEROCK_OPENAM_CTS_MIB imple
         return ctsConnectionFailureRate;
     }
 
+    /**
+     * Factory method for "CtsTaskQueueStats" group MBean.
+     *
+     * You can redefine this method if you need to replace the default
+     * generated MBean class with your own customized class.
+     *
+     * @param groupName Name of the group ("CtsTaskQueueStats")
+     * @param groupOid  OID of this group
+     * @param groupObjname ObjectName for this group (may be null)
+     * @param server    MBeanServer for this group (may be null)
+     *
+     * @return An instance of the MBean class generated for the
+     *         "CtsTaskQueueStats" group (CtsTaskQueueStats)
+     *
+     * Note that when using standard metadata,
+     * the returned object must implement the "CtsTaskQueueStatsMBean"
+     * interface.
+     **/
+    protected Object createCtsTaskQueueStatsMBean(String groupName,
+                                                  String groupOid,
+                                                  ObjectName groupObjname, MBeanServer server)  {
+
+        ctsTaskQueueStats = new CtsTaskQueueStatsImpl(this);
+
+        return ctsTaskQueueStats;
+    }
+
+    /**
+     * Factory method for "CtsTaskBatchStats" group MBean.
+     *
+     * You can redefine this method if you need to replace the default
+     * generated MBean class with your own customized class.
+     *
+     * @param groupName Name of the group ("CtsTaskBatchStats")
+     * @param groupOid  OID of this group
+     * @param groupObjname ObjectName for this group (may be null)
+     * @param server    MBeanServer for this group (may be null)
+     *
+     * @return An instance of the MBean class generated for the
+     *         "CtsTaskBatchStats" group (CtsTaskBatchStats)
+     *
+     * Note that when using standard metadata,
+     * the returned object must implement the "CtsTaskBatchStatsMBean"
+     * interface.
+     **/
+    protected Object createCtsTaskBatchStatsMBean(String groupName,
+                                                  String groupOid,
+                                                  ObjectName groupObjname, MBeanServer server)  {
+
+        ctsTaskBatchStats = new CtsTaskBatchStatsImpl(this);
+
+        return ctsTaskBatchStats;
+    }
+
 }
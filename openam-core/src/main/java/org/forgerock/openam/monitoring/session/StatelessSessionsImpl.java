@@ -11,11 +11,13 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2015 ForgeRock AS.
+ * Copyright 2015-2016 ForgeRock AS.
  */
 
 package org.forgerock.openam.monitoring.session;
 
+import org.forgerock.openam.session.stateless.cache.StatelessJWTCache;
+
 import com.iplanet.dpro.session.monitoring.SessionMonitorType;
 import com.iplanet.dpro.session.monitoring.SessionMonitoringStore;
 import com.sun.management.snmp.SnmpStatusException;
@@ -26,10 +28,13 @@ import com.sun.management.snmp.agent.SnmpMib;
  */
 public class StatelessSessionsImpl extends StatelessSessions {
     private final SessionMonitoringStore monitoringStore;
+    private final StatelessJWTCache jwtCache;
 
-    public StatelessSessionsImpl(final SnmpMib mib, final SessionMonitoringStore monitoringStore) {
+    public StatelessSessionsImpl(final SnmpMib mib, final SessionMonitoringStore monitoringStore,
+            final StatelessJWTCache jwtCache) {
         super(mib);
         this.monitoringStore = monitoringStore;
+        this.jwtCache = jwtCache;
     }
 
     /**
@@ -74,4 +79,36 @@ public class StatelessSessionsImpl extends StatelessSessions {
         return 0L;
     }
 
+    /**
+     * Getter for the "StatelessJwtCacheHitCount" variable.
+     */
+    @Override
+    public Long getStatelessJwtCacheHitCount() throws SnmpStatusException {
+        return jwtCache.getHitCount();
+    }
+
+    /**
+     * Getter for the "StatelessJwtCacheMissCount" variable.
+     */
+    @Override
+    public Long getStatelessJwtCacheMissCount() throws SnmpStatusException {
+        return jwtCache.getMissCount();
+    }
+
+    /**
+     * Getter for the "StatelessJwtCacheEvictionCount" variable.
+     */
+    @Override
+    public Long getStatelessJwtCacheEvictionCount() throws SnmpStatusException {
+        return jwtCache.getEvictionCount();
+    }
+
+    /**
+     * Getter for the "StatelessJwtCacheSize" variable.
+     */
+    @Override
+    public Long getStatelessJwtCacheSize() throws SnmpStatusException {
+        return jwtCache.size();
+    }
+
 }
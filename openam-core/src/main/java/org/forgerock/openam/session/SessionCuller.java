@@ -22,6 +22,7 @@ import java.util.Date;
 
 import org.forgerock.guice.core.InjectorHolder;
 import org.forgerock.openam.cts.api.CoreTokenConstants;
+import org.forgerock.openam.shared.concurrency.TimingWheel;
 
 import com.iplanet.am.util.SystemProperties;
 import com.iplanet.am.util.ThreadPoolException;
@@ -29,6 +30,7 @@ import com.iplanet.dpro.session.Session;
 import com.iplanet.dpro.session.SessionException;
 import com.sun.identity.common.GeneralTaskRunnable;
 import com.sun.identity.common.SystemTimerPool;
+import com.sun.identity.common.SystemTimingWheel;
 import com.sun.identity.session.util.RestrictedTokenAction;
 import com.sun.identity.session.util.RestrictedTokenContext;
 import com.sun.identity.shared.debug.Debug;
@@ -39,8 +41,16 @@ import com.sun.identity.shared.debug.Debug;
  *
  * Uses to SessionPollerSender to poll when in Client mode and polling is enabled.
  *
+ * When {@link #TIMING_WHEEL_PROPERTY} is enabled the culler is scheduled on the {@link SystemTimingWheel} rather than
+ * the {@link SystemTimerPool}, so that rescheduling the cullers of many sessions does not contend on the timer pool.
  */
 public class SessionCuller extends GeneralTaskRunnable {
+
+    /**
+     * Property to schedule session cullers on the {@link SystemTimingWheel}.
+     */
+    public static final String TIMING_WHEEL_PROPERTY = "org.forgerock.openam.session.culler.timingWheel";
+
     private final SessionCache sessionCache;
     private SessionPollerSender sender = null;
     private SessionPollerPool sessionPollerPool;
@@ -53,8 +63,12 @@ public class SessionCuller extends GeneralTaskRunnable {
      */
     private volatile boolean isPolling = false;
 
+    private final boolean useTimingWheel;
+    private volatile TimingWheel.Timeout timeout;
+
     SessionCuller(Session session) {
         this.session = session;
+        this.useTimingWheel = SystemProperties.getAsBoolean(TIMING_WHEEL_PROPERTY, false);
         if (SystemProperties.isServerMode()) {
             sessionCache = InjectorHolder.getInstance(SessionCache.class);
             sessionPollerPool = InjectorHolder.getInstance(SessionPollerPool.class);
@@ -87,6 +101,40 @@ public class SessionCuller extends GeneralTaskRunnable {
         return -1;
     }
 
+    @Override
+    public long scheduledExecutionTime() {
+        if (!useTimingWheel) {
+            return super.scheduledExecutionTime();
+        }
+        TimingWheel.Timeout current = timeout;
+        return current != null && current.isScheduled() ? current.getExecutionTime() : -1;
+    }
+
+    @Override
+    public void cancel() {
+        if (!useTimingWheel) {
+            super.cancel();
+            return;
+        }
+        TimingWheel.Timeout current = timeout;
+        if (current != null) {
+            current.cancel();
+        }
+    }
+
+    /**
+     * Schedule this culler to run at the given time, replacing any earlier schedule.
+     */
+    private synchronized void scheduleAt(long time) {
+        if (useTimingWheel) {
+            cancel();
+            timeout = SystemTimingWheel.getTimingWheel().schedule(this, time);
+        } else {
+            // Get an instance as required otherwise it causes issues on container restart.
+            SystemTimerPool.getTimerPool().schedule(this, new Date(time));
+        }
+    }
+
     /**
      * Schedule this culler to be run, based on the state of the session.
      */
@@ -110,7 +158,7 @@ public class SessionCuller extends GeneralTaskRunnable {
             cancel();
         }
         if (!isScheduled()) {
-            SystemTimerPool.getTimerPool().schedule(this, new Date(timeoutTime));
+            scheduleAt(timeoutTime);
         }
     }
 
@@ -153,8 +201,7 @@ public class SessionCuller extends GeneralTaskRunnable {
                         expectedTime = (session.getLatestRefreshTime() + (SessionMeta.getAppSSOTokenRefreshTime() * 60)) * 1000;
                     }
                     if (expectedTime > scheduledExecutionTime()) {
-                        // Get an instance as required otherwise it causes issues on container restart.
-                        SystemTimerPool.getTimerPool().schedule(this, new Date(expectedTime));
+                        scheduleAt(expectedTime);
                         return;
                     }
                     if (sender == null) {
@@ -187,7 +234,7 @@ public class SessionCuller extends GeneralTaskRunnable {
                 expectedTime = (session.getLatestRefreshTime() + (session.getMaxSessionTime() * 60)) * 1000;
             }
             if (expectedTime > scheduledExecutionTime()) {
-                SystemTimerPool.getTimerPool().schedule(this, new Date(expectedTime));
+                scheduleAt(expectedTime);
                 return;
             }
             try {
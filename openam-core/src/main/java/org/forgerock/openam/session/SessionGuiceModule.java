@@ -43,6 +43,7 @@ import com.iplanet.dpro.session.operations.SessionOperationStrategy;
 import com.iplanet.dpro.session.service.InternalSessionEventBroker;
 import com.iplanet.dpro.session.service.InternalSessionListener;
 import com.iplanet.dpro.session.service.SessionAuditor;
+import com.iplanet.dpro.session.service.SessionCountIndex;
 import com.iplanet.dpro.session.service.SessionLogging;
 import com.iplanet.dpro.session.service.SessionNotificationPublisher;
 import com.iplanet.dpro.session.service.SessionNotificationSender;
@@ -150,11 +151,12 @@ public class SessionGuiceModule extends PrivateModule {
             final SessionAuditor sessionAuditor,
             final SessionNotificationSender sessionNotificationSender,
             final SessionNotificationPublisher sessionNotificationPublisher,
-            final SessionTimeoutHandlerExecutor sessionTimeoutHandlerExecutor) {
+            final SessionTimeoutHandlerExecutor sessionTimeoutHandlerExecutor,
+            final SessionCountIndex sessionCountIndex) {
 
         return new InternalSessionEventBroker(
                 sessionLogging, sessionAuditor, sessionNotificationSender, sessionNotificationPublisher,
-                sessionTimeoutHandlerExecutor);
+                sessionTimeoutHandlerExecutor, sessionCountIndex);
     }
 
     @Provides
@@ -15,14 +15,12 @@
  */
 package org.forgerock.openam.session.stateless.cache;
 
-import java.util.Collections;
-import java.util.Map;
-
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import org.forgerock.guava.common.cache.Cache;
+import org.forgerock.guava.common.cache.CacheBuilder;
 import org.forgerock.openam.session.stateless.StatelessConfig;
-import org.forgerock.openam.utils.collections.LeastRecentlyUsed;
 import org.forgerock.util.Reject;
 import org.forgerock.util.annotations.VisibleForTesting;
 
@@ -41,16 +39,21 @@ import com.iplanet.services.naming.ServiceListeners;
  *
  * Assumption: There is only one representation of a JWT to the SessionInfo it contains.
  *
- * Thread Safety: This class uses a synchronized data structure and so is thread safe.
+ * Thread Safety: This class uses a concurrent data structure, split into one segment per available
+ * processor, and so is thread safe. Lookups do not block each other, and least recently used eviction is
+ * applied approximately, per segment.
  */
 @Singleton
 public class StatelessJWTCache {
-    private final Map<String, SessionInfo> sessionInfoCache;
+    private final Cache<String, SessionInfo> sessionInfoCache;
 
     @Inject
     public StatelessJWTCache(StatelessConfig config, ServiceListeners listeners) {
-        sessionInfoCache = Collections.synchronizedMap(
-                new LeastRecentlyUsed<String, SessionInfo>(config.getJWTCacheSize()));
+        sessionInfoCache = CacheBuilder.newBuilder()
+                .maximumSize(Math.max(0, config.getJWTCacheSize()))
+                .concurrencyLevel(Runtime.getRuntime().availableProcessors())
+                .recordStats()
+                .build();
 
         // Responds to configuration changes, preventing possibly invalid keys from remaining in the cache
         final ServiceListeners.Action action = new ServiceListeners.Action() {
@@ -78,7 +81,10 @@ public class StatelessJWTCache {
      * @return Possibly null. Cached SessionInfo that corresponds to the given JWT token.
      */
     public SessionInfo getSessionInfo(String jwt) {
-        return sessionInfoCache.get(jwt);
+        if (jwt == null) {
+            return null;
+        }
+        return sessionInfoCache.getIfPresent(jwt);
     }
 
     /**
@@ -86,7 +92,7 @@ public class StatelessJWTCache {
      * @return True if there is a JWT representation for this SessionInfo.
      */
     public boolean contains(SessionInfo info) {
-        return sessionInfoCache.containsValue(info);
+        return sessionInfoCache.asMap().containsValue(info);
     }
 
     /**
@@ -94,7 +100,7 @@ public class StatelessJWTCache {
      * @return True if this JWT has been stored in the cache previously.
      */
     public boolean contains(String jwtToken) {
-        return sessionInfoCache.containsKey(jwtToken);
+        return sessionInfoCache.asMap().containsKey(jwtToken);
     }
 
     /**
@@ -103,7 +109,37 @@ public class StatelessJWTCache {
      * @param jwt the JWT to remove from the cache.
      */
     public void remove(String jwt) {
-        sessionInfoCache.remove(jwt);
+        if (jwt != null) {
+            sessionInfoCache.invalidate(jwt);
+        }
+    }
+
+    /**
+     * @return The number of times {@link #getSessionInfo(String)} has found a cached SessionInfo.
+     */
+    public long getHitCount() {
+        return sessionInfoCache.stats().hitCount();
+    }
+
+    /**
+     * @return The number of times {@link #getSessionInfo(String)} has not found a cached SessionInfo.
+     */
+    public long getMissCount() {
+        return sessionInfoCache.stats().missCount();
+    }
+
+    /**
+     * @return The number of entries removed from the cache to keep it within its configured size.
+     */
+    public long getEvictionCount() {
+        return sessionInfoCache.stats().evictionCount();
+    }
+
+    /**
+     * @return The approximate number of entries in the cache.
+     */
+    public long size() {
+        return sessionInfoCache.size();
     }
 
     /**
@@ -114,6 +150,6 @@ public class StatelessJWTCache {
      */
     @VisibleForTesting
     void clear() {
-        sessionInfoCache.clear();
+        sessionInfoCache.invalidateAll();
     }
 }
\ No newline at end of file
@@ -0,0 +1,69 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.sm.datalayer.api;
+
+import org.forgerock.util.Function;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.Promises;
+
+/**
+ * Abstract task which can also be pipelined by the Task Processor.
+ *
+ * @param <T> The type of the result of the task.
+ */
+public abstract class AbstractPipelinedTask<T> extends AbstractTask<T> implements PipelinedTask {
+
+    /**
+     * A new abstract pipelined task constructor - requires at least a ResultHandler to be configured.
+     *
+     * @param handler Non null handler to notify.
+     */
+    public AbstractPipelinedTask(ResultHandler<T, ?> handler) {
+        super(handler);
+    }
+
+    @Override
+    public Promise<T, DataLayerException> executeAsync(TokenStorageAdapter adapter) {
+        if (isError()) {
+            return Promises.newResultPromise(null);
+        }
+
+        return performTaskAsync(adapter).then(
+                new Function<T, T, DataLayerException>() {
+                    @Override
+                    public T apply(T result) {
+                        handler.processResults(result);
+                        return result;
+                    }
+                },
+                new Function<DataLayerException, T, DataLayerException>() {
+                    @Override
+                    public T apply(DataLayerException e) throws DataLayerException {
+                        processError(e);
+                        throw e;
+                    }
+                });
+    }
+
+    /**
+     * Sends a task without waiting for its result.
+     *
+     * @param adapter Required for LDAP operations.
+     * @return The promise of the result of the task.
+     */
+    protected abstract Promise<T, DataLayerException> performTaskAsync(TokenStorageAdapter adapter);
+
+}
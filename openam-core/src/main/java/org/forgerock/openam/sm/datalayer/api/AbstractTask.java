@@ -33,6 +33,15 @@ public abstract class AbstractTask<T> implements Task {
         this.handler = handler;
     }
 
+    /**
+     * Whether the task has already failed, in which case it is not performed.
+     *
+     * @return {@code true} if an error has been set on the task.
+     */
+    protected boolean isError() {
+        return isError;
+    }
+
     @Override
     public void processError(DataLayerException error) {
         isError = true;
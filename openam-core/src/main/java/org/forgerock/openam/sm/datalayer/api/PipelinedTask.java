@@ -0,0 +1,44 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.sm.datalayer.api;
+
+import org.forgerock.util.promise.Promise;
+
+/**
+ * A task which can be sent to the store without waiting for the results of the tasks sent before it on the same
+ * connection, so that the tasks of a batch are pipelined.
+ *
+ * @see org.forgerock.openam.sm.datalayer.impl.SimpleTaskExecutor#executeBatch(java.util.List)
+ */
+public interface PipelinedTask extends Task {
+
+    /**
+     * Gets the ID of the token the task is about. The store may process pipelined operations in any order, so a
+     * task is only sent once the tasks about the same token sent before it are complete.
+     *
+     * @return The non null token ID.
+     */
+    String getTokenId();
+
+    /**
+     * Sends the task without waiting for its result. The result handler of the task is notified once the result is
+     * received.
+     *
+     * @param adapter Connection-coupled utility functions to perform the task with.
+     * @return The promise of the result, completed once the result handler has been notified.
+     */
+    Promise<?, DataLayerException> executeAsync(TokenStorageAdapter adapter);
+}
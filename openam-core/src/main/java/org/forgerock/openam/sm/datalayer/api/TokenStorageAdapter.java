@@ -24,6 +24,7 @@ import org.forgerock.openam.cts.continuous.ContinuousQueryListener;
 import org.forgerock.openam.sm.datalayer.api.query.PartialToken;
 import org.forgerock.openam.tokens.CoreTokenField;
 import org.forgerock.util.Options;
+import org.forgerock.util.promise.Promise;
 
 /**
  * Adapts the token to some activity against the connection type.
@@ -73,6 +74,47 @@ public interface TokenStorageAdapter {
      */
     PartialToken delete(String tokenId, Options options) throws DataLayerException;
 
+    /**
+     * Sends the creation of the Token without waiting for its result, so that several operations can be pipelined
+     * on the connection of the adapter.
+     *
+     * @param token Non null Token to create.
+     * @param options Non null Options for the operations.
+     * @return The promise of the newly created token, with the additional etag information.
+     */
+    Promise<Token, DataLayerException> createAsync(Token token, Options options);
+
+    /**
+     * Sends the read of the Token without waiting for its result, so that several operations can be pipelined on
+     * the connection of the adapter.
+     *
+     * @param tokenId The id of the Token to read.
+     * @param options Non null Options for the operations.
+     * @return The promise of the Token if found, otherwise of null.
+     */
+    Promise<Token, DataLayerException> readAsync(String tokenId, Options options);
+
+    /**
+     * Sends the update of the Token without waiting for its result, so that several operations can be pipelined on
+     * the connection of the adapter.
+     *
+     * @param previous The non null previous Token to check against.
+     * @param updated The non null Token to update with.
+     * @param options The non null Options for the operation.
+     * @return The promise of a copy of the updated token, with the updated etag.
+     */
+    Promise<Token, DataLayerException> updateAsync(Token previous, Token updated, Options options);
+
+    /**
+     * Sends the delete of the Token without waiting for its result, so that several operations can be pipelined on
+     * the connection of the adapter.
+     *
+     * @param tokenId The non null Token ID to delete.
+     * @param options The non null Options for the operation.
+     * @return The promise of a {@link PartialToken} containing at least the {@link CoreTokenField#TOKEN_ID}.
+     */
+    Promise<PartialToken, DataLayerException> deleteAsync(String tokenId, Options options);
+
     /**
      * Performs a full-token query using the provided filter.
      *
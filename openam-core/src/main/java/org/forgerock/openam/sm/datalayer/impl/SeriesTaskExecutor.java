@@ -19,6 +19,8 @@ package org.forgerock.openam.sm.datalayer.impl;
 import java.text.MessageFormat;
 import java.util.Random;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -31,13 +33,17 @@ import org.forgerock.openam.audit.context.AuditRequestContext;
 import org.forgerock.openam.cts.api.CoreTokenConstants;
 import org.forgerock.openam.cts.impl.queue.QueueSelector;
 import org.forgerock.openam.cts.impl.queue.config.CTSQueueConfiguration;
+import org.forgerock.openam.cts.impl.queue.config.CTSQueueConfiguration.QueueRouting;
+import org.forgerock.openam.cts.monitoring.CTSOperationsMonitoringStore;
 import org.forgerock.openam.shared.concurrency.ThreadMonitor;
 import org.forgerock.openam.sm.datalayer.api.DataLayerConstants;
 import org.forgerock.openam.sm.datalayer.api.DataLayerException;
+import org.forgerock.openam.sm.datalayer.api.PipelinedTask;
 import org.forgerock.openam.sm.datalayer.api.QueueTimeoutException;
 import org.forgerock.openam.sm.datalayer.api.Task;
 import org.forgerock.openam.sm.datalayer.api.TaskExecutor;
 import org.forgerock.openam.sm.datalayer.api.TokenStorageAdapter;
+import org.forgerock.util.promise.Promise;
 
 import com.sun.identity.shared.debug.Debug;
 
@@ -58,6 +64,12 @@ import com.sun.identity.shared.debug.Debug;
  * against the same Token ID which could cause concurrent modification errors
  * at the storage layer.
  *
+ * When {@link QueueRouting#LEASTLOADED} routing is configured, a Token ID with no
+ * outstanding tasks is instead assigned to the least loaded queue, and remains
+ * assigned to that queue until all of its outstanding tasks have been processed.
+ * This preserves the ordering guarantee whilst preventing a single slow queue from
+ * delaying every Token ID that hashes to it.
+ *
  * Each TaskProcessor is assigned a FIFO {@link BlockingQueue} instance which will
  * provide the predictable processing order. The implication of this design ensures
  * that when this queue is full, the caller is required to block.
@@ -79,6 +91,9 @@ public class SeriesTaskExecutor implements TaskExecutor {
     private final ThreadMonitor monitor;
     private final CTSQueueConfiguration configuration;
     private final ExecutorService poolService;
+    private final CTSOperationsMonitoringStore monitoringStore;
+    private final ConcurrentMap<String, QueueAssignment> assignments = new ConcurrentHashMap<>();
+    private QueueRouting routing;
 
     /**
      * Create a default instance of the SeriesTaskExecutor.
@@ -87,6 +102,7 @@ public class SeriesTaskExecutor implements TaskExecutor {
      * @param processorFactory Required to create worker thread instances.
      * @param monitor Required to ensure threads are restarted.
      * @param configuration Required to determine runtime configuration options.
+     * @param monitoringStore Required to record queue depth and wait time statistics.
      * @param debug Required for debugging.
      */
     @Inject
@@ -95,18 +111,32 @@ public class SeriesTaskExecutor implements TaskExecutor {
             SeriesTaskExecutorThreadFactory processorFactory,
             ThreadMonitor monitor,
             CTSQueueConfiguration configuration,
+            CTSOperationsMonitoringStore monitoringStore,
             @Named(DataLayerConstants.DATA_LAYER_DEBUG) Debug debug) {
         this.debug = debug;
         this.monitor = monitor;
         this.configuration = configuration;
         this.processorFactory = processorFactory;
         this.poolService = poolService;
+        this.monitoringStore = monitoringStore;
     }
 
     @Override
     public void execute(String tokenId, Task task) throws DataLayerException {
-        BlockingQueue<Task> queue = getQueue(tokenId);
-        offer(queue, task);
+        if (tokenId == null || routing != QueueRouting.LEASTLOADED) {
+            BlockingQueue<Task> queue = getQueue(tokenId);
+            offer(queue, task);
+            return;
+        }
+
+        int select = assign(tokenId);
+        debug("Select Queue: Token ID {0} - Queue {1}", tokenId, select);
+        try {
+            offer(taskQueues[select], assigned(tokenId, task));
+        } catch (QueueTimeoutException e) {
+            release(tokenId);
+            throw e;
+        }
     }
 
     /**
@@ -127,6 +157,9 @@ public class SeriesTaskExecutor implements TaskExecutor {
             throw new RuntimeException(e);
         }
 
+        routing = configuration.getQueueRouting();
+        debug("Queue routing: {0}", routing);
+
         taskQueues = new BlockingQueue[processors];
         for (int ii = 0; ii < processors; ii++) {
             taskQueues[ii] = new LinkedBlockingQueue<>(configuration.getQueueSize());
@@ -138,7 +171,35 @@ public class SeriesTaskExecutor implements TaskExecutor {
         }
         debug("Created {0} Task Processors", processors);
 
-        initialised = true;    }
+        initialised = true;
+    }
+
+    /**
+     * Assigns the Token ID to a queue, or increments the number of outstanding tasks for the Token ID
+     * if it is already assigned to a queue.
+     *
+     * @param tokenId Non null Token ID.
+     * @return The index of the queue the Token ID is assigned to.
+     */
+    private int assign(String tokenId) {
+        return assignments.compute(tokenId, (id, assignment) -> {
+            if (assignment == null) {
+                return new QueueAssignment(QueueSelector.selectLeastLoaded(taskQueues, random.nextInt(processors)));
+            }
+            assignment.pending++;
+            return assignment;
+        }).queue;
+    }
+
+    /**
+     * Decrements the number of outstanding tasks for the Token ID, removing its queue assignment once
+     * there are none remaining.
+     *
+     * @param tokenId Non null Token ID.
+     */
+    private void release(String tokenId) {
+        assignments.computeIfPresent(tokenId, (id, assignment) -> --assignment.pending == 0 ? null : assignment);
+    }
 
     /**
      * Select a random queue to use for the query operation.
@@ -175,9 +236,10 @@ public class SeriesTaskExecutor implements TaskExecutor {
     private void offer(BlockingQueue<Task> queue, Task task) throws QueueTimeoutException {
         try {
             debug("Queuing Task {0}", task.toString());
-            if (!queue.offer(wrap(task), configuration.getQueueTimeout(), TimeUnit.SECONDS)) {
+            if (!queue.offer(wrap(queued(task)), configuration.getQueueTimeout(), TimeUnit.SECONDS)) {
                 throw new QueueTimeoutException(task);
             }
+            monitoringStore.addQueuedTask(queue.size());
         } catch (InterruptedException e) {
             throw new QueueTimeoutException(task, e);
         }
@@ -191,10 +253,170 @@ public class SeriesTaskExecutor implements TaskExecutor {
         }
     }
 
+    /**
+     * Decorates the task so that it runs with the {@link AuditRequestContext} of the calling thread. A
+     * {@link PipelinedTask} remains a PipelinedTask once decorated, so it can still be pipelined in a batch.
+     *
+     * @param task The task to decorate.
+     * @return The decorated task.
+     */
     Task wrap(Task task) {
+        if (task instanceof PipelinedTask) {
+            return new PipelinedAuditRequestContextPropagatingTask((PipelinedTask) task);
+        }
         return new AuditRequestContextPropagatingTask(task);
     }
 
+    private Task assigned(String tokenId, Task task) {
+        if (task instanceof PipelinedTask) {
+            return new PipelinedAssignedTask(tokenId, (PipelinedTask) task);
+        }
+        return new AssignedTask(tokenId, task);
+    }
+
+    private Task queued(Task task) {
+        if (task instanceof PipelinedTask) {
+            return new PipelinedQueuedTask((PipelinedTask) task);
+        }
+        return new QueuedTask(task);
+    }
+
+    /**
+     * The queue a Token ID is assigned to, and the number of its tasks that have not yet been processed.
+     * Only accessed within the atomic compute operations of the assignments map.
+     */
+    private static final class QueueAssignment {
+        private final int queue;
+        private int pending = 1;
+
+        private QueueAssignment(int queue) {
+            this.queue = queue;
+        }
+    }
+
+    /**
+     * <code>Task</code> Decorator that releases the queue assignment of its Token ID once processed.
+     */
+    private class AssignedTask implements Task {
+
+        private final String tokenId;
+        private final Task delegate;
+
+        private AssignedTask(String tokenId, Task delegate) {
+            this.tokenId = tokenId;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void execute(TokenStorageAdapter adapter) throws DataLayerException {
+            try {
+                delegate.execute(adapter);
+            } finally {
+                release(tokenId);
+            }
+        }
+
+        @Override
+        public void processError(DataLayerException error) {
+            delegate.processError(error);
+        }
+
+        @Override
+        public String toString() {
+            return delegate.toString();
+        }
+    }
+
+    /**
+     * {@link AssignedTask} of a {@link PipelinedTask}, which releases the queue assignment of its Token ID once the
+     * result of the pipelined task is received.
+     */
+    private final class PipelinedAssignedTask extends AssignedTask implements PipelinedTask {
+
+        private final String tokenId;
+        private final PipelinedTask delegate;
+
+        private PipelinedAssignedTask(String tokenId, PipelinedTask delegate) {
+            super(tokenId, delegate);
+            this.tokenId = tokenId;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public String getTokenId() {
+            return delegate.getTokenId();
+        }
+
+        @Override
+        public Promise<?, DataLayerException> executeAsync(TokenStorageAdapter adapter) {
+            Promise<?, DataLayerException> result;
+            try {
+                result = delegate.executeAsync(adapter);
+            } catch (RuntimeException e) {
+                release(tokenId);
+                throw e;
+            }
+            return result.thenAlways(() -> release(tokenId));
+        }
+    }
+
+    /**
+     * <code>Task</code> Decorator that records the time the task spent on its queue.
+     */
+    private class QueuedTask implements Task {
+
+        private final Task delegate;
+        private final long queuedTime = System.currentTimeMillis();
+
+        private QueuedTask(Task delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void execute(TokenStorageAdapter adapter) throws DataLayerException {
+            recordQueueWaitTime();
+            delegate.execute(adapter);
+        }
+
+        void recordQueueWaitTime() {
+            monitoringStore.addQueueWaitTime(System.currentTimeMillis() - queuedTime);
+        }
+
+        @Override
+        public void processError(DataLayerException error) {
+            delegate.processError(error);
+        }
+
+        @Override
+        public String toString() {
+            return delegate.toString();
+        }
+    }
+
+    /**
+     * {@link QueuedTask} of a {@link PipelinedTask}.
+     */
+    private final class PipelinedQueuedTask extends QueuedTask implements PipelinedTask {
+
+        private final PipelinedTask delegate;
+
+        private PipelinedQueuedTask(PipelinedTask delegate) {
+            super(delegate);
+            this.delegate = delegate;
+        }
+
+        @Override
+        public String getTokenId() {
+            return delegate.getTokenId();
+        }
+
+        @Override
+        public Promise<?, DataLayerException> executeAsync(TokenStorageAdapter adapter) {
+            recordQueueWaitTime();
+            return delegate.executeAsync(adapter);
+        }
+    }
+
     /**
      * <code>Task</code> Decorator that propagates thread local {@link AuditRequestContext} to worker thread.
      */
@@ -226,4 +448,34 @@ public class SeriesTaskExecutor implements TaskExecutor {
         }
     }
 
+    /**
+     * {@link AuditRequestContextPropagatingTask} of a {@link PipelinedTask}. The context is set whilst the task is
+     * sent, as that is when the request is built from it.
+     */
+    static final class PipelinedAuditRequestContextPropagatingTask extends AuditRequestContextPropagatingTask
+            implements PipelinedTask {
+
+        private final PipelinedTask delegate;
+
+        PipelinedAuditRequestContextPropagatingTask(PipelinedTask delegate) {
+            super(delegate);
+            this.delegate = delegate;
+        }
+
+        @Override
+        public String getTokenId() {
+            return delegate.getTokenId();
+        }
+
+        @Override
+        public Promise<?, DataLayerException> executeAsync(TokenStorageAdapter adapter) {
+            setContext();
+            try {
+                return delegate.executeAsync(adapter);
+            } finally {
+                revertContext();
+            }
+        }
+    }
+
 }
@@ -11,17 +11,22 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2014-2015 ForgeRock AS.
+ * Copyright 2014-2016 ForgeRock AS.
  */
 package org.forgerock.openam.sm.datalayer.impl;
 
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 
 import org.forgerock.openam.cts.api.CoreTokenConstants;
+import org.forgerock.openam.cts.impl.queue.config.CTSQueueConfiguration;
+import org.forgerock.openam.cts.monitoring.CTSOperationsMonitoringStore;
 import org.forgerock.openam.sm.datalayer.api.DataLayerException;
 import org.forgerock.openam.sm.datalayer.api.Task;
 
@@ -37,14 +42,24 @@ import com.sun.identity.shared.debug.Debug;
  * This decoupled design is intended to ensure that each TaskProcessor can be
  * run as part of a thread pool, and process tasks in a continuous fashion.
  *
+ * When batching is enabled, the processor will drain up to the configured batch
+ * size of tasks from its queue, waiting at most the configured batch wait for the
+ * batch to fill, and then pipeline the tasks in queue order on its connection, see
+ * {@link SimpleTaskExecutor#executeBatch(List)}. Each task still notifies its own
+ * result handler. Batch sizes and processing times are recorded in the
+ * {@link CTSOperationsMonitoringStore}.
+ *
  * Thread Policy: This runnable will respond to Thread interrupts and will
- * exit cleanly in the event of an interrupt.
+ * exit cleanly in the event of an interrupt. Tasks already drained into a batch
+ * are processed before the processor exits.
  *
  * @see org.forgerock.openam.sm.datalayer.api.Task
  * @see org.forgerock.openam.sm.datalayer.impl.tasks.TaskFactory
  */
 public class SeriesTaskExecutorThread implements Runnable {
     private final SimpleTaskExecutor taskExecutor;
+    private final CTSQueueConfiguration configuration;
+    private final CTSOperationsMonitoringStore monitoringStore;
     private BlockingQueue<Task> queue;
     private final Debug debug;
 
@@ -52,11 +67,17 @@ public class SeriesTaskExecutorThread implements Runnable {
      * Generate a default instance of the Task Processor.
      *
      * @param debug Required for debugging.
+     * @param taskExecutor Required to execute the tasks.
+     * @param configuration Required to determine the batching configuration.
+     * @param monitoringStore Required to record batch statistics.
      */
     @Inject
-    public SeriesTaskExecutorThread(@Named(CoreTokenConstants.CTS_DEBUG) Debug debug, SimpleTaskExecutor taskExecutor) {
+    public SeriesTaskExecutorThread(@Named(CoreTokenConstants.CTS_DEBUG) Debug debug, SimpleTaskExecutor taskExecutor,
+            CTSQueueConfiguration configuration, CTSOperationsMonitoringStore monitoringStore) {
         this.debug = debug;
         this.taskExecutor = taskExecutor;
+        this.configuration = configuration;
+        this.monitoringStore = monitoringStore;
     }
 
     /**
@@ -85,12 +106,19 @@ public class SeriesTaskExecutorThread implements Runnable {
             throw new IllegalStateException("Cannot start task executor", e);
         }
 
+        int batchSize = configuration.getBatchSize();
+        long batchWait = TimeUnit.MILLISECONDS.toNanos(configuration.getBatchWait());
+
         // Iterate until shutdown
         while (!Thread.currentThread().isInterrupted()) {
             try {
                 Task task = queue.take();
-                debug("process Task {0}", task);
-                taskExecutor.execute(null, task);
+                if (batchSize > 1) {
+                    processBatch(task, batchSize, batchWait);
+                } else {
+                    debug("process Task {0}", task);
+                    taskExecutor.execute(null, task);
+                }
             } catch (InterruptedException e) {
                 error("interrupt detected", e);
                 Thread.currentThread().interrupt();
@@ -100,6 +128,46 @@ public class SeriesTaskExecutorThread implements Runnable {
         debug("Processor thread shutdown.");
     }
 
+    /**
+     * Drains further tasks from the queue to fill a batch, and then pipelines the batch in queue order.
+     *
+     * If the thread is interrupted whilst waiting for the batch to fill, the tasks gathered so far are
+     * still processed and the interrupt status is restored.
+     *
+     * @param first The task already taken from the queue.
+     * @param batchSize The maximum number of tasks in the batch.
+     * @param batchWait The maximum time in nanoseconds to wait for the batch to fill.
+     */
+    private void processBatch(Task first, int batchSize, long batchWait) {
+        List<Task> batch = new ArrayList<>(batchSize);
+        batch.add(first);
+        queue.drainTo(batch, batchSize - 1);
+
+        long deadline = System.nanoTime() + batchWait;
+        try {
+            while (batch.size() < batchSize) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                Task next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                if (next == null) {
+                    break;
+                }
+                batch.add(next);
+                queue.drainTo(batch, batchSize - batch.size());
+            }
+        } catch (InterruptedException e) {
+            error("interrupt detected whilst filling batch", e);
+            Thread.currentThread().interrupt();
+        }
+
+        debug("process batch of {0} Tasks", batch.size());
+        long start = System.currentTimeMillis();
+        taskExecutor.executeBatch(batch);
+        monitoringStore.addTaskBatch(batch.size(), System.currentTimeMillis() - start);
+    }
+
     private void debug(String format, Object... args) {
         if (debug.messageEnabled()) {
             debug.message(MessageFormat.format(
@@ -16,16 +16,24 @@
 
 package org.forgerock.openam.sm.datalayer.impl;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 import javax.inject.Inject;
 import javax.inject.Named;
 
 import org.forgerock.openam.cts.api.CoreTokenConstants;
 import org.forgerock.openam.sm.datalayer.api.DataLayerConstants;
 import org.forgerock.openam.sm.datalayer.api.DataLayerException;
+import org.forgerock.openam.sm.datalayer.api.PipelinedTask;
 import org.forgerock.openam.sm.datalayer.api.Task;
 import org.forgerock.openam.sm.datalayer.api.TaskExecutor;
 import org.forgerock.openam.sm.datalayer.api.TokenStorageAdapter;
 
+import org.forgerock.util.promise.Promise;
+
 import com.sun.identity.shared.debug.Debug;
 
 /**
@@ -70,6 +78,48 @@ public class SimpleTaskExecutor implements TaskExecutor {
         }
     }
 
+    /**
+     * Executes a batch of tasks on the connection of the adapter.
+     *
+     * The {@link PipelinedTask}s are sent one after the other without waiting for their results, unless a task about
+     * the same token has been sent before and is not complete yet, since the store may process the operations in
+     * flight in any order. Other tasks are executed once all the tasks sent before them are complete. This call
+     * returns once every task of the batch is complete.
+     *
+     * @param tasks The tasks to execute, in queue order.
+     */
+    public void executeBatch(List<Task> tasks) {
+        List<Promise<?, DataLayerException>> inFlight = new ArrayList<>(tasks.size());
+        Set<String> tokenIds = new HashSet<>();
+        for (Task task : tasks) {
+            if (!(task instanceof PipelinedTask)) {
+                awaitAll(inFlight);
+                tokenIds.clear();
+                execute(null, task);
+                continue;
+            }
+            PipelinedTask pipelinedTask = (PipelinedTask) task;
+            if (!tokenIds.add(pipelinedTask.getTokenId())) {
+                awaitAll(inFlight);
+                tokenIds.clear();
+                tokenIds.add(pipelinedTask.getTokenId());
+            }
+            inFlight.add(pipelinedTask.executeAsync(adapter));
+        }
+        awaitAll(inFlight);
+    }
+
+    private void awaitAll(List<Promise<?, DataLayerException>> inFlight) {
+        for (Promise<?, DataLayerException> promise : inFlight) {
+            try {
+                promise.getOrThrowUninterruptibly();
+            } catch (DataLayerException e) {
+                error("processing task", e);
+            }
+        }
+        inFlight.clear();
+    }
+
     private void error(String message, Throwable t) {
         debug.error(CoreTokenConstants.DEBUG_ASYNC_HEADER + "Task Processor Error: " + message, t);
     }
@@ -18,16 +18,17 @@ package org.forgerock.openam.sm.datalayer.impl.tasks;
 import java.text.MessageFormat;
 
 import org.forgerock.openam.cts.api.tokens.Token;
-import org.forgerock.openam.sm.datalayer.api.AbstractTask;
+import org.forgerock.openam.sm.datalayer.api.AbstractPipelinedTask;
 import org.forgerock.openam.sm.datalayer.api.DataLayerException;
 import org.forgerock.openam.sm.datalayer.api.ResultHandler;
 import org.forgerock.openam.sm.datalayer.api.TokenStorageAdapter;
 import org.forgerock.util.Options;
+import org.forgerock.util.promise.Promise;
 
 /**
  * Responsible for creating a Token in persistence layer.
  */
-public class CreateTask extends AbstractTask {
+public class CreateTask extends AbstractPipelinedTask<Token> {
 
     private final Token token;
     private final Options options;
@@ -57,6 +58,16 @@ public class CreateTask extends AbstractTask {
         handler.processResults(created);
     }
 
+    @Override
+    public String getTokenId() {
+        return token.getTokenId();
+    }
+
+    @Override
+    protected Promise<Token, DataLayerException> performTaskAsync(TokenStorageAdapter adapter) {
+        return adapter.createAsync(token, options);
+    }
+
     @Override
     public String toString() {
         return MessageFormat.format("CreateTask: {0}", token.getTokenId());
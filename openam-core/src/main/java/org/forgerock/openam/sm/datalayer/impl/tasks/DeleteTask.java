@@ -19,17 +19,18 @@ import java.text.MessageFormat;
 import java.util.Collections;
 
 import org.forgerock.openam.cts.api.CTSOptions;
-import org.forgerock.openam.sm.datalayer.api.AbstractTask;
+import org.forgerock.openam.sm.datalayer.api.AbstractPipelinedTask;
 import org.forgerock.openam.sm.datalayer.api.DataLayerException;
 import org.forgerock.openam.sm.datalayer.api.ResultHandler;
 import org.forgerock.openam.sm.datalayer.api.TokenStorageAdapter;
 import org.forgerock.openam.sm.datalayer.api.query.PartialToken;
 import org.forgerock.util.Options;
+import org.forgerock.util.promise.Promise;
 
 /**
  * Deletes a given Token from the persistence layer.
  */
-public class DeleteTask extends AbstractTask<PartialToken> {
+public class DeleteTask extends AbstractPipelinedTask<PartialToken> {
 
     private final String tokenId;
     private final Options options;
@@ -58,6 +59,16 @@ public class DeleteTask extends AbstractTask<PartialToken> {
         handler.processResults(token);
     }
 
+    @Override
+    public String getTokenId() {
+        return tokenId;
+    }
+
+    @Override
+    protected Promise<PartialToken, DataLayerException> performTaskAsync(TokenStorageAdapter adapter) {
+        return adapter.deleteAsync(tokenId, options);
+    }
+
     @Override
     public String toString() {
         return MessageFormat.format("DeleteTask: {0}", tokenId);
@@ -18,16 +18,17 @@ package org.forgerock.openam.sm.datalayer.impl.tasks;
 import java.text.MessageFormat;
 
 import org.forgerock.openam.cts.api.tokens.Token;
-import org.forgerock.openam.sm.datalayer.api.AbstractTask;
+import org.forgerock.openam.sm.datalayer.api.AbstractPipelinedTask;
 import org.forgerock.openam.sm.datalayer.api.DataLayerException;
 import org.forgerock.openam.sm.datalayer.api.ResultHandler;
 import org.forgerock.openam.sm.datalayer.api.TokenStorageAdapter;
 import org.forgerock.util.Options;
+import org.forgerock.util.promise.Promise;
 
 /**
  * Performs a Read against the persistence layer.
  */
-public class ReadTask extends AbstractTask {
+public class ReadTask extends AbstractPipelinedTask<Token> {
 
     private final String tokenId;
     private final Options options;
@@ -59,6 +60,16 @@ public class ReadTask extends AbstractTask {
         handler.processResults(token);
     }
 
+    @Override
+    public String getTokenId() {
+        return tokenId;
+    }
+
+    @Override
+    protected Promise<Token, DataLayerException> performTaskAsync(TokenStorageAdapter adapter) {
+        return adapter.readAsync(tokenId, options);
+    }
+
     @Override
     public String toString() {
         return MessageFormat.format("ReadTask: {0}", tokenId);
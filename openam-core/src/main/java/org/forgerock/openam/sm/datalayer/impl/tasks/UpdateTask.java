@@ -18,16 +18,18 @@ package org.forgerock.openam.sm.datalayer.impl.tasks;
 import java.text.MessageFormat;
 
 import org.forgerock.openam.cts.api.tokens.Token;
-import org.forgerock.openam.sm.datalayer.api.AbstractTask;
+import org.forgerock.openam.sm.datalayer.api.AbstractPipelinedTask;
 import org.forgerock.openam.sm.datalayer.api.DataLayerException;
 import org.forgerock.openam.sm.datalayer.api.ResultHandler;
 import org.forgerock.openam.sm.datalayer.api.TokenStorageAdapter;
+import org.forgerock.util.AsyncFunction;
 import org.forgerock.util.Options;
+import org.forgerock.util.promise.Promise;
 
 /**
  * Responsible for updating the persistence layer with the provided Token.
  */
-public class UpdateTask extends AbstractTask {
+public class UpdateTask extends AbstractPipelinedTask<Token> {
 
     private final Token token;
     private final Options options;
@@ -64,6 +66,32 @@ public class UpdateTask extends AbstractTask {
         handler.processResults(updated);
     }
 
+    @Override
+    public String getTokenId() {
+        return token.getTokenId();
+    }
+
+    /**
+     * Sends a read of the store to determine the state of the Token, followed by the update or create once the
+     * result of the read is received.
+     *
+     * @param adapter Non null for connection-coupled operations.
+     * @return The promise of the updated Token.
+     */
+    @Override
+    protected Promise<Token, DataLayerException> performTaskAsync(final TokenStorageAdapter adapter) {
+        return adapter.readAsync(token.getTokenId(), options).thenAsync(
+                new AsyncFunction<Token, Token, DataLayerException>() {
+                    @Override
+                    public Promise<Token, DataLayerException> apply(Token previous) {
+                        if (previous == null) {
+                            return adapter.createAsync(token, options);
+                        }
+                        return adapter.updateAsync(previous, token, options);
+                    }
+                });
+    }
+
     @Override
     public String toString() {
         return MessageFormat.format("UpdateTask: {0}", token.getTokenId());
@@ -0,0 +1,205 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.iplanet.dpro.session.service;
+
+import static com.iplanet.dpro.session.service.SessionCountIndex.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.json.JsonValue.*;
+import static org.forgerock.json.test.assertj.AssertJJsonValueAssert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+import org.forgerock.json.JsonValue;
+import org.forgerock.openam.notifications.Consumer;
+import org.forgerock.openam.notifications.NotificationBroker;
+import org.forgerock.openam.notifications.Subscription;
+import org.forgerock.openam.notifications.Topic;
+import org.forgerock.openam.session.SessionEventType;
+import org.forgerock.util.time.TimeService;
+import org.mockito.ArgumentCaptor;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.sun.identity.shared.debug.Debug;
+
+public class SessionCountIndexTest {
+
+    private static final String UUID = "id=demo,ou=user,dc=openam,dc=forgerock,dc=org";
+    private static final long MAX_AGE = 60000L;
+    private static final long SEED_TIME = 1000000L;
+
+    private NotificationBroker broker;
+    private TimeService clock;
+    private Consumer consumer;
+    private SessionCountIndex index;
+
+    @BeforeMethod
+    public void setUp() {
+        broker = mock(NotificationBroker.class);
+        clock = mock(TimeService.class);
+        Subscription subscription = mock(Subscription.class);
+        ArgumentCaptor<Consumer> consumerCaptor = ArgumentCaptor.forClass(Consumer.class);
+        given(broker.subscribe(consumerCaptor.capture())).willReturn(subscription);
+        given(broker.publish(eq(TOPIC_SESSION_COUNT), any(JsonValue.class))).willReturn(true);
+        given(clock.now()).willReturn(SEED_TIME);
+
+        index = new SessionCountIndex(mock(Debug.class), broker, clock, true, MAX_AGE, 100);
+
+        verify(subscription).bindTo(TOPIC_SESSION_COUNT);
+        consumer = consumerCaptor.getValue();
+    }
+
+    @Test
+    public void shouldNotKnowCountUntilSeeded() {
+        assertThat(index.getSessionCount(UUID)).isEqualTo(-1);
+
+        index.seed(UUID, 2, SEED_TIME);
+
+        assertThat(index.getSessionCount(UUID)).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldTrackLocalSessionEventsAndPublishThem() {
+        // Given
+        index.seed(UUID, 2, SEED_TIME);
+
+        // When
+        index.onEvent(event(SessionEventType.SESSION_CREATION, SEED_TIME + 1));
+        index.onEvent(event(SessionEventType.SESSION_CREATION, SEED_TIME + 2));
+        index.onEvent(event(SessionEventType.LOGOUT, SEED_TIME + 3));
+
+        // Then
+        assertThat(index.getSessionCount(UUID)).isEqualTo(3);
+        ArgumentCaptor<JsonValue> notificationCaptor = ArgumentCaptor.forClass(JsonValue.class);
+        verify(broker, times(3)).publish(eq(TOPIC_SESSION_COUNT), notificationCaptor.capture());
+        JsonValue notification = notificationCaptor.getAllValues().get(2);
+        assertThat(notification).stringAt(MESSAGE_ATTR_UUID).isEqualTo(UUID);
+        assertThat(notification).integerAt(MESSAGE_ATTR_DELTA).isEqualTo(-1);
+    }
+
+    @Test
+    public void shouldCountTimedOutSessionOnce() {
+        // Given
+        index.seed(UUID, 2, SEED_TIME);
+        InternalSessionEvent timeout = event(SessionEventType.IDLE_TIMEOUT, SEED_TIME + 1);
+        InternalSessionEvent destroy =
+                new InternalSessionEvent(timeout.getInternalSession(), SessionEventType.DESTROY, SEED_TIME + 1);
+
+        // When
+        index.onEvent(timeout);
+        index.onEvent(destroy);
+
+        // Then
+        assertThat(index.getSessionCount(UUID)).isEqualTo(1);
+        verify(broker, times(1)).publish(eq(TOPIC_SESSION_COUNT), any(JsonValue.class));
+    }
+
+    @Test
+    public void shouldApplySessionCountChangesFromOtherServers() {
+        // Given
+        index.seed(UUID, 2, SEED_TIME);
+
+        // When
+        consumer.accept(notification(1, SEED_TIME + 1, "otherServer"));
+
+        // Then
+        assertThat(index.getSessionCount(UUID)).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldIgnoreOwnNotifications() {
+        // Given
+        index.seed(UUID, 2, SEED_TIME);
+        index.onEvent(event(SessionEventType.SESSION_CREATION, SEED_TIME + 1));
+        ArgumentCaptor<JsonValue> notificationCaptor = ArgumentCaptor.forClass(JsonValue.class);
+        verify(broker).publish(eq(TOPIC_SESSION_COUNT), notificationCaptor.capture());
+
+        // When
+        consumer.accept(notificationCaptor.getValue());
+
+        // Then
+        assertThat(index.getSessionCount(UUID)).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldIgnoreEventsRaisedBeforeCountWasSeeded() {
+        // Given
+        index.seed(UUID, 2, SEED_TIME);
+
+        // When
+        consumer.accept(notification(-1, SEED_TIME - 1, "otherServer"));
+
+        // Then
+        assertThat(index.getSessionCount(UUID)).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldForgetCountOnceTooOld() {
+        // Given
+        index.seed(UUID, 2, SEED_TIME);
+
+        // When
+        given(clock.now()).willReturn(SEED_TIME + MAX_AGE + 1);
+
+        // Then
+        assertThat(index.getSessionCount(UUID)).isEqualTo(-1);
+    }
+
+    @Test
+    public void shouldForgetCountIfChangeCannotBePublished() {
+        // Given
+        index.seed(UUID, 2, SEED_TIME);
+        given(broker.publish(eq(TOPIC_SESSION_COUNT), any(JsonValue.class))).willReturn(false);
+
+        // When
+        index.onEvent(event(SessionEventType.DESTROY, SEED_TIME + 1));
+
+        // Then
+        assertThat(index.getSessionCount(UUID)).isEqualTo(-1);
+    }
+
+    @Test
+    public void shouldIgnoreApplicationSessions() {
+        // Given
+        index.seed(UUID, 2, SEED_TIME);
+        InternalSessionEvent event = event(SessionEventType.SESSION_CREATION, SEED_TIME + 1);
+        given(event.getInternalSession().isAppSession()).willReturn(true);
+
+        // When
+        index.onEvent(event);
+
+        // Then
+        assertThat(index.getSessionCount(UUID)).isEqualTo(2);
+        verify(broker, never()).publish(any(Topic.class), any(JsonValue.class));
+    }
+
+    private InternalSessionEvent event(SessionEventType type, long time) {
+        InternalSession session = mock(InternalSession.class);
+        given(session.getUUID()).willReturn(UUID);
+        return new InternalSessionEvent(session, type, time);
+    }
+
+    private JsonValue notification(int delta, long eventTime, String source) {
+        return json(object(
+                field(MESSAGE_ATTR_UUID, UUID),
+                field(MESSAGE_ATTR_DELTA, delta),
+                field(MESSAGE_ATTR_EVENT_TIME, eventTime),
+                field(MESSAGE_ATTR_SOURCE, source)));
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.sun.identity.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.openam.cts.CTSPersistentStore;
+import org.forgerock.openam.cts.api.filter.TokenFilter;
+import org.forgerock.openam.cts.api.tokens.Token;
+import org.forgerock.openam.tokens.CoreTokenField;
+import org.forgerock.openam.tokens.TokenType;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class WriteBehindLockoutStoreTest {
+
+    private static final String USER_DN = "uid=demo,ou=people,dc=openam,dc=forgerock,dc=org";
+    private static final long FAILURE_LOCKOUT_TIME = 60000;
+
+    private CTSPersistentStore ctsStore;
+    private ScheduledExecutorService scheduler;
+    private List<Runnable> scheduled;
+    private WriteBehindLockoutStore store;
+
+    @BeforeMethod
+    public void setUp() {
+        ctsStore = mock(CTSPersistentStore.class);
+        scheduler = mock(ScheduledExecutorService.class);
+        scheduled = new ArrayList<Runnable>();
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                scheduled.add((Runnable) invocation.getArguments()[0]);
+                return null;
+            }
+        }).when(scheduler).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+        store = new WriteBehindLockoutStore(ctsStore, scheduler, 10, 60000, 1000);
+    }
+
+    @Test
+    public void shouldReturnNullForUnknownUser() throws Exception {
+        assertThat(store.get(USER_DN)).isNull();
+    }
+
+    @Test
+    public void shouldAddUpCountersOfAllServersReadFromCTSOnlyOnce() throws Exception {
+        // Given
+        long now = System.currentTimeMillis();
+        given(ctsStore.query(any(TokenFilter.class))).willReturn(Arrays.asList(
+                token("a", 2, now - 2000, 0, 0), token("b", 1, now - 1000, 0, 0)));
+
+        // When
+        AccountLockoutInfo acInfo = store.get(USER_DN);
+
+        // Then
+        assertThat(acInfo.getFailCount()).isEqualTo(3);
+        assertThat(acInfo.getLastFailTime()).isEqualTo(now - 1000);
+        assertThat(acInfo.isLockout()).isFalse();
+        assertThat(store.get(USER_DN)).isSameAs(acInfo);
+        verify(ctsStore, times(1)).query(any(TokenFilter.class));
+    }
+
+    @Test
+    public void shouldShareLockoutInfoHeldFirst() {
+        AccountLockoutInfo first = new AccountLockoutInfo();
+        assertThat(store.putIfAbsent(USER_DN, first)).isSameAs(first);
+        assertThat(store.putIfAbsent(USER_DN, new AccountLockoutInfo())).isSameAs(first);
+    }
+
+    @Test
+    public void shouldReplicateCounterToCTSInBackground() throws Exception {
+        // Given
+        AccountLockoutInfo acInfo = failedAt(System.currentTimeMillis());
+
+        // When
+        store.invalidPasswd(USER_DN, acInfo, FAILURE_LOCKOUT_TIME, 60000);
+        store.invalidPasswd(USER_DN, acInfo, FAILURE_LOCKOUT_TIME, 60000);
+
+        // Then
+        verify(ctsStore, never()).updateAsync(any(Token.class));
+        assertThat(scheduled).hasSize(1);
+        scheduled.get(0).run();
+        ArgumentCaptor<Token> token = ArgumentCaptor.forClass(Token.class);
+        verify(ctsStore).updateAsync(token.capture());
+        assertThat(token.getValue().getUserId()).isEqualTo(USER_DN);
+        assertThat(token.getValue().<Integer>getAttribute(CoreTokenField.INTEGER_ONE)).isEqualTo(2);
+        verify(ctsStore, never()).read(any(String.class));
+        verify(ctsStore, never()).update(any(Token.class));
+    }
+
+    @Test
+    public void shouldAddUpFailuresCountedByAllServers() throws Exception {
+        // Given
+        FakeCTS cts = new FakeCTS();
+        WriteBehindLockoutStore serverA = new WriteBehindLockoutStore(cts.store, scheduler, 10, 60000, 1000);
+        WriteBehindLockoutStore serverB = new WriteBehindLockoutStore(cts.store, scheduler, 10, 60000, 1000);
+        WriteBehindLockoutStore serverC = new WriteBehindLockoutStore(cts.store, scheduler, 10, 60000, 1000);
+        long now = System.currentTimeMillis();
+
+        // When
+        serverA.invalidPasswd(USER_DN, failedAt(now - 3000), FAILURE_LOCKOUT_TIME, 60000);
+        serverB.invalidPasswd(USER_DN, failedAt(now - 2000), FAILURE_LOCKOUT_TIME, 60000);
+        serverA.invalidPasswd(USER_DN, failedAt(now - 1000), FAILURE_LOCKOUT_TIME, 60000);
+        runScheduled();
+
+        // Then
+        assertThat(serverC.get(USER_DN).getFailCount()).isEqualTo(3);
+        assertThat(serverA.get(USER_DN).getFailCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldIgnoreFailuresCountedBeforeReset() throws Exception {
+        // Given
+        FakeCTS cts = new FakeCTS();
+        WriteBehindLockoutStore serverA = new WriteBehindLockoutStore(cts.store, scheduler, 10, 60000, 1000);
+        WriteBehindLockoutStore serverB = new WriteBehindLockoutStore(cts.store, scheduler, 10, 60000, 1000);
+        WriteBehindLockoutStore serverC = new WriteBehindLockoutStore(cts.store, scheduler, 10, 60000, 1000);
+        long now = System.currentTimeMillis();
+        AccountLockoutInfo lockedOut = failedAt(now - 1000);
+        lockedOut.setLockoutAt(now - 1000);
+        serverA.invalidPasswd(USER_DN, lockedOut, FAILURE_LOCKOUT_TIME, 60000);
+
+        // When
+        serverB.reset(USER_DN, 300000, 60000);
+        runScheduled();
+
+        // Then
+        AccountLockoutInfo acInfo = serverC.get(USER_DN);
+        assertThat(acInfo.getFailCount()).isEqualTo(0);
+        assertThat(acInfo.isLockout()).isFalse();
+        assertThat(acInfo.getActualLockoutDuration()).isEqualTo(300000);
+    }
+
+    @Test
+    public void shouldOnlyCountFailuresWithinLockoutTime() {
+        // Given
+        long now = System.currentTimeMillis();
+        WriteBehindLockoutStore.Counter recent = counter(2, now - 1000);
+        WriteBehindLockoutStore.Counter expired = counter(4, now - FAILURE_LOCKOUT_TIME - 1000);
+
+        // When
+        AccountLockoutInfo acInfo = WriteBehindLockoutStore.merge(Arrays.asList(recent, expired), now);
+
+        // Then
+        assertThat(acInfo.getFailCount()).isEqualTo(2);
+        assertThat(acInfo.getLastFailTime()).isEqualTo(now - 1000);
+    }
+
+    @Test
+    public void shouldOnlyWriteLatestStateToDataStore() throws Exception {
+        // Given
+        Runnable firstWrite = mock(Runnable.class);
+        Runnable secondWrite = mock(Runnable.class);
+
+        // When
+        store.writeBehind(USER_DN, firstWrite);
+        store.writeBehind(USER_DN, secondWrite);
+        runScheduled();
+
+        // Then
+        verify(scheduler, times(1)).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+        verify(firstWrite, never()).run();
+        verify(secondWrite).run();
+    }
+
+    private void runScheduled() {
+        for (Runnable runnable : scheduled) {
+            runnable.run();
+        }
+        scheduled.clear();
+    }
+
+    private static AccountLockoutInfo failedAt(long time) {
+        AccountLockoutInfo acInfo = new AccountLockoutInfo();
+        acInfo.setLastFailTime(time);
+        return acInfo;
+    }
+
+    private static WriteBehindLockoutStore.Counter counter(int failCount, long lastFailTime) {
+        WriteBehindLockoutStore.Counter counter = new WriteBehindLockoutStore.Counter();
+        counter.failCount = failCount;
+        counter.lastFailTime = lastFailTime;
+        counter.failureLockoutTime = FAILURE_LOCKOUT_TIME;
+        return counter;
+    }
+
+    private static Token token(String id, int failCount, long lastFailTime, long lockoutAt, long resetTime) {
+        Token token = new Token(id, TokenType.GENERIC);
+        token.setUserId(USER_DN);
+        token.setAttribute(CoreTokenField.INTEGER_ONE, failCount);
+        token.setAttribute(CoreTokenField.STRING_ONE, Long.toString(lastFailTime));
+        token.setAttribute(CoreTokenField.STRING_TWO, Long.toString(lockoutAt));
+        token.setAttribute(CoreTokenField.STRING_FOUR, Long.toString(resetTime));
+        token.setAttribute(CoreTokenField.STRING_FIVE, Long.toString(FAILURE_LOCKOUT_TIME));
+        return token;
+    }
+
+    /**
+     * A CTS shared by several servers.
+     */
+    private static final class FakeCTS {
+
+        private final CTSPersistentStore store = mock(CTSPersistentStore.class);
+        private final Map<String, Token> tokens = new HashMap<String, Token>();
+
+        FakeCTS() throws Exception {
+            doAnswer(new Answer<Collection<Token>>() {
+                @Override
+                public Collection<Token> answer(InvocationOnMock invocation) throws Throwable {
+                    Collection<Token> copies = new ArrayList<Token>();
+                    for (Token token : tokens.values()) {
+                        copies.add(new Token(token));
+                    }
+                    return copies;
+                }
+            }).when(store).query(any(TokenFilter.class));
+            doAnswer(new Answer<Void>() {
+                @Override
+                public Void answer(InvocationOnMock invocation) throws Throwable {
+                    Token token = (Token) invocation.getArguments()[0];
+                    tokens.put(token.getTokenId(), new Token(token));
+                    return null;
+                }
+            }).when(store).updateAsync(any(Token.class));
+        }
+    }
+}
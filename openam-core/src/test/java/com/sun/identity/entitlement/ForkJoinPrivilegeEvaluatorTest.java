@@ -0,0 +1,203 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.sun.identity.entitlement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import org.mockito.ArgumentCaptor;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class ForkJoinPrivilegeEvaluatorTest {
+
+    private static final int PARALLELISM = 4;
+
+    private ForkJoinPool pool;
+    private ForkJoinPrivilegeEvaluator evaluator;
+    private EntitlementCombiner combiner;
+
+    @BeforeMethod
+    public void setUp() {
+        pool = new ForkJoinPool(PARALLELISM);
+        evaluator = new ForkJoinPrivilegeEvaluator(pool);
+        combiner = mock(EntitlementCombiner.class);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void shouldCombineResultsInPrivilegeOrder() throws Exception {
+        // Given
+        final List<IPrivilege> privileges = privileges(40);
+        final List<List<Entitlement>> expected = new ArrayList<List<Entitlement>>();
+        for (int i = 0; i < privileges.size(); i++) {
+            expected.add(Collections.singletonList(mock(Entitlement.class)));
+        }
+
+        // When
+        evaluator.evaluate(privileges, new ForkJoinPrivilegeEvaluator.Evaluation() {
+            @Override
+            public List<Entitlement> evaluate(IPrivilege privilege) {
+                int index = privileges.indexOf(privilege);
+                // later privileges complete first
+                sleep(privileges.size() - index);
+                return expected.get(index);
+            }
+        }, combiner);
+
+        // Then
+        ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+        verify(combiner, times(privileges.size())).add(captor.capture());
+        assertThat(captor.getAllValues()).isEqualTo(expected);
+    }
+
+    @Test
+    public void shouldEvaluateSingleBatchOnCallingThread() throws Exception {
+        // Given
+        List<IPrivilege> privileges = privileges(3);
+        final Set<Thread> threads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+
+        // When
+        evaluator.evaluate(privileges, new ForkJoinPrivilegeEvaluator.Evaluation() {
+            @Override
+            public List<Entitlement> evaluate(IPrivilege privilege) {
+                threads.add(Thread.currentThread());
+                return Collections.emptyList();
+            }
+        }, combiner);
+
+        // Then
+        assertThat(threads).containsOnly(Thread.currentThread());
+        verify(combiner, times(3)).add(anyListOf(Entitlement.class));
+        assertThat(pool.getQueuedSubmissionCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldThrowEntitlementExceptionOfFailedPrivilege() throws Exception {
+        // Given
+        final List<IPrivilege> privileges = privileges(40);
+        final EntitlementException failure = new EntitlementException(248);
+
+        // When
+        try {
+            evaluator.evaluate(privileges, new ForkJoinPrivilegeEvaluator.Evaluation() {
+                @Override
+                public List<Entitlement> evaluate(IPrivilege privilege) throws EntitlementException {
+                    if (privileges.indexOf(privilege) == 30) {
+                        throw failure;
+                    }
+                    return Collections.emptyList();
+                }
+            }, combiner);
+            fail("Expected the evaluation to fail");
+        } catch (EntitlementException e) {
+            // Then
+            assertThat(e).isSameAs(failure);
+        }
+    }
+
+    @Test(expectedExceptions = EvaluationError.class)
+    public void shouldPropagateErrorThrownByWorker() throws Exception {
+        // Given
+        final List<IPrivilege> privileges = privileges(40);
+
+        // When
+        evaluator.evaluate(privileges, new ForkJoinPrivilegeEvaluator.Evaluation() {
+            @Override
+            public List<Entitlement> evaluate(IPrivilege privilege) {
+                if (privileges.indexOf(privilege) == 30) {
+                    throw new EvaluationError();
+                }
+                return Collections.emptyList();
+            }
+        }, combiner);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void shouldPropagateRuntimeExceptionThrownOnCallingThread() throws Exception {
+        // Given
+        List<IPrivilege> privileges = privileges(3);
+
+        // When
+        evaluator.evaluate(privileges, new ForkJoinPrivilegeEvaluator.Evaluation() {
+            @Override
+            public List<Entitlement> evaluate(IPrivilege privilege) {
+                throw new IllegalStateException();
+            }
+        }, combiner);
+    }
+
+    @Test
+    public void shouldStopCombiningOnceCombinerIsDone() throws Exception {
+        // Given
+        List<IPrivilege> privileges = privileges(40);
+        given(combiner.isDone()).willReturn(false, true);
+
+        // When
+        evaluator.evaluate(privileges, new ForkJoinPrivilegeEvaluator.Evaluation() {
+            @Override
+            public List<Entitlement> evaluate(IPrivilege privilege) {
+                return Collections.emptyList();
+            }
+        }, combiner);
+
+        // Then
+        verify(combiner).add(anyListOf(Entitlement.class));
+        verify(combiner).getResults();
+    }
+
+    @Test
+    public void shouldBoundBatchSize() {
+        assertThat(ForkJoinPrivilegeEvaluator.getBatchSize(3, PARALLELISM)).isEqualTo(5);
+        assertThat(ForkJoinPrivilegeEvaluator.getBatchSize(320, PARALLELISM)).isEqualTo(20);
+        assertThat(ForkJoinPrivilegeEvaluator.getBatchSize(100000, PARALLELISM)).isEqualTo(64);
+    }
+
+    private static List<IPrivilege> privileges(int count) {
+        List<IPrivilege> privileges = new ArrayList<IPrivilege>(count);
+        for (int i = 0; i < count; i++) {
+            privileges.add(mock(IPrivilege.class));
+        }
+        return privileges;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class EvaluationError extends Error {
+    }
+}
@@ -99,4 +99,20 @@ public class IdCacheBlockTest {
         Map cachedAttributes = cb.getAttributes(PRINCIPAL_DN, false);
         Assert.assertTrue(cachedAttributes.isEmpty());
     }
+
+    @Test
+    public void estimatedSizeTracksCachedAttributesTest() throws Exception {
+
+        IdCacheBlock cb = new IdCacheBlock(ENTRY_DN, true);
+        int emptySize = cb.getEstimatedSize();
+
+        cb.putAttributes(PRINCIPAL_DN, attributes, null, true, false);
+
+        // "Test" and "Test Value" as two byte characters
+        Assert.assertEquals(cb.getEstimatedSize(), emptySize + 2 * ("Test".length() + "Test Value".length()));
+
+        cb.clear();
+
+        Assert.assertEquals(cb.getEstimatedSize(), emptySize);
+    }
 }
@@ -0,0 +1,144 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package com.sun.identity.idm.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import com.sun.identity.idm.IdRepoErrorCode;
+import com.sun.identity.idm.IdRepoException;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class IdNotFoundCacheTest {
+
+    private static final String USER = "id=demo,ou=user,dc=openam,dc=forgerock,dc=org";
+    private static final String PRINCIPAL = "id=amadmin,ou=user,dc=openam,dc=forgerock,dc=org";
+    private static final String OTHER_PRINCIPAL = "id=other,ou=user,dc=openam,dc=forgerock,dc=org";
+
+    private IdNotFoundCache cache;
+
+    @BeforeMethod
+    public void setUp() {
+        cache = new IdNotFoundCache(10, 60);
+    }
+
+    @Test
+    public void shouldThrowNewExceptionForEachLookupHit() throws Exception {
+        // Given
+        IdRepoException original = new IdRepoException(null, IdRepoErrorCode.UNABLE_FIND_ENTRY,
+                new Object[] { "demo" });
+        original.setLDAPErrorCode("32");
+        cache.putLookup(USER, PRINCIPAL, original);
+
+        // When
+        IdRepoException first = lookup(USER, PRINCIPAL);
+        IdRepoException second = lookup(USER, PRINCIPAL);
+
+        // Then
+        assertThat(first).isNotSameAs(original).isNotSameAs(second);
+        assertThat(first.getErrorCode()).isEqualTo(IdRepoErrorCode.UNABLE_FIND_ENTRY);
+        assertThat(first.getLDAPErrorCode()).isEqualTo("32");
+        assertThat(first.getMessageArgs()).containsExactly("demo");
+    }
+
+    @Test
+    public void shouldOnlyRememberNotFoundErrors() throws Exception {
+        // Given
+        IdRepoException ide = new IdRepoException(null, IdRepoErrorCode.LDAP_EXCEPTION, null);
+
+        // When
+        boolean remembered = cache.putLookup(USER, PRINCIPAL, ide);
+
+        // Then
+        assertThat(remembered).isFalse();
+        assertThat(cache.checkLookup(USER, PRINCIPAL)).isFalse();
+    }
+
+    @Test
+    public void shouldRememberLookupPerPrincipal() throws Exception {
+        // Given
+        cache.putLookup(USER, PRINCIPAL, new IdRepoException(null, IdRepoErrorCode.TYPE_NOT_FOUND, null));
+
+        // When
+        boolean found = cache.checkLookup(USER, OTHER_PRINCIPAL);
+
+        // Then
+        assertThat(found).isFalse();
+    }
+
+    @Test
+    public void shouldNotFailLookupAfterEmptySearch() throws Exception {
+        // Given
+        cache.putSearch(USER, PRINCIPAL, false);
+
+        // When
+        boolean found = cache.checkLookup(USER, PRINCIPAL);
+
+        // Then
+        assertThat(found).isFalse();
+        assertThat(cache.isSearchNotFound(USER, PRINCIPAL, false)).isTrue();
+    }
+
+    @Test
+    public void shouldNotAnswerSearchFromFailedLookup() throws Exception {
+        // Given
+        cache.putLookup(USER, PRINCIPAL, new IdRepoException(null, IdRepoErrorCode.UNABLE_FIND_ENTRY, null));
+
+        // When
+        boolean notFound = cache.isSearchNotFound(USER, PRINCIPAL, false);
+
+        // Then
+        assertThat(notFound).isFalse();
+    }
+
+    @Test
+    public void shouldKeepRecursiveAndOneLevelSearchesApart() {
+        // Given
+        cache.putSearch(USER, PRINCIPAL, false);
+
+        // When
+        boolean notFound = cache.isSearchNotFound(USER, PRINCIPAL, true);
+
+        // Then
+        assertThat(notFound).isFalse();
+    }
+
+    @Test
+    public void shouldForgetAllMissesOfRemovedIdentity() throws Exception {
+        // Given
+        cache.putLookup(USER, PRINCIPAL, new IdRepoException(null, IdRepoErrorCode.UNABLE_FIND_ENTRY, null));
+        cache.putSearch(USER, OTHER_PRINCIPAL, true);
+
+        // When
+        cache.remove(USER);
+
+        // Then
+        assertThat(cache.checkLookup(USER, PRINCIPAL)).isFalse();
+        assertThat(cache.isSearchNotFound(USER, OTHER_PRINCIPAL, true)).isFalse();
+        assertThat(cache.size()).isEqualTo(0);
+    }
+
+    private IdRepoException lookup(String dn, String principalDN) {
+        try {
+            cache.checkLookup(dn, principalDN);
+        } catch (IdRepoException ide) {
+            return ide;
+        }
+        fail("Expected " + dn + " to be known as not found");
+        return null;
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package com.sun.identity.log.handlers;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class FileHandlerTest {
+
+    private static final String HEADER = "#Version: 1.0";
+    // The header and eight records of ten bytes fit in a file before it is rotated
+    private static final long MAX_FILE_SIZE = 100;
+    private static final int RECORDS_PER_FILE = 8;
+
+    private File directory;
+    private File file;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("FileHandlerTest").toFile();
+        file = new File(directory, "amAuthentication.access");
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        for (File log : directory.listFiles()) {
+            log.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void shouldWriteAllRecordsPublishedConcurrentlyWithFlushes() throws Exception {
+        // Given
+        final FileHandler handler = new FileHandler(file, new LineFormatter(), Long.MAX_VALUE, 0, Integer.MAX_VALUE);
+        final int threads = 4;
+        final int recordsPerThread = 500;
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicBoolean publishing = new AtomicBoolean(true);
+        List<Thread> publishers = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            publishers.add(new Thread() {
+                @Override
+                public void run() {
+                    await(start);
+                    for (int i = 0; i < recordsPerThread; i++) {
+                        handler.publish(record(thread + ":" + i));
+                    }
+                }
+            });
+        }
+        Thread flusher = new Thread() {
+            @Override
+            public void run() {
+                await(start);
+                while (publishing.get()) {
+                    handler.flush();
+                }
+            }
+        };
+
+        // When
+        for (Thread publisher : publishers) {
+            publisher.start();
+        }
+        flusher.start();
+        start.countDown();
+        for (Thread publisher : publishers) {
+            publisher.join();
+        }
+        publishing.set(false);
+        flusher.join();
+        handler.flush();
+
+        // Then
+        List<String> lines = readLines(file);
+        assertThat(lines.get(0)).isEqualTo(HEADER);
+        assertThat(lines).hasSize(1 + threads * recordsPerThread);
+        int[] next = new int[threads];
+        for (String line : lines.subList(1, lines.size())) {
+            String[] parts = line.split(":");
+            int thread = Integer.parseInt(parts[0]);
+            assertThat(Integer.parseInt(parts[1])).isEqualTo(next[thread]);
+            next[thread]++;
+        }
+    }
+
+    @Test
+    public void shouldNotLoseRecordsWhenRotatingDuringCommit() throws Exception {
+        // Given
+        FileHandler handler = new FileHandler(file, new LineFormatter(), MAX_FILE_SIZE, 5, Integer.MAX_VALUE);
+        List<String> published = new ArrayList<String>();
+        for (int i = 0; i < 5 * RECORDS_PER_FILE; i++) {
+            published.add(String.format("record-%02d", i));
+        }
+
+        // When
+        for (String message : published) {
+            handler.publish(record(message));
+        }
+        handler.flush();
+
+        // Then
+        assertThat(readRecords(5)).isEqualTo(published);
+    }
+
+    @Test
+    public void shouldAccountForWrittenBytesAcrossCommitsAndRotations() throws Exception {
+        // Given
+        FileHandler handler = new FileHandler(file, new LineFormatter(), MAX_FILE_SIZE, 5, Integer.MAX_VALUE);
+
+        // When
+        for (int i = 0; i < 5 * RECORDS_PER_FILE; i++) {
+            handler.publish(record(String.format("record-%02d", i)));
+            if (i % 3 == 0) {
+                handler.flush();
+            }
+        }
+        handler.flush();
+
+        // Then
+        for (int i = 0; i < 5; i++) {
+            File log = logFile(i);
+            List<String> lines = readLines(log);
+            assertThat(log.length()).isLessThanOrEqualTo(MAX_FILE_SIZE);
+            assertThat(lines.get(0)).isEqualTo(HEADER);
+            assertThat(lines).hasSize(1 + RECORDS_PER_FILE);
+        }
+        assertThat(logFile(5).exists()).isFalse();
+    }
+
+    @Test
+    public void shouldCountExistingBytesWhenAppendingToFile() throws Exception {
+        // Given
+        FileHandler first = new FileHandler(file, new LineFormatter(), MAX_FILE_SIZE, 5, Integer.MAX_VALUE);
+        for (int i = 0; i < RECORDS_PER_FILE / 2; i++) {
+            first.publish(record(String.format("record-%02d", i)));
+        }
+        first.close();
+
+        // When
+        FileHandler second = new FileHandler(file, new LineFormatter(), MAX_FILE_SIZE, 5, Integer.MAX_VALUE);
+        for (int i = RECORDS_PER_FILE / 2; i < RECORDS_PER_FILE + 1; i++) {
+            second.publish(record(String.format("record-%02d", i)));
+        }
+        second.flush();
+
+        // Then
+        assertThat(readLines(logFile(1))).hasSize(1 + RECORDS_PER_FILE);
+        assertThat(readLines(logFile(0))).containsExactly(HEADER, String.format("record-%02d", RECORDS_PER_FILE));
+    }
+
+    private List<String> readRecords(int files) throws IOException {
+        List<String> records = new ArrayList<String>();
+        for (int i = files - 1; i >= 0; i--) {
+            List<String> lines = readLines(logFile(i));
+            assertThat(lines.get(0)).isEqualTo(HEADER);
+            records.addAll(lines.subList(1, lines.size()));
+        }
+        return records;
+    }
+
+    private File logFile(int index) {
+        return index == 0 ? file : new File(file.getPath() + "-" + index);
+    }
+
+    private static List<String> readLines(File log) throws IOException {
+        return Files.readAllLines(log.toPath(), Charset.defaultCharset());
+    }
+
+    private static LogRecord record(String message) {
+        return new LogRecord(Level.INFO, message);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class LineFormatter extends Formatter {
+
+        @Override
+        public String format(LogRecord record) {
+            return record.getMessage() + "\n";
+        }
+
+        @Override
+        public String getHead(Handler handler) {
+            return HEADER + "\n";
+        }
+    }
+}
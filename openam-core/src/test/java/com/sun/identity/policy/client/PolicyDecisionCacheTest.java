@@ -0,0 +1,300 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.sun.identity.policy.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.iplanet.sso.SSOException;
+import com.sun.identity.policy.PolicyException;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+public class PolicyDecisionCacheTest {
+
+    private static final long TTL = 60000;
+
+    @Test
+    public void shouldCacheLoadedDecision() throws Exception {
+        // Given
+        PolicyDecisionCache cache = new PolicyDecisionCache(10, 100);
+        PolicyDecisionCache.Key key = key("/a", "token1");
+
+        // When
+        Set results = cache.load(key, null, null, TTL, loader(Collections.singleton("allow"), new AtomicInteger()));
+
+        // Then
+        assertThat(cache.get(key).resourceResults).isSameAs(results);
+        assertThat(cache.getSize()).isEqualTo(1);
+        assertThat(cache.getWeight()).isEqualTo(2);
+        assertThat(cache.getLoadCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldNotReturnExpiredDecision() throws Exception {
+        // Given
+        PolicyDecisionCache cache = new PolicyDecisionCache(10, 100);
+        PolicyDecisionCache.Key key = key("/a", "token1");
+
+        // When
+        cache.load(key, null, null, -1, loader(Collections.emptySet(), new AtomicInteger()));
+
+        // Then
+        assertThat(cache.get(key)).isNull();
+        assertThat(cache.getSize()).isEqualTo(0);
+        assertThat(cache.getExpirationCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldCoalesceConcurrentLoadsOfTheSameDecision() throws Exception {
+        // Given
+        final PolicyDecisionCache cache = new PolicyDecisionCache(10, 100);
+        final PolicyDecisionCache.Key key = key("/a", "token1");
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger loads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            // When
+            Future<Set> first = executor.submit(new Callable<Set>() {
+                @Override
+                public Set call() throws Exception {
+                    return cache.load(key, null, null, TTL, new PolicyDecisionCache.Loader() {
+                        @Override
+                        public Set load() throws PolicyException, SSOException {
+                            loads.incrementAndGet();
+                            loading.countDown();
+                            try {
+                                release.await();
+                            } catch (InterruptedException e) {
+                                throw new PolicyException(e);
+                            }
+                            return Collections.singleton("allow");
+                        }
+                    });
+                }
+            });
+            assertThat(loading.await(10, TimeUnit.SECONDS)).isTrue();
+            Future<Set> second = executor.submit(new Callable<Set>() {
+                @Override
+                public Set call() throws Exception {
+                    return cache.load(key, null, null, TTL, loader(Collections.singleton("deny"), loads));
+                }
+            });
+            while (cache.getCoalescedLoadCount() == 0) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            // Then
+            assertThat(first.get(10, TimeUnit.SECONDS)).containsExactly("allow");
+            assertThat(second.get(10, TimeUnit.SECONDS)).containsExactly("allow");
+            assertThat(loads.get()).isEqualTo(1);
+            assertThat(cache.getMissCount()).isEqualTo(2);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldEvictUnreadDecisionWhenFull() throws Exception {
+        // Given
+        PolicyDecisionCache cache = new PolicyDecisionCache(2, 100);
+        PolicyDecisionCache.Key first = key("/a", "token1");
+        PolicyDecisionCache.Key second = key("/b", "token1");
+        PolicyDecisionCache.Key third = key("/c", "token1");
+        cache.load(first, null, null, TTL, loader(Collections.emptySet(), new AtomicInteger()));
+        cache.load(second, null, null, TTL, loader(Collections.emptySet(), new AtomicInteger()));
+        cache.recordHit(cache.get(first));
+
+        // When
+        cache.load(third, null, null, TTL, loader(Collections.emptySet(), new AtomicInteger()));
+
+        // Then
+        assertThat(cache.get(first)).isNotNull();
+        assertThat(cache.get(second)).isNull();
+        assertThat(cache.get(third)).isNotNull();
+        assertThat(cache.getEvictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldEvictDecisionsOverMaximumWeight() throws Exception {
+        // Given
+        PolicyDecisionCache cache = new PolicyDecisionCache(10, 3);
+        cache.load(key("/a", "token1"), null, null, TTL, loader(Collections.singleton("allow"), new AtomicInteger()));
+
+        // When
+        cache.load(key("/b", "token1"), null, null, TTL, loader(Collections.singleton("allow"), new AtomicInteger()));
+
+        // Then
+        assertThat(cache.getSize()).isEqualTo(1);
+        assertThat(cache.getWeight()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldRemoveDecisionsOfChangedSession() throws Exception {
+        // Given
+        PolicyDecisionCache cache = new PolicyDecisionCache(10, 100);
+        cache.load(key("/a", "token1"), null, null, TTL, loader(Collections.emptySet(), new AtomicInteger()));
+        cache.load(key("/b", "token1"), null, null, TTL, loader(Collections.emptySet(), new AtomicInteger()));
+        cache.load(key("/a", "token2"), null, null, TTL, loader(Collections.emptySet(), new AtomicInteger()));
+
+        // When
+        boolean removed = cache.removeToken("token1");
+
+        // Then
+        assertThat(removed).isTrue();
+        assertThat(cache.getSize()).isEqualTo(1);
+        assertThat(cache.get(key("/a", "token2"))).isNotNull();
+    }
+
+    @Test
+    public void shouldRemoveDecisionsOfChangedResources() throws Exception {
+        // Given
+        PolicyDecisionCache cache = new PolicyDecisionCache(10, 100);
+        cache.load(key("/a", "token1"), null, null, TTL, loader(Collections.emptySet(), new AtomicInteger()));
+        cache.load(key("/b", "token2"), null, null, TTL, loader(Collections.emptySet(), new AtomicInteger()));
+
+        // When
+        cache.removeResources("service", Collections.singleton("/a"));
+
+        // Then
+        assertThat(cache.getResourceNames("service")).containsOnly("/b");
+    }
+
+    @Test
+    public void shouldForgetSessionOnceAllItsDecisionsAreRemoved() throws Exception {
+        // Given
+        PolicyDecisionCache cache = new PolicyDecisionCache(10, 100);
+        cache.load(key("/a", "token1"), null, null, TTL, loader(Collections.emptySet(), new AtomicInteger()));
+        cache.load(key("/b", "token1"), null, null, TTL, loader(Collections.emptySet(), new AtomicInteger()));
+
+        // When
+        cache.removeResources("service", Collections.singleton("/a"));
+        boolean keptWithOneDecision = cache.removeToken("token1");
+        cache.load(key("/a", "token1"), null, null, TTL, loader(Collections.emptySet(), new AtomicInteger()));
+        cache.removeResources("service", Collections.singleton("/a"));
+
+        // Then
+        assertThat(keptWithOneDecision).isTrue();
+        assertThat(cache.removeToken("token1")).isFalse();
+    }
+
+    @Test
+    public void shouldNotCacheDecisionOfResourceChangedWhileLoading() throws Exception {
+        // Given
+        final PolicyDecisionCache cache = new PolicyDecisionCache(10, 100);
+        PolicyDecisionCache.Key key = key("/a", "token1");
+
+        // When
+        cache.load(key, null, null, TTL, new PolicyDecisionCache.Loader() {
+            @Override
+            public Set load() {
+                assertThat(cache.getResourceNames("service")).containsOnly("/a");
+                cache.removeResources("service", Collections.singleton("/a"));
+                return Collections.singleton("allow");
+            }
+        });
+
+        // Then
+        assertThat(cache.get(key)).isNull();
+        assertThat(cache.getSize()).isEqualTo(0);
+        assertThat(cache.getWeight()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldNotCacheDecisionOfSessionChangedWhileLoading() throws Exception {
+        // Given
+        final PolicyDecisionCache cache = new PolicyDecisionCache(10, 100);
+        PolicyDecisionCache.Key key = key("/a", "token1");
+
+        // When
+        cache.load(key, null, null, TTL, new PolicyDecisionCache.Loader() {
+            @Override
+            public Set load() {
+                cache.removeToken("token1");
+                return Collections.singleton("allow");
+            }
+        });
+
+        // Then
+        assertThat(cache.get(key)).isNull();
+    }
+
+    @Test
+    public void shouldNotCoalesceRequestsMadeAfterServiceChangedWithLoadInFlight() throws Exception {
+        // Given
+        final PolicyDecisionCache cache = new PolicyDecisionCache(10, 100);
+        final PolicyDecisionCache.Key key = key("/a", "token1");
+        final AtomicInteger loads = new AtomicInteger();
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            // When
+            Set first = cache.load(key, null, null, TTL, new PolicyDecisionCache.Loader() {
+                @Override
+                public Set load() throws PolicyException {
+                    cache.removeService("service");
+                    try {
+                        Set second = executor.submit(new Callable<Set>() {
+                            @Override
+                            public Set call() throws Exception {
+                                return cache.load(key, null, null, TTL, loader(Collections.singleton("deny"), loads));
+                            }
+                        }).get(10, TimeUnit.SECONDS);
+                        assertThat(second).containsExactly("deny");
+                    } catch (Exception e) {
+                        throw new PolicyException(e);
+                    }
+                    return Collections.singleton("allow");
+                }
+            });
+
+            // Then
+            assertThat(first).containsExactly("allow");
+            assertThat(loads.get()).isEqualTo(1);
+            assertThat(cache.getCoalescedLoadCount()).isEqualTo(0);
+            assertThat(cache.get(key).resourceResults).containsExactly("deny");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static PolicyDecisionCache.Key key(String resourceName, String tokenID) {
+        return new PolicyDecisionCache.Key("service", resourceName, tokenID, "self");
+    }
+
+    private static PolicyDecisionCache.Loader loader(final Set results, final AtomicInteger loads) {
+        return new PolicyDecisionCache.Loader() {
+            @Override
+            public Set load() {
+                loads.incrementAndGet();
+                return results;
+            }
+        };
+    }
+}
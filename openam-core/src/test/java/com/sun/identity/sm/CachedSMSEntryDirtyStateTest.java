@@ -0,0 +1,78 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package com.sun.identity.sm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class CachedSMSEntryDirtyStateTest {
+
+    private CachedSMSEntry.DirtyState state;
+
+    @BeforeMethod
+    public void setUp() {
+        state = new CachedSMSEntry.DirtyState();
+    }
+
+    @Test
+    public void shouldStartClean() {
+        assertThat(state.isDirty()).isFalse();
+    }
+
+    @Test
+    public void shouldBeCleanAfterRefresh() {
+        // Given
+        state.markDirty();
+
+        // When
+        long refreshedVersion = state.getVersion();
+        state.markClean(refreshedVersion);
+
+        // Then
+        assertThat(state.isDirty()).isFalse();
+    }
+
+    @Test
+    public void shouldStayDirtyWhenNotifiedDuringRefresh() {
+        // Given
+        state.markDirty();
+        long refreshedVersion = state.getVersion();
+
+        // When
+        state.markDirty();
+        state.markClean(refreshedVersion);
+
+        // Then
+        assertThat(state.isDirty()).isTrue();
+    }
+
+    @Test
+    public void shouldBeCleanAfterRefreshFollowingNotificationDuringRefresh() {
+        // Given
+        state.markDirty();
+        long refreshedVersion = state.getVersion();
+        state.markDirty();
+        state.markClean(refreshedVersion);
+
+        // When
+        state.markClean(state.getVersion());
+
+        // Then
+        assertThat(state.isDirty()).isFalse();
+    }
+}
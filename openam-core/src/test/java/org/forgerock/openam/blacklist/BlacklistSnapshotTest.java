@@ -0,0 +1,119 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.blacklist;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class BlacklistSnapshotTest {
+    private static final long SNAPSHOT_TIME = 10000L;
+    private static final long OVERLAP = 1000L;
+
+    private File directory;
+    private File file;
+    private BlacklistSnapshot snapshot;
+    private Blacklist.Listener listener;
+
+    @BeforeMethod
+    public void setup() throws Exception {
+        directory = Files.createTempDirectory("blacklist").toFile();
+        file = new File(directory, "session.blacklist");
+        snapshot = new BlacklistSnapshot(file, OVERLAP);
+        listener = mock(Blacklist.Listener.class);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        file.delete();
+        directory.delete();
+    }
+
+    @Test
+    public void shouldReplayUnexpiredEntriesFromSnapshot() throws Exception {
+        // Given
+        Map<String, Long> entries = new LinkedHashMap<>();
+        entries.put("expired", SNAPSHOT_TIME - 1);
+        entries.put("session1", SNAPSHOT_TIME + 5000L);
+        entries.put("s\u00e9ssion2", SNAPSHOT_TIME + 6000L);
+        snapshot.save(entries, SNAPSHOT_TIME);
+
+        // When
+        long since = snapshot.load(listener, SNAPSHOT_TIME);
+
+        // Then
+        assertThat(since).isEqualTo(SNAPSHOT_TIME - OVERLAP);
+        verify(listener).onBlacklisted("session1", SNAPSHOT_TIME + 5000L);
+        verify(listener).onBlacklisted("s\u00e9ssion2", SNAPSHOT_TIME + 6000L);
+        verifyNoMoreInteractions(listener);
+    }
+
+    @Test
+    public void shouldReplaceEarlierSnapshot() throws Exception {
+        // Given
+        Map<String, Long> entries = new LinkedHashMap<>();
+        entries.put("session1", SNAPSHOT_TIME + 5000L);
+        snapshot.save(entries, SNAPSHOT_TIME);
+        entries.clear();
+        entries.put("session2", SNAPSHOT_TIME + 5000L);
+        snapshot.save(entries, SNAPSHOT_TIME + 1);
+
+        // When
+        long since = snapshot.load(listener, SNAPSHOT_TIME);
+
+        // Then
+        assertThat(since).isEqualTo(SNAPSHOT_TIME + 1 - OVERLAP);
+        verify(listener).onBlacklisted("session2", SNAPSHOT_TIME + 5000L);
+        verifyNoMoreInteractions(listener);
+        assertThat(directory.list()).containsOnly(file.getName());
+    }
+
+    @Test
+    public void shouldReturnNegativeWhenNoSnapshot() {
+        assertThat(snapshot.load(listener, SNAPSHOT_TIME)).isLessThan(0);
+        verifyZeroInteractions(listener);
+    }
+
+    @Test
+    public void shouldIgnoreTruncatedSnapshot() throws Exception {
+        // Given
+        Map<String, Long> entries = new LinkedHashMap<>();
+        entries.put("session1", SNAPSHOT_TIME + 5000L);
+        entries.put("session2", SNAPSHOT_TIME + 5000L);
+        snapshot.save(entries, SNAPSHOT_TIME);
+        byte[] contents = Files.readAllBytes(file.toPath());
+        Files.write(file.toPath(), Arrays.copyOf(contents, contents.length - 4));
+
+        // When
+        long since = snapshot.load(listener, SNAPSHOT_TIME);
+
+        // Then
+        assertThat(since).isLessThan(0);
+        verify(listener, never()).onBlacklisted(anyString(), anyLong());
+    }
+}
@@ -20,8 +20,13 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.willDoNothing;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
 
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+
 import com.iplanet.dpro.session.Session;
 import org.forgerock.bloomfilter.BloomFilter;
 import org.mockito.ArgumentCaptor;
@@ -125,4 +130,51 @@ public class BloomFilterBlacklistTest {
         // Then
         mockDelegate.subscribe(listener);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldPopulateBloomFilterFromSnapshotAndCatchUpFromSnapshotTime() throws Exception {
+        // Given
+        File file = File.createTempFile("session", ".blacklist");
+        try {
+            BlacklistSnapshot snapshot = new BlacklistSnapshot(file, 0L);
+            snapshot.save(Collections.singletonMap("snapshotSession", Long.MAX_VALUE), 1234L);
+
+            // When
+            testBlacklist = new BloomFilterBlacklist<>(mockDelegate, PURGE_DELAY, mockBloomFilter, snapshot);
+
+            // Then
+            verify(mockBloomFilter).add(new BloomFilterBlacklist.BlacklistEntry("snapshotSession", Long.MAX_VALUE));
+            verify(mockDelegate).subscribe(any(Blacklist.Listener.class), eq(1234L));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void shouldWriteNotifiedSessionsToSnapshot() throws Exception {
+        // Given
+        File directory = Files.createTempDirectory("blacklist").toFile();
+        File file = new File(directory, "session.blacklist");
+        try {
+            BlacklistSnapshot snapshot = new BlacklistSnapshot(file, 0L);
+            ArgumentCaptor<Blacklist.Listener> listenerArgumentCaptor
+                    = ArgumentCaptor.forClass(Blacklist.Listener.class);
+            willDoNothing().given(mockDelegate).subscribe(listenerArgumentCaptor.capture());
+            testBlacklist = new BloomFilterBlacklist<>(mockDelegate, PURGE_DELAY, mockBloomFilter, snapshot);
+            listenerArgumentCaptor.getValue().onBlacklisted("testSession", Long.MAX_VALUE);
+            listenerArgumentCaptor.getValue().onBlacklisted("expiredSession", 1234L);
+
+            // When
+            testBlacklist.snapshot();
+
+            // Then
+            Blacklist.Listener listener = mock(Blacklist.Listener.class);
+            assertThat(snapshot.load(listener, 0L)).isGreaterThanOrEqualTo(0L);
+            verify(listener).onBlacklisted("testSession", Long.MAX_VALUE);
+            verifyNoMoreInteractions(listener);
+        } finally {
+            file.delete();
+            directory.delete();
+        }
+    }
+}
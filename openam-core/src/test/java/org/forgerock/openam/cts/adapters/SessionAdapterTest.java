@@ -26,6 +26,7 @@ import static org.testng.AssertJUnit.*;
 
 import java.io.UnsupportedEncodingException;
 import java.util.Calendar;
+import java.util.Map;
 
 import org.forgerock.openam.core.DNWrapper;
 import org.forgerock.openam.cts.CoreTokenConfig;
@@ -34,11 +35,15 @@ import org.forgerock.openam.cts.api.fields.SessionTokenField;
 import org.forgerock.openam.cts.api.tokens.Token;
 import org.forgerock.openam.cts.api.tokens.TokenIdFactory;
 import org.forgerock.openam.cts.exceptions.CoreTokenException;
+import org.forgerock.openam.core.guice.CTSObjectMapperProvider;
+import org.forgerock.openam.cts.utils.BinarySerialisation;
 import org.forgerock.openam.cts.utils.JSONSerialisation;
 import org.forgerock.openam.cts.utils.blob.TokenBlobUtils;
 import org.forgerock.openam.tokens.CoreTokenField;
 import org.forgerock.openam.tokens.TokenType;
 import org.forgerock.openam.utils.TimeUtils;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -54,6 +59,7 @@ public class SessionAdapterTest {
     private TokenIdFactory mockTokenIdFactory;
     private CoreTokenConfig mockCoreTokenConfig;
     private JSONSerialisation mockJsonSerialisation;
+    private BinarySerialisation mockBinarySerialisation;
     private TokenBlobUtils blobUtils;
     private DNWrapper dnWrapper;
 
@@ -62,10 +68,11 @@ public class SessionAdapterTest {
         mockTokenIdFactory = mock(TokenIdFactory.class);
         mockCoreTokenConfig = mock(CoreTokenConfig.class);
         mockJsonSerialisation = mock(JSONSerialisation.class);
+        mockBinarySerialisation = mock(BinarySerialisation.class);
         blobUtils = new TokenBlobUtils();
         dnWrapper = mock(DNWrapper.class);
-        adapter = new SessionAdapter(mockTokenIdFactory, mockCoreTokenConfig, mockJsonSerialisation, blobUtils,
-                dnWrapper);
+        adapter = new SessionAdapter(mockTokenIdFactory, mockCoreTokenConfig, mockJsonSerialisation,
+                mockBinarySerialisation, blobUtils, dnWrapper);
     }
 
     @Test
@@ -133,7 +140,8 @@ public class SessionAdapterTest {
                 .withSetterVisibility(JsonAutoDetect.Visibility.NONE)
                 .withCreatorVisibility(JsonAutoDetect.Visibility.NONE));
         JSONSerialisation serialisation = new JSONSerialisation(mapper);
-        adapter = new SessionAdapter(mockTokenIdFactory, mockCoreTokenConfig, serialisation, blobUtils, dnWrapper);
+        adapter = new SessionAdapter(mockTokenIdFactory, mockCoreTokenConfig, serialisation,
+                mockBinarySerialisation, blobUtils, dnWrapper);
 
         // When
         InternalSession session = adapter.fromToken(token);
@@ -146,6 +154,55 @@ public class SessionAdapterTest {
 
     }
 
+    @Test
+    public void shouldRestoreLatestAccessTimeFromAttributeWithBinaryBlob() {
+        // Given
+        ObjectMapper mapper = new CTSObjectMapperProvider().get();
+        BinarySerialisation binarySerialisation = new BinarySerialisation(mapper);
+        adapter = new SessionAdapter(mockTokenIdFactory, mockCoreTokenConfig, new JSONSerialisation(mapper),
+                binarySerialisation, blobUtils, dnWrapper);
+
+        String latestAccessTime = "12345";
+        Token token = new Token("badger", TokenType.SESSION);
+        token.setAttribute(SessionTokenField.LATEST_ACCESS_TIME.getField(), latestAccessTime);
+
+        // blob contents are missing the latestAccessTime value
+        token.setBlob(binarySerialisation.serialise(new InternalSession()));
+
+        // When
+        InternalSession session = adapter.fromToken(token);
+
+        // Then
+        // if latestAccessTime was zero, this would fail
+        long epochedSeconds = currentTimeMillis() / 1000;
+        assertTrue(session.getIdleTime() < epochedSeconds);
+    }
+
+    @Test
+    public void shouldDetachLatestAccessTimeFromBinaryBlob() {
+        // Given
+        InternalSession mockSession = prototypeMockInternalSession();
+        given(mockCoreTokenConfig.isBinarySerialisation(TokenType.SESSION)).willReturn(true);
+        final byte[] binaryBlob = {BinarySerialisation.MAGIC, BinarySerialisation.VERSION};
+        given(mockBinarySerialisation.serialise(eq(mockSession), anySetOf(String.class), anyMapOf(String.class,
+                String.class))).willAnswer(new Answer<byte[]>() {
+                    @Override
+                    public byte[] answer(InvocationOnMock invocation) throws Throwable {
+                        Map<String, String> detached = (Map<String, String>) invocation.getArguments()[2];
+                        detached.put(SessionTokenField.LATEST_ACCESS_TIME.getInternalSessionFieldName(), "12345");
+                        return binaryBlob;
+                    }
+                });
+
+        // When
+        Token token = adapter.toToken(mockSession);
+
+        // Then
+        assertThat(token.getBlob()).isEqualTo(binaryBlob);
+        assertThat(token.<String>getAttribute(SessionTokenField.LATEST_ACCESS_TIME.getField())).isEqualTo("12345");
+        verify(mockJsonSerialisation, never()).serialise(any());
+    }
+
     @Test
     public void shouldAssignUserIDToTokenAttribute() {
         // Given
@@ -30,6 +30,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 
 import org.apache.commons.lang.RandomStringUtils;
 import org.forgerock.openam.cts.api.filter.TokenFilter;
@@ -73,6 +74,8 @@ import org.forgerock.util.query.QueryFilter;
 import org.forgerock.util.query.QueryFilterVisitor;
 import org.forgerock.util.time.Duration;
 import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -130,6 +133,51 @@ public class LdapAdapterTest {
         verify(mockConnection, times(1)).close();
     }
 
+    @Test
+    public void shouldNotCloseReplacedConnectionWhileRequestInFlight() throws Exception {
+        // Given
+        final Token token = new Token("badger", TokenType.SESSION);
+        final Options options = Options.defaultOptions();
+        Connection mockConnection2 = mock(Connection.class);
+        when(mockConnectionFactory.create()).thenReturn(mockConnection).thenReturn(mockConnection2);
+        given(mockConversion.getEntry(any(Token.class))).willReturn(mock(Entry.class));
+
+        final Result successResult = mockSuccessfulResult();
+        final CountDownLatch sent = new CountDownLatch(1);
+        final CountDownLatch complete = new CountDownLatch(1);
+        given(mockConnection.add(any(AddRequest.class))).willAnswer(new Answer<Result>() {
+            @Override
+            public Result answer(InvocationOnMock invocation) throws Throwable {
+                sent.countDown();
+                complete.await();
+                return successResult;
+            }
+        });
+        given(mockConnection2.add(any(AddRequest.class))).willReturn(successResult);
+        Thread inFlight = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    adapter.create(token, options);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+        inFlight.start();
+        sent.await();
+
+        // When
+        adapter.create(token, options); // replaces the first connection whilst its request is in flight
+
+        // Then
+        verify(mockConnection2).add(any(AddRequest.class));
+        verify(mockConnection, never()).close();
+        complete.countDown();
+        inFlight.join();
+        verify(mockConnection).close();
+    }
+
     @Test
     public void shouldUseConnectionForCreate() throws Exception {
         // Given
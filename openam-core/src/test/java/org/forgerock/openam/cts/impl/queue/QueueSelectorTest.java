@@ -15,6 +15,9 @@
  */
 package org.forgerock.openam.cts.impl.queue;
 
+import java.util.LinkedList;
+import java.util.Queue;
+
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -51,4 +54,19 @@ public class QueueSelectorTest {
             assertThat(select).isGreaterThanOrEqualTo(0);
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldSelectLeastLoadedQueue() {
+        Queue<String>[] queues = new Queue[] {new LinkedList<String>(), new LinkedList<String>(),
+            new LinkedList<String>()};
+        queues[0].add("one");
+        queues[1].add("two");
+        assertThat(QueueSelector.selectLeastLoaded(queues, 0)).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldSelectStartingQueueWhenEquallyLoaded() {
+        Queue<String>[] queues = new Queue[] {new LinkedList<String>(), new LinkedList<String>()};
+        assertThat(QueueSelector.selectLeastLoaded(queues, 1)).isEqualTo(1);
+    }
+}
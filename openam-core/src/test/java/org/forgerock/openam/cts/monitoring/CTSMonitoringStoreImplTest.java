@@ -23,6 +23,8 @@ import org.forgerock.openam.cts.api.tokens.Token;
 import org.forgerock.openam.cts.monitoring.impl.CTSMonitoringStoreImpl;
 import org.forgerock.openam.cts.monitoring.impl.connections.ConnectionStore;
 import org.forgerock.openam.cts.monitoring.impl.operations.TokenOperationsStore;
+import org.forgerock.openam.cts.monitoring.impl.queue.TaskBatchStore;
+import org.forgerock.openam.cts.monitoring.impl.queue.TaskQueueStore;
 import org.forgerock.openam.cts.monitoring.impl.reaper.ReaperMonitor;
 import org.mockito.Matchers;
 import org.mockito.invocation.InvocationOnMock;
@@ -46,6 +48,8 @@ public class CTSMonitoringStoreImplTest {
     private TokenOperationsStore tokenOperationsStore;
     private ReaperMonitor reaperMonitor;
     private ConnectionStore connectionStore;
+    private TaskBatchStore taskBatchStore;
+    private TaskQueueStore taskQueueStore;
 
     @BeforeMethod
     public void setUp() {
@@ -55,12 +59,16 @@ public class CTSMonitoringStoreImplTest {
         final Debug debug = mock(Debug.class);
         reaperMonitor = mock(ReaperMonitor.class);
         connectionStore = mock(ConnectionStore.class);
+        taskBatchStore = mock(TaskBatchStore.class);
+        taskQueueStore = mock(TaskQueueStore.class);
 
         ctsOperationsMonitoringStore = new CTSMonitoringStoreImpl(
                 executorService,
                 tokenOperationsStore,
                 reaperMonitor,
                 connectionStore,
+                taskBatchStore,
+                taskQueueStore,
                 debug);
         ctsReaperMonitoringStore = (CTSReaperMonitoringStore) ctsOperationsMonitoringStore;
 
@@ -283,4 +291,28 @@ public class CTSMonitoringStoreImplTest {
         //Then
         assertEquals(result, 2.0D);
     }
+
+    @Test
+    public void shouldAddTaskBatch() {
+
+        //Given
+
+        //When
+        ctsOperationsMonitoringStore.addTaskBatch(10, 5L);
+
+        //Then
+        verify(taskBatchStore).addBatch(10, 5L);
+    }
+
+    @Test
+    public void shouldAddQueueWaitTime() {
+
+        //Given
+
+        //When
+        ctsOperationsMonitoringStore.addQueueWaitTime(25L);
+
+        //Then
+        verify(taskQueueStore).addQueueWaitTime(25L);
+    }
 }
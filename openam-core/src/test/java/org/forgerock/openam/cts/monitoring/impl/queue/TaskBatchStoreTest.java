@@ -0,0 +1,64 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.cts.monitoring.impl.queue;
+
+import static org.testng.Assert.assertEquals;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TaskBatchStoreTest {
+
+    private TaskBatchStore taskBatchStore;
+
+    @BeforeMethod
+    public void setUp() {
+        taskBatchStore = new TaskBatchStore();
+    }
+
+    @Test
+    public void shouldGetZeroWhenNoBatchesAdded() {
+
+        //Given
+
+        //When
+        double averageSize = taskBatchStore.getAverageBatchSize();
+        double averageFlushTime = taskBatchStore.getAverageBatchFlushTime();
+
+        //Then
+        assertEquals(averageSize, 0D);
+        assertEquals(averageFlushTime, 0D);
+        assertEquals(taskBatchStore.getMaximumBatchSize(), 0L);
+    }
+
+    @Test
+    public void shouldAggregateBatches() {
+
+        //Given
+        taskBatchStore.addBatch(2, 10L);
+        taskBatchStore.addBatch(6, 20L);
+
+        //When
+        double averageSize = taskBatchStore.getAverageBatchSize();
+        double averageFlushTime = taskBatchStore.getAverageBatchFlushTime();
+
+        //Then
+        assertEquals(taskBatchStore.getBatchCumulativeCount(), 2L);
+        assertEquals(averageSize, 4D);
+        assertEquals(averageFlushTime, 15D);
+        assertEquals(taskBatchStore.getMaximumBatchSize(), 6L);
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.cts.utils;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.testng.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.forgerock.openam.core.guice.CTSObjectMapperProvider;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+public class BinarySerialisationTest {
+
+    private BinarySerialisation serialisation;
+    private JSONSerialisation jsonSerialisation;
+
+    @BeforeMethod
+    public void setup() throws Exception {
+        serialisation = new BinarySerialisation(new CTSObjectMapperProvider().get());
+        jsonSerialisation = new JSONSerialisation(new CTSObjectMapperProvider().get());
+    }
+
+    @Test
+    public void shouldSerialiseAString() {
+        // Given
+        String test = "Badger";
+        // When
+        String result = serialisation.deserialise(serialisation.serialise(test), String.class);
+        // Then
+        assertEquals(result, test);
+    }
+
+    @Test
+    public void shouldSerialiseAMap() {
+        // Given
+        Map<String, Object> test = new HashMap<>();
+        test.put("badger", 1234);
+        test.put("ferret", -4321L * Integer.MAX_VALUE);
+        test.put("weasel", Arrays.asList("stoat", 1.5D, true, null));
+
+        // When
+        Map<String, Object> result = serialisation.deserialise(serialisation.serialise(test), Map.class);
+        // Then
+        assertEquals(result, test);
+    }
+
+    @Test
+    public void shouldBeSmallerThanJson() {
+        // Given
+        List<Map<String, Object>> test = Arrays.asList(entry(1), entry(2), entry(3));
+        // When
+        byte[] binary = serialisation.serialise(test);
+        // Then
+        assertThat(binary.length).isLessThan(jsonSerialisation.serialise(test).length());
+    }
+
+    @Test
+    public void shouldDetachAndAttachTopLevelFields() {
+        // Given
+        Map<String, Object> test = new LinkedHashMap<>();
+        test.put("badger", "ferret");
+        test.put("latestAccessTime", 12345);
+        Map<String, String> detached = new HashMap<>();
+
+        // When
+        byte[] binary = serialisation.serialise(test, Collections.singleton("latestAccessTime"), detached);
+
+        // Then
+        assertThat(detached).isEqualTo(Collections.singletonMap("latestAccessTime", "12345"));
+        assertThat(serialisation.deserialise(binary, Map.class).containsKey("latestAccessTime")).isFalse();
+        assertEquals(serialisation.deserialise(binary, Map.class, detached), test);
+    }
+
+    @Test
+    public void shouldRecogniseBinaryData() {
+        assertThat(BinarySerialisation.isBinary(serialisation.serialise("badger"))).isTrue();
+        assertThat(BinarySerialisation.isBinary(jsonSerialisation.serialise("badger").getBytes())).isFalse();
+        assertThat(BinarySerialisation.isBinary(new byte[0])).isFalse();
+        assertThat(BinarySerialisation.isBinary(null)).isFalse();
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void shouldRejectJsonData() {
+        serialisation.deserialise(jsonSerialisation.serialise("badger").getBytes(), String.class);
+    }
+
+    @Test
+    public void shouldSerialiseRawValuesAsStrings() {
+        // Given
+        RawValues test = new RawValues();
+        Map<String, String> detached = new HashMap<>();
+
+        // When
+        byte[] binary = serialisation.serialise(test, Collections.singleton("detachedRaw"), detached);
+
+        // Then
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("raw", "{\"badger\":1}");
+        expected.put("detachedRaw", 12345);
+        assertThat(detached).isEqualTo(Collections.singletonMap("detachedRaw", "12345"));
+        assertEquals(serialisation.deserialise(binary, Map.class, detached), expected);
+    }
+
+    private static Map<String, Object> entry(int index) {
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("sessionProperty", "value" + index);
+        entry.put("sessionPropertyIndex", index);
+        return entry;
+    }
+
+    private static final class RawValues {
+        @JsonRawValue
+        private String raw = "{\"badger\":1}";
+        @JsonRawValue
+        private String detachedRaw = "12345";
+    }
+}
@@ -16,11 +16,14 @@
 package org.forgerock.openam.cts.utils.blob;
 
 import org.forgerock.openam.cts.CoreTokenConfig;
+import org.forgerock.openam.tokens.TokenType;
+import org.forgerock.openam.utils.ConfigListener;
 import org.mockito.ArgumentCaptor;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import java.util.Arrays;
+import java.util.Collections;
 
 import static org.fest.assertions.Assertions.assertThat;
 import static org.fest.assertions.Fail.fail;
@@ -144,4 +147,26 @@ public class TokenBlobStrategyTest {
         assertThat(strategy.perform(data)).isNull();
         verify(first, times(0)).reverse(any(byte[].class));
     }
+
+    @Test
+    public void shouldRebuildTokenTypeStrategiesWhenConfigChanges() throws Exception {
+        // Given
+        BlobStrategy first = mock(BlobStrategy.class);
+        BlobStrategy second = mock(BlobStrategy.class);
+        given(factory.getStrategies(config, TokenType.SESSION))
+                .willReturn(Collections.singletonList(first), Collections.singletonList(second));
+
+        TokenBlobStrategy strategy = new TokenBlobStrategy(factory, config);
+        ArgumentCaptor<ConfigListener> listener = ArgumentCaptor.forClass(ConfigListener.class);
+        verify(config).addListener(listener.capture());
+        strategy.perform(TokenType.SESSION, new byte[0]);
+
+        // When
+        listener.getValue().configChanged();
+        strategy.perform(TokenType.SESSION, new byte[0]);
+
+        // Then
+        verify(first).perform(any(byte[].class));
+        verify(second).perform(any(byte[].class));
+    }
 }
@@ -20,6 +20,8 @@ import org.forgerock.openam.cts.CoreTokenConfig;
 import org.forgerock.openam.cts.utils.blob.strategies.AttributeCompressionStrategy;
 import org.forgerock.openam.cts.utils.blob.strategies.CompressionStrategy;
 import org.forgerock.openam.cts.utils.blob.strategies.EncryptionStrategy;
+import org.forgerock.openam.cts.utils.blob.strategies.compression.DeflateCompressionCodec;
+import org.forgerock.openam.tokens.TokenType;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -30,6 +32,8 @@ import java.util.List;
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.mock;
+import static org.mockito.BDDMockito.verify;
+import static org.mockito.Matchers.anyString;
 
 public class TokenStrategyFactoryTest {
 
@@ -37,13 +41,15 @@ public class TokenStrategyFactoryTest {
     private CompressionStrategy compression;
     private EncryptionStrategy encryption;
     private AttributeCompressionStrategy attributeCompression;
+    private Debug debug;
 
     @BeforeMethod
     public void setup() {
         compression = new CompressionStrategy();
         encryption = new EncryptionStrategy(mock(Debug.class));
         attributeCompression = new AttributeCompressionStrategy(new TokenBlobUtils());
-        factory = new TokenStrategyFactory(compression, encryption, attributeCompression);
+        debug = mock(Debug.class);
+        factory = new TokenStrategyFactory(compression, encryption, attributeCompression, debug);
 
     }
 
@@ -114,4 +120,48 @@ public class TokenStrategyFactoryTest {
         assertThat(strategies.get(0)).isEqualTo(attributeCompression);
         assertThat(strategies.get(1)).isEqualTo(compression);
     }
+
+    @Test
+    public void shouldReturnCodecCompressionForTokenType() {
+        // Given
+        CoreTokenConfig config = mock(CoreTokenConfig.class);
+        given(config.isTokenCompressed()).willReturn(true);
+        given(config.getCompressionCodec(TokenType.SESSION)).willReturn(DeflateCompressionCodec.NAME);
+
+        // When
+        Collection<BlobStrategy> strategies = factory.getStrategies(config, TokenType.SESSION);
+
+        // Then
+        assertThat(strategies).hasSize(1);
+        CompressionStrategy result = (CompressionStrategy) strategies.iterator().next();
+        assertThat(result.getCodec()).isInstanceOf(DeflateCompressionCodec.class);
+    }
+
+    @Test
+    public void shouldReturnDefaultCompressionForUnconfiguredTokenType() {
+        // Given
+        CoreTokenConfig config = mock(CoreTokenConfig.class);
+        given(config.isTokenCompressed()).willReturn(true);
+
+        // When
+        Collection<BlobStrategy> strategies = factory.getStrategies(config, TokenType.OAUTH);
+
+        // Then
+        assertThat(strategies).contains(compression);
+    }
+
+    @Test
+    public void shouldReportUnknownCodecAndReturnDefaultCompression() {
+        // Given
+        CoreTokenConfig config = mock(CoreTokenConfig.class);
+        given(config.isTokenCompressed()).willReturn(true);
+        given(config.getCompressionCodec(TokenType.SESSION)).willReturn("badger");
+
+        // When
+        Collection<BlobStrategy> strategies = factory.getStrategies(config, TokenType.SESSION);
+
+        // Then
+        assertThat(strategies).contains(compression);
+        verify(debug).error(anyString());
+    }
 }
@@ -18,6 +18,8 @@ package org.forgerock.openam.cts.utils.blob.strategies;
 import org.HdrHistogram.AbstractHistogram;
 import org.HdrHistogram.AtomicHistogram;
 import org.forgerock.openam.cts.utils.blob.TokenStrategyFailedException;
+import org.forgerock.openam.cts.utils.blob.strategies.compression.DeflateCompressionCodec;
+import org.forgerock.openam.cts.utils.blob.strategies.compression.GZipCompressionCodec;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
@@ -98,6 +100,40 @@ public class CompressionStrategyTest {
         assertThat(compression.reverse(compression.perform(data))).isEqualTo(data);
     }
 
+    @Test
+    public void shouldDecompressDeflateCompressedContents() throws TokenStrategyFailedException {
+        CompressionStrategy deflate = new CompressionStrategy(new DeflateCompressionCodec());
+        byte[] compressed = deflate.perform(data);
+        assertThat(compressed.length).isLessThan(data.length);
+        assertThat(compressed[0]).isEqualTo(DeflateCompressionCodec.HEADER);
+        assertThat(deflate.reverse(compressed)).isEqualTo(data);
+    }
+
+    @Test
+    public void shouldDecompressContentsCompressedByAnotherCodec() throws TokenStrategyFailedException {
+        CompressionStrategy deflate = new CompressionStrategy(new DeflateCompressionCodec());
+        assertThat(deflate.reverse(compression.perform(data))).isEqualTo(data);
+        assertThat(compression.reverse(deflate.perform(data))).isEqualTo(data);
+    }
+
+    @Test
+    public void shouldCompressWithGZipByDefault() throws TokenStrategyFailedException {
+        assertThat(compression.perform(data)[0]).isEqualTo(GZipCompressionCodec.HEADER);
+    }
+
+    @Test (expectedExceptions = TokenStrategyFailedException.class)
+    public void shouldRejectUnknownCodecOnReverse() throws TokenStrategyFailedException {
+        compression.reverse(new byte[] { 0x7f, 0x01, 0x02 });
+    }
+
+    @Test
+    public void shouldLookupCodecsByName() {
+        assertThat(CompressionStrategy.getCodec(GZipCompressionCodec.NAME)).isInstanceOf(GZipCompressionCodec.class);
+        assertThat(CompressionStrategy.getCodec(DeflateCompressionCodec.NAME))
+                .isInstanceOf(DeflateCompressionCodec.class);
+        assertThat(CompressionStrategy.getCodec("unknown")).isNull();
+    }
+
     @DataProvider
     public Object[][] numThreads() {
         return new Object[][]{
@@ -0,0 +1,150 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.ldap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.*;
+
+import org.forgerock.opendj.ldap.LdapException;
+import org.forgerock.opendj.ldap.responses.BindResult;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.Promises;
+import org.mockito.InOrder;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class UserDNCacheTest {
+
+    private static final String KEY = "ldap.example.com:389:ou=people,dc=example,dc=com:demo";
+    private static final String DN = "uid=demo,ou=people,dc=example,dc=com";
+    private static final String MOVED_DN = "uid=demo,ou=staff,dc=example,dc=com";
+
+    private LDAPAuthStats stats;
+    private UserDNCache cache;
+    private UserDNCache.Directory directory;
+    private Promise<BindResult, LdapException> cachedBind;
+    private Promise<BindResult, LdapException> searchedBind;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        stats = new LDAPAuthStats();
+        cache = new UserDNCache(10, 60000, stats);
+        directory = mock(UserDNCache.Directory.class);
+        cachedBind = Promises.newResultPromise(mock(BindResult.class));
+        searchedBind = Promises.newResultPromise(mock(BindResult.class));
+    }
+
+    @Test
+    public void shouldBindAfterSearchOnCacheMiss() throws Exception {
+        // Given
+        given(directory.searchForUser()).willReturn(DN);
+        given(directory.bindAsync(DN)).willReturn(searchedBind);
+
+        // When
+        Promise<BindResult, LdapException> bind = cache.searchAndBind(KEY, directory);
+
+        // Then
+        assertThat(bind).isSameAs(searchedBind);
+        InOrder inOrder = inOrder(directory);
+        inOrder.verify(directory).searchForUser();
+        inOrder.verify(directory).bindAsync(DN);
+        assertThat(stats.getDNCacheMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldSendBindBeforeSearchOnCacheHit() throws Exception {
+        // Given
+        cache.put(KEY, DN);
+        given(directory.bindAsync(DN)).willReturn(cachedBind);
+        given(directory.searchForUser()).willReturn(DN);
+
+        // When
+        Promise<BindResult, LdapException> bind = cache.searchAndBind(KEY, directory);
+
+        // Then
+        assertThat(bind).isSameAs(cachedBind);
+        InOrder inOrder = inOrder(directory);
+        inOrder.verify(directory).bindAsync(DN);
+        inOrder.verify(directory).searchForUser();
+        verifyNoMoreInteractions(directory);
+        assertThat(stats.getDNCacheHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldBindAgainAtNewDNWhenUserMoved() throws Exception {
+        // Given
+        cache.put(KEY, DN);
+        given(directory.bindAsync(DN)).willReturn(cachedBind);
+        given(directory.searchForUser()).willReturn(MOVED_DN);
+        given(directory.bindAsync(MOVED_DN)).willReturn(searchedBind);
+
+        // When
+        Promise<BindResult, LdapException> bind = cache.searchAndBind(KEY, directory);
+
+        // Then
+        assertThat(bind).isSameAs(searchedBind);
+        assertThat(stats.getDNCacheInvalidationCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldInvalidateDNWhenUserNoLongerFound() throws Exception {
+        // Given
+        cache.put(KEY, DN);
+        given(directory.bindAsync(DN)).willReturn(cachedBind);
+        given(directory.searchForUser()).willReturn(null);
+
+        // When
+        Promise<BindResult, LdapException> bind = cache.searchAndBind(KEY, directory);
+
+        // Then
+        assertThat(bind).isNull();
+        assertThat(stats.getDNCacheInvalidationCount()).isEqualTo(1);
+        reset(directory);
+        given(directory.searchForUser()).willReturn(null);
+        cache.searchAndBind(KEY, directory);
+        verify(directory, never()).bindAsync(anyString());
+    }
+
+    @Test
+    public void shouldNotSendEarlyBindAfterInvalidation() throws Exception {
+        // Given
+        cache.put(KEY, DN);
+        cache.invalidate(KEY, DN);
+        given(directory.searchForUser()).willReturn(DN);
+        given(directory.bindAsync(DN)).willReturn(searchedBind);
+
+        // When
+        cache.searchAndBind(KEY, directory);
+
+        // Then
+        InOrder inOrder = inOrder(directory);
+        inOrder.verify(directory).searchForUser();
+        inOrder.verify(directory).bindAsync(DN);
+        assertThat(stats.getDNCacheInvalidationCount()).isEqualTo(1);
+        assertThat(stats.getDNCacheMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldNotCountInvalidationOfUncachedDN() {
+        // When
+        cache.invalidate(KEY, DN);
+
+        // Then
+        assertThat(stats.getDNCacheInvalidationCount()).isEqualTo(0);
+    }
+}
@@ -144,4 +144,35 @@ public class StatelessJWTCacheTest {
         // Then
         assertThat(cache.contains(mockSessionInfo)).isFalse();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldRecordHitsAndMisses() {
+        // Given
+        given(mockConfig.getJWTCacheSize()).willReturn(1);
+        cache = new StatelessJWTCache(mockConfig, mockListeners);
+        cache.cache(mock(SessionInfo.class), "badger");
+
+        // When
+        cache.getSessionInfo("badger");
+        cache.getSessionInfo("ferret");
+
+        // Then
+        assertThat(cache.getHitCount()).isEqualTo(1);
+        assertThat(cache.getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldRecordEvictions() {
+        // Given
+        given(mockConfig.getJWTCacheSize()).willReturn(1);
+        cache = new StatelessJWTCache(mockConfig, mockListeners);
+
+        // When
+        cache.cache(mock(SessionInfo.class), "badger");
+        cache.cache(mock(SessionInfo.class), "ferret");
+
+        // Then
+        assertThat(cache.getEvictionCount()).isEqualTo(1);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+}
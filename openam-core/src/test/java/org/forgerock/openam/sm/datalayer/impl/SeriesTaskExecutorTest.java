@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2015 ForgeRock AS.
+ * Copyright 2015-2016 ForgeRock AS.
  */
 
 package org.forgerock.openam.sm.datalayer.impl;
@@ -23,14 +23,20 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
+import java.util.Collections;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 
 import org.forgerock.openam.cts.impl.queue.config.CTSQueueConfiguration;
+import org.forgerock.openam.cts.impl.queue.config.CTSQueueConfiguration.QueueRouting;
+import org.forgerock.openam.cts.monitoring.CTSOperationsMonitoringStore;
 import org.forgerock.openam.shared.concurrency.ThreadMonitor;
 import org.forgerock.openam.sm.datalayer.api.DataLayerException;
+import org.forgerock.openam.sm.datalayer.api.PipelinedTask;
 import org.forgerock.openam.sm.datalayer.api.Task;
+import org.forgerock.openam.sm.datalayer.api.TokenStorageAdapter;
 import org.forgerock.openam.sm.datalayer.impl.tasks.CreateTask;
+import org.forgerock.util.promise.Promises;
 import org.mockito.ArgumentCaptor;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
@@ -44,6 +50,7 @@ public class SeriesTaskExecutorTest {
     private SeriesTaskExecutorThreadFactory processorFactory;
     private ThreadMonitor monitor;
     private CTSQueueConfiguration configuration;
+    private CTSOperationsMonitoringStore monitoringStore;
 
     @BeforeMethod
     public void setup() throws Exception {
@@ -52,8 +59,11 @@ public class SeriesTaskExecutorTest {
         monitor = mock(ThreadMonitor.class);
         configuration = mock(CTSQueueConfiguration.class);
         given(configuration.getQueueSize()).willReturn(10);
+        given(configuration.getQueueRouting()).willReturn(QueueRouting.HASH);
+        monitoringStore = mock(CTSOperationsMonitoringStore.class);
 
-        executor = new SeriesTaskExecutor(executorService, processorFactory, monitor, configuration, mock(Debug.class));
+        executor = new SeriesTaskExecutor(executorService, processorFactory, monitor, configuration, monitoringStore,
+                mock(Debug.class));
     }
 
     @Test
@@ -94,6 +104,98 @@ public class SeriesTaskExecutorTest {
         assertThat(captor.getValue().size()).isEqualTo(1);
     }
 
+    @Test
+    public void shouldRecordQueueDepthWhenTaskQueued() throws Exception {
+        // Given
+        given(processorFactory.create(any(BlockingQueue.class))).willReturn(mock(SeriesTaskExecutorThread.class));
+        given(configuration.getProcessors()).willReturn(1);
+        executor.start();
+
+        // When
+        executor.execute("123", mock(Task.class));
+
+        // Then
+        verify(monitoringStore).addQueuedTask(1);
+    }
+
+    @Test
+    public void shouldKeepTokenOnAssignedQueueWhenLeastLoadedRouting() throws Exception {
+        // Given
+        given(configuration.getQueueRouting()).willReturn(QueueRouting.LEASTLOADED);
+        given(configuration.getProcessors()).willReturn(2);
+        ArgumentCaptor<BlockingQueue> captor = ArgumentCaptor.forClass(BlockingQueue.class);
+        given(processorFactory.create(captor.capture())).willReturn(mock(SeriesTaskExecutorThread.class));
+        executor.start();
+
+        // When
+        executor.execute("123", mock(Task.class));
+        executor.execute("456", mock(Task.class));
+        executor.execute("123", mock(Task.class));
+
+        // Then
+        BlockingQueue first = captor.getAllValues().get(0);
+        BlockingQueue second = captor.getAllValues().get(1);
+        assertThat(first.size() + second.size()).isEqualTo(3);
+        assertThat(Math.abs(first.size() - second.size())).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldReleaseTokenAssignmentOnceTasksProcessed() throws Exception {
+        // Given
+        given(configuration.getQueueRouting()).willReturn(QueueRouting.LEASTLOADED);
+        given(configuration.getProcessors()).willReturn(2);
+        ArgumentCaptor<BlockingQueue> captor = ArgumentCaptor.forClass(BlockingQueue.class);
+        given(processorFactory.create(captor.capture())).willReturn(mock(SeriesTaskExecutorThread.class));
+        executor.start();
+        executor.execute("123", mock(Task.class));
+        BlockingQueue<Task> assigned = captor.getAllValues().get(0).isEmpty()
+                ? captor.getAllValues().get(1) : captor.getAllValues().get(0);
+        BlockingQueue<Task> other = assigned == captor.getAllValues().get(0)
+                ? captor.getAllValues().get(1) : captor.getAllValues().get(0);
+        assigned.add(mock(Task.class));
+        assigned.add(mock(Task.class));
+
+        // When
+        assigned.take().execute(null);
+        executor.execute("123", mock(Task.class));
+
+        // Then
+        assertThat(assigned.size()).isEqualTo(2);
+        assertThat(other.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldPipelineQueuedTaskAndReleaseTokenAssignmentOnceResultReceived() throws Exception {
+        // Given
+        given(configuration.getQueueRouting()).willReturn(QueueRouting.LEASTLOADED);
+        given(configuration.getProcessors()).willReturn(2);
+        ArgumentCaptor<BlockingQueue> captor = ArgumentCaptor.forClass(BlockingQueue.class);
+        given(processorFactory.create(captor.capture())).willReturn(mock(SeriesTaskExecutorThread.class));
+        executor.start();
+        TokenStorageAdapter adapter = mock(TokenStorageAdapter.class);
+        PipelinedTask task = mock(PipelinedTask.class);
+        given(task.getTokenId()).willReturn("123");
+        doReturn(Promises.newResultPromise(null)).when(task).executeAsync(adapter);
+        executor.execute("123", task);
+        BlockingQueue<Task> assigned = captor.getAllValues().get(0).isEmpty()
+                ? captor.getAllValues().get(1) : captor.getAllValues().get(0);
+        BlockingQueue<Task> other = assigned == captor.getAllValues().get(0)
+                ? captor.getAllValues().get(1) : captor.getAllValues().get(0);
+        Task queued = assigned.take();
+        assigned.add(mock(Task.class));
+        assigned.add(mock(Task.class));
+
+        // When
+        new SimpleTaskExecutor(mock(Debug.class), adapter).executeBatch(Collections.singletonList(queued));
+        executor.execute("123", mock(Task.class));
+
+        // Then
+        assertThat(queued).isInstanceOf(PipelinedTask.class);
+        verify(task).executeAsync(adapter);
+        verify(task, never()).execute(any(TokenStorageAdapter.class));
+        verify(monitoringStore).addQueueWaitTime(anyLong());
+        assertThat(other.size()).isEqualTo(1);
+    }
 
     @Test
     public void shouldCatchTimeoutWhenOfferingTaskToQueue() throws Exception {
@@ -17,8 +17,13 @@ package org.forgerock.openam.sm.datalayer.impl;
 
 import static org.mockito.BDDMockito.*;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
+import org.forgerock.openam.cts.impl.queue.config.CTSQueueConfiguration;
+import org.forgerock.openam.cts.monitoring.CTSOperationsMonitoringStore;
 import org.forgerock.openam.sm.datalayer.api.Task;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
@@ -32,12 +37,18 @@ public class SeriesTaskExecutorThreadTest {
 
     private SeriesTaskExecutorThread processor;
     private SimpleTaskExecutor mockExecutor;
+    private CTSQueueConfiguration mockConfiguration;
+    private CTSOperationsMonitoringStore mockMonitoringStore;
 
     @BeforeMethod
     public void setup() {
         Thread.interrupted();
         mockExecutor = mock(SimpleTaskExecutor.class);
-        processor = new SeriesTaskExecutorThread(mock(Debug.class), mockExecutor);
+        mockConfiguration = mock(CTSQueueConfiguration.class);
+        mockMonitoringStore = mock(CTSOperationsMonitoringStore.class);
+        given(mockConfiguration.getBatchSize()).willReturn(1);
+        processor = new SeriesTaskExecutorThread(mock(Debug.class), mockExecutor, mockConfiguration,
+                mockMonitoringStore);
     }
 
     // NB: TaskProcessor has a threading policy around interrupted. This tear down clears the interrupted state.
@@ -76,6 +87,48 @@ public class SeriesTaskExecutorThreadTest {
         verify(mockExecutor).execute(null, mockTask);
     }
 
+    @Test
+    public void shouldPipelineDrainedTasksInOrderWhenBatching() throws Exception {
+        // Given
+        final Task first = mock(Task.class);
+        final Task second = mock(Task.class);
+        final Task third = mock(Task.class);
+        given(mockConfiguration.getBatchSize()).willReturn(5);
+        BlockingQueue<Task> queue = generateTestQueue(first);
+        given(queue.drainTo(any(Collection.class), eq(4))).willAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocationOnMock) throws Throwable {
+                Collection<Task> batch = (Collection<Task>) invocationOnMock.getArguments()[0];
+                batch.add(second);
+                batch.add(third);
+                return 2;
+            }
+        });
+        processor.setQueue(queue);
+
+        // When
+        processor.run();
+
+        // Then
+        verify(mockExecutor).executeBatch(Arrays.asList(first, second, third));
+        verify(mockExecutor, never()).execute(anyString(), any(Task.class));
+        verify(mockMonitoringStore).addTaskBatch(eq(3), anyLong());
+    }
+
+    @Test
+    public void shouldNotWaitForBatchWhenBatchingDisabled() throws Exception {
+        // Given
+        BlockingQueue<Task> queue = generateTestQueue(mock(Task.class));
+        processor.setQueue(queue);
+
+        // When
+        processor.run();
+
+        // Then
+        verify(queue, never()).poll(anyLong(), any(TimeUnit.class));
+        verifyZeroInteractions(mockMonitoringStore);
+    }
+
     private BlockingQueue<Task> generateTestQueue(final Task first) throws InterruptedException {
         BlockingQueue<Task> queue = mock(BlockingQueue.class);
         given(queue.take()).willAnswer(new Answer<Object>() {
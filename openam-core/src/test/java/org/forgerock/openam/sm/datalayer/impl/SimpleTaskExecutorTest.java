@@ -18,8 +18,14 @@ package org.forgerock.openam.sm.datalayer.impl;
 
 import static org.mockito.Mockito.*;
 
+import java.util.Arrays;
+
+import org.forgerock.openam.sm.datalayer.api.DataLayerException;
+import org.forgerock.openam.sm.datalayer.api.PipelinedTask;
 import org.forgerock.openam.sm.datalayer.api.Task;
 import org.forgerock.openam.sm.datalayer.api.TokenStorageAdapter;
+import org.forgerock.util.promise.Promise;
+import org.mockito.InOrder;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -49,4 +55,66 @@ public class SimpleTaskExecutorTest {
         verify(task).execute(adapter);
     }
 
+    @Test
+    public void shouldSendPipelinedTasksBeforeWaitingForTheirResults() throws Exception {
+        // given
+        Promise<?, DataLayerException> firstResult = mock(Promise.class);
+        Promise<?, DataLayerException> secondResult = mock(Promise.class);
+        PipelinedTask first = pipelinedTask("one", firstResult);
+        PipelinedTask second = pipelinedTask("two", secondResult);
+
+        // when
+        executor.executeBatch(Arrays.<Task>asList(first, second));
+
+        // then
+        InOrder inOrder = inOrder(first, second, firstResult, secondResult);
+        inOrder.verify(first).executeAsync(adapter);
+        inOrder.verify(second).executeAsync(adapter);
+        inOrder.verify(firstResult).getOrThrowUninterruptibly();
+        inOrder.verify(secondResult).getOrThrowUninterruptibly();
+        verify(first, never()).execute(adapter);
+        verify(second, never()).execute(adapter);
+    }
+
+    @Test
+    public void shouldWaitForTaskOnSameTokenBeforeSendingAnother() throws Exception {
+        // given
+        Promise<?, DataLayerException> firstResult = mock(Promise.class);
+        PipelinedTask first = pipelinedTask("one", firstResult);
+        PipelinedTask second = pipelinedTask("one", mock(Promise.class));
+
+        // when
+        executor.executeBatch(Arrays.<Task>asList(first, second));
+
+        // then
+        InOrder inOrder = inOrder(first, second, firstResult);
+        inOrder.verify(first).executeAsync(adapter);
+        inOrder.verify(firstResult).getOrThrowUninterruptibly();
+        inOrder.verify(second).executeAsync(adapter);
+    }
+
+    @Test
+    public void shouldWaitForPipelinedTasksBeforeExecutingOtherTask() throws Exception {
+        // given
+        Promise<?, DataLayerException> firstResult = mock(Promise.class);
+        PipelinedTask first = pipelinedTask("one", firstResult);
+        Task second = mock(Task.class);
+
+        // when
+        executor.executeBatch(Arrays.asList(first, second));
+
+        // then
+        InOrder inOrder = inOrder(first, second, firstResult);
+        inOrder.verify(first).executeAsync(adapter);
+        inOrder.verify(firstResult).getOrThrowUninterruptibly();
+        inOrder.verify(second).execute(adapter);
+    }
+
+    private PipelinedTask pipelinedTask(String tokenId, Promise<?, DataLayerException> result) {
+        PipelinedTask task = mock(PipelinedTask.class);
+        when(task.getTokenId()).thenReturn(tokenId);
+        doReturn(result).when(task).executeAsync(adapter);
+        return task;
+    }
+
 }
\ No newline at end of file
@@ -30,6 +30,8 @@ import org.forgerock.openam.cts.impl.LdapAdapter;
 import org.forgerock.openam.sm.datalayer.api.DataLayerException;
 import org.forgerock.openam.sm.datalayer.api.ResultHandler;
 import org.forgerock.util.Options;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.Promises;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -81,4 +83,40 @@ public class UpdateTaskTest {
         task.execute(mockAdapter);
         verify(mockHandler).processResults(eq(mockReturned));
     }
+
+    @Test
+    public void shouldSendUpdateOnceReadWhenPipelined() throws Exception {
+        given(mockAdapter.readAsync(anyString(), eq(options)))
+                .willReturn(Promises.<Token, DataLayerException>newResultPromise(mockPrevious));
+        given(mockAdapter.updateAsync(mockPrevious, mockUpdated, options))
+                .willReturn(Promises.<Token, DataLayerException>newResultPromise(mockReturned));
+
+        task.executeAsync(mockAdapter).getOrThrowUninterruptibly();
+
+        verify(mockHandler).processResults(eq(mockReturned));
+    }
+
+    @Test
+    public void shouldSendCreateWhenNotPresentAndPipelined() throws Exception {
+        given(mockAdapter.readAsync(anyString(), eq(options)))
+                .willReturn(Promises.<Token, DataLayerException>newResultPromise(null));
+        given(mockAdapter.createAsync(mockUpdated, options))
+                .willReturn(Promises.<Token, DataLayerException>newResultPromise(mockReturned));
+
+        task.executeAsync(mockAdapter).getOrThrowUninterruptibly();
+
+        verify(mockHandler).processResults(eq(mockReturned));
+    }
+
+    @Test (expectedExceptions = DataLayerException.class)
+    public void shouldNotifyHandlerOfPipelinedFailure() throws Exception {
+        DataLayerException failure = new DataLayerException("test");
+        given(mockAdapter.readAsync(anyString(), eq(options)))
+                .willReturn(Promises.<Token, DataLayerException>newExceptionPromise(failure));
+
+        Promise<Token, DataLayerException> result = task.executeAsync(mockAdapter);
+
+        verify(mockHandler).processError(failure);
+        result.getOrThrowUninterruptibly();
+    }
 }
\ No newline at end of file
@@ -22,8 +22,10 @@ import static org.forgerock.opendj.ldap.LDAPConnectionFactory.*;
 
 import java.nio.charset.Charset;
 import java.security.GeneralSecurityException;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
@@ -49,6 +51,7 @@ import org.forgerock.openam.sm.datalayer.providers.LdapConnectionFactoryProvider
 import org.forgerock.openam.utils.CrestQuery;
 import org.forgerock.openam.utils.IOUtils;
 import org.forgerock.openam.utils.StringUtils;
+import org.forgerock.openam.utils.collections.ConcurrentCache;
 import org.forgerock.opendj.ldap.Attribute;
 import org.forgerock.opendj.ldap.ByteString;
 import org.forgerock.opendj.ldap.Connection;
@@ -81,7 +84,6 @@ import org.forgerock.util.Options;
 import org.forgerock.util.annotations.VisibleForTesting;
 import org.forgerock.util.time.Duration;
 
-import com.iplanet.am.util.Cache;
 import com.iplanet.services.naming.ServerEntryNotFoundException;
 import com.iplanet.services.naming.WebtopNaming;
 import com.iplanet.sso.SSOToken;
@@ -110,7 +112,7 @@ import com.sun.identity.sm.SchemaType;
 /**
  * This is an IdRepo implementation that utilizes the LDAP protocol via OpenDJ LDAP SDK to access directory servers.
  */
-public class DJLDAPv3Repo extends IdRepo implements IdentityMovedOrRenamedListener {
+public class DJLDAPv3Repo extends IdRepo implements IdentityMovedOrRenamedListener, IdentityChangedListener {
 
     private static final String CLASS_NAME = DJLDAPv3Repo.class.getName();
     private static final Debug DEBUG = Debug.getInstance("DJLDAPv3Repo");
@@ -177,9 +179,13 @@ public class DJLDAPv3Repo extends IdRepo implements IdentityMovedOrRenamedListen
     //holds the directory schema
     private volatile Schema schema;
     //provides a cache for DNs (if enabled), because an entry tends to be requested in bursts.
-    private Cache dnCache;
+    private Map<String, String> dnCache;
     // provides a switch to enable/disable the dnCache
     private boolean dnCacheEnabled = false;
+    //provides a cache for group memberships (if enabled and persistent search is configured)
+    private GroupMembershipCache membershipCache;
+    //whether the group memberships inherited through nested groups are returned
+    private boolean nestedGroupMemberships = false;
 
     private boolean isSecure = false;
     private boolean useStartTLS = false;
@@ -213,7 +219,21 @@ public class DJLDAPv3Repo extends IdRepo implements IdentityMovedOrRenamedListen
         }
         dnCacheEnabled = CollectionHelper.getBooleanMapAttr(configMap, LDAP_DNCACHE_ENABLED, true);
         if (dnCacheEnabled) {
-            dnCache = new Cache(CollectionHelper.getIntMapAttr(configParams, LDAP_DNCACHE_SIZE, 1500, DEBUG));
+            dnCache = new ConcurrentCache<>(CollectionHelper.getIntMapAttr(configParams, LDAP_DNCACHE_SIZE, 1500, DEBUG));
+        }
+        nestedGroupMemberships = CollectionHelper.getBooleanMapAttr(configParams, LDAP_NESTED_GROUP_MEMBERSHIPS, false);
+        if (CollectionHelper.getBooleanMapAttr(configParams, LDAP_MEMBERSHIP_CACHE_ENABLED, false)
+                && StringUtils.isNotEmpty(CollectionHelper.getMapAttr(configParams, LDAP_PERSISTENT_SEARCH_BASE_DN))) {
+            membershipCache = new GroupMembershipCache(
+                    CollectionHelper.getIntMapAttr(configParams, LDAP_MEMBERSHIP_CACHE_SIZE, 10000, DEBUG),
+                    TimeUnit.SECONDS.toMillis(Math.max(0,
+                            CollectionHelper.getLongMapAttr(configParams, LDAP_MEMBERSHIP_CACHE_TTL, 600, DEBUG))),
+                    new GroupMembershipCache.MembershipLoader() {
+                        @Override
+                        public Set<String> loadGroupMemberships(String dn) throws IdRepoException {
+                            return DJLDAPv3Repo.this.loadGroupMemberships(dn);
+                        }
+                    });
         }
         ldapServers = LDAPUtils.prioritizeServers(configParams.get(LDAP_SERVER_LIST), hostServerId, hostSiteId);
 
@@ -1477,15 +1497,41 @@ public class DJLDAPv3Repo extends IdRepo implements IdentityMovedOrRenamedListen
     }
 
     /**
-     * Returns the group membership informations for this given user. In case the memberOf attribute is configured,
-     * this will try to query the user entry and return the group DNs found in the memberOf attribute. Otherwise a
-     * search request will be issued using the uniqueMember attribute looking for matches with the user DN.
+     * Returns the group membership informations for this given user, from the membership cache if it is enabled. The
+     * groups the user is a member of through nested groups are included if nested group memberships are enabled.
      *
      * @param dn The DN of the user identity.
      * @return The DNs of the groups that the provided user is member of.
      * @throws IdRepoException If there was an error while retrieving the group membership information.
      */
     private Set<String> getGroupMemberships(String dn) throws IdRepoException {
+        if (membershipCache != null) {
+            return membershipCache.getGroupMemberships(dn, nestedGroupMemberships);
+        }
+        Set<String> results = loadGroupMemberships(dn);
+        if (nestedGroupMemberships) {
+            Deque<String> pending = new ArrayDeque<>(results);
+            while (!pending.isEmpty()) {
+                for (String parent : loadGroupMemberships(pending.poll())) {
+                    if (results.add(parent)) {
+                        pending.add(parent);
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Returns the direct group membership informations for this given user or group. In case the memberOf attribute
+     * is configured, this will try to query the entry and return the group DNs found in the memberOf attribute.
+     * Otherwise a search request will be issued using the uniqueMember attribute looking for matches with the DN.
+     *
+     * @param dn The DN of the user or group identity.
+     * @return The DNs of the groups that the provided identity is a direct member of.
+     * @throws IdRepoException If there was an error while retrieving the group membership information.
+     */
+    private Set<String> loadGroupMemberships(String dn) throws IdRepoException {
         Set<String> results = new HashSet<>();
         if (memberOfAttr == null) {
             Filter filter = Filter.and(groupSearchFilter, Filter.equality(uniqueMemberAttr, dn));
@@ -1683,6 +1729,10 @@ public class DJLDAPv3Repo extends IdRepo implements IdentityMovedOrRenamedListen
             handleErrorResult(ere);
         } finally {
             IOUtils.closeIfNotNull(conn);
+            if (membershipCache != null) {
+                // do not wait for the persistent search to see our own changes
+                membershipCache.clear();
+            }
         }
 
     }
@@ -2098,6 +2148,9 @@ public class DJLDAPv3Repo extends IdRepo implements IdentityMovedOrRenamedListen
                 if (dnCacheEnabled) {
                     pSearch.addMovedOrRenamedListener(this);
                 }
+                if (membershipCache != null) {
+                    pSearch.addChangedListener(this);
+                }
                 pSearch.addListener(idRepoListener, getSupportedTypes());
                 try {
                     pSearch.startQuery();
@@ -2110,6 +2163,9 @@ public class DJLDAPv3Repo extends IdRepo implements IdentityMovedOrRenamedListen
                 if (dnCacheEnabled) {
                     pSearch.addMovedOrRenamedListener(this);
                 }
+                if (membershipCache != null) {
+                    pSearch.addChangedListener(this);
+                }
             }
         }
         return 0;
@@ -2137,6 +2193,7 @@ public class DJLDAPv3Repo extends IdRepo implements IdentityMovedOrRenamedListen
                     DEBUG.error("PSearch is already removed, unable to unregister");
                 } else {
                     pSearch.removeMovedOrRenamedListener(this);
+                    pSearch.removeChangedListener(this);
                     pSearch.removeListener(idRepoListener);
                     if (!pSearch.hasListeners()) {
                         pSearch.stopSearch();
@@ -2183,6 +2240,60 @@ public class DJLDAPv3Repo extends IdRepo implements IdentityMovedOrRenamedListen
         }
     }
 
+    /**
+     * Called if an identity has changed within the identity store. The cached group memberships of a changed user are
+     * removed, and all of them are removed if a group changed, since the change may affect any member.
+     *
+     * @param entry The entry of the identity, as returned by the persistent search
+     * @param previousDN The DN of the identity before a move or rename, or {@code null}
+     */
+    @Override
+    public void identityChanged(Entry entry, DN previousDN) {
+        if (membershipCache == null) {
+            return;
+        }
+        if (isGroupEntry(entry)) {
+            membershipCache.clear();
+            if (DEBUG.messageEnabled()) {
+                DEBUG.message("Cleared membership cache as group " + entry.getName() + " changed");
+            }
+        } else {
+            membershipCache.invalidate(entry.getName());
+            if (previousDN != null) {
+                membershipCache.invalidate(previousDN);
+            }
+        }
+    }
+
+    /**
+     * Called if any identity may have changed, removes all the cached group memberships.
+     */
+    @Override
+    public void allIdentitiesChanged() {
+        if (membershipCache != null) {
+            membershipCache.clear();
+        }
+    }
+
+    /**
+     * Tells whether a persistent search entry is a group. Entries returned without their object classes are treated
+     * as groups, so that the memberships they could affect are not kept.
+     */
+    private boolean isGroupEntry(Entry entry) {
+        Attribute objectClasses = entry.getAttribute(OBJECT_CLASS_ATTR);
+        if (objectClasses == null) {
+            return true;
+        }
+        for (ByteString objectClass : objectClasses) {
+            for (String groupObjectClass : groupObjectClasses) {
+                if (groupObjectClass.equalsIgnoreCase(objectClass.toString())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     /**
      * This method constructs a persistent search "key", which will be used to
      * figure out whether there is an existing persistent search for the same
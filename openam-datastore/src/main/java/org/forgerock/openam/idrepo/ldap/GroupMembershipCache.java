@@ -0,0 +1,144 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.idrepo.ldap;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.forgerock.i18n.LocalizedIllegalArgumentException;
+import org.forgerock.openam.utils.collections.ConcurrentCache;
+import org.forgerock.opendj.ldap.DN;
+
+import com.sun.identity.idm.IdRepoException;
+
+/**
+ * Caches the group memberships of the identities of a data store as a graph: the edges go from a user to the groups
+ * it is a direct member of, and from a group to the groups it is itself a member of. The memberships of a user,
+ * including those inherited through nested groups when requested, are computed on demand by walking the graph, the
+ * edges missing from the cache being loaded from the directory.
+ * <p>
+ * The number of identities whose edges are cached is bounded. The cache relies on the owner to invalidate the identities
+ * that changed, which is why it is only used along with persistent search; the edges also expire after a time to live
+ * so that a missed change does not remain visible indefinitely.
+ */
+final class GroupMembershipCache {
+
+    /**
+     * Loads the direct group memberships of an identity from the directory.
+     */
+    interface MembershipLoader {
+
+        /**
+         * Returns the DNs of the groups the identity is a direct member of.
+         *
+         * @param dn The DN of the user or group identity.
+         * @return The DNs of the groups.
+         * @throws IdRepoException If there was an error while retrieving the group membership information.
+         */
+        Set<String> loadGroupMemberships(String dn) throws IdRepoException;
+    }
+
+    private final ConcurrentCache<DN, Set<String>> groupsByMember;
+    private final MembershipLoader loader;
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Creates a new group membership cache.
+     *
+     * @param maxSize The maximum number of identities whose direct memberships are cached.
+     * @param timeToLive The number of milliseconds after which the memberships of an identity expire, or zero if they
+     *                   do not expire.
+     * @param loader Loads the direct memberships missing from the cache.
+     */
+    GroupMembershipCache(int maxSize, long timeToLive, MembershipLoader loader) {
+        this.groupsByMember = new ConcurrentCache<>(maxSize, timeToLive);
+        this.loader = loader;
+    }
+
+    /**
+     * Returns the group memberships of a user.
+     *
+     * @param dn The DN of the user identity.
+     * @param nested Whether the groups the user is a member of through nested groups should be returned as well.
+     * @return The DNs of the groups that the provided user is member of.
+     * @throws IdRepoException If there was an error while retrieving the group membership information.
+     */
+    Set<String> getGroupMemberships(String dn, boolean nested) throws IdRepoException {
+        Set<String> results = new HashSet<>(getDirectGroupMemberships(dn));
+        if (nested) {
+            Deque<String> pending = new ArrayDeque<>(results);
+            while (!pending.isEmpty()) {
+                for (String parent : getDirectGroupMemberships(pending.poll())) {
+                    if (results.add(parent)) {
+                        pending.add(parent);
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    private Set<String> getDirectGroupMemberships(String dn) throws IdRepoException {
+        DN key;
+        try {
+            key = DN.valueOf(dn);
+        } catch (LocalizedIllegalArgumentException e) {
+            return loader.loadGroupMemberships(dn);
+        }
+        Set<String> groups = groupsByMember.get(key);
+        if (groups == null) {
+            long loadGeneration = generation.get();
+            groups = Collections.unmodifiableSet(new HashSet<>(loader.loadGroupMemberships(dn)));
+            groupsByMember.put(key, groups);
+            if (generation.get() != loadGeneration) {
+                // a change was notified while loading, which these memberships may predate
+                groupsByMember.remove(key);
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * Removes the cached memberships of an identity.
+     *
+     * @param dn The DN of the identity.
+     */
+    void invalidate(DN dn) {
+        generation.incrementAndGet();
+        groupsByMember.remove(dn);
+    }
+
+    /**
+     * Removes every cached membership.
+     */
+    void clear() {
+        generation.incrementAndGet();
+        groupsByMember.clear();
+    }
+
+    /**
+     * Returns the number of identities whose memberships are cached.
+     *
+     * @return The number of identities.
+     */
+    int size() {
+        return groupsByMember.size();
+    }
+}
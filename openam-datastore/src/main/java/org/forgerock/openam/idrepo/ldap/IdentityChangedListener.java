@@ -0,0 +1,38 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.idrepo.ldap;
+
+import org.forgerock.opendj.ldap.DN;
+import org.forgerock.opendj.ldap.Entry;
+
+/**
+ * Interface describing interactions when a watched identity is added, modified, deleted, moved or renamed.
+ */
+public interface IdentityChangedListener {
+
+    /**
+     * Called if an identity has changed within the identity store.
+     *
+     * @param entry The entry of the identity, as returned by the persistent search
+     * @param previousDN The DN of the identity before a move or rename, or {@code null}
+     */
+    void identityChanged(Entry entry, DN previousDN);
+
+    /**
+     * Called if any identity may have changed, for example after the persistent search has been reconnected.
+     */
+    void allIdentitiesChanged();
+}
@@ -22,6 +22,7 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
+import org.forgerock.openam.idrepo.ldap.IdentityChangedListener;
 import org.forgerock.openam.idrepo.ldap.IdentityMovedOrRenamedListener;
 import org.forgerock.openam.ldap.LDAPUtils;
 import org.forgerock.openam.sm.datalayer.api.ConnectionFactory;
@@ -46,6 +47,7 @@ public class DJLDAPv3PersistentSearch extends LDAPv3PersistentSearch<IdRepoListe
     private static final Debug DEBUG = Debug.getInstance("PersistentSearch");
     private final SearchResultEntryHandler resultEntryHandler = new PSearchResultEntryHandler();
     private final Set<IdentityMovedOrRenamedListener> movedOrRenamedListenerSet = new HashSet<>(1);
+    private final Set<IdentityChangedListener> changedListenerSet = new HashSet<>(1);
     private final String usersSearchAttributeName;
 
     /**
@@ -63,7 +65,7 @@ public class DJLDAPv3PersistentSearch extends LDAPv3PersistentSearch<IdRepoListe
                                 Filter.objectClassPresent()), LDAPUtils
                         .getSearchScope(CollectionHelper.getMapAttr(configMap, LDAP_PERSISTENT_SEARCH_SCOPE),
                                 SearchScope.WHOLE_SUBTREE), factory,
-                CollectionHelper.getMapAttr(configMap, LDAP_USER_SEARCH_ATTR));
+                CollectionHelper.getMapAttr(configMap, LDAP_USER_SEARCH_ATTR), OBJECT_CLASS_ATTR);
         usersSearchAttributeName = CollectionHelper.getMapAttr(configMap, LDAP_USER_SEARCH_ATTR);
     }
 
@@ -91,11 +93,36 @@ public class DJLDAPv3PersistentSearch extends LDAPv3PersistentSearch<IdRepoListe
         movedOrRenamedListenerSet.remove(movedOrRenamedListener);
     }
 
+    /**
+     * Adds an {@link IdentityChangedListener} object, which needs to be notified about every persistent search result.
+     * The caller must ensure that calls to addChangedListener/removeChangedListener invocations are synchronized
+     * correctly.
+     *
+     * @param changedListener The {@link IdentityChangedListener} instance that needs to be notified about changes.
+     */
+    public void addChangedListener(IdentityChangedListener changedListener) {
+        changedListenerSet.add(changedListener);
+    }
+
+    /**
+     * Removes an {@link IdentityChangedListener} if it was registered to get persistent search notifications.
+     * The caller must ensure that calls to addChangedListener/removeChangedListener invocations are synchronized
+     * correctly.
+     *
+     * @param changedListener The {@link IdentityChangedListener} instance to remove from the listeners
+     */
+    public void removeChangedListener(IdentityChangedListener changedListener) {
+        changedListenerSet.remove(changedListener);
+    }
+
     @Override
     protected void clearCaches() {
         for (IdRepoListener idRepoListener : getListeners().keySet()) {
             idRepoListener.allObjectsChanged();
         }
+        for (IdentityChangedListener listener : changedListenerSet) {
+            listener.allIdentitiesChanged();
+        }
     }
 
     @Override
@@ -120,6 +147,10 @@ public class DJLDAPv3PersistentSearch extends LDAPv3PersistentSearch<IdRepoListe
                     }
                 }
 
+                for (IdentityChangedListener listener : changedListenerSet) {
+                    listener.identityChanged(entry, previousDn);
+                }
+
                 for (Map.Entry<IdRepoListener, Set<IdType>> listenerEntry : getListeners().entrySet()) {
                     IdRepoListener listener = listenerEntry.getKey();
 
@@ -0,0 +1,109 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.idrepo.ldap;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.forgerock.openam.utils.CollectionUtils.asSet;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.forgerock.opendj.ldap.DN;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class GroupMembershipCacheTest {
+
+    private static final String USER = "uid=demo,ou=people,dc=openam,dc=forgerock,dc=org";
+    private static final String GROUP1 = "cn=group1,ou=groups,dc=openam,dc=forgerock,dc=org";
+    private static final String GROUP2 = "cn=group2,ou=groups,dc=openam,dc=forgerock,dc=org";
+    private static final String GROUP3 = "cn=group3,ou=groups,dc=openam,dc=forgerock,dc=org";
+
+    private final Map<String, Set<String>> memberships = new HashMap<>();
+    private final Map<String, Integer> loads = new HashMap<>();
+    private final GroupMembershipCache.MembershipLoader loader = new GroupMembershipCache.MembershipLoader() {
+        @Override
+        public Set<String> loadGroupMemberships(String dn) {
+            Integer count = loads.get(dn);
+            loads.put(dn, count == null ? 1 : count + 1);
+            Set<String> groups = memberships.get(dn);
+            return groups == null ? Collections.<String>emptySet() : groups;
+        }
+    };
+    private GroupMembershipCache cache;
+
+    @BeforeMethod
+    public void setUp() {
+        memberships.clear();
+        loads.clear();
+        memberships.put(USER, asSet(GROUP1));
+        memberships.put(GROUP1, asSet(GROUP2));
+        memberships.put(GROUP2, asSet(GROUP3));
+        memberships.put(GROUP3, asSet(GROUP1));
+        cache = new GroupMembershipCache(10, 0, loader);
+    }
+
+    @Test
+    public void shouldReturnDirectMembershipsOnly() throws Exception {
+        assertThat(cache.getGroupMemberships(USER, false)).containsOnly(GROUP1);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldReturnNestedMembershipsDespiteCycle() throws Exception {
+        assertThat(cache.getGroupMemberships(USER, true)).containsOnly(GROUP1, GROUP2, GROUP3);
+        assertThat(cache.size()).isEqualTo(4);
+    }
+
+    @Test
+    public void shouldNotReloadCachedMemberships() throws Exception {
+        cache.getGroupMemberships(USER, true);
+        cache.getGroupMemberships(USER, true);
+        assertThat(loads.get(USER)).isEqualTo(1);
+        assertThat(loads.get(GROUP3)).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldReloadInvalidatedMemberships() throws Exception {
+        cache.getGroupMemberships(USER, true);
+        memberships.put(USER, asSet(GROUP3));
+        cache.invalidate(DN.valueOf(USER));
+        assertThat(cache.getGroupMemberships(USER, false)).containsOnly(GROUP3);
+        assertThat(loads.get(USER)).isEqualTo(2);
+        assertThat(loads.get(GROUP1)).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldReloadAllMembershipsWhenCleared() throws Exception {
+        cache.getGroupMemberships(USER, true);
+        memberships.put(GROUP2, Collections.<String>emptySet());
+        cache.clear();
+        assertThat(cache.getGroupMemberships(USER, true)).containsOnly(GROUP1, GROUP2);
+        assertThat(loads.get(GROUP1)).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldReloadExpiredMemberships() throws Exception {
+        cache = new GroupMembershipCache(10, 1, loader);
+        cache.getGroupMemberships(USER, false);
+        memberships.put(USER, asSet(GROUP2));
+        Thread.sleep(10);
+        assertThat(cache.getGroupMemberships(USER, false)).containsOnly(GROUP2);
+        assertThat(loads.get(USER)).isEqualTo(2);
+    }
+}
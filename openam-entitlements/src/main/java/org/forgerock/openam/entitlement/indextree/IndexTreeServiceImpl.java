@@ -15,6 +15,7 @@
  */
 package org.forgerock.openam.entitlement.indextree;
 
+import com.iplanet.am.util.SystemProperties;
 import com.iplanet.sso.SSOToken;
 import com.sun.identity.entitlement.EntitlementException;
 import com.sun.identity.shared.debug.Debug;
@@ -28,6 +29,7 @@ import org.forgerock.openam.entitlement.indextree.events.IndexChangeEvent;
 import org.forgerock.openam.entitlement.indextree.events.IndexChangeObserver;
 import org.forgerock.openam.entitlement.indextree.events.ModificationEvent;
 import org.forgerock.openam.entitlement.indextree.events.ModificationEventType;
+import org.forgerock.openam.entitlement.utils.indextree.CompiledReferenceTree;
 import org.forgerock.openam.entitlement.utils.indextree.IndexRuleTree;
 import org.forgerock.openam.entitlement.utils.indextree.SimpleReferenceTree;
 import org.forgerock.util.thread.listener.ShutdownListener;
@@ -53,6 +55,11 @@ public class IndexTreeServiceImpl implements IndexTreeService, IndexChangeObserv
 
     private static final Debug DEBUG = Debug.getInstance("amEntitlements");
 
+    /**
+     * When true, index rule trees are compiled into an array based automaton for searching.
+     */
+    public static final String COMPILED_TREE_PROPERTY = "org.forgerock.openam.entitlement.index.tree.compiled";
+
     private static final String INDEX_PATH_ATT = "pathindex";
     private static final String SEARCH_FILTER = "(sunserviceID=indexes)";
     private static final String REALM_DN_TEMPLATE =
@@ -64,6 +71,7 @@ public class IndexTreeServiceImpl implements IndexTreeService, IndexChangeObserv
     private final PrivilegedAction<SSOToken> adminAction;
     private final ServiceManagementDAO smDAO;
     private final DNWrapper dnMapper;
+    private final boolean compiledTrees;
 
     @Inject
     public IndexTreeServiceImpl(IndexChangeManager manager, PrivilegedAction<SSOToken> adminTokenAction,
@@ -74,6 +82,7 @@ public class IndexTreeServiceImpl implements IndexTreeService, IndexChangeObserv
         this.adminAction = adminTokenAction;
         this.smDAO = smDAO;
         this.dnMapper = dnMapper;
+        this.compiledTrees = SystemProperties.getAsBoolean(COMPILED_TREE_PROPERTY);
 
         indexTreeCache = new ConcurrentHashMap<String, IndexRuleTree>();
 
@@ -156,7 +165,7 @@ public class IndexTreeServiceImpl implements IndexTreeService, IndexChangeObserv
         SSOToken token = AccessController.doPrivileged(adminAction);
 
         if (smDAO.checkIfEntryExists(baseDN, token)) {
-            indexTree = new SimpleReferenceTree();
+            indexTree = compiledTrees ? new CompiledReferenceTree() : new SimpleReferenceTree();
 
             try {
                 Set<String> excludes = Collections.emptySet();
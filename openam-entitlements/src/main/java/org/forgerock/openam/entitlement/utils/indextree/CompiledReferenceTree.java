@@ -0,0 +1,370 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.entitlement.utils.indextree;
+
+import org.forgerock.openam.entitlement.utils.indextree.treenodes.DefaultTreeNode;
+import org.forgerock.openam.entitlement.utils.indextree.treenodes.MultiWildcardNode;
+import org.forgerock.openam.entitlement.utils.indextree.treenodes.RootNode;
+import org.forgerock.openam.entitlement.utils.indextree.treenodes.SingleWildcardNode;
+import org.forgerock.openam.entitlement.utils.indextree.treenodes.TreeNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An index rule tree that compiles the rules held in a {@link SimpleReferenceTree} into an immutable, array based
+ * automaton which is then used to service searches.
+ * <p/>
+ * The compiled form lays out the tree nodes breadth first, so that the children of any node occupy a contiguous
+ * range of the arrays. Each search walks these arrays using the same election approach as
+ * {@link SimpleReferenceTree}, and so matches exactly the same rules, but without navigating node references or
+ * allocating a search context and candidate lists per search; the candidate buffers are reused per thread.
+ * <p/>
+ * Rule additions and removals are applied to the underlying tree and invalidate the compiled form, which is rebuilt
+ * by the next search. Bursts of changes therefore result in a single rebuild. Whilst a rebuild is in progress, other
+ * searches are serviced by the underlying tree rather than waiting for it to complete.
+ * <p/>
+ * Only trees made up of the node types created by the default node factory can be compiled. If any other node type
+ * is found, all searches are serviced by the underlying tree.
+ */
+public class CompiledReferenceTree implements IndexRuleTree {
+
+    private static final byte ROOT = 0;
+    private static final byte DEFAULT = 1;
+    private static final byte SINGLE_WILDCARD = 2;
+    private static final byte MULTI_WILDCARD = 3;
+
+    private static final ThreadLocal<SearchState> SEARCH_STATE = new ThreadLocal<SearchState>() {
+        @Override
+        protected SearchState initialValue() {
+            return new SearchState();
+        }
+    };
+
+    private final SimpleReferenceTree tree;
+    private final AtomicInteger version = new AtomicInteger();
+    private final Lock compileLock = new ReentrantLock();
+    private volatile CompiledRules compiledRules;
+    private volatile boolean compilable = true;
+
+    public CompiledReferenceTree() {
+        this(new SimpleReferenceTree());
+    }
+
+    public CompiledReferenceTree(SimpleReferenceTree tree) {
+        this.tree = tree;
+    }
+
+    @Override
+    public void addIndexRule(String indexRule) {
+        tree.addIndexRule(indexRule);
+        version.incrementAndGet();
+    }
+
+    @Override
+    public void addIndexRules(Collection<String> indexRules) {
+        tree.addIndexRules(indexRules);
+        version.incrementAndGet();
+    }
+
+    @Override
+    public void removeIndexRule(String indexRule) {
+        tree.removeIndexRule(indexRule);
+        version.incrementAndGet();
+    }
+
+    @Override
+    public Set<String> searchTree(String resource) {
+        if (resource == null) {
+            throw new IllegalArgumentException("The search term must not be null");
+        }
+
+        CompiledRules rules = getCompiledRules();
+        if (rules == null) {
+            return tree.searchTree(resource);
+        }
+
+        return rules.search(resource, SEARCH_STATE.get());
+    }
+
+    /**
+     * Retrieves the compiled rules, compiling them if the tree has been modified since they were last compiled.
+     *
+     * @return The compiled rules, or null if they are unavailable and the underlying tree should be searched.
+     */
+    private CompiledRules getCompiledRules() {
+        CompiledRules rules = compiledRules;
+        if (rules != null && rules.version == version.get()) {
+            return rules;
+        }
+
+        if (!compilable || !compileLock.tryLock()) {
+            // Another thread is compiling the rules, don't wait for it.
+            return null;
+        }
+
+        try {
+            // The version is read before the tree is walked, so any concurrent modification causes a recompile.
+            int currentVersion = version.get();
+            rules = compiledRules;
+            if (rules == null || rules.version != currentVersion) {
+                rules = CompiledRules.compile(tree.getRoot(), currentVersion);
+                if (rules == null) {
+                    compilable = false;
+                }
+                compiledRules = rules;
+            }
+            return rules;
+        } finally {
+            compileLock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return tree.toString();
+    }
+
+    /**
+     * The immutable compiled form of the tree.
+     */
+    private static final class CompiledRules {
+
+        private final int version;
+        private final char[] values;
+        private final byte[] kinds;
+        private final int[] firstChild;
+        private final int[] childCount;
+        private final String[] endPoints;
+
+        private CompiledRules(int version, char[] values, byte[] kinds, int[] firstChild, int[] childCount,
+                              String[] endPoints) {
+            this.version = version;
+            this.values = values;
+            this.kinds = kinds;
+            this.firstChild = firstChild;
+            this.childCount = childCount;
+            this.endPoints = endPoints;
+        }
+
+        /**
+         * Lays out the tree breadth first, with the children of each node in consecutive positions.
+         *
+         * @param root
+         *         The root of the tree.
+         * @param version
+         *         The version of the tree being compiled.
+         * @return The compiled rules, or null if the tree contains nodes which cannot be compiled.
+         */
+        static CompiledRules compile(TreeNode root, int version) {
+            List<TreeNode> nodes = new ArrayList<TreeNode>();
+            int[] firstChild = new int[64];
+            int[] childCount = new int[64];
+
+            nodes.add(root);
+            for (int i = 0; i < nodes.size(); i++) {
+                if (i == firstChild.length) {
+                    firstChild = Arrays.copyOf(firstChild, i * 2);
+                    childCount = Arrays.copyOf(childCount, i * 2);
+                }
+
+                firstChild[i] = nodes.size();
+                for (TreeNode child = nodes.get(i).getChild(); child != null; child = child.getSibling()) {
+                    nodes.add(child);
+                    childCount[i]++;
+                }
+            }
+
+            int size = nodes.size();
+            char[] values = new char[size];
+            byte[] kinds = new byte[size];
+            String[] endPoints = new String[size];
+
+            for (int i = 0; i < size; i++) {
+                TreeNode node = nodes.get(i);
+                if (node instanceof RootNode) {
+                    kinds[i] = ROOT;
+                } else if (node instanceof DefaultTreeNode) {
+                    kinds[i] = DEFAULT;
+                } else if (node instanceof SingleWildcardNode) {
+                    kinds[i] = SINGLE_WILDCARD;
+                } else if (node instanceof MultiWildcardNode) {
+                    kinds[i] = MULTI_WILDCARD;
+                } else {
+                    return null;
+                }
+
+                values[i] = node.getNodeValue();
+                if (i > 0 && node.isEndPoint()) {
+                    endPoints[i] = node.getFullPath();
+                }
+            }
+
+            return new CompiledRules(version, values, kinds, Arrays.copyOf(firstChild, size),
+                    Arrays.copyOf(childCount, size), endPoints);
+        }
+
+        /**
+         * Given a resource, elects the matching nodes character by character in the manner of
+         * {@link SimpleReferenceTree#searchTree(String)}.
+         *
+         * @param resource
+         *         The resource to be used to search the tree.
+         * @param state
+         *         The reusable search state of the current thread.
+         * @return A set of matched index rules.
+         */
+        Set<String> search(String resource, SearchState state) {
+            state.reset();
+
+            for (int i = 0, l = resource.length(); i < l && state.candidateCount > 0; i++) {
+                if (i == l - 1) {
+                    // Record that this is the last character.
+                    state.lastCharacter = true;
+                }
+
+                char searchTerm = resource.charAt(i);
+                state.startElection();
+                for (int c = 0; c < state.previousCount; c++) {
+                    int previousCandidate = state.previous[c];
+                    // Reelect any previous wildcard candidates.
+                    electWildcard(searchTerm, previousCandidate, state);
+                    // Evaluate previous candidates children.
+                    electChildren(searchTerm, previousCandidate, state);
+                }
+            }
+
+            Set<String> results = new HashSet<String>();
+            for (int c = 0; c < state.candidateCount; c++) {
+                String endPoint = endPoints[state.candidates[c]];
+                if (endPoint != null) {
+                    results.add(endPoint);
+                }
+            }
+
+            return results;
+        }
+
+        private void electChildren(char searchTerm, int parent, SearchState state) {
+            for (int child = firstChild[parent], end = child + childCount[parent]; child < end; child++) {
+                if (hasInterestIn(child, searchTerm, state)) {
+                    // Elect child as a candidate.
+                    state.elect(child);
+                    // Checks for any last chance elections.
+                    if (state.lastCharacter) {
+                        for (int next = firstChild[child], last = next + childCount[child]; next < last; next++) {
+                            electWildcard(searchTerm, next, state);
+                        }
+                    }
+                }
+
+                if (isWildcard(child)) {
+                    // This scenario handles zero or more characters.
+                    electChildren(searchTerm, child, state);
+                }
+            }
+        }
+
+        private void electWildcard(char searchTerm, int candidate, SearchState state) {
+            if (isWildcard(candidate) && hasInterestIn(candidate, searchTerm, state)) {
+                // Reelect previous candidate.
+                state.elect(candidate);
+            }
+        }
+
+        private boolean isWildcard(int node) {
+            return kinds[node] == SINGLE_WILDCARD || kinds[node] == MULTI_WILDCARD;
+        }
+
+        /**
+         * Mirrors the {@link TreeNode#hasInterestIn} implementations of the compiled node types.
+         */
+        private boolean hasInterestIn(int node, char value, SearchState state) {
+            switch (kinds[node]) {
+            case DEFAULT:
+                return values[node] == value;
+            case SINGLE_WILDCARD:
+                if (value == '?' || value == '#') {
+                    // Ignore illegal character unless it is the last character.
+                    return state.lastCharacter;
+                }
+                if (state.levelReached) {
+                    // Next URL level reached, so no longer interested.
+                    state.levelReached = false;
+                    return false;
+                }
+                if (value == '/') {
+                    // Make a note that the end of a URL level has been reached.
+                    state.levelReached = true;
+                }
+                return true;
+            case MULTI_WILDCARD:
+                if (value == '?' || value == '#') {
+                    // Ignore illegal character unless it is the last character.
+                    return state.lastCharacter;
+                }
+                return true;
+            default:
+                throw new IllegalAccessError("This is the root node");
+            }
+        }
+    }
+
+    /**
+     * The candidate buffers and context flags of a search, reused by each search on the same thread.
+     */
+    private static final class SearchState {
+
+        private int[] candidates = new int[64];
+        private int candidateCount;
+        private int[] previous = new int[64];
+        private int previousCount;
+        private boolean lastCharacter;
+        private boolean levelReached;
+
+        void reset() {
+            // Start with the root node as the candidate.
+            candidates[0] = 0;
+            candidateCount = 1;
+            previousCount = 0;
+            lastCharacter = false;
+            levelReached = false;
+        }
+
+        void startElection() {
+            // Every candidate has to be reelected.
+            int[] swap = previous;
+            previous = candidates;
+            previousCount = candidateCount;
+            candidates = swap;
+            candidateCount = 0;
+        }
+
+        void elect(int node) {
+            if (candidateCount == candidates.length) {
+                candidates = Arrays.copyOf(candidates, candidateCount * 2);
+            }
+            candidates[candidateCount++] = node;
+        }
+    }
+}
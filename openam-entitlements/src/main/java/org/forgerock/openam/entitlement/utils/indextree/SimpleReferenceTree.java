@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2013 ForgeRock Inc.
+ * Copyright 2013-2016 ForgeRock AS.
  */
 package org.forgerock.openam.entitlement.utils.indextree;
 
@@ -317,6 +317,13 @@ public class SimpleReferenceTree implements IndexRuleTree {
         }
     }
 
+    /**
+     * @return The root node of the tree.
+     */
+    TreeNode getRoot() {
+        return root;
+    }
+
     @Override
     public String toString() {
         return root.toString(false);
@@ -0,0 +1,158 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.entitlement.utils.indextree;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.forgerock.openam.entitlement.utils.indextree.nodecontext.SearchContext;
+import org.forgerock.openam.entitlement.utils.indextree.nodefactory.TreeNodeFactory;
+import org.forgerock.openam.entitlement.utils.indextree.treenodes.RootNode;
+import org.forgerock.openam.entitlement.utils.indextree.treenodes.TreeNode;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Unit test for CompiledReferenceTree.
+ */
+public class CompiledReferenceTreeTest {
+
+    private static final List<String> RULES = Arrays.asList(
+            "http://www.example.com",
+            "http://www.example.com/",
+            "http://www.example.com/index.jsp",
+            "http://www.endurl.com/*",
+            "http://www.middleurl.com/*/home",
+            "http://www.substringurl.com/a*b/",
+            "http://www.endurl.com/^",
+            "http://www.middleurl.com/^/home",
+            "http://www.substringurl.com/a^b/",
+            "http://www.test1.com/?",
+            "http://www.test2.com/*?",
+            "http://www.test3.com/?^",
+            "http://www.test4.com/^?*",
+            "http://www.test5.com/*#",
+            "http://www.test6.com/#^",
+            "*://*:*/*",
+            "*://*:*/*?*",
+            "^",
+            "*");
+
+    private static final List<String> RESOURCES = Arrays.asList(
+            "",
+            "http://www.example.com",
+            "http://www.example.com/",
+            "http://www.example.com/index.jsp",
+            "http://www.endurl.com",
+            "http://www.endurl.com/",
+            "http://www.endurl.com/home",
+            "http://www.endurl.com/a/b/c/d",
+            "http://www.middleurl.com//home",
+            "http://www.middleurl.com/abc/home",
+            "http://www.middleurl.com/a/b/c/home",
+            "http://www.substringurl.com/ab/",
+            "http://www.substringurl.com/ahellob/",
+            "http://www.substringurl.com/a/c/d/e/b/",
+            "http://www.test1.com/?",
+            "http://www.test2.com/a/b/c?",
+            "http://www.test3.com/?abc",
+            "http://www.test3.com/?a/b/c",
+            "http://www.test4.com/abc?def",
+            "http://www.test5.com/abc#",
+            "http://www.test6.com/#abc",
+            "https://www.example.com:443/index.html?query=value",
+            "www.someurl.com");
+
+    private SimpleReferenceTree simpleTree;
+    private CompiledReferenceTree compiledTree;
+
+    @BeforeMethod
+    public void setUp() {
+        simpleTree = new SimpleReferenceTree();
+        compiledTree = new CompiledReferenceTree();
+    }
+
+    @Test
+    public void shouldMatchSameRulesAsSimpleReferenceTree() {
+        // Given
+        simpleTree.addIndexRules(RULES);
+        compiledTree.addIndexRules(RULES);
+
+        // Then
+        for (String resource : RESOURCES) {
+            assertEquals(compiledTree.searchTree(resource), simpleTree.searchTree(resource), resource);
+        }
+    }
+
+    @Test
+    public void shouldRecompileWhenRulesAreAdded() {
+        // Given
+        compiledTree.addIndexRule("http://www.example.com/");
+        assertTrue(compiledTree.searchTree("http://www.test.com/").isEmpty());
+
+        // When
+        compiledTree.addIndexRule("http://www.test.com/");
+
+        // Then
+        assertEquals(compiledTree.searchTree("http://www.test.com/"), Collections.singleton("http://www.test.com/"));
+    }
+
+    @Test
+    public void shouldRecompileWhenRulesAreRemoved() {
+        // Given
+        compiledTree.addIndexRule("http://www.example.com/*");
+        assertEquals(compiledTree.searchTree("http://www.example.com/index.html"),
+                Collections.singleton("http://www.example.com/*"));
+
+        // When
+        compiledTree.removeIndexRule("http://www.example.com/*");
+
+        // Then
+        assertTrue(compiledTree.searchTree("http://www.example.com/index.html").isEmpty());
+    }
+
+    @Test
+    public void shouldSearchUnderlyingTreeWhenNodesCannotBeCompiled() {
+        // Given
+        TreeNodeFactory factory = mock(TreeNodeFactory.class);
+        TreeNode node = mock(TreeNode.class);
+        when(factory.getRootNode()).thenReturn(new RootNode());
+        when(factory.getTreeNode('a')).thenReturn(node);
+        when(node.getFullPath()).thenReturn("a");
+        when(node.isEndPoint()).thenReturn(true);
+        when(node.hasInterestIn(eq('a'), any(SearchContext.class))).thenReturn(true);
+        compiledTree = new CompiledReferenceTree(new SimpleReferenceTree(factory));
+
+        // When
+        compiledTree.addIndexRule("a");
+
+        // Then
+        assertEquals(compiledTree.searchTree("a"), Collections.singleton("a"));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void shouldRejectNullResource() {
+        compiledTree.searchTree(null);
+    }
+}
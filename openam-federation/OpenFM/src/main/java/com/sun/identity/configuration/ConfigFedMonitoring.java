@@ -45,6 +45,7 @@ import com.sun.identity.saml2.meta.SAML2MetaException;
 import com.sun.identity.saml2.meta.SAML2MetaManager;
 import com.sun.identity.saml2.meta.SAML2MetaUtils;
 import com.sun.identity.saml2.jaxb.metadata.EntityDescriptorElement;
+import com.sun.identity.saml2.profile.CacheCleanUpScheduler;
 import com.sun.identity.security.AdminTokenAction;
 import com.sun.identity.shared.debug.Debug;
 import com.sun.identity.sm.AttributeSchema;
@@ -131,6 +132,9 @@ public class ConfigFedMonitoring {
          */
         getSAML1TPs();
 
+        //  the SAML2 caches, also global
+        Agent.saml2CacheConfig(CacheCleanUpScheduler.getCaches());
+
         //  now all the realms' federation configs
         getAllRealms("/");
         date1 = newDate();
@@ -1212,6 +1212,13 @@ public interface SAML2Constants {
     // minimum Cache cleanup interval in seconds (5 mins).
     public int CACHE_CLEANUP_INTERVAL_MINIMUM = 300;
 
+    // Maximum number of entries of each expiring request and response cache
+    // attribute name in AMConfig.properties, zero for no limit. Replay detection caches are never limited.
+    public String CACHE_MAX_SIZE = "org.forgerock.openam.saml2.cacheMaxSize";
+
+    // default maximum number of entries of each expiring cache.
+    public int CACHE_MAX_SIZE_DEFAULT = 0;
+
     // IDP SLO parameter name for logout all sessions
     public String LOGOUT_ALL = "logoutAll";
 
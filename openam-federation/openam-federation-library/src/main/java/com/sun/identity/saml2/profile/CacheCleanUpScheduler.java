@@ -32,9 +32,13 @@ package com.sun.identity.saml2.profile;
 import static com.sun.identity.saml2.profile.SPCache.*;
 import static org.forgerock.openam.utils.Time.*;
 
+import com.sun.identity.common.ConcurrentExpiringMap;
 import com.sun.identity.common.SystemTimerPool;
 import com.sun.identity.common.TimerPool;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class CacheCleanUpScheduler {
     
@@ -43,28 +47,43 @@ public class CacheCleanUpScheduler {
         TimerPool pool = SystemTimerPool.getTimerPool();
         Date nextRun = new Date(((currentTimeMillis() +
                 (interval * 1000)) / 1000) * 1000);
-        pool.schedule(SPCache.requestHash, nextRun);
-        pool.schedule(SPCache.responseHash, nextRun);
-        pool.schedule(SPCache.mniRequestHash, nextRun);
-        pool.schedule(SPCache.relayStateHash, nextRun);
-        pool.schedule(SPCache.logoutRequestIDHash, nextRun);
-        pool.schedule(SPCache.reqParamHash, nextRun);
-        pool.schedule(SPCache.authnRequestHash, nextRun);
-        pool.schedule(SPCache.fedAccountHash, nextRun);
-        pool.schedule(SPCache.assertionByIDCache, nextRun);
-        pool.schedule(IDPCache.authnRequestCache, nextRun);
-        pool.schedule(IDPCache.idpAuthnContextCache, nextRun);
-        pool.schedule(IDPCache.assertionByIDCache, nextRun);
-        pool.schedule(IDPCache.relayStateCache, nextRun);
-        pool.schedule(IDPCache.responsesByArtifacts, nextRun);
-        pool.schedule(IDPCache.mniRequestHash, nextRun);
-        pool.schedule(IDPCache.responseCache, nextRun);
-        pool.schedule(IDPCache.proxySPAuthnReqCache, nextRun);
-        pool.schedule(IDPCache.proxySPLogoutReqCache, nextRun);
-        pool.schedule(IDPCache.SOAPMessageByLogoutRequestID, nextRun);
-        pool.schedule(IDPCache.logoutResponseCache, nextRun);
+        Map<String, ConcurrentExpiringMap> caches = getCaches();
+        for (Map.Entry<String, ConcurrentExpiringMap> cache : caches.entrySet()) {
+            pool.schedule(cache.getValue(), nextRun);
+            SAML2CacheStats.registerMBean(cache.getKey(), cache.getValue());
+        }
         pool.schedule(new CacheCleanUpRunnable(SPCache.interval * 1000),
             nextRun);
     }
-    
+
+    /**
+     * Returns the expiring SAML2 caches, by name.
+     *
+     * @return The caches which are cleaned up periodically.
+     */
+    public static Map<String, ConcurrentExpiringMap> getCaches() {
+        Map<String, ConcurrentExpiringMap> caches = new LinkedHashMap<>();
+        caches.put("SPCache.requestHash", SPCache.requestHash);
+        caches.put("SPCache.responseHash", SPCache.responseHash);
+        caches.put("SPCache.mniRequestHash", SPCache.mniRequestHash);
+        caches.put("SPCache.relayStateHash", SPCache.relayStateHash);
+        caches.put("SPCache.logoutRequestIDHash", SPCache.logoutRequestIDHash);
+        caches.put("SPCache.reqParamHash", SPCache.reqParamHash);
+        caches.put("SPCache.authnRequestHash", SPCache.authnRequestHash);
+        caches.put("SPCache.fedAccountHash", SPCache.fedAccountHash);
+        caches.put("SPCache.assertionByIDCache", SPCache.assertionByIDCache);
+        caches.put("IDPCache.authnRequestCache", IDPCache.authnRequestCache);
+        caches.put("IDPCache.idpAuthnContextCache", IDPCache.idpAuthnContextCache);
+        caches.put("IDPCache.assertionByIDCache", IDPCache.assertionByIDCache);
+        caches.put("IDPCache.relayStateCache", IDPCache.relayStateCache);
+        caches.put("IDPCache.responsesByArtifacts", IDPCache.responsesByArtifacts);
+        caches.put("IDPCache.mniRequestHash", IDPCache.mniRequestHash);
+        caches.put("IDPCache.responseCache", IDPCache.responseCache);
+        caches.put("IDPCache.proxySPAuthnReqCache", IDPCache.proxySPAuthnReqCache);
+        caches.put("IDPCache.proxySPLogoutReqCache", IDPCache.proxySPLogoutReqCache);
+        caches.put("IDPCache.logoutRequestById", IDPCache.logoutRequestById);
+        caches.put("IDPCache.SOAPMessageByLogoutRequestID", IDPCache.SOAPMessageByLogoutRequestID);
+        caches.put("IDPCache.logoutResponseCache", IDPCache.logoutResponseCache);
+        return Collections.unmodifiableMap(caches);
+    }
 }
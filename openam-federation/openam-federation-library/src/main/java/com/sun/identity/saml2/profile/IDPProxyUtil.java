@@ -284,9 +284,7 @@ public class IDPProxyUtil {
         AuthnRequestInfo reqInfo = new AuthnRequestInfo(request, response,
                 realm, hostedEntityId, preferredIDP, newAuthnRequest, relayState,
                 null);
-        synchronized(SPCache.requestHash) {
-            SPCache.requestHash.put(requestID, reqInfo);
-        }
+        SPCache.requestHash.put(requestID, reqInfo);
         if (SAML2FailoverUtils.isSAML2FailoverEnabled()) {
             try {
                 // sessionExpireTime is counted in seconds
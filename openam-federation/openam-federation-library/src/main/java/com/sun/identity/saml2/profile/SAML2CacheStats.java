@@ -0,0 +1,81 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.sun.identity.saml2.profile;
+
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.sun.identity.common.ConcurrentExpiringMap;
+import com.sun.identity.saml2.common.SAML2Utils;
+
+/**
+ * Reads the statistics of an expiring SAML2 cache, registered as {@code OpenAM:type=SAML2Cache,name=<cache>}.
+ */
+final class SAML2CacheStats implements SAML2CacheStatsMXBean {
+
+    private static final String OBJECT_NAME_PREFIX = "OpenAM:type=SAML2Cache,name=";
+
+    private final ConcurrentExpiringMap cache;
+
+    private SAML2CacheStats(ConcurrentExpiringMap cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public int getSize() {
+        return cache.size();
+    }
+
+    @Override
+    public int getMaxSize() {
+        return cache.getMaxSize();
+    }
+
+    @Override
+    public long getExpirationCount() {
+        return cache.getExpirationCount();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return cache.getEvictionCount();
+    }
+
+    /**
+     * Registers the statistics of a cache with the platform MBean server.
+     *
+     * @param name The name of the cache, such as {@code SPCache.requestHash}.
+     * @param cache The cache.
+     */
+    static void registerMBean(String name, ConcurrentExpiringMap cache) {
+        String objectName = OBJECT_NAME_PREFIX + name;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName mbeanName = new ObjectName(objectName);
+            if (server.isRegistered(mbeanName)) {
+                server.unregisterMBean(mbeanName);
+            }
+            server.registerMBean(new SAML2CacheStats(cache), mbeanName);
+        } catch (JMException e) {
+            SAML2Utils.debug.warning("SAML2CacheStats.registerMBean(): could not register MBean " + objectName, e);
+        } catch (SecurityException e) {
+            SAML2Utils.debug.warning("SAML2CacheStats.registerMBean(): could not register MBean " + objectName, e);
+        }
+    }
+}
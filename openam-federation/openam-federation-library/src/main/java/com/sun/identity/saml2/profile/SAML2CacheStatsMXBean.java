@@ -0,0 +1,52 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.sun.identity.saml2.profile;
+
+/**
+ * Exposes the size and the removals of one of the expiring request and response caches of {@link SPCache} and
+ * {@link IDPCache} to a JMX client such as visualVM or JConsole.
+ */
+public interface SAML2CacheStatsMXBean {
+
+    /**
+     * Returns the number of entries in the cache, including the expired ones not removed yet.
+     *
+     * @return the size of the cache.
+     */
+    int getSize();
+
+    /**
+     * Returns the maximum number of entries in the cache.
+     *
+     * @return the maximum size of the cache, or zero if its size is not bounded.
+     */
+    int getMaxSize();
+
+    /**
+     * Returns the number of entries removed from the cache as they expired.
+     *
+     * @return the number of expirations.
+     */
+    long getExpirationCount();
+
+    /**
+     * Returns the number of entries removed from the cache as it reached its maximum size.
+     *
+     * @return the number of evictions.
+     */
+    long getEvictionCount();
+}
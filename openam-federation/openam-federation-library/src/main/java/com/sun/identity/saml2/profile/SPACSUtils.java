@@ -246,9 +246,7 @@ public class SPACSUtils {
                 SAML2Utils.debug.message("SPACSUtils.getResponseFromGet: resID="
                         + resID);
             }
-            synchronized (SPCache.responseHash) {
-                respInfo = (ResponseInfo) SPCache.responseHash.remove(resID);
-            }
+            respInfo = (ResponseInfo) SPCache.responseHash.remove(resID);
             if (respInfo == null) {
                 if (SAML2Utils.debug.messageEnabled()) {
                     SAML2Utils.debug.message("SPACSUtils.getResponseFromGet: "
@@ -1783,9 +1781,7 @@ public class SPACSUtils {
         }
 
         respInfo.setIsLocalLogin(true);
-        synchronized (SPCache.responseHash) {
-           SPCache.responseHash.put(respInfo.getResponse().getID(), respInfo);
-        }
+        SPCache.responseHash.put(respInfo.getResponse().getID(), respInfo);
         SAML2Utils.debug.message("SPACSUtils:prepareForLocalLogin: localLoginUrl = {}", localLoginUrl);
 
         return localLoginUrl;
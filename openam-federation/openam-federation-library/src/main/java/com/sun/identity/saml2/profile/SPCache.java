@@ -31,10 +31,12 @@
 package com.sun.identity.saml2.profile;
 
 import java.util.Hashtable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.forgerock.openam.utils.StringUtils;
 
-import com.sun.identity.common.PeriodicCleanUpMap;
+import com.sun.identity.common.ConcurrentExpiringMap;
 import com.sun.identity.saml2.common.SAML2Constants;
 import com.sun.identity.saml2.common.SAML2Utils;
 import com.sun.identity.shared.configuration.SystemPropertiesManager;
@@ -48,8 +50,11 @@ public class SPCache {
 
     public static int interval = SAML2Constants.CACHE_CLEANUP_INTERVAL_DEFAULT;
     public static boolean isFedlet = false;
+    private static int maxSize = SAML2Constants.CACHE_MAX_SIZE_DEFAULT;
 
     private static final String FEDLET_CLASS = "com.sun.identity.plugin.configuration.impl.FedletConfigurationImpl";
+    // number of ticks of the timing wheel of an expiring cache per cleanup interval
+    private static final int CACHE_WHEEL_TICKS = 60;
 
     static {
         // if interval is manually configured and if it's less than minimum of 5 mins, then set it to minimum.
@@ -60,6 +65,8 @@ public class SPCache {
                             + " Setting to minimum value.", SAML2Constants.CACHE_CLEANUP_INTERVAL_MINIMUM);
             interval = SAML2Constants.CACHE_CLEANUP_INTERVAL_MINIMUM;
         } 
+        maxSize = Math.max(0, SystemPropertiesManager.getAsInt(SAML2Constants.CACHE_MAX_SIZE,
+                SAML2Constants.CACHE_MAX_SIZE_DEFAULT));
         // use the configuration implementation class to determine
         // if this is Fedlet, this could be done using a dedicate property
         // in the future 
@@ -72,45 +79,61 @@ public class SPCache {
     private SPCache() {
     }
 
+    /**
+     * Creates a cache whose entries expire after the cleanup interval, and which holds at most the configured
+     * maximum number of entries. The cache must be scheduled by {@link CacheCleanUpScheduler}.
+     *
+     * @return the new cache.
+     */
+    static ConcurrentExpiringMap newCache() {
+        return new ConcurrentExpiringMap(interval * 1000L, interval * 1000L / CACHE_WHEEL_TICKS, maxSize);
+    }
+
+    /**
+     * Creates a cache whose entries expire after the cleanup interval, regardless of the configured maximum number
+     * of entries. Used for the caches that detect replays, which must not forget an entry before it expires. The
+     * cache must be scheduled by {@link CacheCleanUpScheduler}.
+     *
+     * @return the new cache.
+     */
+    static ConcurrentExpiringMap newUnboundedCache() {
+        return new ConcurrentExpiringMap(interval * 1000L, interval * 1000L / CACHE_WHEEL_TICKS);
+    }
+
     /**
      * Map saves the authentication request.
      * Key   :   A unique key String value
      * Value : AuthnRequest object
      */
-    final public static PeriodicCleanUpMap authnRequestHash = new PeriodicCleanUpMap(
-            interval * 1000, interval * 1000);
+    final public static ConcurrentExpiringMap authnRequestHash = newCache();
 
     /**
      * Map saves data on whether the account was federated.
      * Key   :   A unique key String value
      * Value : String representing boolean val
      */
-    final public static PeriodicCleanUpMap fedAccountHash = new PeriodicCleanUpMap(
-            interval * 1000, interval * 1000);
+    final public static ConcurrentExpiringMap fedAccountHash = newCache();
 
     /**
      * Map saves the request info.
      * Key   :   requestID String
      * Value : AuthnRequestInfo object
      */
-    final public static PeriodicCleanUpMap requestHash = new PeriodicCleanUpMap(
-        interval * 1000, interval * 1000); 
+    final public static ConcurrentExpiringMap requestHash = newCache();
 
     /**
      * Map saves the MNI request info.
      * Key   :   requestID String
      * Value : ManageNameIDRequestInfo object
      */
-    final protected static PeriodicCleanUpMap mniRequestHash = new PeriodicCleanUpMap(
-        interval * 1000, interval * 1000);
+    final protected static ConcurrentExpiringMap mniRequestHash = newCache();
 
     /**
      * Map to save the relayState URL.
      * Key  : a String the relayStateID 
      * Value: a String the RelayState Value 
      */
-    final public static PeriodicCleanUpMap relayStateHash= new PeriodicCleanUpMap(
-        interval * 1000, interval * 1000);
+    final public static ConcurrentExpiringMap relayStateHash = newCache();
 
     /**
      * Hashtable stores information required for LogoutRequest consumption.
@@ -128,31 +151,29 @@ public class SPCache {
      * key : request ID (String)
      * value : original logout request object  (LogotRequest)
      */
-    final public static PeriodicCleanUpMap logoutRequestIDHash =
-        new PeriodicCleanUpMap(interval * 1000, interval * 1000);
+    final public static ConcurrentExpiringMap logoutRequestIDHash = newCache();
 
     /**
      * Map saves response info for local auth.
      * Key: requestID String
      * Value: ResponseInfo object
      */
-    final protected static PeriodicCleanUpMap responseHash = new PeriodicCleanUpMap(
-        interval * 1000, interval * 1000);
+    final protected static ConcurrentExpiringMap responseHash = newCache();
 
     /**
-     * Hashtable saves AuthnContext Mapper object.
+     * Map saves AuthnContext Mapper object.
      * Key: hostEntityID+realmName
      * Value: SPAuthnContextMapper
      */
-    final public static Hashtable authCtxObjHash = new Hashtable();
+    final public static Map authCtxObjHash = new ConcurrentHashMap();
 
     /**
-     * Hashtable saves AuthnContext class name and the authLevel. 
+     * Map saves AuthnContext class name and the authLevel. 
      * Key: hostEntityID+realmName
      * Value: Map containing AuthContext Class Name as Key and value
      *              is authLevel.
      */
-    final public static Hashtable authContextHash = new Hashtable();
+    final public static Map authContextHash = new ConcurrentHashMap();
 
     /**
      * Hashtable saves the Request Parameters before redirecting
@@ -160,8 +181,7 @@ public class SPCache {
      * Key: requestID a String
      * Value : Request Parameters Map , a Map
      */
-    final public static PeriodicCleanUpMap reqParamHash = new PeriodicCleanUpMap(
-        SPCache.interval * 1000, SPCache.interval * 1000);
+    final public static ConcurrentExpiringMap reqParamHash = newCache();
 
 
     /**
@@ -169,7 +189,7 @@ public class SPCache {
      * Key : sp account mapper class name
      * Value : sp account mapper object
      */
-    final public static Hashtable spAccountMapperCache = new Hashtable();
+    final public static Map spAccountMapperCache = new ConcurrentHashMap();
     
     /**
      * Cache saves the sp adapter class instance.
@@ -177,7 +197,7 @@ public class SPCache {
      * Value : sp adapter class instance 
      * (<code>SAML2ServiceProviderAdapter</code>)
      */
-    final public static Hashtable spAdapterClassCache = new Hashtable();
+    final public static Map spAdapterClassCache = new ConcurrentHashMap();
 
     /**
      * Cache saves the fedlet adapter class instance.
@@ -185,23 +205,22 @@ public class SPCache {
      * Value : fedlet adapter class instance 
      * (<code>FedletAdapter</code>)
      */
-    public static Hashtable fedletAdapterClassCache = new Hashtable();
+    public static Map fedletAdapterClassCache = new ConcurrentHashMap();
 
     /**
      * Cache saves the ecp request IDP list finder.
      * Key : ecp request IDP list finder class name
      * Value : ecp request IDP list finder object
      */
-    final public static Hashtable ecpRequestIDPListFinderCache = new Hashtable();
+    final public static Map ecpRequestIDPListFinderCache = new ConcurrentHashMap();
 
     /**
      * Cache saves the assertion id.
      * Key : assertion ID String
      * Value : Constant  
+     * The cache detects replayed one time use assertions, so it is not bounded.
      */
-    final public static PeriodicCleanUpMap assertionByIDCache =
-        new PeriodicCleanUpMap(interval * 1000,
-        interval * 1000);
+    final public static ConcurrentExpiringMap assertionByIDCache = newUnboundedCache();
     
     /**
      * Clears the auth context object hash table.
@@ -319,9 +319,7 @@ public class SPSSOFederate {
                 new AuthnRequestInfo(request, response, realm, spEntityID,
                         idpEntityID, authnRequest, relayState, paramsMap);
 
-            synchronized(SPCache.requestHash) {             
-                SPCache.requestHash.put(authnRequest.getID(),reqInfo);
-            }
+            SPCache.requestHash.put(authnRequest.getID(),reqInfo);
 
             if (SAML2FailoverUtils.isSAML2FailoverEnabled()) {
                 // sessionExpireTime is counted in seconds
@@ -689,9 +687,7 @@ public class SPSSOFederate {
                 new AuthnRequestInfo(request,response,realm,spEntityID,
                                      null, authnRequest,relayState,
                                      paramsMap);
-            synchronized(SPCache.requestHash) {             
-                SPCache.requestHash.put(authnRequest.getID(),reqInfo);
-            }
+            SPCache.requestHash.put(authnRequest.getID(),reqInfo);
             if (SAML2FailoverUtils.isSAML2FailoverEnabled()) {
                 // sessionExpireTime is counted in seconds
                 long sessionExpireTime = currentTimeMillis() / 1000 + SPCache.interval;
@@ -96,9 +96,7 @@ public class UtilProxySAMLAuthenticatorLookup extends SAMLBase implements SAMLAu
         // Get the cached Authentication Request and Relay State before
         // invoking the IDP Adapter
         CacheObject cacheObj;
-        synchronized (IDPCache.authnRequestCache) {
-            cacheObj = (CacheObject) IDPCache.authnRequestCache.get(data.getRequestID());
-        }
+        cacheObj = (CacheObject) IDPCache.authnRequestCache.get(data.getRequestID());
         if (cacheObj != null) {
             data.setAuthnRequest((AuthnRequest) cacheObj.getObject());
         }
@@ -115,17 +113,13 @@ public class UtilProxySAMLAuthenticatorLookup extends SAMLBase implements SAMLAu
         }
         // End of block for IDP Adapter invocation
 
-        synchronized (IDPCache.authnRequestCache) {
-            cacheObj = (CacheObject) IDPCache.authnRequestCache.remove(data.getRequestID());
-        }
+        cacheObj = (CacheObject) IDPCache.authnRequestCache.remove(data.getRequestID());
 
         if (cacheObj != null) {
             data.setAuthnRequest((AuthnRequest) cacheObj.getObject());
         }
 
-        synchronized (IDPCache.idpAuthnContextCache) {
-            cacheObj = (CacheObject) IDPCache.idpAuthnContextCache.remove(data.getRequestID());
-        }
+        cacheObj = (CacheObject) IDPCache.idpAuthnContextCache.remove(data.getRequestID());
 
         if (cacheObj != null) {
             data.setMatchingAuthnContext((AuthnContext) cacheObj.getObject());
@@ -69,6 +69,18 @@ public final class LDAPConstants {
     /** LDAP DN cache size property key. */
     public static final String LDAP_DNCACHE_SIZE = "sun-idrepo-ldapv3-dncache-size";
 
+    /** LDAP group membership cache enabled property key. */
+    public static final String LDAP_MEMBERSHIP_CACHE_ENABLED = "sun-idrepo-ldapv3-membershipcache-enabled";
+
+    /** LDAP group membership cache size (maximum number of identities) property key. */
+    public static final String LDAP_MEMBERSHIP_CACHE_SIZE = "sun-idrepo-ldapv3-membershipcache-size";
+
+    /** LDAP group membership cache time to live (in seconds) property key. */
+    public static final String LDAP_MEMBERSHIP_CACHE_TTL = "sun-idrepo-ldapv3-membershipcache-ttl";
+
+    /** LDAP nested group memberships property key. */
+    public static final String LDAP_NESTED_GROUP_MEMBERSHIPS = "sun-idrepo-ldapv3-config-nested-group-memberships";
+
     /** LDAP server list property key. */
     public static final String LDAP_SERVER_LIST = "sun-idrepo-ldapv3-config-ldap-server";
 
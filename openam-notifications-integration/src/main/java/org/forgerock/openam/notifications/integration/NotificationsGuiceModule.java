@@ -56,6 +56,9 @@ public class NotificationsGuiceModule extends PrivateModule {
                 .to(SystemProperties.getAsInt("org.forgerock.openam.notifications.local.queueSize", 10000));
         bindConstant().annotatedWith(Names.named("consumers"))
                 .to(SystemProperties.getAsInt("org.forgerock.openam.notifications.local.consumers", 4));
+        bindConstant().annotatedWith(Names.named("publishTimeoutMilliseconds"))
+                .to(SystemProperties.getAsLong("org.forgerock.openam.notifications.local.publishTimeoutMilliseconds",
+                        100L));
         bindConstant().annotatedWith(Names.named("tokenExpirySeconds"))
                 .to(SystemProperties.getAsLong("org.forgerock.openam.notifications.cts.tokenExpirySeconds", 600L));
         bindConstant().annotatedWith(Names.named("publishFrequencyMilliseconds"))
@@ -63,6 +66,9 @@ public class NotificationsGuiceModule extends PrivateModule {
                         100L));
         bindConstant().annotatedWith(Names.named("ctsQueueSize"))
                 .to(SystemProperties.getAsInt("org.forgerock.openam.notifications.cts.queueSize", 10000));
+        bindConstant().annotatedWith(Names.named("maxTokenSize"))
+                .to(SystemProperties.getAsInt("org.forgerock.openam.notifications.cts.maxTokenSize",
+                        CTSNotificationBroker.DEFAULT_MAX_TOKEN_SIZE));
 
         expose(NotificationBroker.class).annotatedWith(LocalOnly.class);
         expose(NotificationBroker.class);
@@ -77,6 +83,13 @@ public class NotificationsGuiceModule extends PrivateModule {
         return factory.createScheduledService(5, "NotificationsWebSocket");
     }
 
+    @Provides
+    @Exposed
+    @Named("webSocketQueueSize")
+    int webSocketQueueSize() {
+        return SystemProperties.getAsInt("org.forgerock.openam.notifications.websocket.queueSize", 100);
+    }
+
     @Provides
     @Exposed
     @Inject
@@ -86,9 +99,10 @@ public class NotificationsGuiceModule extends PrivateModule {
             @Named("ctsQueueSize") int queueSize,
             @Named("tokenExpirySeconds") long tokenExpirySeconds,
             @Named("publishFrequencyMilliseconds") long publishFrequencyMilliseconds,
+            @Named("maxTokenSize") int maxTokenSize,
             AMExecutorServiceFactory factory) {
         return new CTSNotificationBroker(store, broker, queueSize, tokenExpirySeconds,
-                publishFrequencyMilliseconds, factory);
+                publishFrequencyMilliseconds, maxTokenSize, factory);
     }
 
 }
@@ -70,9 +70,12 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 /**
  * Uses the CTS to propagate notifications across an OpenAM cluster.
  * <p>
- * When publishing, notifications are written to the CTS. A continuous
- * query listener {@link ContinuousQueryListener} responds to new notifications
- * in the CTS and passes them on to interested subscribers.
+ * When publishing, notifications are queued and periodically written to the
+ * CTS. All the notifications queued since the last write are packed into a
+ * single compressed token, unless they exceed the maximum token size in which
+ * case as few tokens as possible are written. A continuous query listener
+ * {@link ContinuousQueryListener} responds to new notification tokens in the
+ * CTS and passes the notifications they contain on to interested subscribers.
  * <p>
  * This implementation uses a local-server broker to handle the brokerage
  * of messages that come in from the CTS.
@@ -81,6 +84,11 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  */
 public final class CTSNotificationBroker implements NotificationBroker {
 
+    /**
+     * The default maximum number of bytes of uncompressed notifications written to a single CTS token.
+     */
+    public static final int DEFAULT_MAX_TOKEN_SIZE = 256 * 1024;
+
     private static final Logger logger = LoggerFactory.getLogger(CTSNotificationBroker.class);
     private static final ObjectMapper mapper = new ObjectMapper();
 
@@ -88,11 +96,32 @@ public final class CTSNotificationBroker implements NotificationBroker {
     private final CTSPersistentStore store;
     private final SessionNotificationListener listener;
     private final long tokenExpirySeconds;
+    private final int maxTokenSize;
     private final IdGenerator idGenerator;
     private final BlockingQueue<NotificationEntry> queue;
     private final ScheduledExecutorService executorService;
     private volatile boolean shutdown;
 
+    /**
+     * Constructs a new broker that writes tokens of up to {@link #DEFAULT_MAX_TOKEN_SIZE} bytes.
+     *
+     * @param store a CTS persistent store that notifications will be written to and read from
+     * @param localBroker a local-server broker used to propagate messages to local subscribers
+     * @param queueSize the size of the queue of notifications waiting to be written to the CTS
+     * @param tokenExpirySeconds the number of seconds that a notification will live in the CTS before it is deleted
+     * @param publishFrequencyMilliseconds the number of milliseconds between each publish to the CTS
+     * @param executorServiceFactory an executor service factory for scheduling the publish task
+     */
+    public CTSNotificationBroker(CTSPersistentStore store,
+            NotificationBroker localBroker,
+            int queueSize,
+            long tokenExpirySeconds,
+            long publishFrequencyMilliseconds,
+            AMExecutorServiceFactory executorServiceFactory) {
+        this(store, localBroker, queueSize, tokenExpirySeconds, publishFrequencyMilliseconds, DEFAULT_MAX_TOKEN_SIZE,
+                executorServiceFactory);
+    }
+
     /**
      * Constructs a new broker.
      *
@@ -101,6 +130,7 @@ public final class CTSNotificationBroker implements NotificationBroker {
      * @param queueSize the size of the queue of notifications waiting to be written to the CTS
      * @param tokenExpirySeconds the number of seconds that a notification will live in the CTS before it is deleted
      * @param publishFrequencyMilliseconds the number of milliseconds between each publish to the CTS
+     * @param maxTokenSize the maximum number of bytes of uncompressed notifications to write to a single CTS token
      * @param executorServiceFactory an executor service factory for scheduling the publish task
      */
     @Inject
@@ -109,16 +139,19 @@ public final class CTSNotificationBroker implements NotificationBroker {
             @Named("ctsQueueSize") int queueSize,
             @Named("tokenExpirySeconds") long tokenExpirySeconds,
             @Named("publishFrequencyMilliseconds") long publishFrequencyMilliseconds,
+            @Named("maxTokenSize") int maxTokenSize,
             AMExecutorServiceFactory executorServiceFactory) {
         Reject.ifNull(store, "CTS store must not be null");
         Reject.ifNull(localBroker, "Notification broker must not be null");
         Reject.ifNull(executorServiceFactory, "Executor service factory must not be null");
         Reject.ifTrue(tokenExpirySeconds <= 0, "Token expiry must be a positive integer");
         Reject.ifTrue(publishFrequencyMilliseconds <= 0, "Publish frequency must be a positive integer");
+        Reject.ifTrue(maxTokenSize <= 0, "Maximum token size must be a positive integer");
 
         this.localBroker = localBroker;
         this.store = store;
         this.tokenExpirySeconds = tokenExpirySeconds;
+        this.maxTokenSize = maxTokenSize;
         executorService = executorServiceFactory.createScheduledService(1, "CTSNotificationsBroker");
         idGenerator = IdGenerator.DEFAULT;
         listener = new SessionNotificationListener();
@@ -224,22 +257,47 @@ public final class CTSNotificationBroker implements NotificationBroker {
                 return;
             }
 
-            List<Object> jsonEntries = new ArrayList<>(entries.size());
+            // Pack the serialised notifications into as few tokens as the maximum token size allows
+            List<byte[]> batch = new ArrayList<>();
+            int batchSize = 2;
             for (NotificationEntry entry : entries) {
-                jsonEntries.add(object(
-                        field("topic", entry.topic.getIdentifier()),
-                        field("content", entry.notification.getObject())
-                ));
+                byte[] bytes;
+                try {
+                    bytes = mapper.writeValueAsBytes(object(
+                            field("topic", entry.topic.getIdentifier()),
+                            field("content", entry.notification.getObject())));
+                } catch (IOException e) {
+                    logger.info("Failed to serialise notification for topic {}. Notification discarded",
+                            entry.topic.getIdentifier(), e);
+                    continue;
+                }
+                if (!batch.isEmpty() && batchSize + bytes.length > maxTokenSize) {
+                    writeToken(batch);
+                    batch.clear();
+                    batchSize = 2;
+                }
+                batch.add(bytes);
+                batchSize += bytes.length + 1;
             }
+            if (!batch.isEmpty()) {
+                writeToken(batch);
+            }
+        }
 
-            JsonValue entry = json(jsonEntries);
-
+        private void writeToken(List<byte[]> batch) {
             try {
                 Token token = new Token(idGenerator.generate(), TokenType.NOTIFICATION);
                 ByteArrayOutputStream stream = new ByteArrayOutputStream();
-                OutputStream dos = new DeflaterOutputStream(stream);
-                dos.write(mapper.writeValueAsBytes(entry.getObject()));
-                dos.close();
+                try (OutputStream dos = new DeflaterOutputStream(stream)) {
+                    dos.write('[');
+                    for (int i = 0; i < batch.size(); i++) {
+                        if (i > 0) {
+                            dos.write(',');
+                        }
+                        dos.write(batch.get(i));
+                    }
+                    dos.write(']');
+                }
                 token.setBlob(stream.toByteArray());
 
                 long expiryTime = currentTimeMillis() + TimeUnit.SECONDS.toMillis(tokenExpirySeconds);
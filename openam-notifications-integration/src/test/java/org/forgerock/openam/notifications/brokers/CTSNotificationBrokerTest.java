@@ -28,6 +28,7 @@ import static org.mockito.Mockito.*;
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.zip.InflaterInputStream;
@@ -171,6 +172,36 @@ public final class CTSNotificationBrokerTest {
         assertThat(entries).hasSize(2);
     }
 
+    @Test
+    public void whenNotificationsExceedMaximumTokenSizeTheyAreSplitAcrossTokens() throws Exception {
+        // Given
+        ScheduledExecutorService smallTokenExecutorService = mock(ScheduledExecutorService.class);
+        AMExecutorServiceFactory smallTokenExecutorServiceFactory = mock(AMExecutorServiceFactory.class);
+        when(smallTokenExecutorServiceFactory.createScheduledService(anyInt(), anyString()))
+                .thenReturn(smallTokenExecutorService);
+        CTSNotificationBroker smallTokenBroker = new CTSNotificationBroker(store, localBroker, 10, 600L, 100L, 150,
+                smallTokenExecutorServiceFactory);
+        verify(smallTokenExecutorService).scheduleAtFixedRate(publisherTaskCaptor.capture(), anyLong(), anyLong(),
+                any(TimeUnit.class));
+        Runnable publisher = publisherTaskCaptor.getValue();
+
+        // When
+        JsonValue notification = json(object(field("some-field", "some-value")));
+        smallTokenBroker.publish(Topic.of("test-topic"), notification);
+        smallTokenBroker.publish(Topic.of("test-topic"), notification);
+        smallTokenBroker.publish(Topic.of("test-topic"), notification);
+        publisher.run();
+
+        // Then
+        verify(store, times(2)).createAsync(tokenCaptor.capture());
+
+        List<Token> tokens = tokenCaptor.getAllValues();
+        assertThat(toJsonArray(new InflaterInputStream(new ByteArrayInputStream(tokens.get(0).getBlob()))))
+                .hasSize(2);
+        assertThat(toJsonArray(new InflaterInputStream(new ByteArrayInputStream(tokens.get(1).getBlob()))))
+                .hasSize(1);
+    }
+
     @Test
     public void whenPublishingNotificationTokenGetsCorrectExpiryTime() throws Exception {
         Runnable publisher = getPublisherTask();
@@ -0,0 +1,94 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.notifications.websocket;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.inject.Singleton;
+import javax.websocket.EncodeException;
+
+import org.forgerock.json.JsonValue;
+import org.forgerock.util.Reject;
+
+/**
+ * Encodes each notification once, however many WebSocket connections it is sent to.
+ * <p>
+ * The broker hands the same notification instance to every subscription, so the encoded frame of the most recent
+ * notifications is kept against the identity of the notification and shared by all the connections that send it.
+ * Frames are immutable strings and so can be sent concurrently.
+ *
+ * @since 14.0.0
+ */
+@Singleton
+public final class NotificationFrameCache {
+
+    private static final int SLOTS = 64;
+
+    private final JsonValueEncoder encoder = new JsonValueEncoder();
+    private final AtomicReferenceArray<Frame> frames = new AtomicReferenceArray<>(SLOTS);
+    private final AtomicLong encodedCount = new AtomicLong();
+    private final AtomicLong reusedCount = new AtomicLong();
+
+    /**
+     * Returns the encoded frame for the notification, encoding it only if it has not been encoded recently.
+     *
+     * @param notification the notification
+     * @return the encoded notification
+     * @throws EncodeException if the notification could not be encoded
+     */
+    public String getFrame(JsonValue notification) throws EncodeException {
+        Reject.ifNull(notification);
+        int slot = System.identityHashCode(notification) & (SLOTS - 1);
+        Frame frame = frames.get(slot);
+        if (frame != null && frame.notification == notification) {
+            reusedCount.incrementAndGet();
+            return frame.text;
+        }
+        String text = encoder.encode(notification);
+        frames.set(slot, new Frame(notification, text));
+        encodedCount.incrementAndGet();
+        return text;
+    }
+
+    /**
+     * @return the number of times a notification has been encoded
+     */
+    public long getEncodedCount() {
+        return encodedCount.get();
+    }
+
+    /**
+     * @return the number of times a previously encoded frame has been reused
+     */
+    public long getReusedCount() {
+        return reusedCount.get();
+    }
+
+    private static final class Frame {
+
+        private final JsonValue notification;
+        private final String text;
+
+        private Frame(JsonValue notification, String text) {
+            this.notification = notification;
+            this.text = text;
+        }
+
+    }
+
+}
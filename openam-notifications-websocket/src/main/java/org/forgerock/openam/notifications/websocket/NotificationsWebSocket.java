@@ -22,6 +22,8 @@ import static org.forgerock.json.JsonValue.object;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Queue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -36,6 +38,8 @@ import javax.websocket.OnError;
 import javax.websocket.OnMessage;
 import javax.websocket.OnOpen;
 import javax.websocket.PongMessage;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
 import javax.websocket.Session;
 import javax.websocket.server.ServerEndpoint;
 
@@ -62,6 +66,11 @@ import org.slf4j.LoggerFactory;
  * </pre>
  * <p>
  * When the <tt>id</tt> is present in the request, it shall be echoed back with any response messages.
+ * <p>
+ * Notifications are encoded once by the shared {@link NotificationFrameCache} and sent to the client one at a time.
+ * Notifications that arrive while a send is in progress wait in a bounded queue for the connection; when the queue
+ * is full further notifications for that client are dropped rather than allowing a slow client to hold an unbounded
+ * amount of memory.
  *
  * @since 14.0.0
  */
@@ -74,9 +83,17 @@ public final class NotificationsWebSocket {
     private static final Logger logger = LoggerFactory.getLogger(NotificationsWebSocket.class);
     private static final long TIMEOUT_MILLISECONDS = 1000 * 60;
 
+    /**
+     * The default maximum number of notifications waiting to be sent to a single client.
+     */
+    public static final int DEFAULT_QUEUE_SIZE = 100;
+
     private final NotificationBroker broker;
     private final TimeService timeService;
     private final ScheduledExecutorService executorService;
+    private final NotificationFrameCache frameCache;
+    private final NotificationsWebSocketStats stats;
+    private final int queueSize;
     private Subscription subscription;
     private long lastMessageTime;
     private ScheduledFuture<?> pingFuture;
@@ -89,20 +106,49 @@ public final class NotificationsWebSocket {
         broker = null;
         timeService = null;
         executorService = null;
+        frameCache = null;
+        stats = null;
+        queueSize = 0;
+    }
+
+    /**
+     * Constructs a new notification websocket endpoint with its own frame cache and statistics.
+     *
+     * @param broker the notification broker
+     * @param timeService the time service
+     * @param executorService the executor service used to ping the client
+     */
+    public NotificationsWebSocket(NotificationBroker broker, TimeService timeService,
+            ScheduledExecutorService executorService) {
+        this(broker, timeService, executorService, new NotificationFrameCache(), new NotificationsWebSocketStats(),
+                DEFAULT_QUEUE_SIZE);
     }
 
     /**
      * Constructs a new notification websocket endpoint.
      *
      * @param broker the notification broker
+     * @param timeService the time service
+     * @param executorService the executor service used to ping the client
+     * @param frameCache the cache of encoded notifications shared by all connections
+     * @param stats the statistics shared by all connections
+     * @param queueSize the maximum number of notifications waiting to be sent to the client
      */
     @Inject
     public NotificationsWebSocket(NotificationBroker broker, TimeService timeService,
-            @Named("webSocketScheduledExecutorService") ScheduledExecutorService executorService) {
+            @Named("webSocketScheduledExecutorService") ScheduledExecutorService executorService,
+            NotificationFrameCache frameCache, NotificationsWebSocketStats stats,
+            @Named("webSocketQueueSize") int queueSize) {
         Reject.ifNull(broker, "Broker must not be null");
+        Reject.ifNull(frameCache, "Frame cache must not be null");
+        Reject.ifNull(stats, "Stats must not be null");
+        Reject.ifTrue(queueSize <= 0, "Queue size must be a positive integer");
         this.broker = broker;
         this.timeService = timeService;
         this.executorService = executorService;
+        this.frameCache = frameCache;
+        this.stats = stats;
+        this.queueSize = queueSize;
     }
 
     /**
@@ -246,9 +292,11 @@ public final class NotificationsWebSocket {
         }
     }
 
-    private final class WebSocketConsumer implements Consumer {
+    private final class WebSocketConsumer implements Consumer, SendHandler {
 
         private final Session session;
+        private final Queue<String> pending = new ArrayDeque<>();
+        private boolean sending;
 
         private WebSocketConsumer(Session session) {
             this.session = session;
@@ -267,8 +315,67 @@ public final class NotificationsWebSocket {
                 return;
             }
 
-            if (session.isOpen()) {
-                session.getAsyncRemote().sendObject(notification);
+            if (!session.isOpen()) {
+                return;
+            }
+
+            String frame;
+            try {
+                frame = frameCache.getFrame(notification);
+            } catch (EncodeException e) {
+                stats.failed();
+                logger.warn("Unable to encode notification", e);
+                return;
+            }
+
+            synchronized (this) {
+                if (sending) {
+                    if (pending.size() >= queueSize) {
+                        stats.dropped();
+                        logger.info("Outbound queue full, notification to client discarded");
+                    } else {
+                        stats.queued();
+                        pending.add(frame);
+                    }
+                    return;
+                }
+                sending = true;
+            }
+            send(frame);
+        }
+
+        @Override
+        public void onResult(SendResult result) {
+            if (result.isOK()) {
+                stats.sent();
+            } else {
+                stats.failed();
+                logger.info("Failed to send notification to client", result.getException());
+            }
+
+            String next;
+            synchronized (this) {
+                next = session.isOpen() ? pending.poll() : null;
+                if (next == null) {
+                    pending.clear();
+                    sending = false;
+                    return;
+                }
+            }
+            send(next);
+        }
+
+        private void send(String frame) {
+            try {
+                session.getAsyncRemote().sendText(frame, this);
+            } catch (RuntimeException e) {
+                // Release the connection for the next notification
+                synchronized (this) {
+                    pending.clear();
+                    sending = false;
+                }
+                stats.failed();
+                logger.info("Failed to send notification to client", e);
             }
         }
 
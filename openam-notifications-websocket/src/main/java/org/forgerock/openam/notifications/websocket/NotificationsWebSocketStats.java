@@ -0,0 +1,80 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.notifications.websocket;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Singleton;
+
+/**
+ * Cumulative statistics about the notifications sent over all WebSocket connections.
+ *
+ * @since 14.0.0
+ */
+@Singleton
+public final class NotificationsWebSocketStats {
+
+    private final AtomicLong sentCount = new AtomicLong();
+    private final AtomicLong queuedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    void sent() {
+        sentCount.incrementAndGet();
+    }
+
+    void queued() {
+        queuedCount.incrementAndGet();
+    }
+
+    void dropped() {
+        droppedCount.incrementAndGet();
+    }
+
+    void failed() {
+        failedCount.incrementAndGet();
+    }
+
+    /**
+     * @return the number of notifications successfully sent to clients
+     */
+    public long getSentCount() {
+        return sentCount.get();
+    }
+
+    /**
+     * @return the number of notifications that had to wait for an earlier send to the same client to complete
+     */
+    public long getQueuedCount() {
+        return queuedCount.get();
+    }
+
+    /**
+     * @return the number of notifications discarded because the outbound queue of a client was full
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * @return the number of notifications that could not be encoded or sent
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+}
@@ -23,10 +23,14 @@ import static org.forgerock.json.JsonValue.object;
 import static org.forgerock.json.test.assertj.AssertJJsonValueAssert.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
 
 import javax.websocket.PongMessage;
 import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
 import javax.websocket.Session;
 
 import java.io.IOException;
@@ -79,6 +83,10 @@ public final class NotificationsWebSocketTest {
     private ArgumentCaptor<JsonValue> jsonCaptor;
     @Captor
     private ArgumentCaptor<Runnable> runnableCaptor;
+    @Captor
+    private ArgumentCaptor<String> frameCaptor;
+    @Captor
+    private ArgumentCaptor<SendHandler> sendHandlerCaptor;
 
     @BeforeMethod
     public void setUp() {
@@ -297,8 +305,66 @@ public final class NotificationsWebSocketTest {
         consumer.accept(json(object(field("some_key", "some_value"))));
 
         // Then
-        verify(async).sendObject(jsonCaptor.capture());
-        assertThat(jsonCaptor.getValue()).stringAt("some_key").isEqualTo("some_value");
+        verify(async).sendText(frameCaptor.capture(), any(SendHandler.class));
+        assertThat(frameCaptor.getValue()).isEqualTo("{\"some_key\":\"some_value\"}");
+    }
+
+    @Test
+    public void whenNotificationIsSentToSeveralClientsItIsEncodedOnce() throws Exception {
+        // Given
+        NotificationFrameCache frameCache = new NotificationFrameCache();
+        NotificationsWebSocketStats stats = new NotificationsWebSocketStats();
+        Session otherSession = mock(Session.class);
+        RemoteEndpoint.Async otherAsync = mock(RemoteEndpoint.Async.class);
+        when(otherSession.getAsyncRemote()).thenReturn(otherAsync);
+        when(otherSession.isOpen()).thenReturn(true);
+        when(session.isOpen()).thenReturn(true);
+        new NotificationsWebSocket(broker, timeService, executorService, frameCache, stats, 10).open(session);
+        new NotificationsWebSocket(broker, timeService, executorService, frameCache, stats, 10).open(otherSession);
+        verify(broker, times(2)).subscribe(consumerCaptor.capture());
+
+        // When
+        JsonValue notification = json(object(field("some_key", "some_value")));
+        for (Consumer consumer : consumerCaptor.getAllValues()) {
+            consumer.accept(notification);
+        }
+
+        // Then
+        verify(async).sendText(eq("{\"some_key\":\"some_value\"}"), any(SendHandler.class));
+        verify(otherAsync).sendText(eq("{\"some_key\":\"some_value\"}"), any(SendHandler.class));
+        assertThat(frameCache.getEncodedCount()).isEqualTo(1L);
+        assertThat(frameCache.getReusedCount()).isEqualTo(1L);
+    }
+
+    @Test
+    public void whenSendIsInProgressNotificationsAreQueuedAndThenSentInOrder() throws Exception {
+        // Given
+        NotificationsWebSocketStats stats = new NotificationsWebSocketStats();
+        notificationsWebSocket = new NotificationsWebSocket(broker, timeService, executorService,
+                new NotificationFrameCache(), stats, 1);
+        notificationsWebSocket.open(session);
+        verify(broker).subscribe(consumerCaptor.capture());
+        when(session.isOpen()).thenReturn(true);
+        Consumer consumer = consumerCaptor.getValue();
+
+        // When
+        consumer.accept(json(object(field("id", 1))));
+        consumer.accept(json(object(field("id", 2))));
+        consumer.accept(json(object(field("id", 3))));
+
+        // Then
+        verify(async).sendText(frameCaptor.capture(), sendHandlerCaptor.capture());
+        assertThat(frameCaptor.getValue()).isEqualTo("{\"id\":1}");
+        assertThat(stats.getQueuedCount()).isEqualTo(1L);
+        assertThat(stats.getDroppedCount()).isEqualTo(1L);
+
+        // When
+        sendHandlerCaptor.getValue().onResult(new SendResult());
+
+        // Then
+        verify(async).sendText(eq("{\"id\":2}"), any(SendHandler.class));
+        verify(async, never()).sendText(eq("{\"id\":3}"), any(SendHandler.class));
+        assertThat(stats.getSentCount()).isEqualTo(1L);
     }
 
     @Test
@@ -314,7 +380,7 @@ public final class NotificationsWebSocketTest {
         consumer.accept(json(object(field("some_key", "some_value"))));
 
         // Then
-        verify(async, never()).sendObject(any(JsonValue.class));
+        verify(async, never()).sendText(anyString(), any(SendHandler.class));
     }
 
     @Test
@@ -332,7 +398,7 @@ public final class NotificationsWebSocketTest {
 
         // Then
         verify(session).close();
-        verify(async, never()).sendObject(any(JsonValue.class));
+        verify(async, never()).sendText(anyString(), any(SendHandler.class));
     }
 
     @Test
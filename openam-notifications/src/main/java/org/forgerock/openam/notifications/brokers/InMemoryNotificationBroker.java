@@ -21,12 +21,12 @@ import static org.forgerock.json.JsonValue.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -46,12 +46,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * A notification broker that uses an in-memory shared queue for incoming notifications and
- * a single thread for reading from it. Routing of notifications to subscriptions is done
- * on the reading thread.
+ * A notification broker that uses an in-memory shared ring buffer for incoming notifications and
+ * a pool of threads for reading from it. Routing of notifications to subscriptions is done
+ * on the reading threads.
  * <p>
- * The queue is a fixed size and therefore notifications may be lost if the queue becomes
- * full.
+ * Publishers add notifications to the ring buffer without taking any locks. Each reader takes
+ * notifications from the buffer in batches and delivers each one to the subscriptions bound to
+ * its topic, which are found through an index of topics to subscriptions rather than by checking
+ * every subscription.
+ * <p>
+ * The ring buffer is a fixed size. When it is full a publisher waits up to the publish timeout
+ * for space to become free, after which the notification is lost.
  *
  * @since 14.0.0
  */
@@ -59,33 +64,58 @@ public final class InMemoryNotificationBroker implements NotificationBroker {
 
     private static final Logger logger = LoggerFactory.getLogger(InMemoryNotificationBroker.class);
     private static final DateTimeFormatter TS_FORMATTER = ISODateTimeFormat.dateTime().withZoneUTC();
+    private static final int BATCH_SIZE = 256;
+    private static final long IDLE_WAIT_MILLISECONDS = 100L;
+    private static final long FULL_WAIT_NANOSECONDS = TimeUnit.MICROSECONDS.toNanos(50);
 
-    private final BlockingQueue<NotificationEntry> queue;
-    private final List<InternalSubscription> subscriptions;
+    private final RingBuffer<NotificationEntry> queue;
+    private final ConcurrentMap<Topic, Set<InternalSubscription>> subscriptionsByTopic;
     private final TimeService timeService;
+    private final long publishTimeoutNanos;
 
     private final ExecutorService executorService;
+    private final Object readerSignal = new Object();
+    private volatile int idleReaders;
     private volatile boolean shutdown;
 
     /**
-     * Constructs a new InMemoryNotificationBroker.
+     * Constructs a new InMemoryNotificationBroker that discards notifications as soon as its queue is full.
      *
      * @param executorServiceFactory an executor service factory for scheduling reader threads
      * @param timeService a time service for adding timestamps to messages
      * @param queueSize the number of notifications to buffer in memory
+     * @param consumers the number of reader threads
+     */
+    public InMemoryNotificationBroker(AMExecutorServiceFactory executorServiceFactory, TimeService timeService,
+            int queueSize, int consumers) {
+        this(executorServiceFactory, timeService, queueSize, consumers, 0L);
+    }
+
+    /**
+     * Constructs a new InMemoryNotificationBroker.
+     *
+     * @param executorServiceFactory an executor service factory for scheduling reader threads
+     * @param timeService a time service for adding timestamps to messages
+     * @param queueSize the number of notifications to buffer in memory, rounded up to a power of two
+     * @param consumers the number of reader threads
+     * @param publishTimeoutMilliseconds how long a publisher waits for space in a full queue before the
+     *                                   notification is discarded
      */
     @Inject
     public InMemoryNotificationBroker(AMExecutorServiceFactory executorServiceFactory, TimeService timeService,
-            @Named("queueSize") int queueSize, @Named("consumers") int consumers) {
+            @Named("queueSize") int queueSize, @Named("consumers") int consumers,
+            @Named("publishTimeoutMilliseconds") long publishTimeoutMilliseconds) {
         Reject.ifNull(executorServiceFactory, "Executor service factory must not be null");
         Reject.ifNull(timeService, "Time service must not be null");
         Reject.ifTrue(queueSize <= 0, "Queue size must be a positive integer");
         Reject.ifTrue(consumers <= 0, "Number of consumer threads must be a positive integer");
+        Reject.ifTrue(publishTimeoutMilliseconds < 0, "Publish timeout must not be negative");
 
         this.timeService = timeService;
+        this.publishTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(publishTimeoutMilliseconds);
 
-        queue = new ArrayBlockingQueue<>(queueSize);
-        subscriptions = new CopyOnWriteArrayList<>();
+        queue = new RingBuffer<>(queueSize);
+        subscriptionsByTopic = new ConcurrentHashMap<>();
         executorService = executorServiceFactory.createFixedThreadPool(consumers, "InMemoryNotificationsBroker");
         for (int i = 0; i < consumers; i++) {
             executorService.submit(new NotificationReader());
@@ -104,14 +134,36 @@ public final class InMemoryNotificationBroker implements NotificationBroker {
 
         NotificationEntry entry = NotificationEntry.of(topic, packageNotification(topic, notification));
 
-        if (!queue.offer(entry)) {
+        if (!offer(entry)) {
             logger.info("Failed to publish notification because queue is full. Notification discarded");
             return false;
         }
 
+        if (idleReaders > 0) {
+            synchronized (readerSignal) {
+                readerSignal.notify();
+            }
+        }
         return true;
     }
 
+    private boolean offer(NotificationEntry entry) {
+        if (queue.offer(entry)) {
+            return true;
+        }
+        if (publishTimeoutNanos == 0) {
+            return false;
+        }
+        long deadline = System.nanoTime() + publishTimeoutNanos;
+        while (!shutdown && System.nanoTime() - deadline < 0) {
+            LockSupport.parkNanos(FULL_WAIT_NANOSECONDS);
+            if (queue.offer(entry)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private JsonValue packageNotification(Topic topic, JsonValue notification) {
         String timeStamp = TS_FORMATTER.print(new DateTime(timeService.now()));
 
@@ -124,9 +176,7 @@ public final class InMemoryNotificationBroker implements NotificationBroker {
     @Override
     public Subscription subscribe(Consumer consumer) {
         Reject.ifNull(consumer, "Consumer must not be null");
-        InternalSubscription subscription = new InternalSubscription(consumer);
-        subscriptions.add(subscription);
-        return subscription;
+        return new InternalSubscription(consumer);
     }
 
     @Override
@@ -135,42 +185,81 @@ public final class InMemoryNotificationBroker implements NotificationBroker {
         executorService.shutdownNow();
     }
 
+    private void index(Topic topic, InternalSubscription subscription) {
+        Set<InternalSubscription> subscriptions = subscriptionsByTopic.get(topic);
+        if (subscriptions == null) {
+            Set<InternalSubscription> newSubscriptions = new CopyOnWriteArraySet<>();
+            subscriptions = subscriptionsByTopic.putIfAbsent(topic, newSubscriptions);
+            if (subscriptions == null) {
+                subscriptions = newSubscriptions;
+            }
+        }
+        subscriptions.add(subscription);
+    }
+
+    private void unindex(Topic topic, InternalSubscription subscription) {
+        Set<InternalSubscription> subscriptions = subscriptionsByTopic.get(topic);
+        if (subscriptions != null) {
+            subscriptions.remove(subscription);
+        }
+    }
+
     private final class NotificationReader implements Runnable {
 
+        private final List<NotificationEntry> batch = new ArrayList<>(BATCH_SIZE);
+
         @Override
         public void run() {
             while (!shutdown) {
                 try {
-                    NotificationEntry entry = queue.poll(10L, TimeUnit.SECONDS);
-
-                    if (entry == null) {
+                    if (queue.drainTo(batch, BATCH_SIZE) == 0) {
+                        awaitNotifications();
                         continue;
                     }
 
-                    deliver(entry);
+                    deliver(batch);
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
                     // Informs the broker that the reader is shutting down as
                     // it will no longer be able to serve notifications.
                     shutdown = true;
                     break;
+                } finally {
+                    batch.clear();
                 }
             }
 
-            List<NotificationEntry> remainingEntries = new ArrayList<>();
-            queue.drainTo(remainingEntries);
-
-            for (NotificationEntry entry : remainingEntries) {
-                deliver(entry);
+            while (queue.drainTo(batch, BATCH_SIZE) > 0) {
+                deliver(batch);
+                batch.clear();
             }
         }
 
-        private void deliver(NotificationEntry entry) {
-            for (InternalSubscription subscription : subscriptions) {
+        private void awaitNotifications() throws InterruptedException {
+            synchronized (readerSignal) {
+                idleReaders++;
                 try {
-                    subscription.consumeIfApplicable(entry.topic, entry.notification);
-                } catch (RuntimeException ex) {
-                    logger.warn("Exception thrown whilst delivering notifications", ex);
+                    if (queue.isEmpty() && !shutdown) {
+                        readerSignal.wait(IDLE_WAIT_MILLISECONDS);
+                    }
+                } finally {
+                    idleReaders--;
+                }
+            }
+        }
+
+        private void deliver(List<NotificationEntry> entries) {
+            for (NotificationEntry entry : entries) {
+                Set<InternalSubscription> subscriptions = subscriptionsByTopic.get(entry.topic);
+                if (subscriptions == null) {
+                    continue;
+                }
+                for (InternalSubscription subscription : subscriptions) {
+                    try {
+                        subscription.consume(entry.notification);
+                    } catch (RuntimeException ex) {
+                        logger.warn("Exception thrown whilst delivering notifications", ex);
+                    }
                 }
             }
         }
@@ -192,7 +281,9 @@ public final class InMemoryNotificationBroker implements NotificationBroker {
         public Subscription bindTo(Topic topic) {
             Reject.rejectStateIfTrue(closed, "Subscription is closed");
             Reject.ifNull(topic, "Topic must not be null");
-            topics.add(topic);
+            if (topics.add(topic)) {
+                index(topic, this);
+            }
             return this;
         }
 
@@ -207,23 +298,24 @@ public final class InMemoryNotificationBroker implements NotificationBroker {
         public Subscription unbindFrom(Topic topic) {
             Reject.rejectStateIfTrue(closed, "Subscription is closed");
             Reject.ifNull(topic, "Topic must not be null");
-            topics.remove(topic);
+            if (topics.remove(topic)) {
+                unindex(topic, this);
+            }
             return this;
         }
 
         @Override
         public void close() {
             closed = true;
-            subscriptions.remove(this);
+            for (Topic topic : topics) {
+                unindex(topic, this);
+            }
+            topics.clear();
         }
 
         // Called from reader thread.
-        void consumeIfApplicable(Topic topic, JsonValue notification) {
-            if (consumer == null) {
-                return;
-            }
-
-            if (isBoundTo(topic)) {
+        void consume(JsonValue notification) {
+            if (!closed) {
                 consumer.accept(notification);
             }
         }
@@ -0,0 +1,139 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.notifications.brokers;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.forgerock.util.Reject;
+
+/**
+ * A bounded, lock-free ring buffer that can be written and read by many threads at once.
+ * <p>
+ * Each slot carries a sequence number that records whether it is ready to be written or read for a given lap of the
+ * ring, so producers and consumers only contend on the position counters and never block one another.
+ *
+ * @param <E> the type of element held
+ * @since 14.0.0
+ */
+final class RingBuffer<E> {
+
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLong writePosition = new AtomicLong();
+    private final AtomicLong readPosition = new AtomicLong();
+
+    /**
+     * Constructs a ring buffer.
+     *
+     * @param capacity the minimum number of elements held, rounded up to a power of two
+     */
+    RingBuffer(int capacity) {
+        Reject.ifTrue(capacity <= 0 || capacity > 1 << 30, "Capacity must be between 1 and 2^30");
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        mask = size - 1;
+        sequences = new AtomicLongArray(size);
+        elements = new AtomicReferenceArray<>(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds an element if there is space.
+     *
+     * @param element the element
+     * @return {@code true} if the element was added, {@code false} if the buffer is full
+     */
+    boolean offer(E element) {
+        Reject.ifNull(element);
+        long position = writePosition.get();
+        while (true) {
+            int slot = (int) (position & mask);
+            long difference = sequences.get(slot) - position;
+            if (difference == 0) {
+                if (writePosition.compareAndSet(position, position + 1)) {
+                    elements.lazySet(slot, element);
+                    sequences.lazySet(slot, position + 1);
+                    return true;
+                }
+                position = writePosition.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = writePosition.get();
+            }
+        }
+    }
+
+    /**
+     * Removes the next element, if there is one.
+     *
+     * @return the element, or {@code null} if the buffer is empty
+     */
+    E poll() {
+        long position = readPosition.get();
+        while (true) {
+            int slot = (int) (position & mask);
+            long difference = sequences.get(slot) - (position + 1);
+            if (difference == 0) {
+                if (readPosition.compareAndSet(position, position + 1)) {
+                    E element = elements.get(slot);
+                    elements.lazySet(slot, null);
+                    sequences.lazySet(slot, position + mask + 1);
+                    return element;
+                }
+                position = readPosition.get();
+            } else if (difference < 0) {
+                return null;
+            } else {
+                position = readPosition.get();
+            }
+        }
+    }
+
+    /**
+     * Removes up to the given number of elements, adding them to the collection.
+     *
+     * @param batch the collection to add the elements to
+     * @param maxElements the maximum number of elements to remove
+     * @return the number of elements removed
+     */
+    int drainTo(Collection<? super E> batch, int maxElements) {
+        int count = 0;
+        E element;
+        while (count < maxElements && (element = poll()) != null) {
+            batch.add(element);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return whether the buffer appears to be empty
+     */
+    boolean isEmpty() {
+        return readPosition.get() >= writePosition.get();
+    }
+
+}
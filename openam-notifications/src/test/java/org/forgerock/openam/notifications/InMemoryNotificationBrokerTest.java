@@ -284,6 +284,30 @@ public final class InMemoryNotificationBrokerTest {
         verify(consumer, never()).accept(any(JsonValue.class));
     }
 
+    @Test
+    public void whenSubscribersAreBoundToDifferentTopicsEachReceivesOnlyItsOwnNotifications() {
+        // Given
+        Consumer anotherConsumer = mock(Consumer.class);
+        broker.subscribe(consumer).bindTo(Topic.of("test_topic1"));
+        broker.subscribe(anotherConsumer).bindTo(Topic.of("test_topic2"));
+
+        // When
+        broker.publish(Topic.of("test_topic1"), json(object(field("tokenId", "123-456"))));
+        broker.publish(Topic.of("test_topic2"), json(object(field("tokenId", "789-012"))));
+
+        // Then
+        verify(executorService, times(CONSUMERS)).submit(readerCapture.capture());
+        Runnable reader = readerCapture.getValue();
+
+        broker.shutdown();
+        reader.run();
+
+        verify(consumer).accept(notificationCapture.capture());
+        assertThat(notificationCapture.getValue().get(new JsonPointer("body/tokenId")).asString()).isEqualTo("123-456");
+        verify(anotherConsumer).accept(notificationCapture.capture());
+        assertThat(notificationCapture.getValue().get(new JsonPointer("body/tokenId")).asString()).isEqualTo("789-012");
+    }
+
     @Test(expectedExceptions = IllegalStateException.class)
     public void whenSubscriptionIsClosedFurtherBindingThrowAnException() throws Exception {
         // Given
@@ -47,6 +47,16 @@ public final class PacketFactory {
      */
     private static final Logger LOG = Logger.getLogger(PacketFactory.class.getName());
 
+    /**
+     * The number of octets in the code, identifier, length and authenticator fields that start every packet.
+     */
+    private static final int HEADER_LENGTH = 20;
+
+    /**
+     * The maximum packet length as per section 3 of rfc 2865.
+     */
+    private static final int MAX_PACKET_LENGTH = 4096;
+
     /**
      * Make constructor private so that this utility class can not be instantiated.
      */
@@ -81,6 +91,7 @@ public final class PacketFactory {
      * @return the packet type representing the packet found in the buffer octets
      */
     public static Packet toPacket(ByteBuffer data) {
+        final int start = data.position();
         // pull off the single octet packet type code field
         final byte code = data.get();
         // pull out the single octet packet id field, convert to unsigned solely for presentation when logging so
@@ -89,6 +100,11 @@ public final class PacketFactory {
         // pull out the two octet packet length field that indicates the total number of octest for the entire packet
         // ie: (code, id, length, authenticator, and attribute fields)
         final short datalen = data.getShort();
+        // octets beyond the length field are padding and must be ignored (rfc 2865 section 3)
+        final int packetLen = datalen & 0xFFFF;
+        if (packetLen >= HEADER_LENGTH && start + packetLen < data.limit()) {
+            data.limit(start + packetLen);
+        }
 
         // read 16 octet authenticator field
         final byte[] authData = new byte[16];
@@ -131,6 +147,40 @@ public final class PacketFactory {
         return pkt;
     }
 
+    /**
+     * Checks in place, without consuming the buffer or allocating, that the remaining octets of the buffer hold a
+     * complete packet in the octet format of rfc 2865: the length field covers at least the header and no more than
+     * the octets received, and the attributes exactly fill the rest of the packet. Packets that fail this check should
+     * be silently discarded.
+     *
+     * @param data
+     *            ByteBuffer containing the octets for the packet in on-the-wire-format.
+     * @return true if the packet is well formed, false otherwise.
+     */
+    public static boolean isWellFormed(ByteBuffer data) {
+        final int start = data.position();
+        if (data.remaining() < HEADER_LENGTH) {
+            return false;
+        }
+        final int packetLen = ((data.get(start + 2) & 0xFF) << 8) | (data.get(start + 3) & 0xFF);
+        if (packetLen < HEADER_LENGTH || packetLen > MAX_PACKET_LENGTH || packetLen > data.remaining()) {
+            return false;
+        }
+        final int end = start + packetLen;
+        int offset = start + HEADER_LENGTH;
+        while (offset < end) {
+            if (offset + 1 >= end) {
+                return false;
+            }
+            final int attrLen = data.get(offset + 1) & 0xFF;
+            if (attrLen < 2) {
+                return false;
+            }
+            offset += attrLen;
+        }
+        return offset == end;
+    }
+
     /**
      * Reads the next attribute out of the buffer or null if there is no more content.
      *
@@ -144,22 +194,15 @@ public final class PacketFactory {
         if (!bfr.hasRemaining()) {
             return null;
         }
-        /*
-         * for AttributeFactory to create attribute objects it must receive the full on-the-wire octets for each
-         * attribute. Therefore, we mark the buffer, pull out the type octet to get at the length octet so that we can
-         * instantiate a byte array of the correct length. Then we reset the buffer to the mark and read the full set of
-         * octets for the attribute.
-         */
-        bfr.mark();
-        bfr.get(); // discard the attribute type octet
-
-        // get the attribute's octet length, byte is signed so we need to convert to unsigned byte
-        final byte len = bfr.get();
-        final int length = (len) & 0xFF; // may have gotten sign extension so trim down to one byte
-
-        // now reset the buffer and pull out the full set of octets including the prefixing type and length octets
+        // for AttributeFactory to create attribute objects it must receive the full on-the-wire octets for each
+        // attribute. Therefore, we peek at the length octet without moving the buffer's position so that we can
+        // instantiate a byte array of the correct length and then read the full set of octets for the attribute.
+        // byte is signed so we need to convert to an unsigned value.
+        final int length = bfr.get(bfr.position() + 1) & 0xFF;
+        if (length < 2) {
+            throw new IllegalArgumentException("Invalid attribute length " + length);
+        }
         final byte[] attrData = new byte[length];
-        bfr.reset();
         bfr.get(attrData); // reads the type, length, and payload
 
         return AttributeFactory.createAttribute(attrData);
@@ -67,6 +67,39 @@ public class TestPacketFactory {
 
     }
 
+    /**
+     * Test that a packet received with padding after the length declared in its header is parsed without the padding.
+     */
+    @Test
+    public void testPaddingAfterPacketLengthIsIgnored() {
+        final String hex = "01 00 00 1a 0f 40 3f 94 73 97 80 57 bd 83 d5 cb"
+                + "98 f4 22 7a 01 06 6e 65 6d 6f 00 00 00 00";
+
+        final ByteBuffer bfr = Utils.toBuffer(hex);
+        Assert.assertTrue(PacketFactory.isWellFormed(bfr), "padded packet should be well formed");
+        final Packet pkt = PacketFactory.toPacket(bfr);
+        Assert.assertEquals(pkt.getAttributeSet().size(), 1, "packet attributes contained");
+        Assert.assertEquals(((UserNameAttribute) pkt.getAttributeAt(0)).getName(), "nemo", "user name");
+    }
+
+    /**
+     * Test that packets whose length fields do not match the octets received are not well formed.
+     */
+    @Test
+    public void testMalformedPacketsAreDetected() {
+        // declared length longer than the octets received
+        Assert.assertFalse(PacketFactory.isWellFormed(Utils.toBuffer("01 00 00 38 0f 40 3f 94 73 97 80 57 bd 83 d5 cb"
+                + "98 f4 22 7a 01 06 6e 65 6d 6f")));
+        // attribute length running past the end of the packet
+        Assert.assertFalse(PacketFactory.isWellFormed(Utils.toBuffer("01 00 00 1a 0f 40 3f 94 73 97 80 57 bd 83 d5 cb"
+                + "98 f4 22 7a 01 08 6e 65 6d 6f")));
+        // attribute length too short to hold the type and length octets
+        Assert.assertFalse(PacketFactory.isWellFormed(Utils.toBuffer("01 00 00 16 0f 40 3f 94 73 97 80 57 bd 83 d5 cb"
+                + "98 f4 22 7a 01 00")));
+        // shorter than the packet header
+        Assert.assertFalse(PacketFactory.isWellFormed(Utils.toBuffer("01 00 00 14 0f 40 3f 94")));
+    }
+
     /**
      * dumps to std out in sets of 16 hex bytes separated by spaces and prefixed with '0' for bytes having value less
      * than 0x10. The buffer is returned as was meaning ready to read from the same point as when it was passed to this
@@ -0,0 +1,92 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.radius.server;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.forgerock.openam.radius.server.config.RadiusServerConstants;
+
+/**
+ * A pool of direct buffers into which incoming RADIUS datagrams are received. A buffer is taken from the pool by the
+ * listener, handed to the <code>RadiusRequestHandler</code> with the request and returned to the pool once the packet
+ * has been parsed, so a steady stream of requests does not allocate a new buffer for every datagram.
+ * <p/>
+ * When the pool is empty a new buffer is allocated. At most <code>capacity</code> buffers are kept; any others are
+ * left for the garbage collector when they are released.
+ */
+public class PacketBufferPool {
+
+    private final BlockingQueue<ByteBuffer> buffers;
+    private final AtomicLong allocatedCount = new AtomicLong();
+
+    /**
+     * Constructs a buffer pool.
+     *
+     * @param capacity the maximum number of idle buffers kept in the pool.
+     */
+    public PacketBufferPool(int capacity) {
+        this.buffers = new ArrayBlockingQueue<>(Math.max(1, capacity));
+    }
+
+    /**
+     * Obtains an empty buffer, big enough for the largest RADIUS packet and in network byte order.
+     *
+     * @return a buffer ready to receive a datagram.
+     */
+    public ByteBuffer acquire() {
+        final ByteBuffer buffer = buffers.poll();
+        if (buffer != null) {
+            return buffer;
+        }
+        allocatedCount.incrementAndGet();
+        return ByteBuffer.allocateDirect(RadiusServerConstants.MAX_PACKET_SIZE).order(ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Returns a buffer to the pool. The buffer must no longer be used by the caller.
+     *
+     * @param buffer the buffer obtained from {@link #acquire()}.
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer != null && buffer.isDirect()) {
+            buffer.clear();
+            buffers.offer(buffer);
+        }
+    }
+
+    /**
+     * Returns the number of buffers that have been allocated by this pool, which once the pool has warmed up should
+     * only grow when bursts of requests exceed its capacity.
+     *
+     * @return the number of buffers allocated.
+     */
+    public long getAllocatedCount() {
+        return allocatedCount.get();
+    }
+
+    /**
+     * Returns the number of buffers currently waiting in the pool to be reused.
+     *
+     * @return the number of idle buffers.
+     */
+    public int getIdleCount() {
+        return buffers.size();
+    }
+}
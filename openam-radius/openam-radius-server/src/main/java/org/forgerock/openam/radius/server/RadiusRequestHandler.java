@@ -74,6 +74,11 @@ public class RadiusRequestHandler implements Runnable {
      */
     private AccessRequestHandlerFactory accessRequestHandlerFactory;
 
+    /**
+     * The pool to which the buffer is returned once the request has been parsed, or null if it did not come from one.
+     */
+    private final PacketBufferPool bufferPool;
+
     /**
      * Constructs a request handler.
      *
@@ -86,11 +91,28 @@ public class RadiusRequestHandler implements Runnable {
     public RadiusRequestHandler(AccessRequestHandlerFactory accessRequestHandlerFactory,
             final RadiusRequestContext reqCtx, final ByteBuffer buffer,
             final EventBus eventBus) {
+        this(accessRequestHandlerFactory, reqCtx, buffer, eventBus, null);
+    }
+
+    /**
+     * Constructs a request handler for a request received into a pooled buffer.
+     *
+     * @param accessRequestHandlerFactory - a factory object that will construct access request handlers used to handle
+     *            the radius requests.
+     * @param reqCtx a <code>RadiusRequestContext</code> object. Must be non-null.
+     * @param buffer an {@code ByteBuffer} containing the bytes received by a radius handler.
+     * @param eventBus used to notify interested parties of events occurring during the processing of radius requests.
+     * @param bufferPool the pool that the buffer is returned to once the request has been parsed. May be null.
+     */
+    public RadiusRequestHandler(AccessRequestHandlerFactory accessRequestHandlerFactory,
+            final RadiusRequestContext reqCtx, final ByteBuffer buffer,
+            final EventBus eventBus, final PacketBufferPool bufferPool) {
         LOG.message("Entering RadiusRequestHandler.RadiusRequestHandler()");
         this.requestContext = reqCtx;
         this.buffer = buffer;
         this.eventBus = eventBus;
         this.accessRequestHandlerFactory = accessRequestHandlerFactory;
+        this.bufferPool = bufferPool;
         LOG.message("Leaving RadiusRequestHandler.RadiusRequestHandler()");
     }
 
@@ -107,7 +129,15 @@ public class RadiusRequestHandler implements Runnable {
     public void run() {
         try {
             LOG.message("Entering RadiusRequestHandler.run();");
-            final Packet requestPacket = getValidPacket(buffer);
+            final Packet requestPacket;
+            try {
+                requestPacket = getValidPacket(buffer);
+            } finally {
+                // the packet holds copies of everything it needs so the buffer can be reused straight away
+                if (bufferPool != null) {
+                    bufferPool.release(buffer);
+                }
+            }
             if (requestPacket == null) {
                 LOG.message("Leaving RadiusRequestHandler.run(); no requestPacket");
                 return;
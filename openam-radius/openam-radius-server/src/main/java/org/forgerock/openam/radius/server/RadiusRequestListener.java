@@ -15,8 +15,10 @@
  */
 package org.forgerock.openam.radius.server;
 
+import com.iplanet.am.util.SystemProperties;
 import com.sun.identity.shared.debug.Debug;
 import org.forgerock.guava.common.eventbus.EventBus;
+import org.forgerock.openam.radius.common.PacketFactory;
 import org.forgerock.openam.radius.server.config.ClientConfig;
 import org.forgerock.openam.radius.server.config.RadiusServerConstants;
 import org.forgerock.openam.radius.server.config.RadiusServiceConfig;
@@ -30,16 +32,20 @@ import java.net.InetSocketAddress;
 import java.net.SocketException;
 import java.net.StandardSocketOptions;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.DatagramChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.UnsupportedCharsetException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Listens for incoming radius requests, validates they are for defined clients, drops packets that aren't, and queues
@@ -47,6 +53,12 @@ import java.util.concurrent.TimeUnit;
  * buffered incoming requests while packets in process of being handled are polished off and can send their responses
  * through the backing channel. Then it closes the channel and exits.
  * <p/>
+ * Datagrams are received into direct buffers taken from a {@link PacketBufferPool} and checked in place before any
+ * request objects are created, so that bursts of requests and packets that are dropped cause little garbage. Several
+ * threads may receive from the channel at once, set by the {@link RadiusServerConstants#RECEIVER_THREADS_PROPERTY}
+ * system property, so that one thread can hand a request to the pool while another is receiving the next datagram.
+ * The socket receive buffer size is set by the {@link RadiusServerConstants#RECEIVE_BUFFER_SIZE_PROPERTY} system
+ * property, allowing the operating system to hold larger bursts until they are received.
  */
 public class RadiusRequestListener implements Runnable {
 
@@ -78,9 +90,19 @@ public class RadiusRequestListener implements Runnable {
     private DatagramChannel channel = null;
 
     /**
-     * The thread instance that is running this listener's Runnable.
+     * The thread instances that are running this listener's Runnable.
      */
-    private volatile Thread listenerThread = null;
+    private final List<Thread> receiverThreads = new ArrayList<>();
+
+    /**
+     * The number of receiver threads that have not yet exited. The last to exit closes the channel.
+     */
+    private final AtomicInteger activeReceivers = new AtomicInteger();
+
+    /**
+     * The pool of buffers into which datagrams are received.
+     */
+    private final PacketBufferPool bufferPool;
 
     /**
      * Service factory from which we may obtain an executor service that is automatically wired up to shutdown when the
@@ -125,6 +147,13 @@ public class RadiusRequestListener implements Runnable {
             this.channel = DatagramChannel.open();
             // ensure that we can re-open port immediately after shutdown when changing handlerConfig
             this.channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            // give the operating system room to hold bursts of requests until we can receive them
+            final int receiveBufferSize = SystemProperties.getAsInt(
+                    RadiusServerConstants.RECEIVE_BUFFER_SIZE_PROPERTY,
+                    RadiusServerConstants.DEFAULT_RECEIVE_BUFFER_SIZE);
+            if (receiveBufferSize > 0) {
+                this.channel.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+            }
         } catch (final IOException e) {
             this.startedSuccessfully = false;
             throw new RadiusLifecycleException("RADIUS listener unable to open datagram channel.", e);
@@ -167,11 +196,24 @@ public class RadiusRequestListener implements Runnable {
         // poolCfg.getKeepAliveSeconds(),
         // TimeUnit.SECONDS, queue, fact, dropsHandler);
 
-        // now spin up our listener thread to feed the pool
-        listenerThread = new Thread(this);
-        listenerThread.setName(MessageFormat.format(RadiusServerConstants.LISTENER_THREAD_NAME, config.getPort()));
-        listenerThread.setDaemon(true);
-        listenerThread.start();
+        // every request waiting for or being handled by the pool holds a buffer, as does each receiver thread
+        final int receivers = Math.max(1, SystemProperties.getAsInt(RadiusServerConstants.RECEIVER_THREADS_PROPERTY,
+                1));
+        this.bufferPool = new PacketBufferPool(config.getThreadPoolConfig().getMaxThreads()
+                + config.getThreadPoolConfig().getQueueSize() + receivers);
+
+        // now spin up our listener threads to feed the pool
+        final String threadName = MessageFormat.format(RadiusServerConstants.LISTENER_THREAD_NAME, config.getPort());
+        for (int i = 0; i < receivers; i++) {
+            final Thread receiverThread = new Thread(this);
+            receiverThread.setName(i == 0 ? threadName : threadName + "-" + i);
+            receiverThread.setDaemon(true);
+            receiverThreads.add(receiverThread);
+        }
+        activeReceivers.set(receivers);
+        for (final Thread receiverThread : receiverThreads) {
+            receiverThread.start();
+        }
         this.startedSuccessfully = true;
     }
 
@@ -185,6 +227,15 @@ public class RadiusRequestListener implements Runnable {
         return this.startedSuccessfully;
     }
 
+    /**
+     * Returns the local UDP port that the listener is bound to.
+     *
+     * @return the port on which requests are received.
+     */
+    public int getLocalPort() {
+        return this.channel.socket().getLocalPort();
+    }
+
     /**
      * Updates the configuration seen by this listener but should only be called when changes between the new
      * handlerConfig and the only are limited to changes in the set of defined clients. Any other change requires that
@@ -227,20 +278,18 @@ public class RadiusRequestListener implements Runnable {
                 interrupted = true;
             }
         }
-        // now that all in-process requests are finished with the channel we can interrupt the listener if it is still
-        // around (like when it was waiting for more requests prior to termination and received none and needs to be
-        // kicked out of receiving mode
-        final Thread t = listenerThread;
-        if (t != null) {
+        // now that all in-process requests are finished with the channel we can interrupt the listeners if they are
+        // still around (like when they were waiting for more requests prior to termination and received none and need
+        // to be kicked out of receiving mode
+        for (final Thread t : receiverThreads) {
             t.interrupt();
-
-            while (listenerThread != null) {
-                LOG.warning("Waiting for RADIUS Listener to exit.");
-                try {
-                    Thread.sleep(200);
-                } catch (final InterruptedException e) {
-                    // ignore and wait for our listener thread to exit
-                }
+        }
+        while (activeReceivers.get() > 0) {
+            LOG.warning("Waiting for RADIUS Listener to exit.");
+            try {
+                Thread.sleep(200);
+            } catch (final InterruptedException e) {
+                // ignore and wait for our listener threads to exit
             }
         }
     }
@@ -257,11 +306,17 @@ public class RadiusRequestListener implements Runnable {
 
         dumpBannerToLog();
 
+        // the buffer that the next datagram will be received into. It is only handed on with a valid request so a
+        // dropped datagram leaves it to be reused for the next.
+        ByteBuffer bfr = null;
+
         while (!terminated && !interrupted) {
             try {
-                // assure big-endian (network) byte order for our buffer
-                final ByteBuffer bfr = ByteBuffer.allocate(RadiusServerConstants.MAX_PACKET_SIZE);
-                bfr.order(ByteOrder.BIG_ENDIAN);
+                if (bfr == null) {
+                    bfr = bufferPool.acquire();
+                } else {
+                    bfr.clear();
+                }
                 InetSocketAddress iAddr = null;
 
                 // see if we have a datagram packet waiting for us
@@ -277,6 +332,10 @@ public class RadiusRequestListener implements Runnable {
                 } catch (final ClosedByInterruptException c) {
                     interrupted = true;
                     continue;
+                } catch (final ClosedChannelException c) {
+                    // another receiver thread was interrupted and so closed the channel
+                    interrupted = Thread.interrupted();
+                    break;
                 } catch (final IOException e) {
                     LOG.warning("Exception Receiving RADIUS packet. Ignoring.", e);
                     continue;
@@ -301,31 +360,49 @@ public class RadiusRequestListener implements Runnable {
                     continue;
                 }
 
-                // prepare buffer for draining and queue up a handler
+                // prepare buffer for draining and check the packet before creating anything to handle it
                 bfr.flip();
+                if (!PacketFactory.isWellFormed(bfr)) {
+                    LOG.warning("Malformed packet received from RADIUS client '" + clientConfig.getName()
+                            + "'. Dropping request.");
+                    eventBus.post(new PacketDroppedSilentlyEvent());
+                    continue;
+                }
+
+                // queue up a handler, which returns the buffer to the pool once the packet has been parsed
                 final RadiusRequestContext reqCtx = new RadiusRequestContext(clientConfig, channel, iAddr);
 
                 final RadiusRequestHandler requestHandler = new RadiusRequestHandler(accessRequestHandlerFactory,
-                        reqCtx, bfr, eventBus);
+                        reqCtx, bfr, eventBus, bufferPool);
 
-                executorService.execute(requestHandler);
+                try {
+                    executorService.execute(requestHandler);
+                    bfr = null;
+                } catch (final RejectedExecutionException e) {
+                    LOG.warning("RADIUS request queue is full. Dropping request from client '"
+                            + clientConfig.getName() + "'.");
+                    eventBus.post(new PacketDroppedSilentlyEvent());
+                }
             } catch (final Exception t) {
                 LOG.error("Error receiving request.", t);
             }
         } // End of while loop
 
+        bufferPool.release(bfr);
+
         // re-assert interrupted state if it occurred
         if (interrupted) {
             Thread.currentThread().interrupt();
         }
-        try {
-            // be sure that channel is closed
-            channel.close();
-        } catch (final Exception e) {
-            LOG.error("Failed to close the Listener's UDP channel", e);
+        if (activeReceivers.decrementAndGet() == 0) {
+            try {
+                // be sure that channel is closed
+                channel.close();
+            } catch (final Exception e) {
+                LOG.error("Failed to close the Listener's UDP channel", e);
+            }
+            LOG.message("RADIUS Listener Exited.");
         }
-        LOG.message("RADIUS Listener Exited.");
-        this.listenerThread = null;
     }
 
     private void dumpBannerToLog() {
@@ -333,6 +410,7 @@ public class RadiusRequestListener implements Runnable {
         final PrintWriter pw = new PrintWriter(sw);
         pw.println("RADIUS Listener is Active.");
         pw.println("Port              : " + config.getPort());
+        pw.println("Receiver Threads  : " + receiverThreads.size());
         pw.println("Threads Core      : " + config.getThreadPoolConfig().getCoreThreads());
         pw.println("Threads Max       : " + config.getThreadPoolConfig().getMaxThreads());
         pw.println("Thread Keep-alive : " + config.getThreadPoolConfig().getKeepAliveSeconds() + " sec");
@@ -150,6 +150,22 @@ public final class RadiusServerConstants {
      */
     public static final int MAX_PACKET_SIZE = 4096;
 
+    /**
+     * The system property holding the number of threads receiving datagrams from the RADIUS port. Defaults to 1.
+     */
+    public static final String RECEIVER_THREADS_PROPERTY = "org.forgerock.openam.radius.server.receiverThreads";
+
+    /**
+     * The system property holding the size in bytes requested for the socket receive buffer of the RADIUS port, which
+     * holds incoming datagrams until they are received. A value of 0 leaves the operating system default in place.
+     */
+    public static final String RECEIVE_BUFFER_SIZE_PROPERTY = "org.forgerock.openam.radius.server.receiveBufferSize";
+
+    /**
+     * The default size in bytes requested for the socket receive buffer of the RADIUS port.
+     */
+    public static final int DEFAULT_RECEIVE_BUFFER_SIZE = 1024 * 1024;
+
     /**
      * The time period in seconds allowed for the RADIUS request handling pool to finish process current requests before
      * another warning message will be issued to log indicating that the pool is taking longer than allowed.
@@ -0,0 +1,121 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.radius.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.util.BitSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.forgerock.guava.common.eventbus.EventBus;
+import org.forgerock.openam.radius.common.Packet;
+import org.forgerock.openam.radius.common.PacketFactory;
+import org.forgerock.openam.radius.common.PacketType;
+import org.forgerock.openam.radius.common.Utils;
+import org.forgerock.openam.radius.server.config.ClientConfig;
+import org.forgerock.openam.radius.server.config.RadiusServiceConfig;
+import org.forgerock.openam.radius.server.config.ThreadPoolConfig;
+import org.forgerock.openam.radius.server.spi.handlers.AcceptAllHandler;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Load test for the <code>RadiusRequestListener</code> class, sending a burst of requests from a local UDP client.
+ *
+ * @see org.forgerock.openam.radius.server.RadiusRequestListener
+ */
+public class RadiusRequestListenerTest {
+
+    private static final String REQUEST = "01 00 00 38 0f 40 3f 94 73 97 80 57 bd 83 d5 cb "
+            + "98 f4 22 7a 01 06 6e 65 6d 6f 02 12 0d be 70 8d " + "93 d4 13 ce 31 96 e4 3f 78 2a 0a ee 04 06 c0 a8 "
+            + "01 10 05 06 00 00 00 03";
+
+    private static final int BURST_SIZE = 256;
+
+    private static final String LOOPBACK = "127.0.0.1";
+
+    private ExecutorService executorService;
+    private RadiusRequestListener listener;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        final ClientConfig clientConfig = new ClientConfig();
+        clientConfig.setName("LoadTestClient");
+        clientConfig.setIpaddr("/" + LOOPBACK);
+        clientConfig.setSecret("secret");
+        clientConfig.setAccessRequestHandler(AcceptAllHandler.class);
+        clientConfig.setClassIsValid(true);
+        final RadiusServiceConfig config = new RadiusServiceConfig(true, 0, new ThreadPoolConfig(4, 4, 1000, 10),
+                clientConfig);
+
+        final AccessRequestHandlerFactory accessRequestHandlerFactory = mock(AccessRequestHandlerFactory.class);
+        when(accessRequestHandlerFactory.getAccessRequestHandler(any(RadiusRequestContext.class)))
+                .thenReturn(new AcceptAllHandler());
+
+        executorService = Executors.newFixedThreadPool(4);
+        listener = new RadiusRequestListener(config, executorService, new EventBus(), accessRequestHandlerFactory);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        listener.terminate();
+    }
+
+    @Test
+    public void shouldRespondToEveryRequestInABurst() throws Exception {
+        // given
+        final byte[] request = Utils.toByteArray(REQUEST);
+        final BitSet answered = new BitSet(BURST_SIZE);
+        final InetAddress server = InetAddress.getByName(LOOPBACK);
+
+        try (DatagramSocket client = new DatagramSocket()) {
+            client.setSoTimeout(5000);
+            client.setReceiveBufferSize(BURST_SIZE * 64);
+
+            // when
+            for (int id = 0; id < BURST_SIZE; id++) {
+                request[1] = (byte) id;
+                client.send(new DatagramPacket(request, request.length, server, listener.getLocalPort()));
+            }
+
+            final byte[] response = new byte[4096];
+            try {
+                while (answered.cardinality() < BURST_SIZE) {
+                    final DatagramPacket datagram = new DatagramPacket(response, response.length);
+                    client.receive(datagram);
+                    final Packet packet = PacketFactory.toPacket(response);
+                    assertThat(packet.getType()).isEqualTo(PacketType.ACCESS_ACCEPT);
+                    answered.set(packet.getIdentifier());
+                }
+            } catch (SocketTimeoutException e) {
+                // reported by the assertion below
+            }
+        }
+
+        // then
+        assertThat(answered.cardinality()).isEqualTo(BURST_SIZE);
+    }
+}
@@ -11,23 +11,30 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2014-2015 ForgeRock AS.
+ * Copyright 2014-2016 ForgeRock AS.
  */
 
 package org.forgerock.openam.scripting;
 
 import org.codehaus.groovy.control.io.NullWriter;
+import org.forgerock.guava.common.cache.Cache;
+import org.forgerock.guava.common.cache.CacheBuilder;
+import org.forgerock.guava.common.cache.CacheStats;
 import org.forgerock.util.Reject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
 import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptException;
 import javax.script.SimpleBindings;
 import javax.script.SimpleScriptContext;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Evaluates scripts using the standard JSR 223 script engine framework.
@@ -40,13 +47,24 @@ import javax.script.SimpleScriptContext;
  * us sending its thread an interrupt signal, while JavaScript has its own timer which is checked on
  * each processed instruction.
  *
+ * Scripts are compiled once by engines that support {@link Compilable} and the compiled form is kept in a bounded
+ * cache, keyed by the script name, language and source, so that a changed script is compiled afresh. The cache is
+ * cleared whenever the script engine configuration changes.
+ *
  * @since 12.0.0
  */
 public class StandardScriptEvaluator implements ScriptEvaluator {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(StandardScriptEvaluator.class);
 
+    /**
+     * The default maximum number of compiled scripts to cache.
+     */
+    public static final int DEFAULT_COMPILED_SCRIPT_CACHE_SIZE = 1000;
+
     private final StandardScriptEngineManager scriptEngineManager;
+    private final Cache<CompiledScriptKey, CompiledScript> compiledScripts;
+    private final AtomicLong compileTimeNanos = new AtomicLong();
 
     /**
      * Constructs the script evaluator using the given JSR 223 script engine manager instance.
@@ -54,8 +72,31 @@ public class StandardScriptEvaluator implements ScriptEvaluator {
      * @param scriptEngineManager the script engine manager to use for creating script engines. May not be null.
      */
     public StandardScriptEvaluator(StandardScriptEngineManager scriptEngineManager) {
+        this(scriptEngineManager, DEFAULT_COMPILED_SCRIPT_CACHE_SIZE);
+    }
+
+    /**
+     * Constructs the script evaluator using the given JSR 223 script engine manager instance and compiled script
+     * cache size.
+     *
+     * @param scriptEngineManager the script engine manager to use for creating script engines. May not be null.
+     * @param compiledScriptCacheSize the maximum number of compiled scripts to cache, zero to disable the cache.
+     */
+    public StandardScriptEvaluator(StandardScriptEngineManager scriptEngineManager, int compiledScriptCacheSize) {
         Reject.ifNull(scriptEngineManager);
+        Reject.ifTrue(compiledScriptCacheSize < 0, "Compiled script cache size cannot be negative");
         this.scriptEngineManager = scriptEngineManager;
+        this.compiledScripts = CacheBuilder.newBuilder()
+                .maximumSize(compiledScriptCacheSize)
+                .recordStats()
+                .build();
+
+        scriptEngineManager.addConfigurationListener(new StandardScriptEngineManager.ConfigurationListener() {
+            @Override
+            public void onConfigurationChange(ScriptEngineConfiguration newConfiguration) {
+                compiledScripts.invalidateAll();
+            }
+        });
     }
 
     /**
@@ -87,11 +128,52 @@ public class StandardScriptEvaluator implements ScriptEvaluator {
             LOGGER.debug("Evaluating script: " + script);
         }
 
-        final ScriptEngine engine = getScriptEngineFor(script);
         final Bindings variableBindings = mergeBindings(script.getBindings(), bindings);
         final ScriptContext context = buildScriptContext(variableBindings);
 
-        return (T) engine.eval(script.getScript(), context);
+        final CompiledScriptKey key = new CompiledScriptKey(script);
+        CompiledScript compiledScript = compiledScripts.getIfPresent(key);
+        if (compiledScript == null) {
+            final ScriptEngine engine = getScriptEngineFor(script);
+            if (!(engine instanceof Compilable)) {
+                return (T) engine.eval(script.getScript(), context);
+            }
+            compiledScript = compile((Compilable) engine, script);
+            compiledScripts.put(key, compiledScript);
+        }
+
+        return (T) compiledScript.eval(context);
+    }
+
+    /**
+     * Returns the hit, miss and eviction statistics of the compiled script cache.
+     *
+     * @return the compiled script cache statistics.
+     */
+    public CacheStats getCompiledScriptCacheStats() {
+        return compiledScripts.stats();
+    }
+
+    /**
+     * Returns the total time spent compiling scripts.
+     *
+     * @return the total compilation time in milliseconds.
+     */
+    public long getTotalCompileTime() {
+        return TimeUnit.NANOSECONDS.toMillis(compileTimeNanos.get());
+    }
+
+    private CompiledScript compile(final Compilable engine, final ScriptObject script) throws ScriptException {
+        final long start = System.nanoTime();
+        final CompiledScript compiledScript = engine.compile(script.getScript());
+        final long elapsed = System.nanoTime() - start;
+        compileTimeNanos.addAndGet(elapsed);
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Compiled script " + script.getName() + " in "
+                    + TimeUnit.NANOSECONDS.toMillis(elapsed) + "ms, cache stats: " + compiledScripts.stats());
+        }
+        return compiledScript;
     }
 
     /**
@@ -146,4 +228,39 @@ public class StandardScriptEvaluator implements ScriptEvaluator {
         return context;
     }
 
+    /**
+     * Cache key for a compiled script. The script source is part of the key, so an updated script never matches the
+     * compiled form of its previous version.
+     */
+    private static final class CompiledScriptKey {
+        private final String name;
+        private final ScriptingLanguage language;
+        private final String source;
+
+        private CompiledScriptKey(final ScriptObject script) {
+            this.name = script.getName();
+            this.language = script.getLanguage();
+            this.source = script.getScript();
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CompiledScriptKey)) {
+                return false;
+            }
+            final CompiledScriptKey that = (CompiledScriptKey) o;
+            return name.equals(that.name) && language.equals(that.language) && source.equals(that.source);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = name.hashCode();
+            result = 31 * result + language.hashCode();
+            result = 31 * result + source.hashCode();
+            return result;
+        }
+    }
 }
@@ -282,6 +282,52 @@ public class StandardScriptEvaluatorTest {
 
     }
 
+    @Test
+    public void shouldReuseCompiledScripts() throws Exception {
+        // Given
+        ScriptObject script = getJavascript("x * 2");
+        Bindings scope = new SimpleBindings();
+        scope.put("x", 2);
+        testEvaluator.evaluateScript(script, scope);
+        scope.put("x", 3);
+
+        // When
+        Number result = testEvaluator.evaluateScript(getJavascript("x * 2"), scope);
+
+        // Then
+        assertThat(result.intValue()).isEqualTo(6);
+        assertThat(testEvaluator.getCompiledScriptCacheStats().missCount()).isEqualTo(1);
+        assertThat(testEvaluator.getCompiledScriptCacheStats().hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldRecompileChangedScripts() throws Exception {
+        // Given
+        testEvaluator.evaluateScript(getGroovyScript("3 * 4"), null);
+
+        // When
+        Number result = testEvaluator.evaluateScript(getGroovyScript("3 * 5"), null);
+
+        // Then
+        assertThat(result.intValue()).isEqualTo(15);
+        assertThat(testEvaluator.getCompiledScriptCacheStats().missCount()).isEqualTo(2);
+        assertThat(testEvaluator.getCompiledScriptCacheStats().hitCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldRecompileScriptsWhenConfigurationChanges() throws Exception {
+        // Given
+        ScriptObject script = getGroovyScript("3 * 4");
+        testEvaluator.evaluateScript(script, null);
+
+        // When
+        scriptEngineManager.setConfiguration(CONFIGURATION);
+        testEvaluator.evaluateScript(script, null);
+
+        // Then
+        assertThat(testEvaluator.getCompiledScriptCacheStats().missCount()).isEqualTo(2);
+    }
+
 
     static ScriptObject getJavascript(String... script) {
         return getJavascript(null, script);
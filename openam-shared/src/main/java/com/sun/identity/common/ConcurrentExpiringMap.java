@@ -0,0 +1,577 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package com.sun.identity.common;
+
+import static org.forgerock.openam.utils.Time.currentTimeMillis;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A concurrent map whose entries expire, intended as a replacement for {@link PeriodicCleanUpMap} where the map is
+ * accessed by many threads at once.
+ *
+ * <p>Reads and writes go straight to a {@link ConcurrentHashMap} and never take a lock. Every entry has its own time
+ * to live, and is also put in the bucket of a hashed timing wheel matching its expiry time. Like
+ * {@code PeriodicCleanUpMap}, the map is a {@link TaskRunnable} which must be scheduled to a {@link TimerPool}: each
+ * run advances the wheel by one tick and removes the expired entries of the buckets it went past. An expired entry
+ * is never returned, even when the wheel has not reached it yet.</p>
+ *
+ * <p>The map may be given a maximum size, above which the entries closest to expiry are evicted. Eviction only
+ * takes place in one thread at a time, so the map may briefly hold a few entries more than its maximum size while
+ * many threads write to it.</p>
+ *
+ * <p>Neither keys nor values may be {@code null}. The views returned by {@link #entrySet()}, {@link #keySet()} and
+ * {@link #values()} are weakly consistent and never throw {@link java.util.ConcurrentModificationException}. As for
+ * any other task, equality is identity.</p>
+ *
+ * @param <K> The map key type.
+ * @param <V> The map value type.
+ */
+public class ConcurrentExpiringMap<K, V> extends GeneralTaskRunnable implements ConcurrentMap<K, V> {
+
+    private static final int MIN_WHEEL_SIZE = 16;
+    private static final int MAX_WHEEL_SIZE = 1 << 16;
+
+    private final ConcurrentMap<K, Node<K, V>> data = new ConcurrentHashMap<K, Node<K, V>>();
+    private final Queue<Node<K, V>>[] wheel;
+    private final int mask;
+    private final long timeToLive;
+    private final long tickDuration;
+    private final int maxSize;
+    private final long startTime;
+    private final Map<K, V> view = new View();
+
+    // guards the advance of the wheel and the eviction
+    private final ReentrantLock lock = new ReentrantLock();
+    // the last tick whose bucket has been swept, written with the lock held
+    private volatile long currentTick;
+
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Constructs a new map whose size is not bounded.
+     *
+     * @param timeToLive The default number of milliseconds after which an entry expires once put in the map.
+     * @param tickDuration The number of milliseconds between two runs of the map, which is the precision with which
+     *                     the expired entries are removed.
+     */
+    public ConcurrentExpiringMap(long timeToLive, long tickDuration) {
+        this(timeToLive, tickDuration, 0);
+    }
+
+    /**
+     * Constructs a new map.
+     *
+     * @param timeToLive The default number of milliseconds after which an entry expires once put in the map.
+     * @param tickDuration The number of milliseconds between two runs of the map, which is the precision with which
+     *                     the expired entries are removed.
+     * @param maxSize The maximum number of entries in the map, or zero if the size of the map is not bounded.
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentExpiringMap(long timeToLive, long tickDuration, int maxSize) {
+        if (timeToLive <= 0) {
+            throw new IllegalArgumentException("Illegal time to live: " + timeToLive);
+        }
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("Illegal tick duration: " + tickDuration);
+        }
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Illegal maximum size: " + maxSize);
+        }
+        this.timeToLive = timeToLive;
+        this.tickDuration = tickDuration;
+        this.maxSize = maxSize;
+        // one turn of the wheel covers the default time to live, longer ones stay in their bucket for several turns
+        long ticks = Math.min(MAX_WHEEL_SIZE, Math.max(MIN_WHEEL_SIZE, timeToLive / tickDuration + 1));
+        int wheelSize = Integer.highestOneBit((int) ticks - 1) << 1;
+        this.wheel = new Queue[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<Node<K, V>>();
+        }
+        this.mask = wheelSize - 1;
+        this.startTime = currentTimeMillis();
+    }
+
+    /**
+     * Returns the default time to live of the entries.
+     *
+     * @return the time to live in milliseconds.
+     */
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    /**
+     * Returns the maximum size of the map.
+     *
+     * @return the maximum number of entries, or zero if the size of the map is not bounded.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the number of entries removed as they expired.
+     *
+     * @return the number of expirations.
+     */
+    public long getExpirationCount() {
+        return expirations.get();
+    }
+
+    /**
+     * Returns the number of entries removed as the map reached its maximum size.
+     *
+     * @return the number of evictions.
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    @Override
+    public V get(Object key) {
+        Node<K, V> node = data.get(key);
+        if (node == null || isExpired(node, currentTimeMillis())) {
+            return null;
+        }
+        return node.value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        Node<K, V> node = data.get(key);
+        return node != null && !isExpired(node, currentTimeMillis());
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return view.containsValue(value);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return put(key, value, timeToLive);
+    }
+
+    /**
+     * Associates a value with a key, the entry expiring after the given time rather than after the default time to
+     * live of the map.
+     *
+     * @param key The key.
+     * @param value The value.
+     * @param timeToLive The number of milliseconds after which the entry expires.
+     * @return the previous value associated with the key, or {@code null} if there was none or it had expired.
+     */
+    public V put(K key, V value, long timeToLive) {
+        Node<K, V> node = newNode(key, value, timeToLive);
+        Node<K, V> previous = data.put(key, node);
+        schedule(node);
+        return liveValue(previous, node.createTime);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        Node<K, V> node = newNode(key, value, timeToLive);
+        while (true) {
+            Node<K, V> existing = data.putIfAbsent(key, node);
+            if (existing == null) {
+                schedule(node);
+                return null;
+            }
+            if (!existing.isExpired(node.createTime)) {
+                return existing.value;
+            }
+            if (data.replace(key, existing, node)) {
+                expirations.incrementAndGet();
+                schedule(node);
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> map) {
+        for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        Node<K, V> node = data.remove(key);
+        return liveValue(node, currentTimeMillis());
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        Node<K, V> node = data.get(key);
+        return node != null && !node.isExpired(currentTimeMillis()) && node.value.equals(value)
+                && data.remove(key, node);
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        Node<K, V> node = newNode(key, value, timeToLive);
+        while (true) {
+            Node<K, V> existing = data.get(key);
+            if (existing == null || isExpired(existing, node.createTime)) {
+                return null;
+            }
+            if (data.replace(key, existing, node)) {
+                schedule(node);
+                return existing.value;
+            }
+        }
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        Node<K, V> node = newNode(key, newValue, timeToLive);
+        Node<K, V> existing = data.get(key);
+        if (existing == null || existing.isExpired(node.createTime) || !existing.value.equals(oldValue)
+                || !data.replace(key, existing, node)) {
+            return false;
+        }
+        schedule(node);
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        data.clear();
+        for (Queue<Node<K, V>> bucket : wheel) {
+            bucket.clear();
+        }
+    }
+
+    /**
+     * Returns the number of entries in the map, which may include entries that have expired but have not been
+     * removed yet.
+     *
+     * @return the number of entries.
+     */
+    @Override
+    public int size() {
+        return data.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return data.isEmpty();
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return view.keySet();
+    }
+
+    @Override
+    public Collection<V> values() {
+        return view.values();
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return view.entrySet();
+    }
+
+    @Override
+    public String toString() {
+        return view.toString();
+    }
+
+    /**
+     * Adds an element to this TaskRunnable. The elements of this map are its entries, hence this method does
+     * nothing.
+     *
+     * @param key Element to be added to this TaskRunnable
+     * @return false
+     */
+    @Override
+    public boolean addElement(Object key) {
+        return false;
+    }
+
+    /**
+     * Removes an element from this TaskRunnable. The elements of this map are its entries, hence this method does
+     * nothing.
+     *
+     * @param key Element to be removed from this TaskRunnable
+     * @return false
+     */
+    @Override
+    public boolean removeElement(Object key) {
+        return false;
+    }
+
+    /**
+     * Returns the run period of this map, which is the duration of a tick of its timing wheel.
+     *
+     * @return the tick duration in milliseconds.
+     */
+    @Override
+    public long getRunPeriod() {
+        return tickDuration;
+    }
+
+    /**
+     * Advances the timing wheel to the current time, removing the expired entries of the buckets it goes past.
+     */
+    @Override
+    public void run() {
+        long now = currentTimeMillis();
+        long nowTick = (now - startTime) / tickDuration;
+        lock.lock();
+        try {
+            long tick = Math.max(currentTick + 1, nowTick - mask);
+            for (; tick <= nowTick; tick++) {
+                expire(wheel[(int) (tick & mask)], now);
+            }
+            if (nowTick > currentTick) {
+                currentTick = nowTick;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Node<K, V> newNode(K key, V value, long timeToLive) {
+        if (key == null || value == null) {
+            throw new NullPointerException();
+        }
+        if (timeToLive <= 0) {
+            throw new IllegalArgumentException("Illegal time to live: " + timeToLive);
+        }
+        long now = currentTimeMillis();
+        return new Node<K, V>(key, value, now, now + timeToLive);
+    }
+
+    /**
+     * Puts a new node in the bucket of the tick at which it expires, then evicts the entries closest to expiry if
+     * the map has grown above its maximum size.
+     */
+    private void schedule(Node<K, V> node) {
+        long expiryTick = (node.expiryTime - startTime + tickDuration - 1) / tickDuration;
+        long tick = Math.max(expiryTick, currentTick + 1);
+        wheel[(int) (tick & mask)].add(node);
+        if (maxSize > 0 && data.size() > maxSize && lock.tryLock()) {
+            try {
+                evict();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Removes the expired entries of a bucket, and the nodes which no longer belong to the map. The other entries
+     * are left for a later turn of the wheel. Must be called with the lock held.
+     */
+    private void expire(Queue<Node<K, V>> bucket, long now) {
+        Iterator<Node<K, V>> nodes = bucket.iterator();
+        while (nodes.hasNext()) {
+            Node<K, V> node = nodes.next();
+            if (data.get(node.key) != node) {
+                nodes.remove();
+            } else if (node.isExpired(now)) {
+                nodes.remove();
+                if (data.remove(node.key, node)) {
+                    expirations.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes entries bucket by bucket from the next tick on, until the size of the map is back to its maximum.
+     * Must be called with the lock held.
+     */
+    private void evict() {
+        long tick = currentTick + 1;
+        for (int i = 0; i <= mask && data.size() > maxSize; i++, tick++) {
+            Iterator<Node<K, V>> nodes = wheel[(int) (tick & mask)].iterator();
+            while (nodes.hasNext() && data.size() > maxSize) {
+                Node<K, V> node = nodes.next();
+                nodes.remove();
+                if (data.remove(node.key, node)) {
+                    evictions.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Tells whether a node has expired, removing it from the map if it has.
+     */
+    private boolean isExpired(Node<K, V> node, long now) {
+        if (!node.isExpired(now)) {
+            return false;
+        }
+        if (data.remove(node.key, node)) {
+            expirations.incrementAndGet();
+        }
+        return true;
+    }
+
+    private V liveValue(Node<K, V> node, long now) {
+        return node == null || node.isExpired(now) ? null : node.value;
+    }
+
+    /**
+     * A map entry. Entries are never modified: a new node replaces the previous one on every write, so that the
+     * node left in the timing wheel can tell that it no longer belongs to the map.
+     */
+    private static final class Node<K, V> {
+        private final K key;
+        private final V value;
+        private final long createTime;
+        private final long expiryTime;
+
+        private Node(K key, V value, long createTime, long expiryTime) {
+            this.key = key;
+            this.value = value;
+            this.createTime = createTime;
+            this.expiryTime = expiryTime;
+        }
+
+        private boolean isExpired(long now) {
+            return expiryTime <= now;
+        }
+    }
+
+    /**
+     * Provides the collection views of the map from its entry set.
+     */
+    private final class View extends AbstractMap<K, V> {
+
+        @Override
+        public Set<Map.Entry<K, V>> entrySet() {
+            return new EntrySet();
+        }
+
+        @Override
+        public int size() {
+            return ConcurrentExpiringMap.this.size();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return ConcurrentExpiringMap.this.containsKey(key);
+        }
+
+        @Override
+        public V remove(Object key) {
+            return ConcurrentExpiringMap.this.remove(key);
+        }
+
+        @Override
+        public void clear() {
+            ConcurrentExpiringMap.this.clear();
+        }
+    }
+
+    /**
+     * Weakly consistent view of the entries that have not expired.
+     */
+    private final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new Iterator<Map.Entry<K, V>>() {
+                private final Iterator<Node<K, V>> nodes = data.values().iterator();
+                private final long now = currentTimeMillis();
+                private Node<K, V> next = advance();
+                private Node<K, V> last;
+
+                private Node<K, V> advance() {
+                    while (nodes.hasNext()) {
+                        Node<K, V> node = nodes.next();
+                        if (!node.isExpired(now)) {
+                            return node;
+                        }
+                    }
+                    return null;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return next != null;
+                }
+
+                @Override
+                public Map.Entry<K, V> next() {
+                    if (next == null) {
+                        throw new NoSuchElementException();
+                    }
+                    last = next;
+                    next = advance();
+                    return new AbstractMap.SimpleImmutableEntry<K, V>(last.key, last.value);
+                }
+
+                @Override
+                public void remove() {
+                    if (last == null) {
+                        throw new IllegalStateException();
+                    }
+                    data.remove(last.key, last);
+                    last = null;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return ConcurrentExpiringMap.this.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            Node<K, V> node = data.get(entry.getKey());
+            return node != null && !node.isExpired(currentTimeMillis()) && node.value.equals(entry.getValue());
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            return ConcurrentExpiringMap.this.remove(entry.getKey(), entry.getValue());
+        }
+
+        @Override
+        public void clear() {
+            ConcurrentExpiringMap.this.clear();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.sun.identity.common;
+
+import org.forgerock.openam.shared.concurrency.TimingWheel;
+import org.forgerock.util.thread.listener.ShutdownListener;
+import org.forgerock.util.time.TimeService;
+
+import com.sun.identity.shared.Constants;
+import com.sun.identity.shared.configuration.SystemPropertiesManager;
+
+/**
+ * Holds the {@link TimingWheel} shared in the system, for tasks such as session culling that are scheduled and
+ * cancelled in large numbers. The wheel uses the same number of worker threads as the {@link SystemTimerPool}.
+ *
+ * @since 14.0.0
+ */
+public final class SystemTimingWheel {
+
+    /** The name of the {@link TimingWheel} instance. */
+    public static final String TIMING_WHEEL_NAME = "SystemTimingWheel";
+    /** Property for the duration of each tick of the wheel, in milliseconds. */
+    public static final String TICK_DURATION_PROPERTY = "org.forgerock.openam.timingwheel.tickDuration";
+    /** Property for the number of buckets in the wheel. */
+    public static final String WHEEL_SIZE_PROPERTY = "org.forgerock.openam.timingwheel.size";
+    /** The default duration of each tick of the wheel, in milliseconds. */
+    public static final int DEFAULT_TICK_DURATION = 1000;
+    /** The default number of buckets in the wheel. */
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private static TimingWheel instance;
+
+    private SystemTimingWheel() {
+    }
+
+    /**
+     * Create and return the system timing wheel.
+     *
+     * @return The shared timing wheel.
+     */
+    public static synchronized TimingWheel getTimingWheel() {
+        if (instance == null) {
+            int poolSize = SystemPropertiesManager.getAsInt(Constants.SYSTEM_TIMERPOOL_SIZE,
+                    SystemTimerPool.DEFAULT_POOL_SIZE);
+            instance = new TimingWheel(TIMING_WHEEL_NAME,
+                    SystemPropertiesManager.getAsInt(TICK_DURATION_PROPERTY, DEFAULT_TICK_DURATION),
+                    SystemPropertiesManager.getAsInt(WHEEL_SIZE_PROPERTY, DEFAULT_WHEEL_SIZE),
+                    poolSize, TimeService.SYSTEM);
+            try {
+                ShutdownManager.getInstance().addShutdownListener(new ShutdownListener() {
+                    @Override
+                    public void shutdown() {
+                        synchronized (SystemTimingWheel.class) {
+                            instance.shutdown();
+                            instance = null;
+                        }
+                    }
+                });
+            } catch (IllegalMonitorStateException e) {
+                instance.shutdown();
+                instance = null;
+                throw e;
+            }
+        }
+        return instance;
+    }
+}
@@ -51,6 +51,19 @@ public final class DebugConstants {
 
     public static final String CONFIG_DEBUG_DIRECTORY = "com.iplanet.services.debug.directory";
 
+    /**
+     * Property key to enable writing debug files asynchronously, from a single background thread.
+     */
+    public static final String CONFIG_DEBUG_ASYNC = "org.forgerock.openam.debug.async";
+
+    /**
+     * Property key for the number of debug records that can wait to be written asynchronously before new records are
+     * dropped.
+     */
+    public static final String CONFIG_DEBUG_ASYNC_BUFFER_SIZE = "org.forgerock.openam.debug.async.bufferSize";
+
+    public static final int DEFAULT_DEBUG_ASYNC_BUFFER_SIZE = 10000;
+
     /**
      * Constant string used as property key to look up the debug provider class
      * name.
@@ -0,0 +1,269 @@
+/**
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package com.sun.identity.shared.debug.file.impl;
+
+import com.sun.identity.common.ShutdownManager;
+import com.sun.identity.shared.configuration.SystemPropertiesManager;
+import com.sun.identity.shared.debug.DebugConstants;
+import com.sun.identity.shared.debug.file.DebugConfiguration;
+import com.sun.identity.shared.debug.file.DebugFile;
+import com.sun.identity.shared.debug.file.DebugFileProvider;
+import org.forgerock.util.thread.listener.ShutdownListener;
+import org.forgerock.util.thread.listener.ShutdownPriority;
+import org.forgerock.util.time.TimeService;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Debug file provider writing debug files asynchronously
+ * Keep the following constraint one :
+ * - One debugFile instance for One log file
+ * <p>
+ * Debug records are queued in a bounded buffer and written by a single background thread, which takes every record
+ * waiting in the buffer and writes those of each file in one go. The threads logging never wait for the disk. If the
+ * buffer is full the record is dropped and counted, and the number of records dropped is written into the debug file
+ * with its next record.
+ * <p>
+ * Selected with the {@link DebugConstants#CONFIG_DEBUG_ASYNC} property. Once the server is shutting down, records
+ * still waiting are written and further records are written directly.
+ */
+public class AsyncDebugFileProviderImpl implements DebugFileProvider {
+
+    private static final int BATCH_SIZE = 512;
+    private static final long SHUTDOWN_WAIT_MS = 5000;
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    private final Map<String, AsyncDebugFile> debugMap = new HashMap<String, AsyncDebugFile>();
+    private final DebugConfiguration configuration;
+    private final TimeService clock;
+    private final BlockingQueue<Record> buffer;
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final Thread writerThread;
+    private volatile boolean shutdown = false;
+
+    /**
+     * Default constructor
+     */
+    public AsyncDebugFileProviderImpl() {
+        this(DebugFileProviderImpl.loadConfiguration(), TimeService.SYSTEM,
+                SystemPropertiesManager.getAsInt(DebugConstants.CONFIG_DEBUG_ASYNC_BUFFER_SIZE,
+                        DebugConstants.DEFAULT_DEBUG_ASYNC_BUFFER_SIZE));
+        ShutdownManager.getInstance().addShutdownListener(new ShutdownListener() {
+            @Override
+            public void shutdown() {
+                AsyncDebugFileProviderImpl.this.shutdown();
+            }
+        }, ShutdownPriority.LOWEST);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param configuration debug configuration
+     * @param clock         Clock used to generate date
+     * @param bufferSize    number of records that can wait to be written before new records are dropped
+     */
+    public AsyncDebugFileProviderImpl(DebugConfiguration configuration, TimeService clock, int bufferSize) {
+        this.configuration = configuration;
+        this.clock = clock;
+        this.buffer = new ArrayBlockingQueue<Record>(Math.max(1, bufferSize));
+        this.writerThread = new Thread(new Writer(), "DebugFileWriter");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Get debug file instance
+     *
+     * @param debugName name of the debug instance which will be returned.
+     * @return debug file
+     */
+    public synchronized DebugFile getInstance(String debugName) {
+        AsyncDebugFile debugFile = debugMap.get(debugName);
+        if (debugFile == null) {
+            debugFile = new AsyncDebugFile(new DebugFileImpl(configuration, debugName, clock), debugName);
+            debugMap.put(debugName, debugFile);
+        }
+        return debugFile;
+    }
+
+    /**
+     * Get std out debug file
+     *
+     * @return debug file
+     */
+    public DebugFile getStdOutDebugFile() {
+        return StdDebugFile.getInstance();
+    }
+
+    /**
+     * Get the number of debug records dropped because the buffer was full
+     *
+     * @return the number of records dropped since the provider was created
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Stop the background writer once every record waiting has been written. Records logged afterwards are written
+     * directly by the logging thread.
+     */
+    public void shutdown() {
+        shutdown = true;
+        writerThread.interrupt();
+        try {
+            writerThread.join(SHUTDOWN_WAIT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // anything queued while the writer was stopping
+        drain();
+    }
+
+    private void drain() {
+        List<Record> batch = new ArrayList<Record>(BATCH_SIZE);
+        while (buffer.drainTo(batch, BATCH_SIZE) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Write a batch of records, all the records of a file being written at once and in the order they were logged
+     *
+     * @param batch the records
+     */
+    private void write(List<Record> batch) {
+        Map<AsyncDebugFile, StringBuilder> recordsByFile = new IdentityHashMap<AsyncDebugFile, StringBuilder>();
+        for (Record record : batch) {
+            StringBuilder records = recordsByFile.get(record.file);
+            if (records == null) {
+                records = new StringBuilder();
+                long dropped = record.file.droppedCount.getAndSet(0);
+                if (dropped > 0) {
+                    records.append(record.prefix).append('\n').append(dropped)
+                            .append(" debug records were dropped because the debug buffer was full")
+                            .append(LINE_SEPARATOR);
+                }
+                recordsByFile.put(record.file, records);
+            } else {
+                records.append(LINE_SEPARATOR);
+            }
+            records.append(DebugFileImpl.formatRecord(record.prefix, record.msg, record.th));
+        }
+
+        for (Map.Entry<AsyncDebugFile, StringBuilder> entry : recordsByFile.entrySet()) {
+            entry.getKey().writeNow(entry.getValue().toString());
+        }
+    }
+
+    /**
+     * Takes records from the buffer until the provider is shut down
+     */
+    private final class Writer implements Runnable {
+
+        @Override
+        public void run() {
+            List<Record> batch = new ArrayList<Record>(BATCH_SIZE);
+            while (!shutdown) {
+                try {
+                    Record first = buffer.poll(1, TimeUnit.SECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    buffer.drainTo(batch, BATCH_SIZE - 1);
+                    write(batch);
+                } catch (InterruptedException e) {
+                    // shutting down
+                    break;
+                } catch (RuntimeException e) {
+                    StdDebugFile.printError(AsyncDebugFileProviderImpl.class.getSimpleName(), e.getMessage(), e);
+                } finally {
+                    batch.clear();
+                }
+            }
+            drain();
+        }
+    }
+
+    /**
+     * A debug file which queues its records for the background writer
+     */
+    private final class AsyncDebugFile implements DebugFile {
+
+        private final DebugFileImpl debugFile;
+        private final String debugName;
+        private final AtomicLong droppedCount = new AtomicLong();
+
+        private AsyncDebugFile(DebugFileImpl debugFile, String debugName) {
+            this.debugFile = debugFile;
+            this.debugName = debugName;
+        }
+
+        @Override
+        public void writeIt(String prefix, String msg, Throwable th) throws IOException {
+            if (shutdown) {
+                debugFile.writeIt(prefix, msg, th);
+            } else if (!buffer.offer(new Record(this, prefix, msg, th))) {
+                droppedCount.incrementAndGet();
+                AsyncDebugFileProviderImpl.this.droppedCount.incrementAndGet();
+            }
+        }
+
+        /**
+         * Called from the writer thread
+         */
+        private void writeNow(String records) {
+            try {
+                if (!debugFile.write(records)) {
+                    StdDebugFile.printError(debugName, records, null);
+                }
+            } catch (IOException e) {
+                StdDebugFile.printError(debugName, "Debug file can't be written : " + e.getMessage()
+                        + LINE_SEPARATOR + records, null);
+            }
+        }
+    }
+
+    /**
+     * A debug record waiting to be written
+     */
+    private static final class Record {
+
+        private final AsyncDebugFile file;
+        private final String prefix;
+        private final String msg;
+        private final Throwable th;
+
+        private Record(AsyncDebugFile file, String prefix, String msg, Throwable th) {
+            this.file = file;
+            this.prefix = prefix;
+            this.msg = msg;
+            this.th = th;
+        }
+    }
+}
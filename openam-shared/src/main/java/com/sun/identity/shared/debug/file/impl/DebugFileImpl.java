@@ -141,7 +141,21 @@ public class DebugFileImpl implements DebugFile {
 
     @Override
     public void writeIt(String prefix, String msg, Throwable th) throws IOException {
+        if (!write(formatRecord(prefix, msg, th))) {
+            StdDebugFile.printError(prefix, msg, th);
+        }
+    }
 
+    /**
+     * Format a debug record as it is written into the file
+     *
+     * @param prefix Message prefix
+     * @param msg    Message to be recorded.
+     * @param th     the optional <code>java.lang.Throwable</code> which if
+     *               present will be used to record the stack trace.
+     * @return the record, without a trailing line separator
+     */
+    static String formatRecord(String prefix, String msg, Throwable th) {
         StringBuilder buf = new StringBuilder();
         buf.append(prefix);
         buf.append('\n');
@@ -154,6 +168,18 @@ public class DebugFileImpl implements DebugFile {
             stackStream.flush();
             buf.append(stBuf.toString());
         }
+        return buf.toString();
+    }
+
+    /**
+     * Write one or more formatted records into the file, followed by a line separator, initializing or rotating the
+     * file first if needed.
+     *
+     * @param records the formatted records
+     * @return false if the file is not open and so nothing was written
+     * @throws IOException if the file could not be initialized
+     */
+    boolean write(String records) throws IOException {
 
         if (isConfigChanged() || !isConfigFileInitialized()) {
             initialize();
@@ -166,10 +192,10 @@ public class DebugFileImpl implements DebugFile {
         fileLock.readLock().lock();
         try {
             if (debugWriter != null) {
-                debugWriter.println(buf.toString());
-            } else {
-                StdDebugFile.printError(prefix, msg, th);
-            } 
+                debugWriter.println(records);
+                return true;
+            }
+            return false;
         } finally {
             fileLock.readLock().unlock();
         }
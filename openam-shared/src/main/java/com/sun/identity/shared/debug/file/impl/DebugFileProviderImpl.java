@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2014-2015 ForgeRock AS.
+ * Copyright 2014-2016 ForgeRock AS.
  */
 package com.sun.identity.shared.debug.file.impl;
 
@@ -40,14 +40,22 @@ public class DebugFileProviderImpl implements DebugFileProvider {
      * Default constructor
      */
     public DebugFileProviderImpl() {
+        this.configuration = loadConfiguration();
+    }
 
+    /**
+     * Load the debug configuration from the debug properties, falling back to the default configuration
+     *
+     * @return debug configuration
+     */
+    static DebugConfiguration loadConfiguration() {
         try {
-            this.configuration = new DebugConfigurationFromProperties(DebugConstants.CONFIG_DEBUG_PROPERTIES);
+            return new DebugConfigurationFromProperties(DebugConstants.CONFIG_DEBUG_PROPERTIES);
 
         } catch (InvalidDebugConfigurationException e) {
             StdDebugFile.printError("DebugConfiguration", "'" + DebugConstants.CONFIG_DEBUG_PROPERTIES +
                     "' isn't valid, the default configuration will be used instead: " + e.getMessage(), null);
-            this.configuration = DefaultDebugConfiguration.getInstance();
+            return DefaultDebugConfiguration.getInstance();
         }
     }
 
@@ -28,7 +28,6 @@
  */
 package com.sun.identity.shared.debug.impl;
 
-import static com.sun.identity.shared.debug.DebugConstants.DEBUG_DATE_FORMAT;
 import static org.forgerock.openam.utils.StringUtils.isNotEmpty;
 import static org.forgerock.openam.utils.Time.*;
 
@@ -46,6 +45,9 @@ import org.forgerock.openam.utils.IOUtils;
 import java.io.IOException;
 import java.io.InputStream;
 import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.Comparator;
 import java.util.Map;
 import java.util.Properties;
@@ -63,6 +65,9 @@ public class DebugImpl implements IDebug {
     }
 
     private final static int DIR_ISSUE_ERROR_INTERVAL_IN_MS = 60 * 1000;
+    // same format as DebugConstants.DEBUG_DATE_FORMAT, but immutable so it can be shared without locking
+    private static final DateTimeFormatter DATE_FORMATTER =
+            DateTimeFormatter.ofPattern("MM/dd/yyyy hh:mm:ss:SSS a zzz").withZone(ZoneId.systemDefault());
     private static final boolean SERVER_MODE = SystemPropertiesManager.getAsBoolean(Constants.SERVER_MODE);
     private static volatile long lastDirectoryIssue = 0l;
 
@@ -238,10 +243,7 @@ public class DebugImpl implements IDebug {
     private void record(String msg, Throwable th) {
 
         StringBuilder prefix = new StringBuilder();
-        String dateFormatted;
-        synchronized (DEBUG_DATE_FORMAT) {
-            dateFormatted = DEBUG_DATE_FORMAT.format(newDate());
-        }
+        String dateFormatted = DATE_FORMATTER.format(Instant.ofEpochMilli(currentTimeMillis()));
         prefix.append(debugName)
                 .append(":").append(dateFormatted)
                 .append(": ").append(Thread.currentThread().toString())
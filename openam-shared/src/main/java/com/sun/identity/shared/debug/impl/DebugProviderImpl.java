@@ -29,9 +29,12 @@
 
 package com.sun.identity.shared.debug.impl;
 
+import com.sun.identity.shared.configuration.SystemPropertiesManager;
+import com.sun.identity.shared.debug.DebugConstants;
 import com.sun.identity.shared.debug.IDebug;
 import com.sun.identity.shared.debug.IDebugProvider;
 import com.sun.identity.shared.debug.file.DebugFileProvider;
+import com.sun.identity.shared.debug.file.impl.AsyncDebugFileProviderImpl;
 import com.sun.identity.shared.debug.file.impl.DebugFileProviderImpl;
 
 import java.util.HashMap;
@@ -48,10 +51,12 @@ public class DebugProviderImpl implements IDebugProvider {
     /**
      * Default constructor
      * {@link com.sun.identity.shared.debug.file.impl.DebugFileProviderImpl} would be debug file provider used by
-     * every debug logs
+     * every debug logs, or {@link com.sun.identity.shared.debug.file.impl.AsyncDebugFileProviderImpl} if
+     * {@link DebugConstants#CONFIG_DEBUG_ASYNC} is enabled
      */
     public DebugProviderImpl() {
-        this(new DebugFileProviderImpl());
+        this(SystemPropertiesManager.getAsBoolean(DebugConstants.CONFIG_DEBUG_ASYNC, false)
+                ? new AsyncDebugFileProviderImpl() : new DebugFileProviderImpl());
     }
 
     /**
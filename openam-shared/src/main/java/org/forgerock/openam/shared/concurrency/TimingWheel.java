@@ -0,0 +1,364 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.shared.concurrency;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.forgerock.util.Reject;
+import org.forgerock.util.time.TimeService;
+
+import com.sun.identity.shared.debug.Debug;
+
+/**
+ * A hashed timing wheel for scheduling large numbers of one-off tasks, such as session timeouts, where each task is
+ * frequently cancelled or rescheduled before it runs.
+ * <p/>
+ * Time is divided into ticks of a fixed duration and a task is placed in the bucket of the tick in which it is due,
+ * modulo the number of buckets. Scheduling and cancelling a task only lock the bucket it lives in, so both are
+ * constant time and callers working on different buckets never contend. A single ticker thread visits one bucket per
+ * tick and hands the tasks that are due to a small pool of worker threads; tasks due in a later revolution of the
+ * wheel stay in the bucket.
+ * <p/>
+ * Tasks never run before their execution time, and run at most about one tick after it while worker threads are
+ * available. The delay between the execution time and the time a task actually starts is recorded as the timer
+ * drift.
+ *
+ * @since 14.0.0
+ */
+public class TimingWheel {
+
+    private static final Debug DEBUG = Debug.getInstance("amTimingWheel");
+
+    private final String name;
+    private final long tickDuration;
+    private final Bucket[] buckets;
+    private final int mask;
+    private final TimeService clock;
+    private final long startTime;
+    private final ExecutorService workers;
+    private final Thread ticker;
+    private volatile boolean shutdown;
+
+    private final AtomicLong scheduledTaskCount = new AtomicLong();
+    private final AtomicLong executedTaskCount = new AtomicLong();
+    private final AtomicLong totalDrift = new AtomicLong();
+    private final AtomicLong maximumDrift = new AtomicLong();
+
+    /**
+     * Creates and starts a timing wheel.
+     *
+     * @param name The name of the timing wheel, used to name its threads.
+     * @param tickDuration The duration of each tick, in milliseconds.
+     * @param wheelSize The number of buckets, rounded up to a power of two.
+     * @param poolSize The number of threads used to run tasks.
+     * @param clock The source of the current time.
+     */
+    public TimingWheel(final String name, long tickDuration, int wheelSize, int poolSize, TimeService clock) {
+        Reject.ifNull(name, clock);
+        Reject.ifTrue(tickDuration <= 0, "tickDuration must be > 0");
+        Reject.ifTrue(wheelSize <= 0 || wheelSize > 1 << 30, "wheelSize must be between 1 and 2^30");
+        Reject.ifTrue(poolSize <= 0, "poolSize must be > 0");
+
+        this.name = name;
+        this.tickDuration = tickDuration;
+        this.clock = clock;
+        int size = Integer.highestOneBit(wheelSize);
+        if (size < wheelSize) {
+            size <<= 1;
+        }
+        this.buckets = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.startTime = clock.now();
+
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(poolSize, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.ticker = new Thread(new Ticker(), name + "-Ticker");
+        this.ticker.setDaemon(true);
+        this.ticker.start();
+    }
+
+    /**
+     * Schedules a task to run once, at or shortly after the given time. A time in the past runs the task as soon as
+     * possible.
+     *
+     * @param task The task to run.
+     * @param executionTime The time at which to run the task, in milliseconds since the UTC epoch.
+     * @return The handle for the scheduled task, which can be used to cancel it.
+     * @throws IllegalStateException If the timing wheel has been shut down.
+     */
+    public Timeout schedule(Runnable task, long executionTime) {
+        Reject.ifNull(task);
+        if (shutdown) {
+            throw new IllegalStateException("TimingWheel " + name + " has been shut down");
+        }
+        long tick = Math.max(0, (executionTime - startTime) / tickDuration);
+        Bucket bucket = buckets[(int) (tick & mask)];
+        Timeout timeout = new Timeout(task, executionTime, tick, bucket);
+        boolean due;
+        synchronized (bucket) {
+            // The ticker has already been past this tick, so the task is due now
+            due = tick <= bucket.processedTick;
+            if (!due) {
+                bucket.add(timeout);
+            }
+        }
+        scheduledTaskCount.incrementAndGet();
+        if (due) {
+            timeout.state = Timeout.EXPIRED;
+            submit(timeout);
+        }
+        return timeout;
+    }
+
+    /**
+     * Stops the timing wheel. Tasks that have not yet run are discarded.
+     */
+    public void shutdown() {
+        shutdown = true;
+        ticker.interrupt();
+        workers.shutdownNow();
+    }
+
+    /**
+     * Returns the number of tasks that are waiting to run.
+     *
+     * @return The number of scheduled tasks.
+     */
+    public long getScheduledTaskCount() {
+        return scheduledTaskCount.get();
+    }
+
+    /**
+     * Returns the number of tasks that have been run.
+     *
+     * @return The number of executed tasks.
+     */
+    public long getExecutedTaskCount() {
+        return executedTaskCount.get();
+    }
+
+    /**
+     * Returns the average delay between the time tasks were scheduled for and the time they started running.
+     *
+     * @return The average drift in milliseconds, or zero if no tasks have run.
+     */
+    public double getAverageDrift() {
+        long executed = executedTaskCount.get();
+        return executed == 0 ? 0D : (double) totalDrift.get() / executed;
+    }
+
+    /**
+     * Returns the longest delay between the time a task was scheduled for and the time it started running.
+     *
+     * @return The maximum drift in milliseconds.
+     */
+    public long getMaximumDrift() {
+        return maximumDrift.get();
+    }
+
+    private void expire(long tick) {
+        Bucket bucket = buckets[(int) (tick & mask)];
+        List<Timeout> due = new ArrayList<>();
+        synchronized (bucket) {
+            bucket.processedTick = tick;
+            Timeout timeout = bucket.head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.tick <= tick) {
+                    bucket.remove(timeout);
+                    timeout.state = Timeout.EXPIRED;
+                    due.add(timeout);
+                }
+                timeout = next;
+            }
+        }
+        for (Timeout timeout : due) {
+            submit(timeout);
+        }
+    }
+
+    private void submit(Timeout timeout) {
+        scheduledTaskCount.decrementAndGet();
+        try {
+            workers.execute(timeout);
+        } catch (RejectedExecutionException e) {
+            if (!shutdown) {
+                DEBUG.error("TimingWheel {}: unable to run task {}", name, timeout.task, e);
+            }
+        }
+    }
+
+    private void recordDrift(long drift) {
+        executedTaskCount.incrementAndGet();
+        totalDrift.addAndGet(drift);
+        long current = maximumDrift.get();
+        while (drift > current && !maximumDrift.compareAndSet(current, drift)) {
+            current = maximumDrift.get();
+        }
+    }
+
+    /**
+     * Moves round the wheel one bucket per tick, waiting for the end of each tick before running its tasks.
+     */
+    private final class Ticker implements Runnable {
+        @Override
+        public void run() {
+            long tick = 0;
+            while (!shutdown) {
+                try {
+                    long tickEnd = startTime + (tick + 1) * tickDuration;
+                    long wait = tickEnd - clock.now();
+                    if (wait > 0) {
+                        TimeUnit.MILLISECONDS.sleep(wait);
+                        continue;
+                    }
+                    expire(tick);
+                    tick++;
+                } catch (InterruptedException e) {
+                    if (!shutdown) {
+                        DEBUG.warning("TimingWheel {}: ticker interrupted", name);
+                    }
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (RuntimeException e) {
+                    DEBUG.error("TimingWheel {}: unexpected error processing tick {}", name, tick, e);
+                    tick++;
+                }
+            }
+        }
+    }
+
+    /**
+     * A doubly linked list of the timeouts that fall in one bucket of the wheel. Guarded by its own monitor.
+     */
+    private static final class Bucket {
+        private Timeout head;
+        private long processedTick = -1;
+
+        private void add(Timeout timeout) {
+            timeout.next = head;
+            if (head != null) {
+                head.previous = timeout;
+            }
+            head = timeout;
+        }
+
+        private void remove(Timeout timeout) {
+            if (timeout.previous != null) {
+                timeout.previous.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.previous = timeout.previous;
+            }
+            timeout.next = null;
+            timeout.previous = null;
+        }
+    }
+
+    /**
+     * Handle for a task scheduled on the timing wheel.
+     */
+    public final class Timeout implements Runnable {
+        private static final int PENDING = 0;
+        private static final int EXPIRED = 1;
+        private static final int DONE = 2;
+        private static final int CANCELLED = 3;
+
+        private final Runnable task;
+        private final long executionTime;
+        private final long tick;
+        private final Bucket bucket;
+        private volatile int state = PENDING;
+        private Timeout next;
+        private Timeout previous;
+
+        private Timeout(Runnable task, long executionTime, long tick, Bucket bucket) {
+            this.task = task;
+            this.executionTime = executionTime;
+            this.tick = tick;
+            this.bucket = bucket;
+        }
+
+        /**
+         * Returns the time at which the task is scheduled to run.
+         *
+         * @return The execution time in milliseconds since the UTC epoch.
+         */
+        public long getExecutionTime() {
+            return executionTime;
+        }
+
+        /**
+         * Returns whether the task is still to run or is currently running.
+         *
+         * @return {@code true} if the task has been neither cancelled nor completed.
+         */
+        public boolean isScheduled() {
+            int current = state;
+            return current == PENDING || current == EXPIRED;
+        }
+
+        /**
+         * Cancels the task if it has not yet been handed to a worker thread.
+         *
+         * @return {@code true} if the task was cancelled and will not run.
+         */
+        public boolean cancel() {
+            synchronized (bucket) {
+                if (state != PENDING) {
+                    return false;
+                }
+                bucket.remove(this);
+                state = CANCELLED;
+            }
+            scheduledTaskCount.decrementAndGet();
+            return true;
+        }
+
+        @Override
+        public void run() {
+            recordDrift(Math.max(0, clock.now() - executionTime));
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                DEBUG.error("TimingWheel {}: error running task {}", name, task, e);
+            } finally {
+                state = DONE;
+            }
+        }
+    }
+}
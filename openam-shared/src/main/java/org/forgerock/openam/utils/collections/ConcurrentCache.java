@@ -0,0 +1,492 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.utils.collections;
+
+import static org.forgerock.openam.utils.Time.currentTimeMillis;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded cache which can be read concurrently without locking, intended as a replacement for
+ * {@link com.iplanet.am.util.Cache} on frequently read paths.
+ *
+ * <p>Reads only look up a {@link ConcurrentHashMap} and record the access, a sample of them in the frequency
+ * sketch described below. Writes and removals are serialised by a lock which also guards the eviction policy.
+ * Entries may be given a time to live, after which they are no longer returned.</p>
+ *
+ * <p>The eviction policy is modelled on W-TinyLFU: new entries enter a small admission window, and when an entry
+ * leaves the window it is only admitted to the main area of the cache if it has been requested more often than the
+ * entry it would evict. The main area evicts with a second chance policy, and request frequencies are estimated with
+ * a count-min sketch which is periodically halved so that old popularity fades.</p>
+ *
+ * <p>Like {@code Cache}, neither keys nor values may be {@code null}. The views returned by {@link #entrySet()},
+ * {@link #keySet()} and {@link #values()} are weakly consistent and never throw
+ * {@link java.util.ConcurrentModificationException}.</p>
+ *
+ * @param <K> The cache key type.
+ * @param <V> The cache value type.
+ */
+public class ConcurrentCache<K, V> extends AbstractMap<K, V> {
+
+    // one read in eight is recorded in the frequency sketch, which keeps the shared counters out of most reads
+    private static final int READ_SAMPLE_MASK = 7;
+
+    private final ConcurrentMap<K, Node<K, V>> data;
+    private final int maxSize;
+    private final int maxWindowSize;
+    private final long timeToLive;
+    private final FrequencySketch sketch;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // guarded by lock
+    private final ArrayDeque<Node<K, V>> window = new ArrayDeque<Node<K, V>>();
+    private final ArrayDeque<Node<K, V>> main = new ArrayDeque<Node<K, V>>();
+    private int windowSize;
+    private int mainSize;
+
+    /**
+     * Constructs a new cache whose entries do not expire.
+     *
+     * @param maxSize The maximum number of entries in the cache.
+     */
+    public ConcurrentCache(int maxSize) {
+        this(maxSize, 0);
+    }
+
+    /**
+     * Constructs a new cache.
+     *
+     * @param maxSize The maximum number of entries in the cache.
+     * @param timeToLive The number of milliseconds after which an entry expires once put in the cache, or zero if
+     *                   the entries do not expire.
+     */
+    public ConcurrentCache(int maxSize, long timeToLive) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Illegal maximum size: " + maxSize);
+        }
+        if (timeToLive < 0) {
+            throw new IllegalArgumentException("Illegal time to live: " + timeToLive);
+        }
+        // as with Cache, a cache of size zero holds one entry
+        maxSize = Math.max(1, maxSize);
+        this.maxSize = maxSize;
+        this.maxWindowSize = Math.max(1, maxSize / 100);
+        this.timeToLive = timeToLive;
+        this.data = new ConcurrentHashMap<K, Node<K, V>>(Math.min(maxSize, 1 << 16) * 4 / 3);
+        this.sketch = new FrequencySketch(maxSize);
+    }
+
+    /**
+     * Get the maximum size of the cache.
+     *
+     * @return the maximum size of the cache.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public V get(Object key) {
+        Node<K, V> node = data.get(key);
+        if ((ThreadLocalRandom.current().nextInt() & READ_SAMPLE_MASK) == 0) {
+            sketch.increment(key);
+        }
+        if (node == null) {
+            return null;
+        }
+        if (isExpired(node)) {
+            remove(node);
+            return null;
+        }
+        if (!node.referenced) {
+            node.referenced = true;
+        }
+        return node.value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        Node<K, V> node = data.get(key);
+        return node != null && !isExpired(node);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException();
+        }
+        long now = currentTimeMillis();
+        lock.lock();
+        try {
+            sketch.increment(key);
+            Node<K, V> node = data.get(key);
+            if (node != null) {
+                if (!node.isExpired(now)) {
+                    V previous = node.value;
+                    node.value = value;
+                    node.expiryTime = expiryTime(now);
+                    node.referenced = true;
+                    return previous;
+                }
+                unlink(node);
+            }
+            node = new Node<K, V>(key, value, expiryTime(now));
+            data.put(key, node);
+            window.addLast(node);
+            windowSize++;
+            evict();
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        lock.lock();
+        try {
+            Node<K, V> node = data.get(key);
+            if (node == null) {
+                return null;
+            }
+            unlink(node);
+            return isExpired(node) ? null : node.value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void remove(Node<K, V> node) {
+        lock.lock();
+        try {
+            if (data.get(node.key) == node) {
+                unlink(node);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            for (Node<K, V> node : data.values()) {
+                node.removed = true;
+            }
+            data.clear();
+            window.clear();
+            main.clear();
+            windowSize = 0;
+            mainSize = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of entries in the cache, which may include entries that have expired but have not been
+     * removed yet.
+     *
+     * @return the number of entries.
+     */
+    @Override
+    public int size() {
+        return data.size();
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new EntrySet();
+    }
+
+    private boolean isExpired(Node<K, V> node) {
+        return timeToLive != 0 && node.isExpired(currentTimeMillis());
+    }
+
+    private long expiryTime(long now) {
+        return timeToLive == 0 ? Long.MAX_VALUE : now + timeToLive;
+    }
+
+    /**
+     * Removes a node from the cache. The node is left in its queue and skipped when it reaches the head of it.
+     * Must be called with the lock held.
+     */
+    private void unlink(Node<K, V> node) {
+        data.remove(node.key, node);
+        node.removed = true;
+        if (node.inWindow) {
+            windowSize--;
+        } else {
+            mainSize--;
+        }
+        if (window.size() + main.size() > 2 * (maxSize + maxWindowSize)) {
+            purgeRemoved(window);
+            purgeRemoved(main);
+        }
+    }
+
+    private void purgeRemoved(ArrayDeque<Node<K, V>> queue) {
+        Iterator<Node<K, V>> nodes = queue.iterator();
+        while (nodes.hasNext()) {
+            if (nodes.next().removed) {
+                nodes.remove();
+            }
+        }
+    }
+
+    /**
+     * Moves the entries which overflow the admission window to the main area, evicting either the candidate or the
+     * victim chosen by the main area once it is full, whichever has been requested less often.
+     * Must be called with the lock held.
+     */
+    private void evict() {
+        while (windowSize > maxWindowSize) {
+            Node<K, V> candidate = pollLive(window);
+            windowSize--;
+            candidate.inWindow = false;
+            if (mainSize + windowSize < maxSize) {
+                main.addLast(candidate);
+                mainSize++;
+                continue;
+            }
+            Node<K, V> victim = selectVictim();
+            if (victim == null) {
+                data.remove(candidate.key, candidate);
+                candidate.removed = true;
+            } else if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                data.remove(victim.key, victim);
+                victim.removed = true;
+                main.addLast(candidate);
+            } else {
+                data.remove(candidate.key, candidate);
+                candidate.removed = true;
+                main.addFirst(victim);
+            }
+        }
+    }
+
+    /**
+     * Returns the first entry of the main area not requested since it was last considered for eviction, giving the
+     * others a second chance. Expired entries are removed on the way.
+     */
+    private Node<K, V> selectVictim() {
+        long now = currentTimeMillis();
+        Node<K, V> node;
+        while ((node = pollLive(main)) != null) {
+            if (node.isExpired(now)) {
+                data.remove(node.key, node);
+                node.removed = true;
+                mainSize--;
+            } else if (node.referenced) {
+                node.referenced = false;
+                main.addLast(node);
+            } else {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    private Node<K, V> pollLive(ArrayDeque<Node<K, V>> queue) {
+        Node<K, V> node;
+        do {
+            node = queue.pollFirst();
+        } while (node != null && node.removed);
+        return node;
+    }
+
+    /**
+     * A cache entry.
+     */
+    private static final class Node<K, V> {
+        private final K key;
+        private volatile V value;
+        private volatile long expiryTime;
+        private volatile boolean referenced;
+        // guarded by lock
+        private boolean inWindow = true;
+        private boolean removed;
+
+        private Node(K key, V value, long expiryTime) {
+            this.key = key;
+            this.value = value;
+            this.expiryTime = expiryTime;
+        }
+
+        private boolean isExpired(long now) {
+            return expiryTime < now;
+        }
+    }
+
+    /**
+     * Weakly consistent view of the entries that have not expired.
+     */
+    private final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new Iterator<Map.Entry<K, V>>() {
+                private final Iterator<Node<K, V>> nodes = data.values().iterator();
+                private final long now = currentTimeMillis();
+                private Node<K, V> next = advance();
+                private Node<K, V> last;
+
+                private Node<K, V> advance() {
+                    while (nodes.hasNext()) {
+                        Node<K, V> node = nodes.next();
+                        if (!node.isExpired(now)) {
+                            return node;
+                        }
+                    }
+                    return null;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return next != null;
+                }
+
+                @Override
+                public Map.Entry<K, V> next() {
+                    if (next == null) {
+                        throw new NoSuchElementException();
+                    }
+                    last = next;
+                    next = advance();
+                    return new SimpleImmutableEntry<K, V>(last.key, last.value);
+                }
+
+                @Override
+                public void remove() {
+                    if (last == null) {
+                        throw new IllegalStateException();
+                    }
+                    ConcurrentCache.this.remove(last);
+                    last = null;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return ConcurrentCache.this.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            Node<K, V> node = data.get(entry.getKey());
+            return node != null && !isExpired(node) && node.value.equals(entry.getValue());
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!contains(o)) {
+                return false;
+            }
+            ConcurrentCache.this.remove(((Map.Entry<?, ?>) o).getKey());
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            ConcurrentCache.this.clear();
+        }
+    }
+
+    /**
+     * Estimates how often keys have been requested with a count-min sketch of four rows of counters saturating at
+     * 15. Once the number of increments reaches ten times the size of the cache every counter is halved.
+     * <p>
+     * The counters are updated without synchronisation: concurrent increments may be lost, which only makes the
+     * estimates slightly less accurate.
+     */
+    private static final class FrequencySketch {
+        private static final int[] SEEDS = { 0x97cb3127, 0xb5ad4ece, 0x5be0cd19, 0x1f83d9ab };
+        private static final int MAX_COUNT = 15;
+
+        private final int[] counters;
+        private final int rowMask;
+        private final int sampleSize;
+        private int additions;
+
+        private FrequencySketch(int maxSize) {
+            int width = Integer.highestOneBit(Math.max(16, Math.min(maxSize, 1 << 24)) - 1) << 1;
+            this.counters = new int[width * SEEDS.length];
+            this.rowMask = width - 1;
+            this.sampleSize = (int) Math.min(Integer.MAX_VALUE, 10L * maxSize);
+        }
+
+        private void increment(Object key) {
+            if (key == null) {
+                return;
+            }
+            int hash = spread(key.hashCode());
+            boolean added = false;
+            for (int row = 0; row < SEEDS.length; row++) {
+                int index = indexOf(hash, row);
+                if (counters[index] < MAX_COUNT) {
+                    counters[index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        private int frequency(Object key) {
+            int hash = spread(key.hashCode());
+            int frequency = MAX_COUNT;
+            for (int row = 0; row < SEEDS.length; row++) {
+                frequency = Math.min(frequency, counters[indexOf(hash, row)]);
+            }
+            return frequency;
+        }
+
+        private int indexOf(int hash, int row) {
+            int h = (hash + SEEDS[row]) * SEEDS[row];
+            h ^= h >>> 16;
+            return row * (rowMask + 1) + (h & rowMask);
+        }
+
+        private void reset() {
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] >>>= 1;
+            }
+            additions /= 2;
+        }
+
+        private static int spread(int hash) {
+            int h = hash * 0x9e3779b9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.sun.identity.common;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import org.testng.annotations.Test;
+
+public class ConcurrentExpiringMapTest {
+
+    @Test
+    public void shouldReplaceValueOfExistingKey() {
+        final ConcurrentExpiringMap<Integer, Integer> map = new ConcurrentExpiringMap<Integer, Integer>(60000, 1000);
+        map.put(1, 2);
+        assertThat(map.put(1, 3)).isEqualTo(2);
+        assertThat(map.get(1)).isEqualTo(3);
+        assertThat(map.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldNotReturnExpiredEntry() throws Exception {
+        final ConcurrentExpiringMap<Integer, Integer> map = new ConcurrentExpiringMap<Integer, Integer>(60000, 1000);
+        map.put(1, 2, 1);
+        map.put(3, 4);
+        Thread.sleep(10);
+        assertThat(map.containsKey(1)).isFalse();
+        assertThat(map.get(1)).isNull();
+        assertThat(map.get(3)).isEqualTo(4);
+        assertThat(map.size()).isEqualTo(1);
+        assertThat(map.getExpirationCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldRemoveExpiredEntriesWhenRun() throws Exception {
+        final ConcurrentExpiringMap<Integer, Integer> map = new ConcurrentExpiringMap<Integer, Integer>(5, 1);
+        map.put(1, 2);
+        map.put(3, 4, 60000);
+        Thread.sleep(20);
+        map.run();
+        assertThat(map.size()).isEqualTo(1);
+        assertThat(map.get(3)).isEqualTo(4);
+        assertThat(map.getExpirationCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldEvictEntriesClosestToExpiry() {
+        final ConcurrentExpiringMap<Integer, Integer> map =
+                new ConcurrentExpiringMap<Integer, Integer>(60000, 1000, 2);
+        map.put(1, 1, 10000);
+        map.put(2, 2, 50000);
+        map.put(3, 3, 20000);
+        assertThat(map.size()).isEqualTo(2);
+        assertThat(map.containsKey(1)).isFalse();
+        assertThat(map.containsKey(2)).isTrue();
+        assertThat(map.containsKey(3)).isTrue();
+        assertThat(map.getEvictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldPutIfAbsentOverExpiredEntry() throws Exception {
+        final ConcurrentExpiringMap<Integer, Integer> map = new ConcurrentExpiringMap<Integer, Integer>(60000, 1000);
+        map.put(1, 2);
+        assertThat(map.putIfAbsent(1, 3)).isEqualTo(2);
+        map.put(4, 5, 1);
+        Thread.sleep(10);
+        assertThat(map.putIfAbsent(4, 6)).isNull();
+        assertThat(map.get(4)).isEqualTo(6);
+    }
+
+    @Test
+    public void shouldOnlyReplaceMatchingValue() {
+        final ConcurrentExpiringMap<Integer, Integer> map = new ConcurrentExpiringMap<Integer, Integer>(60000, 1000);
+        map.put(1, 2);
+        assertThat(map.replace(1, 3, 4)).isFalse();
+        assertThat(map.replace(1, 2, 4)).isTrue();
+        assertThat(map.remove(1, 2)).isFalse();
+        assertThat(map.remove(1, 4)).isTrue();
+        assertThat(map.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void shouldIterateOverLiveEntriesOnly() throws Exception {
+        final ConcurrentExpiringMap<Integer, Integer> map = new ConcurrentExpiringMap<Integer, Integer>(60000, 1000);
+        map.put(1, 2, 1);
+        map.put(3, 4);
+        Thread.sleep(10);
+        assertThat(map.keySet()).containsOnly(3);
+        assertThat(map.values()).containsOnly(4);
+    }
+}
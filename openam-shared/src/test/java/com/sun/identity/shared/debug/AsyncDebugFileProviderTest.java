@@ -0,0 +1,77 @@
+/**
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package com.sun.identity.shared.debug;
+
+import com.sun.identity.shared.debug.file.impl.AsyncDebugFileProviderImpl;
+import com.sun.identity.shared.debug.file.impl.DebugConfigurationFromProperties;
+import com.sun.identity.shared.debug.impl.DebugProviderImpl;
+import org.forgerock.util.time.TimeService;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Unit test for AsyncDebugFileProviderImpl.
+ */
+public class AsyncDebugFileProviderTest extends DebugTestTemplate {
+
+    private static final int MESSAGES = 100;
+
+    @Test
+    public void writeMessagesInOrder() throws Exception {
+        AsyncDebugFileProviderImpl asyncProvider = new AsyncDebugFileProviderImpl(
+                new DebugConfigurationFromProperties(DEBUG_CONFIG_FOR_TEST), TimeService.SYSTEM, MESSAGES);
+        provider = new DebugProviderImpl(asyncProvider);
+
+        //initialize a scenario
+        IDebug debug = provider.getInstance(logName);
+        for (int i = 0; i < MESSAGES; i++) {
+            debug.message("Message " + i, null);
+        }
+        asyncProvider.shutdown();
+
+        //Check that every message was written, in order
+        checkLogFileStatus(true, logName);
+        List<String> lines = Files.readAllLines(new File(debugDirectory, logName).toPath(), Charset.defaultCharset());
+        int next = 0;
+        for (String line : lines) {
+            if (line.equals("Message " + next)) {
+                next++;
+            }
+        }
+        Assert.assertEquals(next, MESSAGES, "Messages written in order");
+        Assert.assertEquals(asyncProvider.getDroppedCount(), 0, "Messages dropped");
+    }
+
+    @Test
+    public void writeDirectlyOnceShutDown() throws Exception {
+        AsyncDebugFileProviderImpl asyncProvider = new AsyncDebugFileProviderImpl(
+                new DebugConfigurationFromProperties(DEBUG_CONFIG_FOR_TEST), TimeService.SYSTEM, MESSAGES);
+        provider = new DebugProviderImpl(asyncProvider);
+        asyncProvider.shutdown();
+
+        //initialize a scenario
+        IDebug debug = provider.getInstance(logName);
+        debug.error("Should appear in log", null);
+
+        //Check that the message was written without waiting for the writer
+        checkLogFileStatus(true, logName);
+    }
+}
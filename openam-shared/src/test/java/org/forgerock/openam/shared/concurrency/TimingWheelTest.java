@@ -0,0 +1,132 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.shared.concurrency;
+
+import static org.testng.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.forgerock.util.time.TimeService;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TimingWheelTest {
+
+    private static final long TICK = 10L;
+
+    private TimingWheel wheel;
+
+    @BeforeMethod
+    public void setUp() {
+        // A small wheel so that tasks in the tests span several revolutions
+        wheel = new TimingWheel("TestTimingWheel", TICK, 4, 2, TimeService.SYSTEM);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        wheel.shutdown();
+    }
+
+    @Test
+    public void shouldRunTaskNoEarlierThanExecutionTime() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicLong runTime = new AtomicLong();
+        long executionTime = System.currentTimeMillis() + 100L;
+
+        TimingWheel.Timeout timeout = wheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                runTime.set(System.currentTimeMillis());
+                latch.countDown();
+            }
+        }, executionTime);
+
+        assertTrue(timeout.isScheduled());
+        assertEquals(timeout.getExecutionTime(), executionTime);
+        assertTrue(latch.await(5, TimeUnit.SECONDS), "Expected the task to run.");
+        assertTrue(runTime.get() >= executionTime, "Expected the task not to run early.");
+        assertEquals(wheel.getExecutedTaskCount(), 1L);
+        assertTrue(wheel.getMaximumDrift() <= runTime.get() - executionTime);
+    }
+
+    @Test
+    public void shouldNotRunCancelledTask() throws Exception {
+        final CountDownLatch cancelled = new CountDownLatch(1);
+        final CountDownLatch other = new CountDownLatch(1);
+        long executionTime = System.currentTimeMillis() + 50L;
+
+        TimingWheel.Timeout timeout = wheel.schedule(new CountDownTask(cancelled), executionTime);
+        wheel.schedule(new CountDownTask(other), executionTime);
+        assertEquals(wheel.getScheduledTaskCount(), 2L);
+
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.isScheduled());
+        assertEquals(wheel.getScheduledTaskCount(), 1L);
+
+        assertTrue(other.await(5, TimeUnit.SECONDS), "Expected the other task to run.");
+        assertFalse(cancelled.await(5 * TICK, TimeUnit.MILLISECONDS), "Expected the cancelled task not to run.");
+        assertFalse(timeout.cancel());
+        assertEquals(wheel.getScheduledTaskCount(), 0L);
+    }
+
+    @Test
+    public void shouldRunTaskScheduledInThePastPromptly() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+
+        wheel.schedule(new CountDownTask(latch), System.currentTimeMillis() - 1000L);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS), "Expected the task to run.");
+    }
+
+    @Test
+    public void shouldRunTasksDueInLaterRevolutionsOfTheWheel() throws Exception {
+        CountDownLatch latch = new CountDownLatch(3);
+        long now = System.currentTimeMillis();
+
+        // With 4 buckets of 10ms these span more than one revolution of the wheel
+        wheel.schedule(new CountDownTask(latch), now + 20L);
+        wheel.schedule(new CountDownTask(latch), now + 60L);
+        wheel.schedule(new CountDownTask(latch), now + 100L);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS), "Expected all tasks to run.");
+        assertEquals(wheel.getExecutedTaskCount(), 3L);
+        assertTrue(wheel.getAverageDrift() >= 0D);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void shouldRejectTasksAfterShutdown() {
+        wheel.shutdown();
+
+        wheel.schedule(new CountDownTask(new CountDownLatch(1)), System.currentTimeMillis());
+    }
+
+    private static final class CountDownTask implements Runnable {
+        private final CountDownLatch latch;
+
+        private CountDownTask(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public void run() {
+            latch.countDown();
+        }
+    }
+}
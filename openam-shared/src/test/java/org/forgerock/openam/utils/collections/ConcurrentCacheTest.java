@@ -0,0 +1,102 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.utils.collections;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+
+import org.testng.annotations.Test;
+
+public class ConcurrentCacheTest {
+
+    @Test
+    public void shouldLimitCacheSize() {
+        final ConcurrentCache<Integer, Integer> cache = new ConcurrentCache<Integer, Integer>(1);
+        cache.put(1, 2);
+        cache.put(3, 4);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldLimitCacheSizeWithLargerTest() {
+        final int max = 10000;
+        final ConcurrentCache<String, String> cache = new ConcurrentCache<String, String>(max);
+        for (int ii = 0; ii < max * 5; ii++) {
+            cache.put(UUID.randomUUID().toString(), UUID.randomUUID().toString());
+        }
+        assertThat(cache.size()).isEqualTo(max);
+    }
+
+    @Test
+    public void shouldReplaceValueOfExistingKey() {
+        final ConcurrentCache<Integer, Integer> cache = new ConcurrentCache<Integer, Integer>(10);
+        cache.put(1, 2);
+        assertThat(cache.put(1, 3)).isEqualTo(2);
+        assertThat(cache.get(1)).isEqualTo(3);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldKeepFrequentlyUsedEntry() {
+        final int max = 100;
+        final ConcurrentCache<Integer, Integer> cache = new ConcurrentCache<Integer, Integer>(max);
+        cache.put(0, 0);
+        for (int ii = 1; ii < max * 10; ii++) {
+            cache.put(ii, ii);
+            assertThat(cache.get(0)).isEqualTo(0);
+        }
+        assertThat(cache.size()).isEqualTo(max);
+    }
+
+    @Test
+    public void shouldNotReturnExpiredEntry() throws Exception {
+        final ConcurrentCache<Integer, Integer> cache = new ConcurrentCache<Integer, Integer>(10, 1);
+        cache.put(1, 2);
+        Thread.sleep(10);
+        assertThat(cache.containsKey(1)).isFalse();
+        assertThat(cache.get(1)).isNull();
+        assertThat(cache.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldRemoveEntry() {
+        final ConcurrentCache<Integer, Integer> cache = new ConcurrentCache<Integer, Integer>(10);
+        cache.put(1, 2);
+        cache.put(3, 4);
+        assertThat(cache.remove(1)).isEqualTo(2);
+        assertThat(cache.get(1)).isNull();
+        assertThat(cache.keySet()).containsOnly(3);
+    }
+
+    @Test
+    public void shouldRemoveEntryThroughIterator() {
+        final ConcurrentCache<Integer, Integer> cache = new ConcurrentCache<Integer, Integer>(10);
+        cache.put(1, 2);
+        final Iterator<Map.Entry<Integer, Integer>> entries = cache.entrySet().iterator();
+        assertThat(entries.next().getValue()).isEqualTo(2);
+        entries.remove();
+        assertThat(cache.isEmpty()).isTrue();
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void shouldRejectNullValue() {
+        new ConcurrentCache<Integer, Integer>(10).put(1, null);
+    }
+}